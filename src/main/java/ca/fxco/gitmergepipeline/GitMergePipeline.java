@@ -1,19 +1,27 @@
 package ca.fxco.gitmergepipeline;
 
+import ca.fxco.gitmergepipeline.config.CachingConfigurationLoader;
 import ca.fxco.gitmergepipeline.config.ConfigurationLoader;
+import ca.fxco.gitmergepipeline.config.PipelineConfiguration;
+import ca.fxco.gitmergepipeline.daemon.DaemonClient;
+import ca.fxco.gitmergepipeline.daemon.MergeDaemon;
 import ca.fxco.gitmergepipeline.merge.MergeBranches;
 import ca.fxco.gitmergepipeline.merge.MergeDriver;
 import ca.fxco.gitmergepipeline.merge.MergeTool;
 import ca.fxco.gitmergepipeline.merge.ReMergeTool;
+import ca.fxco.gitmergepipeline.utils.Tracer;
+import org.eclipse.jgit.lib.Constants;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.OptionalInt;
 
 /**
  * Main entry point for the GitMergePipeline application.
@@ -21,6 +29,7 @@ import java.util.List;
  * 1. A git merge driver
  * 2. A re-merge tool
  * 3. A merge tool
+ * 4. A daemon which runs the driver, re-merge tool and merge tool for thin clients
  *
  * @author FX
  */
@@ -40,22 +49,35 @@ public class GitMergePipeline {
         }
 
         String mode = args[0].toLowerCase();
-        String[] modeArgs = Arrays.copyOfRange(args, 1, args.length);
+        List<String> remainingArgs = new ArrayList<>();
+        Path traceFile = null;
+        for (int i = 1; i < args.length; i++) {
+            if ("--trace".equals(args[i]) && i + 1 < args.length) {
+                traceFile = Paths.get(args[++i]);
+            } else {
+                remainingArgs.add(args[i]);
+            }
+        }
+        String[] modeArgs = remainingArgs.toArray(String[]::new);
+        Tracer tracer = traceFile != null ? Tracer.start() : null;
 
-        try {
-            int exitCode;
+        int exitCode;
+        Tracer.Span span = Tracer.span("command", mode);
+        try (span) {
             switch (mode) {
                 case "merge":
                     exitCode = runAsMerge(modeArgs);
                     break;
                 case "driver":
-                    exitCode = runAsMergeDriver(modeArgs);
-                    break;
                 case "remerge":
-                    exitCode = runAsReMergeTool(modeArgs);
-                    break;
                 case "tool":
-                    exitCode = runAsMergeTool(modeArgs);
+                    // The daemon runs commands in its own process, which this process can't trace
+                    exitCode = tracer != null
+                            ? runCommand(mode, modeArgs, new ConfigurationLoader())
+                            : runThroughDaemon(mode, modeArgs);
+                    break;
+                case "daemon":
+                    exitCode = runAsDaemon(modeArgs);
                     break;
                 case "help":
                     printUsage();
@@ -66,26 +88,56 @@ public class GitMergePipeline {
                     printUsage();
                     exitCode = ERROR_INVALID_ARGS;
             }
-            System.exit(exitCode);
         } catch (Exception e) {
             logger.error("Error executing in mode: " + mode, e);
             System.err.println("Error: " + e.getMessage());
-            System.exit(ERROR_EXECUTION);
+            exitCode = ERROR_EXECUTION;
+        }
+
+        if (tracer != null) {
+            tracer.stop();
+            try {
+                tracer.write(traceFile);
+                logger.info("Wrote {} spans to: {}", tracer.getSpanCount(), traceFile);
+            } catch (IOException e) {
+                logger.error("Error writing trace: {}", traceFile, e);
+            }
         }
+        System.exit(exitCode);
     }
 
     static int runAsMerge(String[] args) throws IOException {
         if (args.length < 2) {
             System.err.println("Insufficient arguments for merge mode");
-            System.err.println("Usage: merge <branch1> <branch2> [branch3 ...] [--base <baseBranch>]");
+            System.err.println("Usage: merge <branch1> <branch2> [branch3 ...] [--base <baseBranch>] [--parallelism <n>] [--bare [--ref <ref>]] [--resume] [--tournament] [--trace <file>]");
             return ERROR_INVALID_ARGS;
         }
 
         List<String> branches = new ArrayList<>();
         String baseBranch = null;
+        Integer parallelism = null;
+        boolean bare = false;
+        boolean resume = false;
+        MergeBranches.Reduction reduction = MergeBranches.Reduction.SEQUENTIAL;
+        String ref = Constants.HEAD;
         for (int i = 0; i < args.length; i++) {
             if ("--base".equals(args[i]) && i + 1 < args.length) {
                 baseBranch = args[++i];
+            } else if ("--parallelism".equals(args[i]) && i + 1 < args.length) {
+                try {
+                    parallelism = Integer.parseInt(args[++i]);
+                } catch (NumberFormatException e) {
+                    System.err.println("Invalid parallelism: " + args[i]);
+                    return ERROR_INVALID_ARGS;
+                }
+            } else if ("--bare".equals(args[i])) {
+                bare = true;
+            } else if ("--ref".equals(args[i]) && i + 1 < args.length) {
+                ref = args[++i];
+            } else if ("--resume".equals(args[i])) {
+                resume = true;
+            } else if ("--tournament".equals(args[i])) {
+                reduction = MergeBranches.Reduction.TOURNAMENT;
             } else {
                 branches.add(args[i]);
             }
@@ -98,12 +150,83 @@ public class GitMergePipeline {
         }
 
         ConfigurationLoader configLoader = new ConfigurationLoader();
-        MergeBranches mergeBranches = new MergeBranches(configLoader.loadConfiguration());
+        PipelineConfiguration configuration = configLoader.loadConfiguration();
+        MergeBranches mergeBranches = new MergeBranches(
+                configuration, parallelism != null ? parallelism : configuration.parallelism(), resume, reduction
+        );
 
+        if (bare) {
+            return mergeBranches.mergeBare(baseBranch, null, branches, ref) ? SUCCESS : ERROR_EXECUTION;
+        }
         return mergeBranches.merge(baseBranch, null, branches) ? SUCCESS : ERROR_EXECUTION;
     }
 
+    /**
+     * Runs a command through the merge daemon of the repository, or in this process if the daemon can't run it.
+     */
+    static int runThroughDaemon(String mode, String[] args) throws IOException {
+        // Invalid arguments are reported by this process, so the usage ends up where the user can see it
+        int requiredArgs = "driver".equals(mode) ? 4 : 3;
+        if (args.length >= requiredArgs) {
+            DaemonClient client = DaemonClient.forWorkingDirectory(GitMergePipeline.class.getName());
+            if (client != null) {
+                OptionalInt exitCode = client.send(mode, args);
+                if (exitCode.isPresent()) {
+                    return exitCode.getAsInt();
+                }
+            }
+        }
+        return runCommand(mode, args, new ConfigurationLoader());
+    }
+
+    /**
+     * Runs one of the commands which the merge daemon can run.
+     */
+    static int runCommand(String mode, String[] args, ConfigurationLoader configLoader) throws IOException {
+        return switch (mode) {
+            case "driver" -> runAsMergeDriver(args, configLoader);
+            case "remerge" -> runAsReMergeTool(args, configLoader);
+            case "tool" -> runAsMergeTool(args, configLoader);
+            default -> throw new IllegalArgumentException("Unknown mode: " + mode);
+        };
+    }
+
+    static int runAsDaemon(String[] args) throws IOException {
+        File gitDir = DaemonClient.findGitDir();
+        if (gitDir == null) {
+            System.err.println("The merge daemon must be run within a git repository");
+            return ERROR_INVALID_ARGS;
+        }
+        if (args.length > 0 && "stop".equals(args[0])) {
+            boolean stopped = new DaemonClient(gitDir, List.of()).stop();
+            logger.info(stopped ? "Stopped merge daemon" : "No merge daemon running");
+            return SUCCESS;
+        }
+
+        // The configuration loader is shared by every command, so the registries and parsed files are kept
+        ConfigurationLoader configLoader = new CachingConfigurationLoader();
+        try (MergeDaemon daemon = new MergeDaemon(gitDir, (mode, modeArgs) -> {
+            try {
+                return runCommand(mode, modeArgs, configLoader);
+            } catch (Exception e) {
+                logger.error("Error executing in mode: " + mode, e);
+                return ERROR_EXECUTION;
+            }
+        }, MergeDaemon.DEFAULT_IDLE_TIMEOUT)) {
+            if (!daemon.start()) {
+                logger.info("A merge daemon is already running for: {}", gitDir);
+                return SUCCESS;
+            }
+            daemon.serve();
+        }
+        return SUCCESS;
+    }
+
     static int runAsMergeDriver(String[] args) throws IOException {
+        return runAsMergeDriver(args, new ConfigurationLoader());
+    }
+
+    static int runAsMergeDriver(String[] args, ConfigurationLoader configLoader) throws IOException {
         if (args.length < 4) {
             System.err.println("Insufficient arguments for merge driver mode");
             System.err.println("Usage: driver %B %C %O %P");
@@ -121,13 +244,16 @@ public class GitMergePipeline {
 
         logger.info("Running as merge driver for file: {}", filePath);
 
-        ConfigurationLoader configLoader = new ConfigurationLoader();
         MergeDriver mergeDriver = new MergeDriver(configLoader.loadConfiguration());
 
         return mergeDriver.merge(basePath, currentPath, otherPath, filePath) ? SUCCESS : ERROR_EXECUTION;
     }
 
     static int runAsReMergeTool(String[] args) throws IOException {
+        return runAsReMergeTool(args, new ConfigurationLoader());
+    }
+
+    static int runAsReMergeTool(String[] args, ConfigurationLoader configLoader) throws IOException {
         if (args.length < 3) {
             System.err.println("Insufficient arguments for re-merge tool mode");
             System.err.println("Usage: remerge <base> <current> <other>");
@@ -140,13 +266,16 @@ public class GitMergePipeline {
 
         logger.info("Running as re-merge tool");
 
-        ConfigurationLoader configLoader = new ConfigurationLoader();
         ReMergeTool reMergeTool = new ReMergeTool(configLoader.loadConfiguration());
 
         return reMergeTool.remerge(basePath, currentPath, otherPath) ? SUCCESS : ERROR_EXECUTION;
     }
 
     static int runAsMergeTool(String[] args) throws IOException {
+        return runAsMergeTool(args, new ConfigurationLoader());
+    }
+
+    static int runAsMergeTool(String[] args, ConfigurationLoader configLoader) throws IOException {
         if (args.length < 3) {
             System.err.println("Insufficient arguments for merge tool mode");
             System.err.println("Usage: tool <local> <remote> <merged>");
@@ -159,7 +288,6 @@ public class GitMergePipeline {
 
         logger.info("Running as merge tool");
 
-        ConfigurationLoader configLoader = new ConfigurationLoader();
         MergeTool mergeTool = new MergeTool(configLoader.loadConfiguration());
 
         return mergeTool.merge(localPath, remotePath, mergedPath) ? SUCCESS : ERROR_EXECUTION;
@@ -173,8 +301,11 @@ public class GitMergePipeline {
         System.out.println("  driver %B %C %O %P                              - Run as a Git merge driver");
         System.out.println("  remerge <base> <current> <other>                - Run as a re-merge tool");
         System.out.println("  tool <local> <remote> <merged>                  - Run as a merge tool");
+        System.out.println("  daemon [stop]                                   - Run or stop the merge daemon");
         System.out.println("  help                                            - Show this help message");
         System.out.println();
+        System.out.println("Every mode takes --trace <file>, which writes a timeline of the run for Perfetto.");
+        System.out.println();
         System.out.println("For more information, see the documentation.");
     }
 }
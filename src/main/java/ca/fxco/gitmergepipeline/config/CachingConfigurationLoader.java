@@ -0,0 +1,63 @@
+package ca.fxco.gitmergepipeline.config;
+
+import org.eclipse.jgit.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Configuration loader which keeps the loaded configurations in memory, for processes which load them many times.<br>
+ * A configuration file is only loaded again once its size or modification time changes. Files modified shortly
+ * before they were loaded could have changed again without a new modification time, so those are always loaded
+ * again, the same way configuration snapshots handle them.
+ *
+ * @author FX
+ */
+public class CachingConfigurationLoader extends ConfigurationLoader {
+
+    private final Map<String, CachedConfiguration> configurations = new ConcurrentHashMap<>();
+
+    public CachingConfigurationLoader() {}
+
+    /**
+     * Creates a new caching configuration loader.
+     *
+     * @param snapshot The snapshots of parsed configuration files, or null to parse the files every time
+     */
+    public CachingConfigurationLoader(@Nullable ConfigurationSnapshot snapshot) {
+        super(snapshot);
+    }
+
+    @Override
+    protected PipelineConfiguration loadFromFile(File file) throws IOException {
+        String path = file.getAbsolutePath();
+        long loadedAt = System.currentTimeMillis();
+        BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        CachedConfiguration cached = configurations.get(path);
+        if (cached != null && cached.isUnchanged(size, lastModified)) {
+            return cached.configuration();
+        }
+        PipelineConfiguration configuration = super.loadFromFile(file);
+        configurations.put(path, new CachedConfiguration(configuration, size, lastModified, loadedAt));
+        return configuration;
+    }
+
+    private record CachedConfiguration(PipelineConfiguration configuration, long size, long lastModified,
+                                       long loadedAt) {
+
+        /**
+         * Checks whether the file still has the size and modification time of when it was loaded, and wasn't
+         * modified shortly before it was loaded.
+         */
+        boolean isUnchanged(long size, long lastModified) {
+            return this.size == size && this.lastModified == lastModified &&
+                    lastModified < loadedAt - ConfigurationSnapshot.RACY_WINDOW_MILLIS;
+        }
+    }
+}
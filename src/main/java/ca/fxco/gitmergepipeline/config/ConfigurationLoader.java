@@ -1,14 +1,15 @@
 package ca.fxco.gitmergepipeline.config;
 
 import ca.fxco.gitmergepipeline.filter.Filter;
-import ca.fxco.gitmergepipeline.filter.FilterRegistry;
 import ca.fxco.gitmergepipeline.pipeline.*;
+import ca.fxco.gitmergepipeline.plugin.PluginIndex;
 import ca.fxco.gitmergepipeline.rule.Rule;
-import ca.fxco.gitmergepipeline.rule.RuleRegistry;
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.*;
+import com.fasterxml.jackson.databind.deser.DeserializationProblemHandler;
 import com.fasterxml.jackson.databind.json.JsonMapper;
 import com.fasterxml.jackson.databind.jsontype.NamedType;
+import com.fasterxml.jackson.databind.jsontype.TypeIdResolver;
+import org.eclipse.jgit.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -35,28 +36,53 @@ public class ConfigurationLoader {
     private static final String CONFIG_FILENAME = ".gitmergepipeline.json";
 
     private final JsonMapper jsonMapper;
+    private final @Nullable ConfigurationSnapshot snapshot;
 
     public ConfigurationLoader() {
+        this(ConfigurationSnapshot.inUserCache());
+    }
+
+    /**
+     * Creates a new configuration loader.
+     *
+     * @param snapshot The snapshots of parsed configuration files, or null to parse the files every time
+     */
+    public ConfigurationLoader(@Nullable ConfigurationSnapshot snapshot) {
+        this(snapshot, PluginIndex.getDefault());
+    }
+
+    /**
+     * Creates a new configuration loader.
+     *
+     * @param snapshot    The snapshots of parsed configuration files, or null to parse the files every time
+     * @param pluginIndex The plugin index to find the filter, rule and pipeline types that aren't built-in
+     */
+    public ConfigurationLoader(@Nullable ConfigurationSnapshot snapshot, PluginIndex pluginIndex) {
+        this.snapshot = snapshot;
         JsonMapper.Builder jsonMapper = JsonMapper.builder();
 
         // Add custom filter types to the object mapper
-        Map<String, Class<? extends Filter>> filters = new FilterRegistry().getFilters();
+        // The registries are only filled once per process, or at build time for the native image
+        Map<String, Class<? extends Filter>> filters = RegistrySnapshot.filters();
         for (Map.Entry<String, Class<? extends Filter>> entry : filters.entrySet()) {
             jsonMapper.registerSubtypes(new NamedType(entry.getValue(), entry.getKey()));
         }
 
         // Add custom rule types to the object mapper
-        Map<String, Class<? extends Rule>> rules = new RuleRegistry().getRules();
+        Map<String, Class<? extends Rule>> rules = RegistrySnapshot.rules();
         for (Map.Entry<String, Class<? extends Rule>> entry : rules.entrySet()) {
             jsonMapper.registerSubtypes(new NamedType(entry.getValue(), entry.getKey()));
         }
 
         // Add custom pipeline types to the object mapper
-        Map<String, Class<? extends Pipeline>> pipelines = new PipelineRegistry().getPipelines();
+        Map<String, Class<? extends Pipeline>> pipelines = RegistrySnapshot.pipelines();
         for (Map.Entry<String, Class<? extends Pipeline>> entry : pipelines.entrySet()) {
             jsonMapper.registerSubtypes(new NamedType(entry.getValue(), entry.getKey()));
         }
 
+        // Plugin types are only loaded once a configuration refers to them
+        jsonMapper.addHandler(new PluginTypeHandler(pluginIndex));
+
         jsonMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
         jsonMapper.enable(MapperFeature.ACCEPT_CASE_INSENSITIVE_ENUMS);
 
@@ -107,15 +133,48 @@ public class ConfigurationLoader {
     /// VisibleForTesting
     protected PipelineConfiguration loadFromFile(File file) throws IOException {
         try {
-            return jsonMapper.readValue(file, PipelineConfiguration.class);
+            if (snapshot != null) {
+                return snapshot.load(file.toPath(), this::parse);
+            }
+            return parse(Files.readAllBytes(file.toPath()));
         } catch (IOException e) {
             logger.error("Error loading configuration from file: {}", file, e);
             throw new IOException("Failed to load configuration from " + file, e);
         }
     }
 
+    private PipelineConfiguration parse(byte[] source) throws IOException {
+        PipelineConfiguration configuration = jsonMapper.readValue(source, PipelineConfiguration.class);
+        configuration.setFingerprintSource(source);
+        return configuration;
+    }
+
     /// VisibleForTesting
     public static PipelineConfiguration createDefaultConfiguration() {
         return new PipelineConfiguration();
     }
+
+    /**
+     * Resolves the type ids that aren't registered with the object mapper using the plugin index.
+     */
+    private static class PluginTypeHandler extends DeserializationProblemHandler {
+
+        private final PluginIndex pluginIndex;
+
+        private PluginTypeHandler(PluginIndex pluginIndex) {
+            this.pluginIndex = pluginIndex;
+        }
+
+        @Override
+        public JavaType handleUnknownTypeId(DeserializationContext ctxt, JavaType baseType, String subTypeId,
+                                            TypeIdResolver idResolver, String failureMsg) {
+            for (PluginIndex.Kind kind : PluginIndex.Kind.values()) {
+                if (kind.getType() == baseType.getRawClass()) {
+                    Class<?> type = pluginIndex.loadClass(kind, subTypeId, kind.getType());
+                    return type != null ? ctxt.constructType(type) : null;
+                }
+            }
+            return null;
+        }
+    }
 }
@@ -0,0 +1,317 @@
+package ca.fxco.gitmergepipeline.config;
+
+import ca.fxco.gitmergepipeline.filter.Filter;
+import ca.fxco.gitmergepipeline.pipeline.Pipeline;
+import ca.fxco.gitmergepipeline.rule.Rule;
+import ca.fxco.gitmergepipeline.utils.BuildInfo;
+import org.eclipse.jgit.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Binary snapshots of parsed configuration files, so later processes don't have to parse the JSON again.<br>
+ * A snapshot is keyed by the path of the configuration file, and is used as long as the size and modification time
+ * of the file are unchanged. If they changed but the contents still hash the same, the snapshot is kept as well.
+ * Otherwise the file is parsed again and the snapshot is replaced.<br>
+ * Snapshots are tied to the build fingerprint, so they're never read back by another version or with other plugins,
+ * and snapshots of configuration files which no longer exist are removed whenever a snapshot is written.<br>
+ * Regular expressions within a snapshot are only compiled once they're first used.
+ *
+ * @author FX
+ */
+public class ConfigurationSnapshot {
+    private static final Logger logger = LoggerFactory.getLogger(ConfigurationSnapshot.class);
+
+    private static final int MAGIC = 0x474D5053;
+    private static final int FORMAT_VERSION = 2;
+    // Writes close to when the snapshot was taken may not change the modification time, so those get hashed
+    static final long RACY_WINDOW_MILLIS = 2000;
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    // The JDK types a configuration is made of, besides the filters, rules and pipelines themselves
+    private static final Set<Class<?>> ALLOWED_TYPES = Set.of(
+            ArrayList.class, HashMap.class, LinkedHashMap.class, Map.Entry.class, Pattern.class, Object.class,
+            String.class, Enum.class, Number.class, Boolean.class, Integer.class, Long.class
+    );
+    // List.of and Map.of are serialized as a proxy, which is read back as one of the immutable collections
+    private static final String IMMUTABLE_COLLECTION_PROXY = "java.util.CollSer";
+    private static final String IMMUTABLE_COLLECTION_PREFIX = "java.util.ImmutableCollections$";
+
+    private final Path directory;
+    private final String build;
+
+    /**
+     * Creates a new snapshot store.
+     *
+     * @param directory The directory the snapshots are kept in
+     */
+    public ConfigurationSnapshot(Path directory) {
+        this(directory, BuildInfo.getFingerprint());
+    }
+
+    /**
+     * Creates a new snapshot store, which only reads back snapshots written by a build.
+     *
+     * @param directory The directory the snapshots are kept in
+     * @param build     The fingerprint of the build which reads and writes the snapshots
+     */
+    ConfigurationSnapshot(Path directory, String build) {
+        this.directory = directory;
+        this.build = build;
+    }
+
+    /**
+     * Creates a snapshot store within the user's cache directory, so snapshots don't end up in working trees.
+     *
+     * @return The snapshot store, or null if there's no cache directory
+     */
+    public static @Nullable ConfigurationSnapshot inUserCache() {
+        String cacheHome = System.getenv("XDG_CACHE_HOME");
+        Path cacheDir;
+        if (cacheHome != null && !cacheHome.isEmpty()) {
+            cacheDir = Path.of(cacheHome);
+        } else {
+            String home = System.getProperty("user.home");
+            if (home == null || home.isEmpty()) {
+                return null;
+            }
+            cacheDir = Path.of(home, ".cache");
+        }
+        return new ConfigurationSnapshot(cacheDir.resolve("gitmergepipeline").resolve("config"));
+    }
+
+    /**
+     * Gets the path of the snapshot of a configuration file.
+     *
+     * @param configFile The configuration file
+     * @return The path of the snapshot
+     */
+    public Path snapshotPath(Path configFile) {
+        String path = configFile.toAbsolutePath().normalize().toString();
+        String name = HexFormat.of().formatHex(hash(path.getBytes(StandardCharsets.UTF_8)), 0, 16);
+        return directory.resolve(name + SNAPSHOT_SUFFIX);
+    }
+
+    /**
+     * Loads a configuration file from its snapshot, or parses it and takes a new snapshot if the file changed.
+     *
+     * @param configFile The configuration file
+     * @param parser     Parses the configuration file if the snapshot can't be used
+     * @return The loaded configuration
+     * @throws IOException If an I/O error occurs while reading or parsing the configuration file
+     */
+    public PipelineConfiguration load(Path configFile, Parser parser) throws IOException {
+        Path path = configFile.toAbsolutePath().normalize();
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        Header current = new Header(
+                build, path.toString(), attributes.size(), attributes.lastModifiedTime().toMillis(), 0, new byte[0]
+        );
+        Path snapshotPath = snapshotPath(path);
+
+        byte[] source = null;
+        PipelineConfiguration configuration = null;
+        try (DataInputStream in = open(snapshotPath)) {
+            Header header = in != null ? readHeader(in) : null;
+            if (header != null && header.build().equals(build) && header.path().equals(current.path())) {
+                if (header.isUnchanged(current)) {
+                    configuration = readConfiguration(in, snapshotPath);
+                    if (configuration != null) {
+                        return configuration;
+                    }
+                } else {
+                    source = Files.readAllBytes(path);
+                    if (Arrays.equals(header.hash(), hash(source))) {
+                        configuration = readConfiguration(in, snapshotPath);
+                    }
+                }
+            }
+        }
+
+        // Parsed again only if the contents changed, otherwise the snapshot is kept with the new file times
+        if (source == null) {
+            source = Files.readAllBytes(path);
+        }
+        if (configuration == null) {
+            configuration = parser.parse(source);
+        }
+        write(snapshotPath, current, hash(source), configuration);
+        return configuration;
+    }
+
+    private static @Nullable DataInputStream open(Path snapshotPath) {
+        try {
+            return new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath)));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            logger.debug("Failed to open configuration snapshot: {}", snapshotPath, e);
+            return null;
+        }
+    }
+
+    private static @Nullable Header readHeader(DataInputStream in) {
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            String build = in.readUTF();
+            String path = in.readUTF();
+            long size = in.readLong();
+            long lastModified = in.readLong();
+            long writtenAt = in.readLong();
+            byte[] hash = new byte[in.readUnsignedByte()];
+            in.readFully(hash);
+            return new Header(build, path, size, lastModified, writtenAt, hash);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static @Nullable PipelineConfiguration readConfiguration(DataInputStream in, Path snapshotPath) {
+        try {
+            ObjectInputStream objectIn = new ObjectInputStream(in);
+            objectIn.setObjectInputFilter(ConfigurationSnapshot::filterClass);
+            return (PipelineConfiguration) objectIn.readObject();
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            // Written by a different version, or the classes of a plugin changed
+            logger.debug("Discarding configuration snapshot: {}", snapshotPath, e);
+            return null;
+        }
+    }
+
+    /**
+     * Only allows the classes a configuration can be made of, as the snapshot is read back with Java serialization.
+     * <br>
+     * Those are the types of this project, the filters, rules and pipelines of plugins, enums, and the collection and
+     * boxed types configurations are built from.
+     */
+    private static ObjectInputFilter.Status filterClass(ObjectInputFilter.FilterInfo info) {
+        Class<?> type = info.serialClass();
+        if (type == null) {
+            return ObjectInputFilter.Status.UNDECIDED;
+        }
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        String name = type.getName();
+        if (type.isPrimitive() || type.isEnum() || ALLOWED_TYPES.contains(type) ||
+                name.equals(IMMUTABLE_COLLECTION_PROXY) || name.startsWith(IMMUTABLE_COLLECTION_PREFIX) ||
+                name.startsWith("ca.fxco.gitmergepipeline.") || Filter.class.isAssignableFrom(type) ||
+                Rule.class.isAssignableFrom(type) || Pipeline.class.isAssignableFrom(type)) {
+            return ObjectInputFilter.Status.ALLOWED;
+        }
+        return ObjectInputFilter.Status.REJECTED;
+    }
+
+    private void write(Path snapshotPath, Header header, byte[] hash, PipelineConfiguration configuration) {
+        Path tempFile = null;
+        try {
+            Files.createDirectories(directory);
+            tempFile = Files.createTempFile(directory, snapshotPath.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeUTF(build);
+                out.writeUTF(header.path());
+                out.writeLong(header.size());
+                out.writeLong(header.lastModified());
+                out.writeLong(System.currentTimeMillis());
+                out.writeByte(hash.length);
+                out.write(hash);
+                ObjectOutputStream objectOut = new ObjectOutputStream(out);
+                objectOut.writeObject(configuration);
+                objectOut.flush();
+            }
+            try {
+                Files.move(tempFile, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, snapshotPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+            prune();
+        } catch (IOException e) {
+            // Configurations with filters, rules or pipelines which can't be serialized are parsed every time
+            logger.debug("Failed to write configuration snapshot: {}", snapshotPath, e);
+            if (tempFile != null) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException ignored) {}
+            }
+        }
+    }
+
+    /**
+     * Removes the snapshots of configuration files which no longer exist, and snapshots which can't be read.
+     */
+    void prune() {
+        try (DirectoryStream<Path> snapshots = Files.newDirectoryStream(directory, "*" + SNAPSHOT_SUFFIX)) {
+            for (Path snapshotPath : snapshots) {
+                Header header;
+                try (DataInputStream in = open(snapshotPath)) {
+                    header = in != null ? readHeader(in) : null;
+                }
+                if (header == null || !Files.exists(Path.of(header.path()))) {
+                    logger.debug("Removing stale configuration snapshot: {}", snapshotPath);
+                    Files.deleteIfExists(snapshotPath);
+                }
+            }
+        } catch (IOException e) {
+            logger.debug("Failed to prune configuration snapshots: {}", directory, e);
+        }
+    }
+
+    private static byte[] hash(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Parses a configuration file.
+     */
+    @FunctionalInterface
+    public interface Parser {
+
+        /**
+         * Parses the contents of a configuration file.
+         *
+         * @param source The contents of the configuration file
+         * @return The parsed configuration
+         * @throws IOException If the configuration can't be parsed
+         */
+        PipelineConfiguration parse(byte[] source) throws IOException;
+    }
+
+    private record Header(String build, String path, long size, long lastModified, long writtenAt, byte[] hash) {
+
+        /**
+         * Checks whether the file still has the size and modification time of when the snapshot was taken.<br>
+         * Files modified shortly before the snapshot was taken could have changed again without a new modification
+         * time, so those never count as unchanged.
+         */
+        boolean isUnchanged(Header current) {
+            return size == current.size && lastModified == current.lastModified &&
+                    lastModified < writtenAt - RACY_WINDOW_MILLIS;
+        }
+    }
+}
@@ -4,6 +4,8 @@ import ca.fxco.gitmergepipeline.filter.Filter;
 import ca.fxco.gitmergepipeline.merge.GitMergeContext;
 import ca.fxco.gitmergepipeline.merge.MergeContext;
 import ca.fxco.gitmergepipeline.pipeline.Pipeline;
+import ca.fxco.gitmergepipeline.rule.FilePatternAutomaton;
+import ca.fxco.gitmergepipeline.rule.FilePatternRule;
 import ca.fxco.gitmergepipeline.rule.Rule;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -11,10 +13,11 @@ import org.eclipse.jgit.annotations.Nullable;
 import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
 import org.eclipse.jgit.treewalk.filter.TreeFilter;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
 
 /**
  * Configuration for the GitMergePipeline system.
@@ -22,43 +25,86 @@ import java.util.Map;
  *
  * @author FX
  */
-public class PipelineConfiguration {
+public class PipelineConfiguration implements Serializable {
+    private static final int DEFAULT_BINARY_FILE_THRESHOLD = 200000;
+    private static final long DEFAULT_BLOB_CACHE_SIZE = 64L * 1024 * 1024;
+    private static final int DEFAULT_RESULT_CACHE_MAX_AGE = 30;
+    private static final int DEFAULT_RENAME_LIMIT = 1000;
+    private static final int DEFAULT_RENAME_SCORE = 60;
+    private static final long DEFAULT_RENAME_TIME_BUDGET = 10000;
+
     private final boolean detectRenames;
     private final int binaryFileThreshold;
+    private final int renameLimit;
+    private final int renameScore;
+    private final long renameTimeBudget;
+    private final int parallelism;
+    private final long blobCacheSize;
+    private final long blobCacheSpillSize;
+    private final long resultCacheSize;
+    private final int resultCacheMaxAge;
     private final List<Filter> filters;
     private final Map<String, Rule> rules;
     private final List<Pipeline> pipelines;
 
-    private TreeFilter combinedFilter;
+    private transient TreeFilter combinedFilter;
+    private transient volatile @Nullable PipelineSelector pipelineSelector;
+    private @Nullable String fingerprint;
     
     /**
-     * Creates a new configuration with the specified rules and pipelines.
+     * Creates a new configuration with the specified settings, rules and pipelines.<br>
+     * Used when reading configurations, otherwise use {@link #builder()}.
      *
-     * @param filters   Map of filter names to filter definitions
-     * @param rules     Map of rule names to rule definitions
-     * @param pipelines List of pipeline definitions
+     * @param detectRenames       Whether to detect renames when merging branches
+     * @param binaryFileThreshold The size in bytes above which files are streamed instead of being loaded into
+     *                            memory, or 0 to use the default
+     * @param renameLimit         The maximum number of added or deleted files to compare for renames, or 0 to use the
+     *                            default
+     * @param renameScore         The minimum similarity percentage of renamed files, or 0 to use the default
+     * @param renameTimeBudget    The number of milliseconds comparing files for renames may take, or 0 to use the
+     *                            default
+     * @param parallelism         The number of files to merge at the same time, or 0 to use all available processors
+     * @param blobCacheSize       The number of bytes of blob content to keep in memory, or 0 to use the default
+     * @param blobCacheSpillSize  The number of bytes of blob content to spill to disk, or 0 to never spill to disk
+     * @param resultCacheSize     The number of bytes of merge results to keep on disk, or 0 to not cache merge results
+     * @param resultCacheMaxAge   The number of days cached merge results are kept for, or 0 to use the default
+     * @param filters             List of filter definitions
+     * @param rules               Map of rule names to rule definitions
+     * @param pipelines           List of pipeline definitions
      */
     @JsonCreator
-    public PipelineConfiguration(
+    private PipelineConfiguration(
             @JsonProperty("detectRenames") boolean detectRenames,
-            @JsonProperty("binaryFileThreshold") int BinaryFileThreshold,
+            @JsonProperty("binaryFileThreshold") int binaryFileThreshold,
+            @JsonProperty("renameLimit") int renameLimit,
+            @JsonProperty("renameScore") int renameScore,
+            @JsonProperty("renameTimeBudget") long renameTimeBudget,
+            @JsonProperty("parallelism") int parallelism,
+            @JsonProperty("blobCacheSize") long blobCacheSize,
+            @JsonProperty("blobCacheSpillSize") long blobCacheSpillSize,
+            @JsonProperty("resultCacheSize") long resultCacheSize,
+            @JsonProperty("resultCacheMaxAge") int resultCacheMaxAge,
             @JsonProperty("filters") List<Filter> filters,
             @JsonProperty("rules") Map<String, Rule> rules,
             @JsonProperty("pipelines") List<Pipeline> pipelines
     ) {
         this.detectRenames = detectRenames;
-        this.binaryFileThreshold = BinaryFileThreshold;
+        this.binaryFileThreshold = binaryFileThreshold > 0 ? binaryFileThreshold : DEFAULT_BINARY_FILE_THRESHOLD;
+        this.renameLimit = renameLimit > 0 ? renameLimit : DEFAULT_RENAME_LIMIT;
+        this.renameScore = renameScore > 0 ? Math.min(renameScore, 100) : DEFAULT_RENAME_SCORE;
+        this.renameTimeBudget = renameTimeBudget > 0 ? renameTimeBudget : DEFAULT_RENAME_TIME_BUDGET;
+        this.parallelism = parallelism;
+        this.blobCacheSize = blobCacheSize > 0 ? blobCacheSize : DEFAULT_BLOB_CACHE_SIZE;
+        this.blobCacheSpillSize = Math.max(0, blobCacheSpillSize);
+        this.resultCacheSize = Math.max(0, resultCacheSize);
+        this.resultCacheMaxAge = resultCacheMaxAge > 0 ? resultCacheMaxAge : DEFAULT_RESULT_CACHE_MAX_AGE;
         this.filters = filters != null ? filters : new ArrayList<>();
         this.rules = rules != null ? rules : new HashMap<>();
         this.pipelines = pipelines != null ? pipelines : new ArrayList<>();
     }
 
     public PipelineConfiguration(List<Filter> filters, Map<String, Rule> rules, List<Pipeline> pipelines) {
-        this.detectRenames = true;
-        this.binaryFileThreshold = 200000;
-        this.filters = filters != null ? filters : new ArrayList<>();
-        this.rules = rules != null ? rules : new HashMap<>();
-        this.pipelines = pipelines != null ? pipelines : new ArrayList<>();
+        this(true, 0, 0, 0, 0, 0, 0, 0, 0, 0, filters, rules, pipelines);
     }
     
     /**
@@ -78,7 +124,8 @@ public class PipelineConfiguration {
     }
 
     /**
-     * Gets the threshold for binary files when using JGit.
+     * Gets the threshold for binary files when using JGit.<br>
+     * Files larger than this are streamed instead of being loaded into memory when merging branches.
      *
      * @return The threshold
      */
@@ -86,6 +133,133 @@ public class PipelineConfiguration {
         return binaryFileThreshold;
     }
 
+    /**
+     * Gets the maximum number of added or deleted files which are compared by content to detect renames.<br>
+     * Renames which kept the content are always detected.
+     *
+     * @return The rename limit
+     */
+    public int renameLimit() {
+        return renameLimit;
+    }
+
+    /**
+     * Gets the minimum similarity for a file to be detected as renamed.
+     *
+     * @return The rename score, as a percentage
+     */
+    public int renameScore() {
+        return renameScore;
+    }
+
+    /**
+     * Gets how long comparing files by content to detect renames may take.
+     *
+     * @return The rename time budget in milliseconds
+     */
+    public long renameTimeBudget() {
+        return renameTimeBudget;
+    }
+
+    /**
+     * Gets the number of files which get merged at the same time when merging branches.
+     *
+     * @return The parallelism level, always at least 1
+     */
+    public int parallelism() {
+        return parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Gets the number of bytes of blob content which are kept in memory when merging branches.
+     *
+     * @return The blob cache size in bytes
+     */
+    public long blobCacheSize() {
+        return blobCacheSize;
+    }
+
+    /**
+     * Gets the number of bytes of blob content which can be spilled to disk when merging branches.
+     *
+     * @return The blob cache spill size in bytes, or 0 if blobs are never spilled to disk
+     */
+    public long blobCacheSpillSize() {
+        return blobCacheSpillSize;
+    }
+
+    /**
+     * Gets the number of bytes of merge results which are kept on disk, so merging the same versions of a file
+     * again can reuse the previous result.
+     *
+     * @return The merge result cache size in bytes, or 0 if merge results aren't cached
+     */
+    public long resultCacheSize() {
+        return resultCacheSize;
+    }
+
+    /**
+     * Gets the number of days cached merge results are kept for.
+     *
+     * @return The maximum age of cached merge results in days
+     */
+    public int resultCacheMaxAge() {
+        return resultCacheMaxAge;
+    }
+
+    /**
+     * Gets a fingerprint of this configuration, which changes whenever the configuration changes.<br>
+     * Configurations loaded from a file use a hash of the file, otherwise the hash is built from the settings which
+     * affect the merged result, the descriptions of the filters and rules, and the fingerprints of the pipelines.
+     *
+     * @return The fingerprint as a hex string
+     */
+    public String getFingerprint() {
+        if (fingerprint == null) {
+            StringBuilder builder = new StringBuilder(getMergeSettings()).append('\n');
+            for (Filter filter : filters) {
+                builder.append("filter:").append(filter.getDescription()).append('\n');
+            }
+            for (Map.Entry<String, Rule> entry : new TreeMap<>(rules).entrySet()) {
+                builder.append("rule:").append(entry.getKey()).append('=')
+                        .append(entry.getValue().getDescription()).append('\n');
+            }
+            for (Pipeline pipeline : pipelines) {
+                builder.append("pipeline:").append(pipeline.getFingerprint()).append('\n');
+            }
+            fingerprint = hash(builder.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return fingerprint;
+    }
+
+    /**
+     * Gets the settings which affect the merged result, besides the pipelines themselves.<br>
+     * Settings which only affect how fast files are merged, like the parallelism and cache sizes, aren't included.
+     *
+     * @return The settings as a string, which is the same for configurations which merge the same way
+     */
+    public String getMergeSettings() {
+        return "detectRenames=" + detectRenames + " renameLimit=" + renameLimit + " renameScore=" + renameScore +
+                " renameTimeBudget=" + renameTimeBudget + " binaryFileThreshold=" + binaryFileThreshold;
+    }
+
+    /**
+     * Sets the fingerprint of this configuration to the hash of its source.
+     *
+     * @param source The source the configuration was loaded from
+     */
+    public void setFingerprintSource(byte[] source) {
+        this.fingerprint = hash(source);
+    }
+
+    private static String hash(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
     /**
      * Gets the combined tree filter for all filters in the configuration.
      *
@@ -134,6 +308,7 @@ public class PipelineConfiguration {
     public void addFilter(Filter filter) {
         filters.add(filter);
         combinedFilter = null;
+        fingerprint = null;
     }
     
     /**
@@ -154,6 +329,7 @@ public class PipelineConfiguration {
      */
     public void addRule(String name, Rule rule) {
         rules.put(name, rule);
+        fingerprint = null;
     }
     
     /**
@@ -163,6 +339,8 @@ public class PipelineConfiguration {
      */
     public void addPipeline(Pipeline pipeline) {
         pipelines.add(pipeline);
+        pipelineSelector = null;
+        fingerprint = null;
     }
 
     private TreeFilter combineFilters() {
@@ -179,81 +357,108 @@ public class PipelineConfiguration {
     }
 
     /**
-     * Finds a pipeline that applies to the given merge context.
+     * Finds a pipeline that applies to the given merge context.<br>
+     * The first pipeline with a file pattern rule matching the file name is used, otherwise the first pipeline.
      *
      * @param context The merge context to find a pipeline for
      * @return The pipeline to use, or null if no pipeline applies
      */
     public @Nullable Pipeline findPipeline(MergeContext context) {
-        // Create a new context with just the filename for matching file pattern rules
+        PipelineSelector selector = getPipelineSelector();
         String filePath = context.getFilePath();
-        String fileName = filePath.contains("/") || filePath.contains("\\")
-                ? filePath.substring(Math.max(filePath.lastIndexOf('/'), filePath.lastIndexOf('\\')) + 1)
-                : filePath;
-        MergeContext fileNameContext = new MergeContext(
-                context.getBasePath(),
-                context.getCurrentPath(),
-                context.getOtherPath(),
-                fileName
-        );
-        // Copy all attributes from the original context
-        for (Map.Entry<String, Object> entry : context.getAttributes().entrySet()) {
-            fileNameContext.setAttribute(entry.getKey(), entry.getValue());
-        }
+        int fileNameStart = fileNameStart(filePath);
+        int index = selector.automaton().match(filePath, fileNameStart);
 
-        // Try to find a pipeline with a file pattern rule that matches the file path
-        for (Pipeline pipeline : pipelines) {
-            if (pipeline.matchesFileRule(fileNameContext)) {
-                return pipeline;
+        // Pipelines without file pattern rules are matched against a context with just the file name
+        MergeContext fileNameContext = null;
+        for (int other : selector.otherPipelines()) {
+            if (index != FilePatternAutomaton.NO_MATCH && other > index) {
+                break;
+            }
+            if (fileNameContext == null) {
+                // Shares the rule results and attributes of the original context
+                fileNameContext = context.withFilePath(filePath.substring(fileNameStart));
+            }
+            if (pipelines.get(other).matchesFileRule(fileNameContext)) {
+                index = other;
+                break;
             }
         }
-
-        // If no pipeline with a matching file pattern rule is found, use the first pipeline
-        if (!pipelines.isEmpty()) {
-            return pipelines.getFirst();
-        }
-
-        return null;
+        return selectPipeline(index);
     }
 
     /**
-     * Finds a pipeline that applies to the given merge context.
+     * Finds a pipeline that applies to the given merge context.<br>
+     * The first pipeline with a file pattern rule matching the file name is used, otherwise the first pipeline.
      *
      * @param context The merge context to find a pipeline for
      * @return The pipeline to use, or null if no pipeline applies
      */
     public @Nullable Pipeline findPipeline(GitMergeContext context) {
-        // Create a new context with just the filename for matching file pattern rules
+        PipelineSelector selector = getPipelineSelector();
         String filePath = context.getFilePath();
-        String fileName = filePath.contains("/") || filePath.contains("\\")
-                ? filePath.substring(Math.max(filePath.lastIndexOf('/'), filePath.lastIndexOf('\\')) + 1)
-                : filePath;
-        GitMergeContext fileNameContext = new GitMergeContext(
-                context.getBasePath(),
-                context.getCurrentPath(),
-                context.getOtherPath(),
-                fileName
-        );
-        // Copy all attributes from the original context
-        for (Map.Entry<String, Object> entry : context.getAttributes().entrySet()) {
-            fileNameContext.setAttribute(entry.getKey(), entry.getValue());
-        }
+        int fileNameStart = fileNameStart(filePath);
+        int index = selector.automaton().match(filePath, fileNameStart);
 
-        // Try to find a pipeline with a file pattern rule that matches the file path
-        for (Pipeline pipeline : pipelines) {
-            if (pipeline.matchesFileRule(fileNameContext)) {
-                return pipeline;
+        // Pipelines without file pattern rules are matched against a context with just the file name
+        GitMergeContext fileNameContext = null;
+        for (int other : selector.otherPipelines()) {
+            if (index != FilePatternAutomaton.NO_MATCH && other > index) {
+                break;
+            }
+            if (fileNameContext == null) {
+                // Shares the caches and attributes of the original context
+                fileNameContext = context.withFilePath(filePath.substring(fileNameStart));
+            }
+            if (pipelines.get(other).matchesFileRule(fileNameContext)) {
+                index = other;
+                break;
             }
         }
+        return selectPipeline(index);
+    }
 
-        // If no pipeline with a matching file pattern rule is found, use the first pipeline
-        if (!pipelines.isEmpty()) {
-            return pipelines.getFirst();
+    private @Nullable Pipeline selectPipeline(int index) {
+        if (index != FilePatternAutomaton.NO_MATCH) {
+            return pipelines.get(index);
         }
+        // If no pipeline with a matching file pattern rule is found, use the first pipeline
+        return pipelines.isEmpty() ? null : pipelines.getFirst();
+    }
+
+    private static int fileNameStart(String filePath) {
+        return Math.max(filePath.lastIndexOf('/'), filePath.lastIndexOf('\\')) + 1;
+    }
 
-        return null;
+    /**
+     * Gets the pipeline selector, compiling the file pattern rules of all pipelines when it's first used.
+     */
+    private PipelineSelector getPipelineSelector() {
+        PipelineSelector selector = pipelineSelector;
+        if (selector == null) {
+            List<List<FilePatternRule>> rules = new ArrayList<>(pipelines.size());
+            List<Integer> otherPipelines = new ArrayList<>();
+            for (int i = 0; i < pipelines.size(); i++) {
+                List<FilePatternRule> pipelineRules = pipelines.get(i).getFilePatternRules();
+                if (pipelineRules == null) {
+                    otherPipelines.add(i);
+                    pipelineRules = List.of();
+                }
+                rules.add(pipelineRules);
+            }
+            selector = new PipelineSelector(
+                    FilePatternAutomaton.compile(rules),
+                    otherPipelines.stream().mapToInt(Integer::intValue).toArray()
+            );
+            pipelineSelector = selector;
+        }
+        return selector;
     }
 
+    /**
+     * The file pattern rules of all pipelines, along with the indexes of the pipelines which don't expose them.
+     */
+    private record PipelineSelector(FilePatternAutomaton automaton, int[] otherPipelines) {}
 
     public static PipelineConfiguration onlyFilters(Filter... filters) {
         return new PipelineConfiguration(List.of(filters), null, null);
@@ -266,4 +471,189 @@ public class PipelineConfiguration {
     public static PipelineConfiguration onlyPipelines(Pipeline... pipelines) {
         return new PipelineConfiguration(null, null, List.of(pipelines));
     }
+
+    /**
+     * Creates a builder for a configuration, where every setting which isn't set uses its default.
+     *
+     * @return The builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Builds a configuration, so only the settings which differ from their defaults need to be given.
+     */
+    public static final class Builder {
+        private boolean detectRenames = true;
+        private int binaryFileThreshold;
+        private int renameLimit;
+        private int renameScore;
+        private long renameTimeBudget;
+        private int parallelism;
+        private long blobCacheSize;
+        private long blobCacheSpillSize;
+        private long resultCacheSize;
+        private int resultCacheMaxAge;
+        private @Nullable List<Filter> filters;
+        private @Nullable Map<String, Rule> rules;
+        private @Nullable List<Pipeline> pipelines;
+
+        private Builder() {}
+
+        /**
+         * Sets whether renames are detected when merging branches.
+         *
+         * @param detectRenames {@code true} to detect renames, which is the default
+         * @return This builder
+         */
+        public Builder detectRenames(boolean detectRenames) {
+            this.detectRenames = detectRenames;
+            return this;
+        }
+
+        /**
+         * Sets the size above which files are streamed instead of being loaded into memory.
+         *
+         * @param binaryFileThreshold The threshold in bytes, or 0 to use the default
+         * @return This builder
+         */
+        public Builder binaryFileThreshold(int binaryFileThreshold) {
+            this.binaryFileThreshold = binaryFileThreshold;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of added or deleted files which are compared by content to detect renames.
+         *
+         * @param renameLimit The rename limit, or 0 to use the default
+         * @return This builder
+         */
+        public Builder renameLimit(int renameLimit) {
+            this.renameLimit = renameLimit;
+            return this;
+        }
+
+        /**
+         * Sets the minimum similarity for a file to be detected as renamed.
+         *
+         * @param renameScore The rename score as a percentage, or 0 to use the default
+         * @return This builder
+         */
+        public Builder renameScore(int renameScore) {
+            this.renameScore = renameScore;
+            return this;
+        }
+
+        /**
+         * Sets how long comparing files by content to detect renames may take.
+         *
+         * @param renameTimeBudget The rename time budget in milliseconds, or 0 to use the default
+         * @return This builder
+         */
+        public Builder renameTimeBudget(long renameTimeBudget) {
+            this.renameTimeBudget = renameTimeBudget;
+            return this;
+        }
+
+        /**
+         * Sets the number of files which get merged at the same time when merging branches.
+         *
+         * @param parallelism The parallelism level, or 0 to use all available processors
+         * @return This builder
+         */
+        public Builder parallelism(int parallelism) {
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Sets the number of bytes of blob content which are kept in memory when merging branches.
+         *
+         * @param blobCacheSize The blob cache size in bytes, or 0 to use the default
+         * @return This builder
+         */
+        public Builder blobCacheSize(long blobCacheSize) {
+            this.blobCacheSize = blobCacheSize;
+            return this;
+        }
+
+        /**
+         * Sets the number of bytes of blob content which can be spilled to disk when merging branches.
+         *
+         * @param blobCacheSpillSize The blob cache spill size in bytes, or 0 to never spill to disk
+         * @return This builder
+         */
+        public Builder blobCacheSpillSize(long blobCacheSpillSize) {
+            this.blobCacheSpillSize = blobCacheSpillSize;
+            return this;
+        }
+
+        /**
+         * Sets the number of bytes of merge results which are kept on disk.
+         *
+         * @param resultCacheSize The merge result cache size in bytes, or 0 to not cache merge results
+         * @return This builder
+         */
+        public Builder resultCacheSize(long resultCacheSize) {
+            this.resultCacheSize = resultCacheSize;
+            return this;
+        }
+
+        /**
+         * Sets the number of days cached merge results are kept for.
+         *
+         * @param resultCacheMaxAge The maximum age of cached merge results in days, or 0 to use the default
+         * @return This builder
+         */
+        public Builder resultCacheMaxAge(int resultCacheMaxAge) {
+            this.resultCacheMaxAge = resultCacheMaxAge;
+            return this;
+        }
+
+        /**
+         * Sets the filters of the configuration.
+         *
+         * @param filters List of filter definitions
+         * @return This builder
+         */
+        public Builder filters(List<Filter> filters) {
+            this.filters = filters;
+            return this;
+        }
+
+        /**
+         * Sets the rules of the configuration.
+         *
+         * @param rules Map of rule names to rule definitions
+         * @return This builder
+         */
+        public Builder rules(Map<String, Rule> rules) {
+            this.rules = rules;
+            return this;
+        }
+
+        /**
+         * Sets the pipelines of the configuration.
+         *
+         * @param pipelines List of pipeline definitions
+         * @return This builder
+         */
+        public Builder pipelines(List<Pipeline> pipelines) {
+            this.pipelines = pipelines;
+            return this;
+        }
+
+        /**
+         * Creates the configuration.
+         *
+         * @return The configuration
+         */
+        public PipelineConfiguration build() {
+            return new PipelineConfiguration(
+                    detectRenames, binaryFileThreshold, renameLimit, renameScore, renameTimeBudget, parallelism,
+                    blobCacheSize, blobCacheSpillSize, resultCacheSize, resultCacheMaxAge, filters, rules, pipelines
+            );
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,54 @@
+package ca.fxco.gitmergepipeline.config;
+
+import ca.fxco.gitmergepipeline.filter.Filter;
+import ca.fxco.gitmergepipeline.filter.FilterRegistry;
+import ca.fxco.gitmergepipeline.pipeline.Pipeline;
+import ca.fxco.gitmergepipeline.pipeline.PipelineRegistry;
+import ca.fxco.gitmergepipeline.rule.Rule;
+import ca.fxco.gitmergepipeline.rule.RuleRegistry;
+
+import java.util.Map;
+
+/**
+ * Snapshot of the built-in types of the filter, rule and pipeline registries, built once per process.<br>
+ * The native image initializes this class at build time, so no registry is filled when the image starts.
+ * Plugin types aren't part of the snapshot, they're loaded from the plugin index once a configuration refers to them.
+ *
+ * @author FX
+ */
+public final class RegistrySnapshot {
+
+    private static final Map<String, Class<? extends Filter>> FILTERS = Map.copyOf(new FilterRegistry().getFilters());
+    private static final Map<String, Class<? extends Rule>> RULES = Map.copyOf(new RuleRegistry().getRules());
+    private static final Map<String, Class<? extends Pipeline>> PIPELINES =
+            Map.copyOf(new PipelineRegistry().getPipelines());
+
+    private RegistrySnapshot() {}
+
+    /**
+     * Gets the registered filter classes.
+     *
+     * @return An unmodifiable map of filter ids to filter classes
+     */
+    public static Map<String, Class<? extends Filter>> filters() {
+        return FILTERS;
+    }
+
+    /**
+     * Gets the registered rule classes.
+     *
+     * @return An unmodifiable map of rule ids to rule classes
+     */
+    public static Map<String, Class<? extends Rule>> rules() {
+        return RULES;
+    }
+
+    /**
+     * Gets the registered pipeline classes.
+     *
+     * @return An unmodifiable map of pipeline ids to pipeline classes
+     */
+    public static Map<String, Class<? extends Pipeline>> pipelines() {
+        return PIPELINES;
+    }
+}
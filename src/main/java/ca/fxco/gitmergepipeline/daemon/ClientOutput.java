@@ -0,0 +1,195 @@
+package ca.fxco.gitmergepipeline.daemon;
+
+import org.eclipse.jgit.annotations.Nullable;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.function.IntSupplier;
+
+/**
+ * Forwards what a command prints on the daemon side to the client which sent it.<br>
+ * The standard output and error of the daemon are replaced by streams which write to the client of the command
+ * running on the current thread, and to the daemon's own output otherwise. Threads started by a command forward to
+ * its client as well, until the command has finished.<br>
+ * Output is sent as frames of a type and a length, and the response ends with an exit frame holding the status.
+ *
+ * @author FX
+ */
+final class ClientOutput extends OutputStream {
+
+    static final byte FRAME_EXIT = 0;
+    static final byte FRAME_STDOUT = 1;
+    static final byte FRAME_STDERR = 2;
+
+    private static final InheritableThreadLocal<ClientOutput> STDOUT = new InheritableThreadLocal<>();
+    private static final InheritableThreadLocal<ClientOutput> STDERR = new InheritableThreadLocal<>();
+    private static @Nullable PrintStream installedOut;
+    private static @Nullable PrintStream installedErr;
+
+    private final DataOutputStream out;
+    private final byte frame;
+    private volatile boolean closed;
+
+    private ClientOutput(DataOutputStream out, byte frame) {
+        this.out = out;
+        this.frame = frame;
+    }
+
+    /**
+     * Replaces the standard output and error of this process with streams that forward to clients, unless they
+     * already are.
+     */
+    static synchronized void install() {
+        if (System.out != installedOut) {
+            installedOut = new PrintStream(new Router(System.out, STDOUT), true, System.out.charset());
+            System.setOut(installedOut);
+        }
+        if (System.err != installedErr) {
+            installedErr = new PrintStream(new Router(System.err, STDERR), true, System.err.charset());
+            System.setErr(installedErr);
+        }
+    }
+
+    /**
+     * Runs a command, forwarding its output to a client.
+     *
+     * @param out     The stream to the client
+     * @param command The command to run
+     * @return The exit code of the command
+     */
+    static int forward(DataOutputStream out, IntSupplier command) {
+        ClientOutput stdout = new ClientOutput(out, FRAME_STDOUT);
+        ClientOutput stderr = new ClientOutput(out, FRAME_STDERR);
+        STDOUT.set(stdout);
+        STDERR.set(stderr);
+        try {
+            return command.getAsInt();
+        } finally {
+            System.out.flush();
+            System.err.flush();
+            stdout.close();
+            stderr.close();
+            STDOUT.remove();
+            STDERR.remove();
+        }
+    }
+
+    /**
+     * Writes the exit frame, which ends the response.
+     *
+     * @param out    The stream to the client
+     * @param status The exit code of the command, or one of the statuses of the daemon
+     * @throws IOException If the connection to the client is lost
+     */
+    static void exit(DataOutputStream out, int status) throws IOException {
+        synchronized (out) {
+            out.writeByte(FRAME_EXIT);
+            out.writeInt(status);
+            out.flush();
+        }
+    }
+
+    /**
+     * Reads a response, writing the forwarded output to the given streams.
+     *
+     * @param in     The stream from the daemon
+     * @param stdout The stream the standard output of the command is written to
+     * @param stderr The stream the standard error of the command is written to
+     * @return The status of the exit frame
+     * @throws IOException If the connection to the daemon is lost or the response is malformed
+     */
+    static int receive(DataInputStream in, PrintStream stdout, PrintStream stderr) throws IOException {
+        byte[] buffer = new byte[8 * 1024];
+        try {
+            while (true) {
+                byte frame = in.readByte();
+                if (frame == FRAME_EXIT) {
+                    return in.readInt();
+                }
+                PrintStream target = switch (frame) {
+                    case FRAME_STDOUT -> stdout;
+                    case FRAME_STDERR -> stderr;
+                    default -> throw new IOException("Unknown frame from merge daemon: " + frame);
+                };
+                int length = in.readInt();
+                while (length > 0) {
+                    int read = in.read(buffer, 0, Math.min(length, buffer.length));
+                    if (read < 0) {
+                        throw new IOException("Merge daemon closed the connection within a frame");
+                    }
+                    target.write(buffer, 0, read);
+                    length -= read;
+                }
+            }
+        } finally {
+            stdout.flush();
+            stderr.flush();
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return;
+        }
+        synchronized (out) {
+            if (closed) {
+                throw new IOException("The command of this client has finished");
+            }
+            out.writeByte(frame);
+            out.writeInt(len);
+            out.write(b, off, len);
+            out.flush();
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * Writes to the client of the current thread if there is one, or to the original stream otherwise.
+     */
+    private static final class Router extends OutputStream {
+        private final PrintStream fallback;
+        private final ThreadLocal<ClientOutput> client;
+
+        Router(PrintStream fallback, ThreadLocal<ClientOutput> client) {
+            this.fallback = fallback;
+            this.client = client;
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ClientOutput output = client.get();
+            if (output != null && !output.closed) {
+                try {
+                    output.write(b, off, len);
+                    return;
+                } catch (IOException e) {
+                    // The client is gone or its command has finished, so the output ends up in the daemon's log
+                }
+            }
+            fallback.write(b, off, len);
+        }
+
+        @Override
+        public void flush() {
+            fallback.flush();
+        }
+    }
+}
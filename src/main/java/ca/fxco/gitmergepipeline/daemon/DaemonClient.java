@@ -0,0 +1,233 @@
+package ca.fxco.gitmergepipeline.daemon;
+
+import ca.fxco.gitmergepipeline.utils.BuildInfo;
+import org.eclipse.jgit.annotations.Nullable;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.OptionalInt;
+
+/**
+ * Thin client which sends a merge command to the merge daemon of the repository, starting the daemon if it isn't
+ * running yet, or if the running daemon is of another build.<br>
+ * The output of the command is written to the standard output and error of this process. If the daemon can't be
+ * reached or refuses the command, the caller runs the command itself.
+ *
+ * @author FX
+ */
+public class DaemonClient {
+    private static final Logger logger = LoggerFactory.getLogger(DaemonClient.class);
+
+    private static final String ENV_DAEMON = "GITMERGEPIPELINE_DAEMON";
+    private static final Duration START_TIMEOUT = Duration.ofSeconds(5);
+    private static final long START_POLL_MILLIS = 25;
+    // Unix domain socket paths are limited to around 100 bytes on most systems
+    private static final int MAX_SOCKET_PATH_LENGTH = 100;
+
+    private final Path socketPath;
+    private final List<String> startCommand;
+    private final String build;
+
+    /**
+     * Creates a new daemon client.
+     *
+     * @param gitDir       The git directory of the daemon
+     * @param startCommand The command which starts the daemon, or an empty list if it shouldn't be started
+     */
+    public DaemonClient(File gitDir, List<String> startCommand) {
+        this(gitDir, startCommand, BuildInfo.getFingerprint());
+    }
+
+    /**
+     * Creates a new daemon client of a build.
+     *
+     * @param gitDir       The git directory of the daemon
+     * @param startCommand The command which starts the daemon, or an empty list if it shouldn't be started
+     * @param build        The fingerprint of the build of the client, which the daemon has to match
+     */
+    DaemonClient(File gitDir, List<String> startCommand, String build) {
+        this.socketPath = MergeDaemon.socketPath(gitDir);
+        this.startCommand = startCommand;
+        this.build = build;
+    }
+
+    /**
+     * Creates a client for the repository of the current working directory.<br>
+     * The daemon is only used by default when running as a native image. On the JVM, the client has to start a JVM
+     * for every file anyway, so the daemon only saves loading the configuration and has to be enabled explicitly.
+     *
+     * @param mainClass The main class which starts the daemon with the {@code daemon} mode
+     * @return The daemon client, or null if the daemon is disabled or there's no repository
+     */
+    public static @Nullable DaemonClient forWorkingDirectory(String mainClass) {
+        String enabled = System.getenv(ENV_DAEMON);
+        if (enabled == null ? !isNativeImage() : "false".equalsIgnoreCase(enabled) || "0".equals(enabled)) {
+            return null;
+        }
+        File gitDir = findGitDir();
+        if (gitDir == null || MergeDaemon.socketPath(gitDir).toAbsolutePath().toString()
+                .getBytes(StandardCharsets.UTF_8).length > MAX_SOCKET_PATH_LENGTH) {
+            return null;
+        }
+        return new DaemonClient(gitDir, startCommand(mainClass));
+    }
+
+    /**
+     * Finds the git directory of the current working directory.
+     *
+     * @return The git directory, or null if the working directory isn't within a repository
+     */
+    public static @Nullable File findGitDir() {
+        FileRepositoryBuilder builder = new FileRepositoryBuilder().readEnvironment().findGitDir();
+        return builder.getGitDir();
+    }
+
+    /**
+     * Gets the command which starts a daemon running the same program as this process.
+     */
+    private static List<String> startCommand(String mainClass) {
+        String command = ProcessHandle.current().info().command().orElse(null);
+        if (command == null) {
+            return List.of();
+        }
+        // A native image is its own launcher, otherwise the JVM is started with the same class path
+        if (isNativeImage()) {
+            return List.of(command, "daemon");
+        }
+        return List.of(command, "-cp", System.getProperty("java.class.path"), mainClass, "daemon");
+    }
+
+    private static boolean isNativeImage() {
+        return System.getProperty("org.graalvm.nativeimage.imagecode") != null;
+    }
+
+    /**
+     * Sends a command to the daemon, starting the daemon if it isn't running or is of another build.
+     *
+     * @param mode The mode of the command
+     * @param args The arguments of the command
+     * @return The exit code of the command, or empty if the caller has to run the command itself
+     * @throws IOException If the connection is lost after the command was sent
+     */
+    public OptionalInt send(String mode, String[] args) throws IOException {
+        // A daemon of another build stops when it's sent a command, so it's replaced at most once
+        for (int attempt = 0; attempt < 2; attempt++) {
+            SocketChannel channel = connect();
+            if (channel == null) {
+                channel = startAndConnect();
+            }
+            if (channel == null) {
+                logger.debug("Merge daemon not reachable, running in this process");
+                return OptionalInt.empty();
+            }
+            int status = send(channel, mode, args);
+            if (status != MergeDaemon.STATUS_RESTART) {
+                return status == MergeDaemon.STATUS_FALLBACK ? OptionalInt.empty() : OptionalInt.of(status);
+            }
+            logger.debug("Merge daemon was of another build, restarting it");
+        }
+        return OptionalInt.empty();
+    }
+
+    private @Nullable SocketChannel startAndConnect() {
+        SocketChannel channel = null;
+        Process daemon = startDaemon();
+        if (daemon != null) {
+            // Stops waiting early if the daemon exits, as another daemon won the race to start or it failed to start
+            long deadline = System.nanoTime() + START_TIMEOUT.toNanos();
+            while (channel == null && System.nanoTime() < deadline) {
+                try {
+                    Thread.sleep(START_POLL_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+                channel = connect();
+                if (channel == null && !daemon.isAlive()) {
+                    channel = connect();
+                    break;
+                }
+            }
+        }
+        return channel;
+    }
+
+    /**
+     * Asks the daemon to stop, without starting it.
+     *
+     * @return {@code true} if a daemon was running, otherwise {@code false}
+     * @throws IOException If the connection is lost while stopping the daemon
+     */
+    public boolean stop() throws IOException {
+        SocketChannel channel = connect();
+        return channel != null && send(channel, MergeDaemon.MODE_STOP, new String[0]) != MergeDaemon.STATUS_FALLBACK;
+    }
+
+    private int send(SocketChannel channel, String mode, String[] args) throws IOException {
+        try (channel;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+            // Nothing has run yet if the command can't be sent, so the caller can still run it itself
+            try {
+                out.writeInt(MergeDaemon.PROTOCOL_VERSION);
+                out.writeUTF(build);
+                out.writeUTF(mode);
+                out.writeUTF(MergeDaemon.currentWorkingDir());
+                out.writeUTF(Objects.requireNonNullElse(System.getenv(MergeDaemon.ENV_CONFIG_PATH), ""));
+                out.writeInt(args.length);
+                for (String arg : args) {
+                    out.writeUTF(arg);
+                }
+                out.flush();
+            } catch (IOException e) {
+                logger.debug("Failed to send command to merge daemon", e);
+                return MergeDaemon.STATUS_FALLBACK;
+            }
+
+            return ClientOutput.receive(in, System.out, System.err);
+        }
+    }
+
+    private @Nullable SocketChannel connect() {
+        if (!Files.exists(socketPath)) {
+            return null;
+        }
+        try {
+            return SocketChannel.open(UnixDomainSocketAddress.of(socketPath));
+        } catch (IOException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    private @Nullable Process startDaemon() {
+        if (startCommand.isEmpty()) {
+            return null;
+        }
+        try {
+            Files.createDirectories(socketPath.getParent());
+            Process process = new ProcessBuilder(startCommand)
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.appendTo(
+                            socketPath.resolveSibling("daemon.log").toFile()
+                    ))
+                    .start();
+            process.getOutputStream().close();
+            logger.debug("Started merge daemon: {}", process.pid());
+            return process;
+        } catch (IOException e) {
+            logger.warn("Failed to start merge daemon", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,278 @@
+package ca.fxco.gitmergepipeline.daemon;
+
+import ca.fxco.gitmergepipeline.utils.BuildInfo;
+import org.eclipse.jgit.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Long-lived process which runs merge commands for thin clients, over a Unix domain socket in the git directory.<br>
+ * Git starts a new process for every file it merges, so without the daemon every file pays for starting the JVM,
+ * building the registries and parsing the configuration. The daemon keeps all of that loaded between files, and
+ * exits once it has been idle for a while.<br>
+ * Commands are only run for clients with the same working directory and configuration path as the daemon, every
+ * other client is told to run the command itself. A client of another build stops the daemon, so it can start one of
+ * its own build. The output of each command is forwarded to its client.
+ *
+ * @author FX
+ */
+public class MergeDaemon implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(MergeDaemon.class);
+
+    static final int PROTOCOL_VERSION = 2;
+    static final int STATUS_FALLBACK = -1;
+    static final int STATUS_RESTART = -2;
+    static final String MODE_STOP = "stop";
+    static final String ENV_CONFIG_PATH = "GITMERGEPIPELINE_CONFIG";
+
+    public static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(10);
+
+    private final Path socketPath;
+    private final Path lockPath;
+    private final Handler handler;
+    private final Duration idleTimeout;
+    private final String build;
+    private final String workingDir;
+    private final String configPath;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "merge-daemon-client");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicInteger activeRequests = new AtomicInteger();
+
+    private volatile long lastActivity = System.nanoTime();
+    private @Nullable ServerSocketChannel server;
+    private @Nullable FileChannel lockChannel;
+
+    /**
+     * Creates a new merge daemon for a git directory.
+     *
+     * @param gitDir      The git directory the socket is created in
+     * @param handler     Runs the commands sent by clients
+     * @param idleTimeout How long the daemon waits for a command before exiting
+     */
+    public MergeDaemon(File gitDir, Handler handler, Duration idleTimeout) {
+        this(gitDir, handler, idleTimeout, BuildInfo.getFingerprint());
+    }
+
+    /**
+     * Creates a new merge daemon for a git directory, which only runs commands for clients of a build.
+     *
+     * @param gitDir      The git directory the socket is created in
+     * @param handler     Runs the commands sent by clients
+     * @param idleTimeout How long the daemon waits for a command before exiting
+     * @param build       The fingerprint of the build of the daemon
+     */
+    MergeDaemon(File gitDir, Handler handler, Duration idleTimeout, String build) {
+        this.socketPath = socketPath(gitDir);
+        this.lockPath = socketPath.resolveSibling("daemon.lock");
+        this.handler = handler;
+        this.idleTimeout = idleTimeout;
+        this.build = build;
+        this.workingDir = currentWorkingDir();
+        this.configPath = Objects.requireNonNullElse(System.getenv(ENV_CONFIG_PATH), "");
+    }
+
+    /**
+     * Gets the path of the socket of the daemon for a git directory.
+     *
+     * @param gitDir The git directory
+     * @return The socket path
+     */
+    public static Path socketPath(File gitDir) {
+        return gitDir.toPath().resolve("gitmergepipeline").resolve("daemon.sock");
+    }
+
+    static String currentWorkingDir() {
+        return Path.of("").toAbsolutePath().normalize().toString();
+    }
+
+    /**
+     * Starts listening on the socket.<br>
+     * Only one daemon runs per git directory, which is held by a lock next to the socket.
+     *
+     * @return {@code true} if the daemon started, or {@code false} if another daemon is already running
+     * @throws IOException If an I/O error occurs while creating the socket
+     */
+    public boolean start() throws IOException {
+        Files.createDirectories(socketPath.getParent());
+        FileChannel channel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null; // Held by another daemon within this process
+        }
+        if (lock == null) {
+            channel.close();
+            return false;
+        }
+        lockChannel = channel;
+
+        // The socket of a daemon which didn't shut down cleanly is left behind
+        Files.deleteIfExists(socketPath);
+        ServerSocketChannel serverChannel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        serverChannel.bind(UnixDomainSocketAddress.of(socketPath));
+        server = serverChannel;
+        ClientOutput.install();
+        logger.info("Merge daemon listening on: {}", socketPath);
+        return true;
+    }
+
+    /**
+     * Accepts clients until the daemon is stopped or has been idle for longer than the idle timeout.<br>
+     * Commands which are still running once the daemon stops are waited for.
+     */
+    public void serve() {
+        ServerSocketChannel serverChannel = server;
+        if (serverChannel == null) {
+            throw new IllegalStateException("The merge daemon has not been started");
+        }
+
+        Thread watchdog = new Thread(this::closeWhenIdle, "merge-daemon-watchdog");
+        watchdog.setDaemon(true);
+        watchdog.start();
+        try {
+            while (serverChannel.isOpen()) {
+                SocketChannel client = serverChannel.accept();
+                lastActivity = System.nanoTime();
+                activeRequests.incrementAndGet();
+                executor.execute(() -> handle(client));
+            }
+        } catch (ClosedChannelException e) {
+            // Stopped, either by a client or by the watchdog
+        } catch (IOException e) {
+            logger.error("Merge daemon failed to accept clients", e);
+        } finally {
+            close();
+            awaitCommands();
+        }
+    }
+
+    private void awaitCommands() {
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                logger.info("Merge daemon waiting for {} commands to finish", activeRequests.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void closeWhenIdle() {
+        ServerSocketChannel serverChannel = server;
+        while (serverChannel != null && serverChannel.isOpen()) {
+            try {
+                Thread.sleep(Math.max(10, idleTimeout.toMillis() / 4));
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (activeRequests.get() == 0 && System.nanoTime() - lastActivity > idleTimeout.toNanos()) {
+                logger.info("Merge daemon idle for {}, stopping", idleTimeout);
+                close();
+                return;
+            }
+        }
+    }
+
+    private void handle(SocketChannel client) {
+        try (client;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(client)));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(client)))) {
+            int version = in.readInt();
+            if (version != PROTOCOL_VERSION) {
+                ClientOutput.exit(out, STATUS_FALLBACK);
+                return;
+            }
+            String clientBuild = in.readUTF();
+            String mode = in.readUTF();
+            String clientWorkingDir = in.readUTF();
+            String clientConfigPath = in.readUTF();
+            String[] args = new String[in.readInt()];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = in.readUTF();
+            }
+
+            if (MODE_STOP.equals(mode)) {
+                close();
+                ClientOutput.exit(out, 0);
+                return;
+            }
+            // Stops listening before answering, so the client can start a daemon of its own build right away
+            if (!build.equals(clientBuild)) {
+                logger.info("Merge daemon client runs another build, stopping");
+                close();
+                ClientOutput.exit(out, STATUS_RESTART);
+                return;
+            }
+            // Paths and the configuration are resolved against the daemon's own working directory and environment
+            if (!workingDir.equals(clientWorkingDir) || !configPath.equals(clientConfigPath)) {
+                ClientOutput.exit(out, STATUS_FALLBACK);
+                return;
+            }
+
+            ClientOutput.exit(out, ClientOutput.forward(out, () -> handler.handle(mode, args)));
+        } catch (IOException e) {
+            logger.warn("Lost connection to a merge daemon client", e);
+        } catch (RuntimeException e) {
+            // The client sees the connection close without an exit code, and fails
+            logger.error("Error running a command for a merge daemon client", e);
+        } finally {
+            lastActivity = System.nanoTime();
+            activeRequests.decrementAndGet();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            if (server != null && server.isOpen()) {
+                server.close();
+                Files.deleteIfExists(socketPath);
+            }
+            if (lockChannel != null && lockChannel.isOpen()) {
+                lockChannel.close();
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to clean up merge daemon socket: {}", socketPath, e);
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * Runs the commands sent by clients.
+     */
+    @FunctionalInterface
+    public interface Handler {
+
+        /**
+         * Runs a command.
+         *
+         * @param mode The mode of the command
+         * @param args The arguments of the command
+         * @return The exit code of the command
+         */
+        int handle(String mode, String[] args);
+    }
+}
@@ -1,12 +1,13 @@
 package ca.fxco.gitmergepipeline.filter;
 
 import ca.fxco.gitmergepipeline.filter.filters.*;
+import ca.fxco.gitmergepipeline.plugin.PluginIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Registry for filters.
@@ -18,14 +19,24 @@ public class FilterRegistry {
     private static final Logger logger = LoggerFactory.getLogger(FilterRegistry.class);
 
     private final Map<String, Class<? extends Filter>> filters;
+    private final PluginIndex pluginIndex;
 
     /**
-     * Creates a new filter registry.
+     * Creates a new filter registry, which finds plugin filters in the default plugin index.
      */
     public FilterRegistry() {
-        this.filters = new HashMap<>();
+        this(PluginIndex.getDefault());
+    }
+
+    /**
+     * Creates a new filter registry.
+     *
+     * @param pluginIndex The plugin index to find plugin filters in
+     */
+    public FilterRegistry(PluginIndex pluginIndex) {
+        this.filters = new ConcurrentHashMap<>();
+        this.pluginIndex = pluginIndex;
         registerBuiltInFilters();
-        loadFiltersFromServiceLoader();
     }
 
     /**
@@ -40,17 +51,26 @@ public class FilterRegistry {
     }
 
     /**
-     * Gets a filter class by id.
+     * Gets a filter class by id.<br>
+     * Plugin filters are loaded from the plugin index the first time they're asked for.
      *
      * @param filterId The id of the filter class to get
      * @return The filter class, or null if no filter with the given id exists
      */
     public Class<? extends Filter> getFilter(String filterId) {
-        return filters.get(filterId);
+        Class<? extends Filter> filterClass = filters.get(filterId);
+        if (filterClass == null) {
+            filterClass = pluginIndex.loadClass(PluginIndex.Kind.FILTER, filterId, Filter.class);
+            if (filterClass != null) {
+                registerFilter(filterId, filterClass);
+            }
+        }
+        return filterClass;
     }
 
     /**
-     * Gets all registered filter classes.
+     * Gets all registered filter classes.<br>
+     * Plugin filters are only included once they've been loaded.
      *
      * @return A map of filter ids to filter classes
      */
@@ -70,17 +90,4 @@ public class FilterRegistry {
         registerFilter("fileMode", FileModeFilter.class);
         registerFilter("filePattern", PathFilter.class);
     }
-
-    /**
-     * Loads filters from the ServiceLoader.
-     * This allows third-party filters to be registered.
-     */
-    private void loadFiltersFromServiceLoader() {
-        ServiceLoader<FilterClassSupplier> filterClassSuppliers = ServiceLoader.load(FilterClassSupplier.class);
-        for (FilterClassSupplier supplier : filterClassSuppliers) {
-            for (Map.Entry<String, Class<? extends Filter>> entry : supplier.getFilterClasses().entrySet()) {
-                registerFilter(entry.getKey(), entry.getValue());
-            }
-        }
-    }
 }
@@ -7,22 +7,35 @@ import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.treewalk.TreeWalk;
 import org.eclipse.jgit.treewalk.filter.TreeFilter;
 
+import java.io.Serial;
+import java.io.Serializable;
+
 /**
  * A filter that matches the FileMode of a file.
  *
  * @author FX
  */
-public final class FileModeFilter extends TreeFilter implements Filter {
+public final class FileModeFilter extends TreeFilter implements Filter, Serializable {
 
-    private final FileMode mode;
+    private final FileModeEnum type;
+    private final transient FileMode mode;
 
     @JsonCreator
     public FileModeFilter(
             @JsonProperty("mode") FileModeEnum mode
     ) {
+        this.type = mode;
         this.mode = mode.getMode();
     }
 
+    /**
+     * File modes aren't serializable, so the filter is created again from its type.
+     */
+    @Serial
+    private Object readResolve() {
+        return new FileModeFilter(type);
+    }
+
     @Override
     public String getDescription() {
         return "FileMode filter: " + this.mode;
@@ -1,21 +1,23 @@
 package ca.fxco.gitmergepipeline.filter.filters;
 
 import ca.fxco.gitmergepipeline.filter.Filter;
+import ca.fxco.gitmergepipeline.utils.MimeTypeDetector;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.treewalk.TreeWalk;
 import org.eclipse.jgit.treewalk.filter.TreeFilter;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.io.Serializable;
 
 /**
- * A filter that matches the file mime type.
+ * A filter that matches the file mime type.<br>
+ * The mime type is detected from the extension of the file, or else from the content of the file.
  *
  * @author FX
  */
-public final class MimeTypeFilter extends TreeFilter implements Filter {
+public final class MimeTypeFilter extends TreeFilter implements Filter, Serializable {
 
     private final String mimeType;
 
@@ -37,12 +39,34 @@ public final class MimeTypeFilter extends TreeFilter implements Filter {
     }
 
     @Override
-    public boolean include(TreeWalk walker) {
-        try {
-            return mimeType.equals(Files.probeContentType(Path.of(walker.getPathString())));
-        } catch (IOException e) {
-            return false;
+    public boolean include(TreeWalk walker) throws IOException {
+        return matchFilter(walker) <= 0;
+    }
+
+    /**
+     * Matches the mime type of the current entry.<br>
+     * Directories are always entered. Files with an unknown extension are detected from the content of the newest
+     * version in the walk.
+     *
+     * @param walker The walker of the tree
+     * @return 0 if the entry matches, 1 if it doesn't, or -1 for a directory to enter
+     * @throws IOException If an I/O error occurs while reading the content
+     */
+    @Override
+    public int matchFilter(TreeWalk walker) throws IOException {
+        if (walker.isSubtree()) {
+            return -1;
+        }
+        String detected = MimeTypeDetector.fromExtension(walker.getRawPath(), 0, walker.getPathLength());
+        if (detected == null) {
+            for (int tree = walker.getTreeCount() - 1; tree >= 0; tree--) {
+                if (walker.getFileMode(tree).getObjectType() == Constants.OBJ_BLOB) {
+                    detected = MimeTypeDetector.getDefault().detect(walker.getObjectReader(), walker.getObjectId(tree));
+                    break;
+                }
+            }
         }
+        return mimeType.equals(detected) ? 0 : 1;
     }
 
     @Override
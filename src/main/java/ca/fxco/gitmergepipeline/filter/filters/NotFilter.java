@@ -6,14 +6,18 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import org.eclipse.jgit.treewalk.filter.NotTreeFilter;
 import org.eclipse.jgit.treewalk.filter.TreeFilter;
 
+import java.io.Serial;
+import java.io.Serializable;
+
 /**
  * A special type of filter, which inverts the condition of the filter provided.
  *
  * @author FX
  */
-public class NotFilter implements Filter {
+public class NotFilter implements Filter, Serializable {
 
-    private final TreeFilter filter;
+    private final Filter source;
+    private final transient TreeFilter filter;
 
     /**
      * Creates a new Not filter.
@@ -24,9 +28,18 @@ public class NotFilter implements Filter {
     public NotFilter(
             @JsonProperty("filter") Filter filter
     ) {
+        this.source = filter;
         this.filter = NotTreeFilter.create(filter.getTreeFilter());
     }
 
+    /**
+     * JGit tree filters aren't serializable, so the filter is created again from its source.
+     */
+    @Serial
+    private Object readResolve() {
+        return new NotFilter(source);
+    }
+
     @Override
     public String getDescription() {
         return "A filter that inverts another filter";
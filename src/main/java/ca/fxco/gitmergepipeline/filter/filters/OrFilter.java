@@ -6,6 +6,8 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import org.eclipse.jgit.treewalk.filter.OrTreeFilter;
 import org.eclipse.jgit.treewalk.filter.TreeFilter;
 
+import java.io.Serial;
+import java.io.Serializable;
 import java.util.List;
 
 /**
@@ -15,9 +17,10 @@ import java.util.List;
  *
  * @author FX
  */
-public class OrFilter implements Filter {
+public class OrFilter implements Filter, Serializable {
 
-    private final TreeFilter filter;
+    private final List<Filter> sources;
+    private final transient TreeFilter filter;
 
     /**
      * Creates a new Or filter.
@@ -28,8 +31,17 @@ public class OrFilter implements Filter {
     public OrFilter(
             @JsonProperty("filters") List<Filter> filters
     ) {
+        this.sources = filters;
         this.filter = OrTreeFilter.create(filters.stream().map(Filter::getTreeFilter).toArray(TreeFilter[]::new));
     }
+
+    /**
+     * JGit tree filters aren't serializable, so the filter is created again from its sources.
+     */
+    @Serial
+    private Object readResolve() {
+        return new OrFilter(sources);
+    }
     
     @Override
     public String getDescription() {
@@ -1,25 +1,27 @@
 package ca.fxco.gitmergepipeline.filter.filters;
 
 import ca.fxco.gitmergepipeline.filter.Filter;
-import ca.fxco.gitmergepipeline.utils.FileUtils;
+import ca.fxco.gitmergepipeline.utils.Glob;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import org.eclipse.jgit.treewalk.TreeWalk;
 import org.eclipse.jgit.treewalk.filter.TreeFilter;
 
+import java.io.Serializable;
 import java.util.regex.Pattern;
 
 /**
- * A filter that matches the FileMode of a file.
+ * A filter that matches the path of a file against a glob pattern or a regular expression.
  *
  * @author FX
  */
-public final class PathFilter extends TreeFilter implements Filter {
+public final class PathFilter extends TreeFilter implements Filter, Serializable {
 
     private final String pattern;
     private final boolean isRegex;
     private final boolean caseSensitive;
     private final Pattern compiledPattern;
+    private final Glob glob;
 
     @JsonCreator
     public PathFilter(
@@ -33,11 +35,10 @@ public final class PathFilter extends TreeFilter implements Filter {
         if (isRegex) {
             int flags = caseSensitive ? 0 : Pattern.CASE_INSENSITIVE;
             this.compiledPattern = Pattern.compile(pattern, flags);
+            this.glob = null;
         } else {
-            // Convert glob pattern to regex
-            String regex = FileUtils.convertGlobToRegex(pattern);
-            int flags = caseSensitive ? 0 : Pattern.CASE_INSENSITIVE;
-            this.compiledPattern = Pattern.compile(regex, flags);
+            this.compiledPattern = null;
+            this.glob = Glob.compile(pattern, caseSensitive);
         }
     }
 
@@ -56,12 +57,38 @@ public final class PathFilter extends TreeFilter implements Filter {
 
     @Override
     public boolean include(TreeWalk walker) {
-        return this.compiledPattern.matcher(walker.getPathString()).matches();
+        return matchFilter(walker) <= 0;
     }
 
+    /**
+     * Matches the path of the current entry.<br>
+     * Directories are entered only if a path within them can match the glob, so the walk skips whole subtrees which
+     * can't match. Directories are always entered for regular expressions.
+     *
+     * @param walker The walker of the tree
+     * @return 0 if the entry matches, 1 if it doesn't and it can be skipped, or -1 for a directory to enter
+     */
+    @Override
+    public int matchFilter(TreeWalk walker) {
+        if (walker.isSubtree()) {
+            if (this.glob == null) {
+                return -1;
+            }
+            return this.glob.mayMatchWithin(walker.getRawPath(), 0, walker.getPathLength()) ? -1 : 1;
+        }
+        if (this.glob != null) {
+            // Globs match the raw path bytes, so no path string is decoded for each entry
+            return this.glob.matches(walker.getRawPath(), 0, walker.getPathLength()) ? 0 : 1;
+        }
+        return this.compiledPattern.matcher(walker.getPathString()).matches() ? 0 : 1;
+    }
+
+    /**
+     * Patterns match whole paths, so paths with directories need a recursive walk.
+     */
     @Override
     public boolean shouldBeRecursive() {
-        return false;
+        return isRegex || pattern.indexOf('/') >= 0;
     }
 
     @Override
@@ -1,7 +1,10 @@
 package ca.fxco.gitmergepipeline.merge;
 
+import ca.fxco.gitmergepipeline.utils.BlobCache;
+import ca.fxco.gitmergepipeline.utils.BlobContent;
 import ca.fxco.gitmergepipeline.utils.GitPath;
 import org.apache.commons.io.FilenameUtils;
+import org.eclipse.jgit.annotations.Nullable;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -18,10 +21,14 @@ public class GitMergeContext {
     private final GitPath currentPath;
     private final GitPath otherPath;
     private final String filePath;
+    private final @Nullable TreeMergeCache treeMerges;
+    private final @Nullable BlobCache blobCache;
+    private final RuleResultCache ruleResults;
     private final Map<String, Object> attributes;
 
     /**
-     * Creates a new git merge context for a merge operation.
+     * Creates a new git merge context for a merge operation, which doesn't share anything with other files.<br>
+     * Use {@link #builder(GitPath, GitPath, GitPath, String)} to share tree merges, blob contents or rule results.
      *
      * @param basePath    Path to the base version of the file
      * @param currentPath Path to the current version of the file
@@ -29,13 +36,51 @@ public class GitMergeContext {
      * @param filePath    Path to the file relative to the working directory
      */
     public GitMergeContext(GitPath basePath, GitPath currentPath, GitPath otherPath, String filePath) {
+        this(basePath, currentPath, otherPath, filePath, null, null, new RuleResultCache());
+    }
+
+    private GitMergeContext(GitPath basePath, GitPath currentPath, GitPath otherPath, String filePath,
+                            @Nullable TreeMergeCache treeMerges, @Nullable BlobCache blobCache,
+                            RuleResultCache ruleResults) {
         this.basePath = basePath;
         this.currentPath = currentPath;
         this.otherPath = otherPath;
         this.filePath = filePath;
+        this.treeMerges = treeMerges;
+        this.blobCache = blobCache;
+        this.ruleResults = ruleResults;
         this.attributes = new HashMap<>();
     }
 
+    /**
+     * Creates a builder for a git merge context, which can share state with the other files in the same merge.
+     *
+     * @param basePath    Path to the base version of the file
+     * @param currentPath Path to the current version of the file
+     * @param otherPath   Path to the other version of the file
+     * @param filePath    Path to the file relative to the working directory
+     * @return The builder
+     */
+    public static Builder builder(GitPath basePath, GitPath currentPath, GitPath otherPath, String filePath) {
+        return new Builder(basePath, currentPath, otherPath, filePath);
+    }
+
+    /**
+     * Creates a copy of this context for another file path.<br>
+     * The copy shares the tree merges, blob contents and rule results of this context, and starts with a copy of its
+     * attributes.
+     *
+     * @param filePath Path to the file relative to the working directory
+     * @return The copy
+     */
+    public GitMergeContext withFilePath(String filePath) {
+        GitMergeContext copy = new GitMergeContext(
+                basePath, currentPath, otherPath, filePath, treeMerges, blobCache, ruleResults
+        );
+        copy.attributes.putAll(attributes);
+        return copy;
+    }
+
     /**
      * Gets the path to the base version of the file.
      *
@@ -63,6 +108,33 @@ public class GitMergeContext {
         return otherPath;
     }
 
+    /**
+     * Gets the content of the base version of the file.
+     *
+     * @return The base content, or null if it should be read from the base path
+     */
+    public @Nullable BlobContent getBaseContent() {
+        return basePath.getContent();
+    }
+
+    /**
+     * Gets the content of the current version of the file.
+     *
+     * @return The current content, or null if it should be read from the current path
+     */
+    public @Nullable BlobContent getCurrentContent() {
+        return currentPath.getContent();
+    }
+
+    /**
+     * Gets the content of the other version of the file.
+     *
+     * @return The other content, or null if it should be read from the other path
+     */
+    public @Nullable BlobContent getOtherContent() {
+        return otherPath.getContent();
+    }
+
     /**
      * Gets the path to the file relative to the working directory.
      *
@@ -72,6 +144,33 @@ public class GitMergeContext {
         return filePath;
     }
 
+    /**
+     * Gets the tree merges shared by all files in the same merge.
+     *
+     * @return The tree merge cache, or null if tree merges are not shared
+     */
+    public @Nullable TreeMergeCache getTreeMerges() {
+        return treeMerges;
+    }
+
+    /**
+     * Gets the blob cache shared by all files in the same merge.
+     *
+     * @return The blob cache, or null if blobs are not cached
+     */
+    public @Nullable BlobCache getBlobCache() {
+        return blobCache;
+    }
+
+    /**
+     * Gets the rule results shared by all files in the same merge.
+     *
+     * @return The rule result cache
+     */
+    public RuleResultCache getRuleResults() {
+        return ruleResults;
+    }
+
     /**
      * Gets the filename of the file being merged.
      *
@@ -129,4 +228,69 @@ public class GitMergeContext {
     public Map<String, Object> getAttributes() {
         return new HashMap<>(attributes);
     }
+
+    /**
+     * Builds a git merge context which shares state with the other files in the same merge.
+     */
+    public static final class Builder {
+        private final GitPath basePath;
+        private final GitPath currentPath;
+        private final GitPath otherPath;
+        private final String filePath;
+        private @Nullable TreeMergeCache treeMerges;
+        private @Nullable BlobCache blobCache;
+        private @Nullable RuleResultCache ruleResults;
+
+        private Builder(GitPath basePath, GitPath currentPath, GitPath otherPath, String filePath) {
+            this.basePath = basePath;
+            this.currentPath = currentPath;
+            this.otherPath = otherPath;
+            this.filePath = filePath;
+        }
+
+        /**
+         * Sets the tree merges shared by all files in the same merge.
+         *
+         * @param treeMerges The tree merge cache, or null if nothing is shared
+         * @return This builder
+         */
+        public Builder treeMerges(@Nullable TreeMergeCache treeMerges) {
+            this.treeMerges = treeMerges;
+            return this;
+        }
+
+        /**
+         * Sets the blob cache shared by all files in the same merge.
+         *
+         * @param blobCache The blob cache, or null if blobs are not cached
+         * @return This builder
+         */
+        public Builder blobCache(@Nullable BlobCache blobCache) {
+            this.blobCache = blobCache;
+            return this;
+        }
+
+        /**
+         * Sets the rule results shared by all files in the same merge.
+         *
+         * @param ruleResults The rule result cache, or null to give the context its own
+         * @return This builder
+         */
+        public Builder ruleResults(@Nullable RuleResultCache ruleResults) {
+            this.ruleResults = ruleResults;
+            return this;
+        }
+
+        /**
+         * Creates the git merge context.
+         *
+         * @return The context
+         */
+        public GitMergeContext build() {
+            return new GitMergeContext(
+                    basePath, currentPath, otherPath, filePath, treeMerges, blobCache,
+                    ruleResults != null ? ruleResults : new RuleResultCache()
+            );
+        }
+    }
 }
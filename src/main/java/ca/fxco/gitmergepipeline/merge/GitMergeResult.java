@@ -1,6 +1,9 @@
 package ca.fxco.gitmergepipeline.merge;
 
 import ca.fxco.gitmergepipeline.utils.GitPath;
+import org.eclipse.jgit.annotations.Nullable;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.revwalk.RevCommit;
 
 import java.nio.file.Path;
@@ -12,6 +15,8 @@ import java.nio.file.Path;
  */
 public class GitMergeResult extends MergeResult {
     private final RevCommit commit;
+    private final @Nullable ObjectId blobId;
+    private final @Nullable FileMode fileMode;
 
     /**
      * Creates a new merge result.
@@ -23,8 +28,26 @@ public class GitMergeResult extends MergeResult {
      * @param commit     The commit associated with the merge result
      */
     public GitMergeResult(Status status, String message, Path outputPath, Exception error, RevCommit commit) {
+        this(status, message, outputPath, error, commit, null, null);
+    }
+
+    /**
+     * Creates a new merge result.
+     *
+     * @param status     The status of the merge
+     * @param message    A message describing the result
+     * @param outputPath The path to the output file, if any
+     * @param error      The error that occurred, if any
+     * @param commit     The commit associated with the merge result
+     * @param blobId     The blob containing the merged content, if it's already in the object database
+     * @param fileMode   The file mode of the merged file, if known
+     */
+    public GitMergeResult(Status status, String message, Path outputPath, Exception error, RevCommit commit,
+                          @Nullable ObjectId blobId, @Nullable FileMode fileMode) {
         super(status, message, outputPath, error);
         this.commit = commit;
+        this.blobId = blobId;
+        this.fileMode = fileMode;
     }
 
     /**
@@ -35,10 +58,28 @@ public class GitMergeResult extends MergeResult {
     public RevCommit getCommit() {
         return commit;
     }
-    
+
+    /**
+     * The blob containing the merged content.
+     *
+     * @return The blob id, or null if the merged content is only available from the output path
+     */
+    public @Nullable ObjectId getBlobId() {
+        return blobId;
+    }
+
+    /**
+     * The file mode of the merged file.
+     *
+     * @return The file mode, {@link FileMode#MISSING} if the file was deleted, or null if unknown
+     */
+    public @Nullable FileMode getFileMode() {
+        return fileMode;
+    }
+
     /**
      * Creates a successful merge result.
-     * 
+     *
      * @param message    A message describing the result
      * @param outputPath The path to the output file
      * @param commit     The commit associated with the merge result
@@ -58,4 +99,20 @@ public class GitMergeResult extends MergeResult {
     public static GitMergeResult success(String message, GitPath outputPath) {
         return new GitMergeResult(Status.SUCCESS, message, outputPath.getPath(), null, outputPath.getCommit());
     }
-}
\ No newline at end of file
+
+    /**
+     * Creates a successful merge result, where the merged content is already in the object database.
+     *
+     * @param message    A message describing the result
+     * @param outputPath The git path to the output file
+     * @param blobId     The blob containing the merged content, or null if the file was deleted
+     * @param fileMode   The file mode of the merged file, or {@link FileMode#MISSING} if the file was deleted
+     * @return A new merge result
+     */
+    public static GitMergeResult success(String message, GitPath outputPath,
+                                         @Nullable ObjectId blobId, @Nullable FileMode fileMode) {
+        return new GitMergeResult(
+                Status.SUCCESS, message, outputPath.getPath(), null, outputPath.getCommit(), blobId, fileMode
+        );
+    }
+}
@@ -2,25 +2,38 @@ package ca.fxco.gitmergepipeline.merge;
 
 import ca.fxco.gitmergepipeline.config.PipelineConfiguration;
 import ca.fxco.gitmergepipeline.pipeline.Pipeline;
+import ca.fxco.gitmergepipeline.utils.BlobCache;
+import ca.fxco.gitmergepipeline.utils.BlobContent;
+import ca.fxco.gitmergepipeline.utils.ChangedFile;
 import ca.fxco.gitmergepipeline.utils.GitPath;
 import ca.fxco.gitmergepipeline.utils.GitUtils;
+import ca.fxco.gitmergepipeline.utils.RenameDetector;
+import ca.fxco.gitmergepipeline.utils.Tracer;
 import org.eclipse.jgit.annotations.Nullable;
 import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.diff.DiffEntry;
-import org.eclipse.jgit.lib.ObjectId;
-import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheEditor;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.internal.storage.file.ObjectDirectory;
+import org.eclipse.jgit.lib.*;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 /**
  * Re-Implementation of `git merge` using the GitMergePipeline system.
@@ -31,13 +44,68 @@ import java.util.List;
 public class MergeBranches extends Merger {
     private static final Logger logger = LoggerFactory.getLogger(MergeBranches.class);
 
+    private final int parallelism;
+    private final boolean resume;
+    private final Reduction reduction;
+    private volatile @Nullable MergeReport lastReport;
+
     /**
      * Creates a new merge with the specified configuration.
      *
      * @param configuration The pipeline configuration to use
      */
     public MergeBranches(PipelineConfiguration configuration) {
+        this(configuration, configuration.parallelism());
+    }
+
+    /**
+     * Creates a new merge with the specified configuration, merging multiple files at the same time.
+     *
+     * @param configuration The pipeline configuration to use
+     * @param parallelism   The number of files to merge at the same time
+     */
+    public MergeBranches(PipelineConfiguration configuration, int parallelism) {
+        this(configuration, parallelism, false);
+    }
+
+    /**
+     * Creates a new merge with the specified configuration, merging multiple files at the same time.<br>
+     * When resuming, the files and branch steps which an interrupted run of the same merge already completed are
+     * taken from its journal instead of being merged again.
+     *
+     * @param configuration The pipeline configuration to use
+     * @param parallelism   The number of files to merge at the same time
+     * @param resume        Whether to resume from the journal of an interrupted run
+     */
+    public MergeBranches(PipelineConfiguration configuration, int parallelism, boolean resume) {
+        this(configuration, parallelism, resume, Reduction.SEQUENTIAL);
+    }
+
+    /**
+     * Creates a new merge with the specified configuration, merging multiple files at the same time.<br>
+     * With the tournament reduction, the branches are merged pairwise instead of one at a time, so independent
+     * pairs can be merged at the same time.
+     *
+     * @param configuration The pipeline configuration to use
+     * @param parallelism   The number of files to merge at the same time
+     * @param resume        Whether to resume from the journal of an interrupted run
+     * @param reduction     The order in which the branches are merged together
+     */
+    public MergeBranches(PipelineConfiguration configuration, int parallelism, boolean resume,
+                         Reduction reduction) {
         super(configuration);
+        this.parallelism = Math.max(1, parallelism);
+        this.resume = resume;
+        this.reduction = reduction;
+    }
+
+    /**
+     * Gets the report of how every file was resolved by the last merge.
+     *
+     * @return The merge report, or null if no merge got far enough to resolve files
+     */
+    public @Nullable MergeReport getLastReport() {
+        return lastReport;
     }
 
     /**
@@ -50,9 +118,33 @@ public class MergeBranches extends Merger {
      * @return {@code true} if the merge was successful, otherwise {@code false}
      */
     public boolean merge(@Nullable String baseBranch, @Nullable File repoDir, Collection<String> branches) {
+        return merge(baseBranch, repoDir, branches, null);
+    }
+
+    /**
+     * Merges the specified branches without a working directory, writing the result as a merge commit.
+     * Uses Octopus strategy.<br>
+     * The merged blobs and trees are written straight into the object database, which allows merging in bare
+     * repositories. The ref is only updated if it fast-forwards to the merge commit.
+     *
+     * @param baseBranch The base branch to merge from, or null if the base branch should be determined automatically
+     * @param repoDir    The repo directory to use, or null if the current directory should be used
+     * @param branches   The branches to merge, which become the parents of the merge commit
+     * @param refName    The ref to point at the merge commit
+     * @return {@code true} if the merge was successful, otherwise {@code false}
+     */
+    public boolean mergeBare(@Nullable String baseBranch, @Nullable File repoDir, Collection<String> branches,
+                             String refName) {
+        return merge(baseBranch, repoDir, branches, refName);
+    }
+
+    private boolean merge(@Nullable String baseBranch, @Nullable File repoDir, Collection<String> branches,
+                          @Nullable String bareRef) {
         if (repoDir == null) {
             repoDir = new File(".");
         }
+        boolean bare = bareRef != null;
+        Path scratchDir = null;
         try (Git git = Git.open(repoDir)) {
             Repository repo = git.getRepository();
 
@@ -95,50 +187,853 @@ public class MergeBranches extends Merger {
             }
 
             PipelineConfiguration configuration = getConfiguration();
-            List<DiffEntry> changedFiles = GitUtils.getChangedFiles(configuration, repo, baseCommit, branchCommits);
+            List<ChangedFile> changedFiles;
+            Tracer.Span span = Tracer.span("merge", "getChangedFiles");
+            try (span) {
+                changedFiles = GitUtils.getChangedFiles(configuration, repo, baseCommit, branchCommits);
+            }
             logger.info("Merging {} files across {} branches.", changedFiles.size(), branches.size());
 
-            for (DiffEntry diff : changedFiles) {
-                String filePath = diff.getNewPath();
-                Path target = Path.of(repoDir.getPath() + "/" + filePath);
-                GitPath basePath = new GitPath(baseCommit, target);
+            Set<String> filePaths = new LinkedHashSet<>();
+            Map<String, ChangedFile> changedByPath = new HashMap<>();
+            for (ChangedFile changedFile : changedFiles) {
+                filePaths.add(changedFile.getPath());
+                changedByPath.put(changedFile.getPath(), changedFile);
+            }
 
-                GitPath currentPath = basePath;
-                for (RevCommit commit : branchCommits) {
-                    GitPath otherPath = new GitPath(commit, target);
-                    GitMergeContext context = new GitMergeContext(basePath, currentPath, otherPath, filePath);
-                    Pipeline pipeline = configuration.findPipeline(context);
+            // Without a working directory, files which operations need on disk go into a scratch directory instead
+            Path workingDir = repoDir.toPath();
+            if (bare) {
+                scratchDir = Files.createTempDirectory("gitmergepipeline-bare-");
+                workingDir = scratchDir;
+            }
 
-                    if (pipeline == null) {
-                        logger.error("No pipeline found for file: " + filePath);
-                        return false;
-                    }
+            MergeReport report = new MergeReport();
+            lastReport = report;
+            // Renames of every branch are detected up front, as later steps also need the renames of earlier branches
+            List<RenameDetector.Result> renames = detectRenames(repo, changedFiles, branchCommits.size(), report);
+            TreeMergeCache treeMerges = new TreeMergeCache(repo);
+            // Rule results are shared by every step, so octopus merges only read each version once per rule
+            RuleResultCache ruleResults = new RuleResultCache();
+            MergeResultCache resultCache = configuration.resultCacheSize() > 0
+                    ? new MergeResultCache(
+                            repo, configuration.resultCacheSize(), Duration.ofDays(configuration.resultCacheMaxAge())
+                    )
+                    : null;
+            ExecutorService executor = parallelism > 1 && filePaths.size() > 1
+                    ? Executors.newFixedThreadPool(parallelism)
+                    : null;
+            // Tournament steps aren't the same as sequential steps, so their journals are kept apart
+            String journalKey = reduction == Reduction.TOURNAMENT
+                    ? configuration.getFingerprint() + " tournament"
+                    : configuration.getFingerprint();
+            try (BlobCache blobCache = new BlobCache(
+                         repo, configuration.blobCacheSize(), configuration.blobCacheSpillSize(),
+                         configuration.binaryFileThreshold()
+                 );
+                 ObjectInserter inserter = newObjectInserter(repo, bare);
+                 ObjectReader reader = inserter.newReader();
+                 MergeJournal journal = MergeJournal.open(repo, baseCommit, branchCommits, journalKey, resume)) {
+                MergeState state = new MergeState(
+                        git, baseCommit, changedFiles, changedByPath, filePaths, workingDir, blobCache, treeMerges,
+                        ruleResults, resultCache, report, journal, executor, bare, renames, new ConcurrentHashMap<>()
+                );
+                ObjectId currentTree = reduction == Reduction.TOURNAMENT
+                        ? mergeTournament(state, branchCommits)
+                        : mergeSequential(state, branchCommits);
+                if (currentTree == null) {
+                    return false;
+                }
 
-                    MergeResult result = pipeline.executeBatched(git, context);
-                    if (!result.isSuccess()) {
-                        logger.error("Merge conflict in file: " + filePath);
+                // Final merged result is in currentTree
+                if (bare) {
+                    if (!writeMergeCommit(repo, inserter, currentTree, branchCommits, branches, bareRef)) {
                         return false;
                     }
+                } else {
+                    writeMergedFiles(reader, blobCache, currentTree, filePaths, workingDir);
+                }
+                journal.complete();
+                logger.info("Resolved files: {}, trivial merges: {}", report.getCounts(), report.getTrivialCounts());
+                if (renames != null) {
+                    logger.info("Renames: {} found, {} exact, {} files skipped",
+                            report.getRenames(), report.getExactRenames(), report.getSkippedRenames());
+                }
+                logger.debug("Blob cache: {} hits, {} spill hits, {} misses",
+                        blobCache.getHits(), blobCache.getSpillHits(), blobCache.getMisses());
+                logger.debug("Rule results: {} hits, {} misses", ruleResults.getHits(), ruleResults.getMisses());
+                if (resultCache != null) {
+                    logger.debug("Merge result cache: {} hits, {} misses",
+                            resultCache.getHits(), resultCache.getMisses());
+                }
+            } finally {
+                if (executor != null) {
+                    executor.shutdownNow();
+                }
+                if (resultCache != null) {
+                    resultCache.evict();
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            if (scratchDir != null) {
+                deleteRecursively(scratchDir);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Merges the branches one at a time, each into the merged result of all the branches before it.
+     *
+     * @return The merged tree, or null if the merge failed
+     */
+    private @Nullable ObjectId mergeSequential(MergeState state, List<RevCommit> branchCommits) throws IOException {
+        // The merged result of all the previous branches, which the next branch gets merged into
+        ObjectId currentTree = state.baseCommit().getTree();
+        for (int step = 0; step < branchCommits.size(); step++) {
+            RevCommit commit = branchCommits.get(step);
+            currentTree = mergeStep(
+                    state, step, state.workingDir(), currentTree, commit.getTree(), commit, step + 1,
+                    renamesOf(state, 1, step), renamesOf(state, step + 1, step + 1)
+            );
+            if (currentTree == null) {
+                return null;
+            }
+        }
+        return currentTree;
+    }
+
+    /**
+     * Merges the branches pairwise in a balanced tree, merging the pairs of each level at the same time.<br>
+     * Every partial result only contains the changes of its own branches on top of the base, so the base is the
+     * virtual base of every pair, at every level. With many branches, the longest chain of merges is logarithmic
+     * instead of linear in the number of branches.
+     *
+     * @return The merged tree, or null if the merge failed
+     */
+    private @Nullable ObjectId mergeTournament(MergeState state, List<RevCommit> branchCommits) throws IOException {
+        List<TournamentNode> nodes = new ArrayList<>(branchCommits.size());
+        for (int i = 0; i < branchCommits.size(); i++) {
+            RevCommit commit = branchCommits.get(i);
+            nodes.add(new TournamentNode(commit.getTree(), commit, i + 1, i + 1));
+        }
+        if (nodes.size() == 1) {
+            // A single branch still has to be merged into the base
+            RevCommit commit = branchCommits.getFirst();
+            return mergeStep(
+                    state, 0, state.workingDir(), state.baseCommit().getTree(), commit.getTree(), commit, 1,
+                    List.of(), renamesOf(state, 1, 1)
+            );
+        }
 
-                    if (result.getOutputPath() != null) {
-                        if (result instanceof GitMergeResult gitMergeResult) {
-                            currentPath = new GitPath(gitMergeResult.getCommit(), result.getOutputPath());
-                        } else {
-                            currentPath = new GitPath(currentPath.getCommit(), result.getOutputPath());
+        ExecutorService pairExecutor = parallelism > 1 && nodes.size() > 3
+                ? Executors.newFixedThreadPool(Math.min(parallelism, nodes.size() / 2))
+                : null;
+        try {
+            int nextStep = 0;
+            while (nodes.size() > 1) {
+                int pairCount = nodes.size() / 2;
+                // Pairs merging at the same time may merge the same files, so each writes them to its own directory
+                boolean concurrent = pairExecutor != null && pairCount > 1;
+                List<Callable<ObjectId>> pairs = new ArrayList<>(pairCount);
+                for (int i = 0; i < pairCount; i++) {
+                    TournamentNode left = nodes.get(i * 2);
+                    TournamentNode right = nodes.get(i * 2 + 1);
+                    int step = nextStep++;
+                    pairs.add(() -> {
+                        Path stepDir = concurrent
+                                ? Files.createTempDirectory("gitmergepipeline-step-")
+                                : state.workingDir();
+                        try {
+                            return mergeStep(
+                                    state, step, stepDir, left.tree(), right.tree(), right.commit(),
+                                    right.commit() != null ? right.firstSide() : -1,
+                                    renamesOf(state, left.firstSide(), left.lastSide()),
+                                    renamesOf(state, right.firstSide(), right.lastSide())
+                            );
+                        } finally {
+                            if (concurrent) {
+                                deleteRecursively(stepDir);
+                            }
                         }
+                    });
+                }
+                List<ObjectId> mergedTrees = runPairs(pairExecutor, pairs);
+
+                List<TournamentNode> merged = new ArrayList<>(pairCount + 1);
+                for (int i = 0; i < pairCount; i++) {
+                    ObjectId mergedTree = mergedTrees.get(i);
+                    if (mergedTree == null) {
+                        return null;
                     }
+                    merged.add(new TournamentNode(
+                            mergedTree, null, nodes.get(i * 2).firstSide(), nodes.get(i * 2 + 1).lastSide()
+                    ));
+                }
+                // An odd node out moves up to the next level as is
+                if (nodes.size() % 2 == 1) {
+                    merged.add(nodes.getLast());
+                }
+                nodes = merged;
+            }
+            return nodes.getFirst().tree();
+        } finally {
+            if (pairExecutor != null) {
+                pairExecutor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Runs the pair merges of a tournament level, on the pair pool if there is one.<br>
+     * The pairs get their own pool, as they wait on file merges running in the file pool.
+     */
+    private static List<ObjectId> runPairs(@Nullable ExecutorService pairExecutor,
+                                           List<Callable<ObjectId>> pairs) throws IOException {
+        List<ObjectId> mergedTrees = new ArrayList<>(pairs.size());
+        try {
+            if (pairExecutor == null || pairs.size() < 2) {
+                for (Callable<ObjectId> pair : pairs) {
+                    mergedTrees.add(pair.call());
                 }
+                return mergedTrees;
+            }
+            for (Future<ObjectId> future : pairExecutor.invokeAll(pairs)) {
+                mergedTrees.add(future.get());
+            }
+            return mergedTrees;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while merging branches", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException(cause);
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static List<RenameDetector.Result> renamesOf(MergeState state, int firstSide, int lastSide) {
+        if (state.renames() == null || firstSide > lastSide) {
+            return List.of();
+        }
+        return state.renames().subList(firstSide - 1, lastSide);
+    }
 
-                // Final merged result is in currentPath
-                if (diff.getChangeType() != DiffEntry.ChangeType.DELETE) { // Target = /dev/null
-                    if (Files.exists(currentPath.getPath())) { // TODO: Figure out why this happens
-                        GitUtils.copyFileToWorkingDirectory(currentPath.getPath(), target);
+    /**
+     * Merges the other tree into the current tree, as a single step of the merge.
+     *
+     * @param step           The index of the step, for the journal and report
+     * @param stepDir        The directory files of the step are written to, when operations need them on disk
+     * @param currentTree    The tree to merge into
+     * @param otherTree      The tree to merge
+     * @param otherCommit    The branch commit of the other tree, or null if it's a partially merged tree
+     * @param otherSide      The side of the changed files which the other tree is, or -1 if it's not a branch
+     * @param currentRenames The renames of the branches already merged into the current tree
+     * @param otherRenames   The renames of the branches merged into the other tree
+     * @return The merged tree, or null if the merge failed
+     */
+    private @Nullable ObjectId mergeStep(MergeState state, int step, Path stepDir, ObjectId currentTree,
+                                         ObjectId otherTree, @Nullable RevCommit otherCommit, int otherSide,
+                                         List<RenameDetector.Result> currentRenames,
+                                         List<RenameDetector.Result> otherRenames) throws IOException {
+        Repository repo = state.git().getRepository();
+        RevCommit baseCommit = state.baseCommit();
+        BlobCache blobCache = state.blobCache();
+        MergeJournal journal = state.journal();
+        MergeReport report = state.report();
+        // Each step gets its own inserter, as steps of a tournament run at the same time
+        Tracer.Span span = Tracer.span("merge", "mergeStep", "step", step);
+        try (span;
+             ObjectInserter inserter = newObjectInserter(repo, state.bare());
+             ObjectReader reader = inserter.newReader()) {
+            ObjectId journaledTree = journal.getStepTree(step);
+            if (journaledTree != null && reader.has(journaledTree)) {
+                logger.info("Resuming after step {}", step);
+                return journaledTree;
+            }
+
+            // Only files which the other tree has a different version of need to be merged
+            Set<String> differingPaths = GitUtils.getDifferingPaths(
+                    reader, currentTree, otherTree, state.filePaths()
+            );
+            List<GitMergeContext> contexts = new ArrayList<>(differingPaths.size());
+            Map<String, RenamedFile> renamedFiles = findRenamedFiles(
+                    reader, currentTree, otherTree, currentRenames, otherRenames, state.changedByPath(),
+                    differingPaths
+            );
+            Set<String> renamedPaths = new HashSet<>();
+            for (RenamedFile renamedFile : renamedFiles.values()) {
+                renamedPaths.add(renamedFile.oldPath());
+            }
+            for (ChangedFile changedFile : state.changedFiles()) {
+                String filePath = changedFile.getPath();
+                if (!differingPaths.contains(filePath) || renamedPaths.contains(filePath)) {
+                    continue;
+                }
+                RenamedFile renamedFile = renamedFiles.get(filePath);
+                if (renamedFile != null) {
+                    contexts.add(createRenamedContext(
+                            state, stepDir, currentTree, otherTree, otherCommit, otherSide, filePath, renamedFile
+                    ));
+                    continue;
+                }
+
+                // Every version is read straight from the object database, instead of the working directory
+                // The base and other blobs are already known from finding the changed files
+                Path target = stepDir.resolve(filePath);
+                GitPath basePath = new GitPath(
+                        baseCommit, baseCommit.getTree(), target,
+                        state.baseContents().computeIfAbsent(filePath, path -> new BlobContent(
+                                repo, blobCache, baseCommit.getTree(), path,
+                                changedFile.getBlobId(ChangedFile.BASE),
+                                changedFile.getFileMode(ChangedFile.BASE)
+                        ))
+                );
+                GitPath currentPath = new GitPath(
+                        null, currentTree, target, new BlobContent(repo, blobCache, currentTree, filePath)
+                );
+                GitPath otherPath = new GitPath(otherCommit, otherTree, target, otherSide >= 0
+                        ? new BlobContent(
+                                repo, blobCache, otherTree, filePath,
+                                changedFile.getBlobId(otherSide), changedFile.getFileMode(otherSide)
+                        )
+                        : new BlobContent(repo, blobCache, otherTree, filePath)
+                );
+                contexts.add(newContext(state, basePath, currentPath, otherPath, filePath));
+            }
+
+            FileMerge[] fileMerges = new FileMerge[contexts.size()];
+            int resumed = 0;
+            for (int i = 0; i < fileMerges.length; i++) {
+                MergeJournal.Entry entry = journal.getEntry(step, contexts.get(i).getFilePath());
+                if (entry != null && (entry.blobId() == null || reader.has(entry.blobId()))) {
+                    fileMerges[i] = new FileMerge(
+                            MergeResult.success("Resumed from journal", null),
+                            entry.blobId(), entry.fileMode(), entry.deleted()
+                    );
+                    report.record(step, contexts.get(i).getFilePath(), MergeReport.Resolution.RESUMED, null);
+                    resumed++;
+                }
+            }
+            if (resumed > 0) {
+                logger.info("Resuming {} merged files from the journal.", resumed);
+            }
+            mergeFiles(
+                    state.git(), state.executor(), contexts, fileMerges, state.bare(), journal, step,
+                    state.resultCache(), report
+            );
+            // Every file of the step is merged, so its merged trees won't be needed again
+            state.treeMerges().evict(currentTree, otherTree);
+
+            // Results are applied in path order, so the merged tree doesn't depend on which file finished first
+            DirCache mergedIndex = DirCache.read(reader, currentTree);
+            DirCacheEditor editor = mergedIndex.editor();
+            for (int i = 0; i < fileMerges.length; i++) {
+                FileMerge fileMerge = fileMerges[i];
+                String filePath = contexts.get(i).getFilePath();
+                if (fileMerge == null || fileMerge.result() == null) {
+                    logger.error("No pipeline found for file: " + filePath);
+                    return null;
+                }
+                if (!fileMerge.result().isSuccess()) {
+                    logger.error("Merge conflict in file: " + filePath);
+                    return null;
+                }
+                RenamedFile renamedFile = renamedFiles.get(filePath);
+                if (renamedFile != null && renamedFile.renamedByOther()) {
+                    // The current version is still at the old path, so it moves along with the rename
+                    fileMerge = fileMerge.keepingCurrent(contexts.get(i).getCurrentContent());
+                    editor.add(new DirCacheEditor.DeletePath(renamedFile.oldPath()));
+                    report.record(step, renamedFile.oldPath(), MergeReport.Resolution.RENAMED, null);
+                }
+                fileMerge.addToIndex(editor, filePath);
+            }
+
+            editor.finish();
+            ObjectId mergedTree = mergedIndex.writeTree(inserter);
+            inserter.flush();
+            journal.recordStep(step, mergedTree);
+            return mergedTree;
+        }
+    }
+
+    /**
+     * Detects the renames on every branch, compared to the base.
+     *
+     * @return The renames of each branch, or null if renames aren't detected
+     */
+    private @Nullable List<RenameDetector.Result> detectRenames(Repository repo, List<ChangedFile> changedFiles,
+                                                               int branchCount, MergeReport report)
+            throws IOException {
+        PipelineConfiguration configuration = getConfiguration();
+        if (!configuration.detectRenames()) {
+            return null;
+        }
+        RenameDetector detector = new RenameDetector(
+                repo, configuration.renameLimit(), configuration.renameScore(),
+                Duration.ofMillis(configuration.renameTimeBudget()), parallelism
+        );
+        List<RenameDetector.Result> results = new ArrayList<>(branchCount);
+        for (int step = 0; step < branchCount; step++) {
+            RenameDetector.Result result = detector.detect(changedFiles, step + 1);
+            report.recordRenames(result);
+            results.add(result);
+        }
+        return results;
+    }
+
+    /**
+     * Finds the files of a step which have to be merged across a rename, keyed by their new path.<br>
+     * If a branch of the other tree renamed a file, the current version at the old path is merged into the new path.
+     * If a branch of the current tree renamed a file which the other tree changed, the other version at the old path
+     * is merged into the new path.
+     */
+    private static Map<String, RenamedFile> findRenamedFiles(ObjectReader reader, ObjectId currentTree,
+                                                             ObjectId otherTree,
+                                                             List<RenameDetector.Result> currentRenames,
+                                                             List<RenameDetector.Result> otherRenames,
+                                                             Map<String, ChangedFile> changedByPath,
+                                                             Set<String> differingPaths) throws IOException {
+        if (currentRenames.isEmpty() && otherRenames.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, RenamedFile> renamedFiles = new HashMap<>();
+        Set<String> oldPaths = new HashSet<>();
+        for (boolean renamedByOther : new boolean[]{false, true}) {
+            for (RenameDetector.Result result : renamedByOther ? otherRenames : currentRenames) {
+                for (RenameDetector.Rename rename : result.renames()) {
+                    String oldPath = rename.oldPath();
+                    String newPath = rename.newPath();
+                    if (!differingPaths.contains(oldPath) || !differingPaths.contains(newPath) ||
+                            renamedFiles.containsKey(newPath) || oldPaths.contains(oldPath)) {
+                        continue;
+                    }
+                    if (!renamedByOther) {
+                        // Only needed if the other tree changed the file at its old path
+                        ObjectId otherBlob = blobInTree(reader, otherTree, oldPath);
+                        if (otherBlob == null || blobInTree(reader, otherTree, newPath) != null ||
+                                otherBlob.equals(changedByPath.get(oldPath).getBlobId(ChangedFile.BASE))) {
+                            continue;
+                        }
+                    }
+                    // The current tree must still have the file at the side of the rename it came from
+                    String currentPath = renamedByOther ? oldPath : newPath;
+                    String missingPath = renamedByOther ? newPath : oldPath;
+                    if (blobInTree(reader, currentTree, currentPath) == null ||
+                            blobInTree(reader, currentTree, missingPath) != null) {
+                        continue;
                     }
+                    renamedFiles.put(newPath, new RenamedFile(oldPath, renamedByOther));
+                    oldPaths.add(oldPath);
                 }
             }
+        }
+        return renamedFiles;
+    }
+
+    private static @Nullable ObjectId blobInTree(ObjectReader reader, ObjectId tree, String path) throws IOException {
+        try (TreeWalk treeWalk = TreeWalk.forPath(reader, path, tree)) {
+            return treeWalk != null ? treeWalk.getObjectId(0) : null;
+        }
+    }
+
+    /**
+     * Creates the merge context of a file, sharing the caches of the merge.
+     */
+    private static GitMergeContext newContext(MergeState state, GitPath basePath, GitPath currentPath,
+                                              GitPath otherPath, String filePath) {
+        return GitMergeContext.builder(basePath, currentPath, otherPath, filePath)
+                .treeMerges(state.treeMerges())
+                .blobCache(state.blobCache())
+                .ruleResults(state.ruleResults())
+                .build();
+    }
+
+    /**
+     * Creates the merge context of a renamed file, taking the versions at the old path from the side which didn't
+     * rename it.
+     */
+    private static GitMergeContext createRenamedContext(MergeState state, Path stepDir, ObjectId currentTree,
+                                                        ObjectId otherTree, @Nullable RevCommit otherCommit,
+                                                        int otherSide, String filePath, RenamedFile renamedFile) {
+        Repository repo = state.git().getRepository();
+        BlobCache blobCache = state.blobCache();
+        RevCommit baseCommit = state.baseCommit();
+        String oldPath = renamedFile.oldPath();
+        ChangedFile oldFile = state.changedByPath().get(oldPath);
+        ChangedFile otherFile = state.changedByPath().get(renamedFile.renamedByOther() ? filePath : oldPath);
+        Path target = stepDir.resolve(filePath);
+
+        GitPath basePath = new GitPath(baseCommit, baseCommit.getTree(), target, new BlobContent(
+                repo, blobCache, baseCommit.getTree(), oldPath,
+                oldFile.getBlobId(ChangedFile.BASE), oldFile.getFileMode(ChangedFile.BASE)
+        ));
+        GitPath currentPath = new GitPath(null, currentTree, target, new BlobContent(
+                repo, blobCache, currentTree, renamedFile.renamedByOther() ? oldPath : filePath
+        ));
+        GitPath otherPath = new GitPath(otherCommit, otherTree, target, otherSide >= 0
+                ? new BlobContent(
+                        repo, blobCache, otherTree, otherFile.getPath(),
+                        otherFile.getBlobId(otherSide), otherFile.getFileMode(otherSide)
+                )
+                : new BlobContent(repo, blobCache, otherTree, otherFile.getPath())
+        );
+        GitMergeContext context = newContext(state, basePath, currentPath, otherPath, filePath);
+        context.setAttribute("renamedFrom", oldPath);
+        return context;
+    }
+
+    /**
+     * Writes the merge commit for the merged tree, and points the ref at it.
+     */
+    private static boolean writeMergeCommit(Repository repo, ObjectInserter inserter, ObjectId mergedTree,
+                                            List<RevCommit> parents, Collection<String> branches,
+                                            String refName) throws IOException {
+        String message = (branches.size() == 1 ? "Merge branch '" : "Merge branches '") +
+                String.join("', '", branches) + "'";
+        PersonIdent ident = new PersonIdent(repo);
+
+        CommitBuilder commit = new CommitBuilder();
+        commit.setTreeId(mergedTree);
+        commit.setParentIds(parents);
+        commit.setAuthor(ident);
+        commit.setCommitter(ident);
+        commit.setMessage(message);
+        ObjectId commitId = inserter.insert(commit);
+        inserter.flush();
+
+        RefUpdate refUpdate = repo.updateRef(refName);
+        refUpdate.setNewObjectId(commitId);
+        refUpdate.setRefLogMessage("merge: " + message, false);
+        RefUpdate.Result result = refUpdate.update();
+        switch (result) {
+            case NEW, FAST_FORWARD, NO_CHANGE -> {
+                logger.info("Wrote merge commit {} to {}", commitId.name(), refName);
+                return true;
+            }
+            default -> {
+                logger.error("Failed to update {} to merge commit {}: {}", refName, commitId.name(), result);
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Creates an object inserter, which writes a single pack instead of loose objects when merging without a
+     * working directory.
+     */
+    private static ObjectInserter newObjectInserter(Repository repo, boolean bulk) {
+        if (bulk && repo.getObjectDatabase() instanceof ObjectDirectory objectDirectory) {
+            return objectDirectory.newPackInserter();
+        }
+        return repo.newObjectInserter();
+    }
+
+    private static void deleteRecursively(Path directory) {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    logger.warn("Failed to delete scratch file: {}", path, e);
+                }
+            });
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            logger.warn("Failed to delete scratch directory: {}", directory, e);
         }
-        return true;
+    }
+
+    /**
+     * Writes the merged files from the merged tree into the working directory.
+     */
+    private static void writeMergedFiles(ObjectReader reader, BlobCache blobCache, ObjectId mergedTree,
+                                         Set<String> filePaths, Path workingDir) throws IOException {
+        if (filePaths.isEmpty()) {
+            return;
+        }
+        Set<String> remainingPaths = new HashSet<>(filePaths);
+        try (TreeWalk treeWalk = new TreeWalk(reader)) {
+            treeWalk.addTree(mergedTree);
+            treeWalk.setRecursive(true);
+            treeWalk.setFilter(PathFilterGroup.createFromStrings(filePaths));
+            while (treeWalk.next()) {
+                String filePath = treeWalk.getPathString();
+                remainingPaths.remove(filePath);
+                GitUtils.writeBlobToWorkingDirectory(
+                        reader, blobCache, treeWalk.getObjectId(0), workingDir.resolve(filePath)
+                );
+            }
+        }
+        // Anything left over was deleted by the merge
+        for (String filePath : remainingPaths) {
+            Files.deleteIfExists(workingDir.resolve(filePath));
+        }
+    }
+
+    /**
+     * Merges every file of a single branch step, using the worker pool if there is one.<br>
+     * Each worker takes the next file in order and stores its result at the same index, so the results are in the
+     * same order as the contexts. Once a file fails, files after it are skipped, but every file before it is still
+     * merged, so the first failure is always the same one.<br>
+     * Files which already have a result were resumed from the journal, and every newly merged file is recorded in it.
+     */
+    private void mergeFiles(Git git, @Nullable ExecutorService executor, List<GitMergeContext> contexts,
+                            FileMerge[] fileMerges, boolean bulk, MergeJournal journal, int step,
+                            @Nullable MergeResultCache resultCache, MergeReport report) throws IOException {
+        AtomicInteger nextIndex = new AtomicInteger();
+        AtomicInteger firstFailure = new AtomicInteger(Integer.MAX_VALUE);
+        Callable<Void> worker = () -> {
+            // Each worker gets its own inserter, as inserters are not thread-safe
+            try (ObjectInserter inserter = newObjectInserter(git.getRepository(), bulk)) {
+                int index;
+                while ((index = nextIndex.getAndIncrement()) < contexts.size() && index < firstFailure.get()) {
+                    if (fileMerges[index] != null) {
+                        continue;
+                    }
+                    GitMergeContext context = contexts.get(index);
+                    FileMerge fileMerge;
+                    Tracer.Span span = Tracer.span("merge", "mergeFile", "file", context.getFilePath());
+                    try (span) {
+                        fileMerge = mergeFile(git, inserter, context, resultCache, report, step);
+                    }
+                    fileMerges[index] = fileMerge;
+                    if (fileMerge.result() == null || !fileMerge.result().isSuccess()) {
+                        firstFailure.accumulateAndGet(index, Math::min);
+                    } else {
+                        journal.recordFile(
+                                step, context.getFilePath(), fileMerge.blobId(), fileMerge.fileMode(),
+                                fileMerge.deleted()
+                        );
+                    }
+                }
+                inserter.flush();
+            }
+            return null;
+        };
+
+        if (executor == null || contexts.size() < 2) {
+            try {
+                worker.call();
+            } catch (IOException | RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+            return;
+        }
+
+        List<Future<Void>> futures = new ArrayList<>(parallelism);
+        for (int i = 0; i < Math.min(parallelism, contexts.size()); i++) {
+            futures.add(executor.submit(worker));
+        }
+        try {
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while merging files", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException(cause);
+        } finally {
+            for (Future<Void> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Merges a single file.<br>
+     * Trivial merges are resolved from the blob ids alone, and the cached result is reused if the same versions were
+     * already merged by the same pipeline. Otherwise, the pipeline is run.
+     */
+    private FileMerge mergeFile(Git git, ObjectInserter inserter, GitMergeContext context,
+                                @Nullable MergeResultCache resultCache, MergeReport report,
+                                int step) throws IOException {
+        TrivialMerge trivial = TrivialMerge.classify(context);
+        if (trivial != null) {
+            logger.debug("Trivial merge of {}: {}", context.getFilePath(), trivial.kind().getDescription());
+            report.record(step, context.getFilePath(), MergeReport.Resolution.TRIVIAL, trivial.kind());
+            return new FileMerge(trivial.toResult(), trivial.blobId(), trivial.fileMode(), trivial.deleted());
+        }
+
+        Pipeline pipeline;
+        Tracer.Span span = Tracer.span("pipeline", "findPipeline");
+        try (span) {
+            pipeline = getConfiguration().findPipeline(context);
+        }
+        if (pipeline == null) {
+            return new FileMerge(null, null, null, false);
+        }
+        if (resultCache == null) {
+            report.record(step, context.getFilePath(), MergeReport.Resolution.PIPELINE, null);
+            return runPipeline(git, inserter, context, pipeline);
+        }
+
+        // Rename settings change which versions get merged, so results are only reused with the same settings
+        ObjectId key = MergeResultCache.key(
+                pipeline.getFingerprint() + "\n" + getConfiguration().getMergeSettings(), context.getFilePath(),
+                MergeResultCache.Version.of(context.getBaseContent()),
+                MergeResultCache.Version.of(context.getCurrentContent()),
+                MergeResultCache.Version.of(context.getOtherContent())
+        );
+        AtomicBoolean merged = new AtomicBoolean();
+        MergeResultCache.Entry entry = resultCache.get(key, () -> {
+            merged.set(true);
+            FileMerge fileMerge = runPipeline(git, inserter, context, pipeline);
+            return new MergeResultCache.Entry(
+                    fileMerge.result(), fileMerge.blobId(), fileMerge.fileMode(), fileMerge.deleted()
+            );
+        });
+        report.record(
+                step, context.getFilePath(),
+                merged.get() ? MergeReport.Resolution.PIPELINE : MergeReport.Resolution.CACHED, null
+        );
+        return new FileMerge(entry.result(), entry.blobId(), entry.fileMode(), entry.deleted());
+    }
+
+    /**
+     * Runs the pipeline on a single file, inserting the merged content into the object database if needed.
+     */
+    private static FileMerge runPipeline(Git git, ObjectInserter inserter, GitMergeContext context,
+                                         Pipeline pipeline) throws IOException {
+        MergeResult result;
+        Tracer.Span span = Tracer.span("pipeline", pipeline::getDescription);
+        try (span) {
+            result = pipeline.executeBatched(git, context);
+        }
+        if (!result.isSuccess()) {
+            return new FileMerge(result, null, null, false);
+        }
+
+        ObjectId blobId = null;
+        FileMode fileMode = null;
+        if (result instanceof GitMergeResult gitMergeResult) {
+            blobId = gitMergeResult.getBlobId();
+            fileMode = gitMergeResult.getFileMode();
+            if (fileMode == FileMode.MISSING) {
+                return new FileMerge(result, null, null, true);
+            }
+        }
+
+        if (blobId == null) {
+            Path outputPath = result.getOutputPath();
+            if (outputPath == null) {
+                return new FileMerge(result, null, null, false); // The current version is kept
+            }
+            if (!Files.exists(outputPath)) {
+                return new FileMerge(result, null, null, true);
+            }
+            try (InputStream in = Files.newInputStream(outputPath)) {
+                blobId = inserter.insert(Constants.OBJ_BLOB, Files.size(outputPath), in);
+            }
+        }
+        return new FileMerge(result, blobId, fileMode, false);
+    }
+
+    /**
+     * The result of merging a single file within a branch step.
+     *
+     * @param result   The result of the pipeline, or null if no pipeline was found
+     * @param blobId   The blob containing the merged content, or null if the current version is kept
+     * @param fileMode The file mode of the merged file, if known
+     * @param deleted  Whether the file was deleted by the merge
+     */
+    private record FileMerge(@Nullable MergeResult result, @Nullable ObjectId blobId,
+                             @Nullable FileMode fileMode, boolean deleted) {
+
+        /**
+         * Resolves keeping the current version to its blob, for files whose current version is at another path.
+         */
+        FileMerge keepingCurrent(@Nullable BlobContent current) throws IOException {
+            if (deleted || current == null) {
+                return this;
+            }
+            return new FileMerge(
+                    result, blobId != null ? blobId : current.getBlobId(),
+                    fileMode != null ? fileMode : current.getFileMode(), false
+            );
+        }
+
+        /**
+         * Adds the merged file to the index of the merged tree.
+         */
+        void addToIndex(DirCacheEditor editor, String filePath) {
+            if (deleted) {
+                editor.add(new DirCacheEditor.DeletePath(filePath));
+                return;
+            }
+            if (blobId == null) {
+                return;
+            }
+            editor.add(new DirCacheEditor.PathEdit(filePath) {
+                @Override
+                public void apply(DirCacheEntry entry) {
+                    entry.setObjectId(blobId);
+                    if (fileMode != null) {
+                        entry.setFileMode(fileMode);
+                    } else if (entry.getRawMode() == 0) {
+                        entry.setFileMode(FileMode.REGULAR_FILE);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * A file which gets merged into its renamed path.
+     *
+     * @param oldPath        The path of the file in the base
+     * @param renamedByOther Whether the other branch renamed the file, otherwise an earlier branch did
+     */
+    private record RenamedFile(String oldPath, boolean renamedByOther) {}
+
+    /**
+     * A tree taking part in a tournament merge.
+     *
+     * @param tree      The tree, either of a branch or of merged branches
+     * @param commit    The branch commit, or null if the tree is a partial merge
+     * @param firstSide The side of the first branch merged into the tree
+     * @param lastSide  The side of the last branch merged into the tree
+     */
+    private record TournamentNode(ObjectId tree, @Nullable RevCommit commit, int firstSide, int lastSide) {}
+
+    /**
+     * Everything shared by the steps of a single merge.
+     */
+    private record MergeState(Git git, RevCommit baseCommit, List<ChangedFile> changedFiles,
+                              Map<String, ChangedFile> changedByPath, Set<String> filePaths, Path workingDir,
+                              BlobCache blobCache, TreeMergeCache treeMerges, RuleResultCache ruleResults,
+                              @Nullable MergeResultCache resultCache, MergeReport report, MergeJournal journal,
+                              @Nullable ExecutorService executor, boolean bare,
+                              @Nullable List<RenameDetector.Result> renames,
+                              Map<String, BlobContent> baseContents) {}
+
+    /**
+     * The orders in which the branches of a merge can be merged together.
+     */
+    public enum Reduction {
+        /** Each branch is merged into the merged result of all the branches before it */
+        SEQUENTIAL,
+        /** Branches are merged pairwise in a balanced tree, with the pairs of each level merged at the same time */
+        TOURNAMENT
     }
 }
@@ -17,6 +17,7 @@ public class MergeContext {
     private final Path currentPath;
     private final Path otherPath;
     private final String filePath;
+    private final RuleResultCache ruleResults;
     private final Map<String, Object> attributes;
     
     /**
@@ -28,12 +29,40 @@ public class MergeContext {
      * @param filePath Path to the file relative to the working directory
      */
     public MergeContext(Path basePath, Path currentPath, Path otherPath, String filePath) {
+        this(basePath, currentPath, otherPath, filePath, new RuleResultCache());
+    }
+
+    /**
+     * Creates a new merge context for a merge operation, sharing rule results with other contexts.
+     *
+     * @param basePath Path to the base version of the file
+     * @param currentPath Path to the current version of the file
+     * @param otherPath Path to the other version of the file
+     * @param filePath Path to the file relative to the working directory
+     * @param ruleResults The rule results shared by all contexts in the same merge
+     */
+    public MergeContext(Path basePath, Path currentPath, Path otherPath, String filePath,
+                        RuleResultCache ruleResults) {
         this.basePath = basePath;
         this.currentPath = currentPath;
         this.otherPath = otherPath;
         this.filePath = filePath;
+        this.ruleResults = ruleResults;
         this.attributes = new HashMap<>();
     }
+
+    /**
+     * Creates a copy of this context for another file path.<br>
+     * The copy shares the rule results of this context, and starts with a copy of its attributes.
+     *
+     * @param filePath Path to the file relative to the working directory
+     * @return The copy
+     */
+    public MergeContext withFilePath(String filePath) {
+        MergeContext copy = new MergeContext(basePath, currentPath, otherPath, filePath, ruleResults);
+        copy.attributes.putAll(attributes);
+        return copy;
+    }
     
     /**
      * Gets the path to the base version of the file.
@@ -71,6 +100,15 @@ public class MergeContext {
         return filePath;
     }
     
+    /**
+     * Gets the rule results shared by all contexts in the same merge.
+     *
+     * @return The rule result cache
+     */
+    public RuleResultCache getRuleResults() {
+        return ruleResults;
+    }
+
     /**
      * Gets the filename of the file being merged.
      * 
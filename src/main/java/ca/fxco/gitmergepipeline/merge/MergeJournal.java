@@ -0,0 +1,215 @@
+package ca.fxco.gitmergepipeline.merge;
+
+import ca.fxco.gitmergepipeline.utils.BuildInfo;
+import org.eclipse.jgit.annotations.Nullable;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Journal of the progress of a batched merge, stored within the git directory.<br>
+ * Every merged file and every merged branch step is appended to the journal as soon as it's done, so an interrupted
+ * merge can be resumed without merging those files again. The journal is keyed by the base commit, the branch
+ * commits, the configuration fingerprint and the build, so a journal is never resumed by a different merge or by
+ * another version of this tool.
+ *
+ * @author FX
+ */
+public class MergeJournal implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(MergeJournal.class);
+
+    private static final String DELETED = "deleted";
+    private static final String KEEP = "keep";
+    private static final String NO_MODE = "-";
+
+    private final Path file;
+    private final Map<Integer, ObjectId> stepTrees = new HashMap<>();
+    private final Map<Integer, Map<String, Entry>> entries = new HashMap<>();
+    private final BufferedWriter writer;
+
+    private MergeJournal(Path file, boolean resume) throws IOException {
+        this.file = file;
+        Files.createDirectories(file.getParent());
+        if (resume && Files.exists(file)) {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                parseLine(line);
+            }
+            this.writer = Files.newBufferedWriter(
+                    file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND
+            );
+        } else {
+            this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Opens the journal of a merge.
+     *
+     * @param repository  The repository being merged
+     * @param base        The base commit of the merge
+     * @param branches    The branch commits being merged, in merge order
+     * @param fingerprint The fingerprint of the pipeline configuration
+     * @param resume      Whether to read the progress of a previous run, instead of starting a new journal
+     * @return The journal
+     * @throws IOException If an I/O error occurs while reading or creating the journal
+     */
+    public static MergeJournal open(Repository repository, AnyObjectId base, List<? extends AnyObjectId> branches,
+                                    String fingerprint, boolean resume) throws IOException {
+        return open(repository, base, branches, fingerprint, BuildInfo.getFingerprint(), resume);
+    }
+
+    /**
+     * Opens the journal of a merge, which is only resumed by the same build.
+     *
+     * @param repository  The repository being merged
+     * @param base        The base commit of the merge
+     * @param branches    The branch commits being merged, in merge order
+     * @param fingerprint The fingerprint of the pipeline configuration
+     * @param build       The fingerprint of the build running the merge
+     * @param resume      Whether to read the progress of a previous run, instead of starting a new journal
+     * @return The journal
+     * @throws IOException If an I/O error occurs while reading or creating the journal
+     */
+    static MergeJournal open(Repository repository, AnyObjectId base, List<? extends AnyObjectId> branches,
+                             String fingerprint, String build, boolean resume) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+        digest.update(base.name().getBytes(StandardCharsets.US_ASCII));
+        for (AnyObjectId branch : branches) {
+            digest.update((byte) ' ');
+            digest.update(branch.name().getBytes(StandardCharsets.US_ASCII));
+        }
+        digest.update((byte) '\n');
+        digest.update(fingerprint.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(build.getBytes(StandardCharsets.US_ASCII));
+
+        Path file = repository.getDirectory().toPath()
+                .resolve("gitmergepipeline")
+                .resolve("journal")
+                .resolve(HexFormat.of().formatHex(digest.digest()) + ".journal");
+        return new MergeJournal(file, resume);
+    }
+
+    /**
+     * Gets the merged tree of a branch step which was completed by a previous run.
+     *
+     * @param step The index of the branch step
+     * @return The merged tree, or null if the step wasn't completed
+     */
+    public @Nullable ObjectId getStepTree(int step) {
+        return stepTrees.get(step);
+    }
+
+    /**
+     * Gets the merged file of a branch step which was completed by a previous run.
+     *
+     * @param step     The index of the branch step
+     * @param filePath The path of the file
+     * @return The journal entry, or null if the file wasn't merged yet
+     */
+    public @Nullable Entry getEntry(int step, String filePath) {
+        Map<String, Entry> stepEntries = entries.get(step);
+        return stepEntries != null ? stepEntries.get(filePath) : null;
+    }
+
+    /**
+     * Records a merged file.
+     *
+     * @param step     The index of the branch step
+     * @param filePath The path of the file
+     * @param blobId   The blob containing the merged content, or null if the current version is kept
+     * @param fileMode The file mode of the merged file, if known
+     * @param deleted  Whether the file was deleted by the merge
+     * @throws IOException If an I/O error occurs while writing the journal
+     */
+    public synchronized void recordFile(int step, String filePath, @Nullable ObjectId blobId,
+                                        @Nullable FileMode fileMode, boolean deleted) throws IOException {
+        if (filePath.indexOf('\n') != -1) {
+            return; // Can't be stored on a single line, so the file just gets merged again
+        }
+        String blob = deleted ? DELETED : blobId != null ? blobId.name() : KEEP;
+        String mode = fileMode != null ? Integer.toOctalString(fileMode.getBits()) : NO_MODE;
+        writeLine("F " + step + " " + blob + " " + mode + " " + filePath);
+    }
+
+    /**
+     * Records the merged tree of a completed branch step.
+     *
+     * @param step The index of the branch step
+     * @param tree The merged tree
+     * @throws IOException If an I/O error occurs while writing the journal
+     */
+    public synchronized void recordStep(int step, AnyObjectId tree) throws IOException {
+        writeLine("T " + step + " " + tree.name());
+    }
+
+    /**
+     * Marks the merge as complete, removing the journal.
+     *
+     * @throws IOException If an I/O error occurs while removing the journal
+     */
+    public void complete() throws IOException {
+        close();
+        Files.deleteIfExists(file);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+
+    private void writeLine(String line) throws IOException {
+        writer.write(line);
+        writer.newLine();
+        writer.flush();
+    }
+
+    private void parseLine(String line) {
+        // The last line may be incomplete if the previous run was killed while writing it
+        try {
+            String[] parts = line.split(" ", 5);
+            if (parts.length == 3 && parts[0].equals("T")) {
+                stepTrees.put(Integer.parseInt(parts[1]), ObjectId.fromString(parts[2]));
+            } else if (parts.length == 5 && parts[0].equals("F")) {
+                boolean deleted = parts[2].equals(DELETED);
+                ObjectId blobId = deleted || parts[2].equals(KEEP) ? null : ObjectId.fromString(parts[2]);
+                FileMode fileMode = parts[3].equals(NO_MODE) ? null : FileMode.fromBits(Integer.parseInt(parts[3], 8));
+                entries.computeIfAbsent(Integer.parseInt(parts[1]), k -> new HashMap<>())
+                        .put(parts[4], new Entry(blobId, fileMode, deleted));
+            }
+        } catch (IllegalArgumentException e) {
+            logger.warn("Ignoring invalid journal line: {}", line);
+        }
+    }
+
+    /**
+     * A merged file recorded in the journal.
+     *
+     * @param blobId   The blob containing the merged content, or null if the current version is kept
+     * @param fileMode The file mode of the merged file, if known
+     * @param deleted  Whether the file was deleted by the merge
+     */
+    public record Entry(@Nullable ObjectId blobId, @Nullable FileMode fileMode, boolean deleted) {}
+}
@@ -1,12 +1,14 @@
 package ca.fxco.gitmergepipeline.merge;
 
 import ca.fxco.gitmergepipeline.merge.operations.*;
+import ca.fxco.gitmergepipeline.plugin.PluginIndex;
+import org.eclipse.jgit.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Registry for merge operations that can be executed in a pipeline.
@@ -17,30 +19,34 @@ import java.util.ServiceLoader;
 public class MergeOperationRegistry {
     private static final Logger logger = LoggerFactory.getLogger(MergeOperationRegistry.class);
 
-    private static MergeOperationRegistry defaultInstance;
-
     private final Map<String, MergeOperation> operations;
+    private final @Nullable PluginIndex pluginIndex;
 
     /**
-     * Creates a new merge operation registry.
+     * Creates a new, empty merge operation registry.
      */
     public MergeOperationRegistry() {
-        this.operations = new HashMap<>();
+        this(null);
+    }
+
+    /**
+     * Creates a new merge operation registry.
+     *
+     * @param pluginIndex The plugin index to find plugin operations in, or null to only use registered operations
+     */
+    public MergeOperationRegistry(@Nullable PluginIndex pluginIndex) {
+        this.operations = new ConcurrentHashMap<>();
+        this.pluginIndex = pluginIndex;
     }
 
     /**
      * Gets the default merge operation registry.
-     * The default registry includes all built-in merge operations.
+     * The default registry includes all built-in merge operations, and the operations of the default plugin index.
      * 
      * @return The default merge operation registry
      */
-    public static synchronized MergeOperationRegistry getDefault() {
-        if (defaultInstance == null) {
-            defaultInstance = new MergeOperationRegistry();
-            defaultInstance.registerBuiltInOperations();
-            defaultInstance.loadOperationsFromServiceLoader();
-        }
-        return defaultInstance;
+    public static MergeOperationRegistry getDefault() {
+        return DefaultHolder.INSTANCE;
     }
 
     /**
@@ -54,17 +60,27 @@ public class MergeOperationRegistry {
     }
 
     /**
-     * Gets a merge operation by name.
+     * Gets a merge operation by name.<br>
+     * Plugin operations are created the first time they're asked for.
      * 
      * @param name The name of the operation to get
      * @return The merge operation, or null if no operation with the given name exists
      */
     public MergeOperation getOperation(String name) {
-        return operations.get(name);
+        MergeOperation operation = operations.get(name);
+        if (operation == null && pluginIndex != null) {
+            Class<? extends MergeOperation> operationClass =
+                    pluginIndex.loadClass(PluginIndex.Kind.OPERATION, name, MergeOperation.class);
+            if (operationClass != null) {
+                operation = operations.computeIfAbsent(name, n -> createOperation(n, operationClass));
+            }
+        }
+        return operation;
     }
 
     /**
-     * Gets all registered merge operations.
+     * Gets all registered merge operations.<br>
+     * Plugin operations are only included once they've been created.
      * 
      * @return A map of operation names to operations
      */
@@ -83,13 +99,36 @@ public class MergeOperationRegistry {
     }
 
     /**
-     * Loads merge operations from the ServiceLoader.
-     * This allows third-party operations to be registered.
+     * Creates a merge operation from the plugin index, using its public no-argument constructor.
      */
-    private void loadOperationsFromServiceLoader() {
-        ServiceLoader<MergeOperation> loader = ServiceLoader.load(MergeOperation.class);
-        for (MergeOperation operation : loader) {
-            registerOperation(operation);
+    private static @Nullable MergeOperation createOperation(String name, Class<? extends MergeOperation> operationClass) {
+        try {
+            MergeOperation operation = operationClass.getConstructor().newInstance();
+            if (!name.equals(operation.getName())) {
+                logger.warn(
+                        "Merge operation plugin {} is named {} instead of {}",
+                        operationClass.getName(), operation.getName(), name
+                );
+            }
+            logger.debug("Registered merge operation: {}", name);
+            return operation;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.warn("Failed to create merge operation plugin {}: {}", name, operationClass.getName(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Holds the default registry, which is created when it's first used.<br>
+     * The native image initializes this class at build time, so the default registry is part of the image.
+     */
+    private static final class DefaultHolder {
+        private static final MergeOperationRegistry INSTANCE = createDefault();
+
+        private static MergeOperationRegistry createDefault() {
+            MergeOperationRegistry registry = new MergeOperationRegistry(PluginIndex.getDefault());
+            registry.registerBuiltInOperations();
+            return registry;
         }
     }
 }
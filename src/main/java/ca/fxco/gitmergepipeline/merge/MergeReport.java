@@ -0,0 +1,140 @@
+package ca.fxco.gitmergepipeline.merge;
+
+import ca.fxco.gitmergepipeline.utils.RenameDetector;
+import org.eclipse.jgit.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Report of how every file was resolved while merging branches.
+ *
+ * @author FX
+ */
+public class MergeReport {
+
+    private final ConcurrentLinkedQueue<Entry> entries = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger renames = new AtomicInteger();
+    private final AtomicInteger exactRenames = new AtomicInteger();
+    private final AtomicInteger skippedRenames = new AtomicInteger();
+
+    /**
+     * Records how a file was resolved.
+     *
+     * @param step       The index of the branch step
+     * @param filePath   The path of the file
+     * @param resolution How the file was resolved
+     * @param trivial    The kind of trivial merge, if the file was resolved trivially
+     */
+    public void record(int step, String filePath, Resolution resolution, @Nullable TrivialMerge.Kind trivial) {
+        entries.add(new Entry(step, filePath, resolution, trivial));
+    }
+
+    /**
+     * Records the renames detected on a side of the merge.
+     *
+     * @param result The detected renames
+     */
+    public void recordRenames(RenameDetector.Result result) {
+        renames.addAndGet(result.renames().size());
+        exactRenames.addAndGet(result.exact());
+        skippedRenames.addAndGet(result.skipped());
+    }
+
+    /**
+     * Gets the number of renames detected across every side.
+     *
+     * @return The number of renames
+     */
+    public int getRenames() {
+        return renames.get();
+    }
+
+    /**
+     * Gets the number of detected renames which kept the content, and didn't need to be compared by similarity.
+     *
+     * @return The number of exact renames
+     */
+    public int getExactRenames() {
+        return exactRenames.get();
+    }
+
+    /**
+     * Gets the number of added files which weren't compared for renames, because of the rename limit or time budget.
+     *
+     * @return The number of skipped files
+     */
+    public int getSkippedRenames() {
+        return skippedRenames.get();
+    }
+
+    /**
+     * Gets every recorded file, ordered by branch step and path.
+     *
+     * @return The recorded files
+     */
+    public List<Entry> getEntries() {
+        List<Entry> sorted = new ArrayList<>(entries);
+        sorted.sort(Comparator.comparingInt(Entry::step).thenComparing(Entry::filePath));
+        return sorted;
+    }
+
+    /**
+     * Gets the number of files resolved in each way.
+     *
+     * @return The number of files per resolution
+     */
+    public Map<Resolution, Integer> getCounts() {
+        Map<Resolution, Integer> counts = new EnumMap<>(Resolution.class);
+        for (Entry entry : entries) {
+            counts.merge(entry.resolution(), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    /**
+     * Gets the number of files resolved by each kind of trivial merge.
+     *
+     * @return The number of files per kind of trivial merge
+     */
+    public Map<TrivialMerge.Kind, Integer> getTrivialCounts() {
+        Map<TrivialMerge.Kind, Integer> counts = new EnumMap<>(TrivialMerge.Kind.class);
+        for (Entry entry : entries) {
+            if (entry.trivial() != null) {
+                counts.merge(entry.trivial(), 1, Integer::sum);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * A file recorded in the report.
+     *
+     * @param step       The index of the branch step
+     * @param filePath   The path of the file
+     * @param resolution How the file was resolved
+     * @param trivial    The kind of trivial merge, if the file was resolved trivially
+     */
+    public record Entry(int step, String filePath, Resolution resolution, @Nullable TrivialMerge.Kind trivial) {}
+
+    /**
+     * The ways a file can be resolved.
+     */
+    public enum Resolution {
+        /** Resolved from the blob ids alone, without running a pipeline */
+        TRIVIAL,
+        /** Merged by a pipeline */
+        PIPELINE,
+        /** Reused from the merge result cache */
+        CACHED,
+        /** Reused from the journal of an interrupted run */
+        RESUMED,
+        /** Removed as the old path of a file which got merged into its renamed path */
+        RENAMED
+    }
+}
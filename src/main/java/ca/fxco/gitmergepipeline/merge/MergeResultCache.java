@@ -0,0 +1,309 @@
+package ca.fxco.gitmergepipeline.merge;
+
+import ca.fxco.gitmergepipeline.utils.BlobContent;
+import ca.fxco.gitmergepipeline.utils.BuildInfo;
+import org.eclipse.jgit.annotations.Nullable;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Cache of merge results, stored within the git directory so it's shared between runs.<br>
+ * A result is keyed by the blobs and file modes of the base, current and other versions of a file, its path, the
+ * fingerprint of the pipeline which merged it, and the fingerprint of the build, so upgrades don't reuse results of
+ * operations which may have changed. Merging the same versions of a file with the same pipeline again reuses the merged
+ * blob, without running the pipeline. Within a single run, merges of the same key are only done once.<br>
+ * Only successful and conflicting results are stored, errors are always retried.
+ *
+ * @author FX
+ */
+public class MergeResultCache {
+    private static final Logger logger = LoggerFactory.getLogger(MergeResultCache.class);
+
+    private static final String DELETED = "deleted";
+    private static final String KEEP = "keep";
+    private static final String NO_MODE = "-";
+
+    private final Repository repository;
+    private final Path directory;
+    private final long maxBytes;
+    private final Duration maxAge;
+    private final Map<ObjectId, CompletableFuture<Entry>> runEntries = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates a new merge result cache.
+     *
+     * @param repository The repository the merged blobs are stored in
+     * @param maxBytes   The number of bytes of merge results to keep on disk
+     * @param maxAge     How long merge results are kept for since they were last used
+     */
+    public MergeResultCache(Repository repository, long maxBytes, Duration maxAge) {
+        this.repository = repository;
+        this.directory = repository.getDirectory().toPath().resolve("gitmergepipeline").resolve("results");
+        this.maxBytes = maxBytes;
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Creates the key of a merge.
+     *
+     * @param fingerprint The fingerprint of the pipeline merging the file, and of the settings it merges with
+     * @param filePath    The path of the file being merged
+     * @param base        The base version
+     * @param current     The current version
+     * @param other       The other version
+     * @return The key
+     */
+    public static ObjectId key(String fingerprint, String filePath, Version base, Version current, Version other) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+        for (Version version : new Version[]{base, current, other}) {
+            AnyObjectId id = version.blobId() != null ? version.blobId() : ObjectId.zeroId();
+            digest.update(id.name().getBytes(StandardCharsets.US_ASCII));
+            digest.update((byte) ' ');
+            String mode = version.fileMode() != null ? Integer.toOctalString(version.fileMode().getBits()) : NO_MODE;
+            digest.update(mode.getBytes(StandardCharsets.US_ASCII));
+            digest.update((byte) ' ');
+        }
+        digest.update(filePath.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(fingerprint.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(BuildInfo.getFingerprint().getBytes(StandardCharsets.US_ASCII));
+        return ObjectId.fromRaw(digest.digest());
+    }
+
+    /**
+     * Gets the cached result of a merge, merging and caching it if there's no usable result yet.<br>
+     * If the same key is being merged by another thread, waits for its result instead.
+     *
+     * @param key   The key of the merge
+     * @param merge Merges the file if there's no cached result
+     * @return The result of the merge
+     * @throws IOException If an I/O error occurs while merging
+     */
+    public Entry get(ObjectId key, Merge merge) throws IOException {
+        CompletableFuture<Entry> future = new CompletableFuture<>();
+        CompletableFuture<Entry> existing = runEntries.putIfAbsent(key, future);
+        if (existing != null) {
+            hits.incrementAndGet();
+            try {
+                return existing.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for a merge", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException ioException) {
+                    throw ioException;
+                }
+                throw new IOException(e.getCause());
+            }
+        }
+
+        try {
+            Entry entry = read(key);
+            if (entry != null) {
+                hits.incrementAndGet();
+            } else {
+                misses.incrementAndGet();
+                entry = merge.merge();
+                if (entry.result().getStatus() != MergeResult.Status.ERROR) {
+                    write(key, entry);
+                }
+            }
+            future.complete(entry);
+            return entry;
+        } catch (IOException | RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Removes cached results which haven't been used within the maximum age, then removes the least recently used
+     * results until the cache fits within its size.
+     */
+    public void evict() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        List<CachedFile> files = new ArrayList<>();
+        Instant expiry = Instant.now().minus(maxAge);
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                if (!attributes.isRegularFile()) {
+                    continue;
+                }
+                if (attributes.lastModifiedTime().toInstant().isBefore(expiry)) {
+                    Files.deleteIfExists(path);
+                } else {
+                    files.add(new CachedFile(path, attributes.size(), attributes.lastModifiedTime()));
+                }
+            }
+
+            long usedBytes = files.stream().mapToLong(CachedFile::size).sum();
+            files.sort(Comparator.comparing(CachedFile::lastUsed));
+            for (int i = 0; i < files.size() && usedBytes > maxBytes; i++) {
+                Files.deleteIfExists(files.get(i).path());
+                usedBytes -= files.get(i).size();
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to evict merge results from: {}", directory, e);
+        }
+    }
+
+    /**
+     * Gets the number of merges which were reused, either from disk or from earlier in the run.
+     *
+     * @return The number of hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of merges which had to be done.
+     *
+     * @return The number of misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private Path pathOf(ObjectId key) {
+        String name = key.name();
+        return directory.resolve(name.substring(0, 2)).resolve(name.substring(2));
+    }
+
+    private @Nullable Entry read(ObjectId key) throws IOException {
+        Path path = pathOf(key);
+        String line;
+        try {
+            line = Files.readString(path, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+
+        Entry entry;
+        try {
+            String[] parts = line.split(" ", 4);
+            MergeResult.Status status = MergeResult.Status.valueOf(parts[0]);
+            boolean deleted = parts[1].equals(DELETED);
+            ObjectId blobId = deleted || parts[1].equals(KEEP) ? null : ObjectId.fromString(parts[1]);
+            FileMode fileMode = parts[2].equals(NO_MODE) ? null : FileMode.fromBits(Integer.parseInt(parts[2], 8));
+            String message = parts.length > 3 ? parts[3] : "";
+            MergeResult result = status == MergeResult.Status.SUCCESS
+                    ? MergeResult.success(message, null)
+                    : MergeResult.conflict(message);
+            entry = new Entry(result, blobId, fileMode, deleted);
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            logger.warn("Ignoring invalid merge result: {}", path);
+            return null;
+        }
+
+        // The merged blob may have been garbage collected since
+        if (entry.blobId() != null && !repository.getObjectDatabase().has(entry.blobId())) {
+            return null;
+        }
+        Files.setLastModifiedTime(path, FileTime.from(Instant.now()));
+        return entry;
+    }
+
+    private void write(ObjectId key, Entry entry) throws IOException {
+        String blob = entry.deleted() ? DELETED : entry.blobId() != null ? entry.blobId().name() : KEEP;
+        String mode = entry.fileMode() != null ? Integer.toOctalString(entry.fileMode().getBits()) : NO_MODE;
+        String message = entry.result().getMessage() != null
+                ? entry.result().getMessage().replace('\n', ' ')
+                : "";
+        String line = entry.result().getStatus() + " " + blob + " " + mode + " " + message;
+
+        // Written to a temporary file first, so other runs never read a partially written result
+        Path path = pathOf(key);
+        Files.createDirectories(path.getParent());
+        Path temp = Files.createTempFile(path.getParent(), "result", ".tmp");
+        try {
+            Files.writeString(temp, line, StandardCharsets.UTF_8);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Merges a file which has no cached result.
+     */
+    @FunctionalInterface
+    public interface Merge {
+
+        /**
+         * Merges the file.
+         *
+         * @return The result of the merge
+         * @throws IOException If an I/O error occurs while merging
+         */
+        Entry merge() throws IOException;
+    }
+
+    /**
+     * The result of merging a file.
+     *
+     * @param result   The result of the pipeline
+     * @param blobId   The blob containing the merged content, or null if the current version is kept
+     * @param fileMode The file mode of the merged file, if known
+     * @param deleted  Whether the file was deleted by the merge
+     */
+    public record Entry(MergeResult result, @Nullable ObjectId blobId, @Nullable FileMode fileMode,
+                        boolean deleted) {}
+
+    /**
+     * A version of a file being merged, as part of the key of a merge.
+     *
+     * @param blobId   The blob of the version, or null if the file doesn't exist in it
+     * @param fileMode The file mode of the version, or null if the file doesn't exist in it
+     */
+    public record Version(@Nullable AnyObjectId blobId, @Nullable FileMode fileMode) {
+
+        /**
+         * Gets the version of a file stored as a blob.
+         *
+         * @param content The content of the version, or null if the file doesn't exist in it
+         * @return The version
+         * @throws IOException If an I/O error occurs while looking up the blob
+         */
+        public static Version of(@Nullable BlobContent content) throws IOException {
+            return content != null ? new Version(content.getBlobId(), content.getFileMode()) : new Version(null, null);
+        }
+    }
+
+    private record CachedFile(Path path, long size, FileTime lastUsed) {}
+}
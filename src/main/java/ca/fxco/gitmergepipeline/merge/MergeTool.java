@@ -2,6 +2,7 @@ package ca.fxco.gitmergepipeline.merge;
 
 import ca.fxco.gitmergepipeline.config.PipelineConfiguration;
 import ca.fxco.gitmergepipeline.pipeline.Pipeline;
+import ca.fxco.gitmergepipeline.utils.Tracer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,7 +43,11 @@ public class MergeTool extends Merger {
         MergeContext context = MergeContext.forMergeTool(localPath, remotePath, mergedPath);
         
         // Find a pipeline that applies to this file
-        Pipeline pipeline = getConfiguration().findPipeline(context);
+        Pipeline pipeline;
+        Tracer.Span findSpan = Tracer.span("pipeline", "findPipeline", "file", context.getFilePath());
+        try (findSpan) {
+            pipeline = getConfiguration().findPipeline(context);
+        }
         if (pipeline == null) {
             logger.error("No pipeline found for merge tool");
             return false;
@@ -50,7 +55,11 @@ public class MergeTool extends Merger {
         
         // Execute the pipeline
         logger.info("Executing pipeline: {}", pipeline.getDescription());
-        MergeResult result = pipeline.execute(context);
+        MergeResult result;
+        Tracer.Span pipelineSpan = Tracer.span("pipeline", pipeline::getDescription);
+        try (pipelineSpan) {
+            result = pipeline.execute(context);
+        }
         
         if (result.isSuccess()) {
             logger.info("Merge successful: {}", result.getMessage());
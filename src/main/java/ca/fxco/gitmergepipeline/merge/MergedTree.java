@@ -0,0 +1,130 @@
+package ca.fxco.gitmergepipeline.merge;
+
+import org.eclipse.jgit.annotations.Nullable;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.diff.Sequence;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.merge.MergeFormatter;
+import org.eclipse.jgit.merge.MergeStrategy;
+import org.eclipse.jgit.merge.Merger;
+import org.eclipse.jgit.merge.ResolveMerger;
+import org.eclipse.jgit.merge.ThreeWayMerger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The result of merging three trees together a single time.<br>
+ * The merged version of every path can be looked up from it, which allows batched merges to only
+ * merge the trees once per branch, instead of once per file.
+ *
+ * @author FX
+ */
+public class MergedTree {
+
+    private final DirCache dirCache;
+    private final Map<String, org.eclipse.jgit.merge.MergeResult<? extends Sequence>> conflicts;
+    private final boolean failed;
+
+    private MergedTree(DirCache dirCache,
+                       Map<String, org.eclipse.jgit.merge.MergeResult<? extends Sequence>> conflicts,
+                       boolean failed) {
+        this.dirCache = dirCache;
+        this.conflicts = conflicts;
+        this.failed = failed;
+    }
+
+    /**
+     * Merges the given trees using the given merge strategy.
+     *
+     * @param repo     The repository containing the trees
+     * @param strategy The merge strategy to use
+     * @param base     The tree of the base version
+     * @param current  The tree of the current version
+     * @param other    The tree of the other version
+     * @return The merged tree
+     * @throws IOException If an I/O error occurs while merging the trees
+     */
+    public static MergedTree merge(Repository repo, MergeStrategy strategy,
+                                   AnyObjectId base, AnyObjectId current, AnyObjectId other) throws IOException {
+        Merger merger = strategy.newMerger(repo, true);
+        if (merger instanceof ThreeWayMerger threeWayMerger) {
+            threeWayMerger.setBase(base);
+        }
+
+        if (merger instanceof ResolveMerger resolveMerger) {
+            // Keep the merged index, so that paths which merged cleanly can still be used when others conflict
+            DirCache dirCache = DirCache.newInCore();
+            resolveMerger.setDirCache(dirCache);
+            resolveMerger.setCommitNames(new String[]{"base", "current", "other"});
+            resolveMerger.merge(current, other);
+
+            Map<String, org.eclipse.jgit.merge.MergeResult<? extends Sequence>> conflicts = new HashMap<>();
+            for (String path : resolveMerger.getUnmergedPaths()) {
+                conflicts.put(path, resolveMerger.getMergeResults().get(path));
+            }
+            return new MergedTree(dirCache, conflicts, resolveMerger.failed());
+        }
+
+        // Other strategies only give us the resulting tree
+        boolean success = merger.merge(current, other);
+        ObjectId resultTree = merger.getResultTreeId();
+        if (!success || resultTree == null) {
+            return new MergedTree(DirCache.newInCore(), Map.of(), true);
+        }
+        try (ObjectReader reader = repo.newObjectReader()) {
+            return new MergedTree(DirCache.read(reader, resultTree), Map.of(), false);
+        }
+    }
+
+    /**
+     * Checks whether the given path could not be merged.
+     *
+     * @param path The path relative to the repository root
+     * @return {@code true} if the path has conflicts, otherwise {@code false}
+     */
+    public boolean isConflicting(String path) {
+        return failed || conflicts.containsKey(path);
+    }
+
+    /**
+     * Gets the cleanly merged entry for the given path.
+     *
+     * @param path The path relative to the repository root
+     * @return The merged entry, or null if the path does not exist in the merged tree or has conflicts
+     */
+    public @Nullable DirCacheEntry getEntry(String path) {
+        if (isConflicting(path)) {
+            return null;
+        }
+        DirCacheEntry entry = dirCache.getEntry(path);
+        return entry != null && entry.getStage() == DirCacheEntry.STAGE_0 ? entry : null;
+    }
+
+    /**
+     * Gets the content of a conflicting path, including the conflict markers.
+     *
+     * @param path The path relative to the repository root
+     * @return The conflicting content, or null if the path is not conflicting or has no text content
+     * @throws IOException If an I/O error occurs while formatting the content
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public @Nullable byte[] getConflictContent(String path) throws IOException {
+        org.eclipse.jgit.merge.MergeResult<? extends Sequence> result = conflicts.get(path);
+        if (result == null || result.getSequences().isEmpty() || !(result.getSequences().getFirst() instanceof RawText)) {
+            return null;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new MergeFormatter().formatMerge(out, (org.eclipse.jgit.merge.MergeResult) result,
+                "base", "current", "other", StandardCharsets.UTF_8);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,163 @@
+package ca.fxco.gitmergepipeline.merge;
+
+import ca.fxco.gitmergepipeline.rule.Rule;
+import ca.fxco.gitmergepipeline.utils.BlobContent;
+import org.eclipse.jgit.lib.ObjectId;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of rule results for the versions of files, for a single merge run.<br>
+ * Rules which read the content of a version are evaluated by every pipeline, step and branch which uses them, and
+ * again for every branch of an octopus merge. A result is keyed by the rule instance and the identity of the version:
+ * its blob id, or its path, size and modification time for a file on disk. So the content of a version is only read
+ * once per rule, no matter how many times the rule is evaluated.<br>
+ * Evaluations which fail to read a version aren't kept, so the next evaluation tries to read it again.
+ *
+ * @author FX
+ */
+public class RuleResultCache {
+
+    private final Map<Key, Object> results = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Gets whether a rule matches a version of a file stored as a blob, evaluating it if it hasn't been yet.
+     *
+     * @param rule    The rule being evaluated
+     * @param content The content of the version
+     * @param matcher Checks whether the rule matches the content
+     * @return {@code true} if the rule matches the version, otherwise {@code false}
+     * @throws IOException If the matcher fails to read the version
+     */
+    public boolean matches(Rule rule, BlobContent content, Evaluator<BlobContent, Boolean> matcher)
+            throws IOException {
+        return evaluate(rule, content, matcher);
+    }
+
+    /**
+     * Gets whether a rule matches a version of a file on disk, evaluating it if it hasn't been yet.<br>
+     * Files changed since they were last evaluated are evaluated again.
+     *
+     * @param rule    The rule being evaluated
+     * @param file    The file of the version
+     * @param matcher Checks whether the rule matches the file
+     * @return {@code true} if the rule matches the version, otherwise {@code false}
+     * @throws IOException If the matcher fails to read the version
+     */
+    public boolean matches(Rule rule, Path file, Evaluator<Path, Boolean> matcher) throws IOException {
+        return evaluate(rule, file, matcher);
+    }
+
+    /**
+     * Gets the result of a rule for a version of a file stored as a blob, evaluating it if it hasn't been yet.<br>
+     * Each rule has to always give the same type of result.
+     *
+     * @param rule      The rule being evaluated
+     * @param content   The content of the version
+     * @param evaluator Evaluates the rule for the content, never returning null
+     * @return The result of the rule for the version
+     * @throws IOException If the evaluator fails to read the version
+     */
+    public <R> R evaluate(Rule rule, BlobContent content, Evaluator<BlobContent, R> evaluator) throws IOException {
+        ObjectId blobId;
+        try {
+            blobId = content.getBlobId();
+        } catch (IOException e) {
+            blobId = null;
+        }
+        if (blobId == null) {
+            // Missing versions aren't worth caching, the evaluator finds out without reading anything
+            return evaluator.evaluate(content);
+        }
+        return evaluate(new Key(rule, blobId), content, evaluator);
+    }
+
+    /**
+     * Gets the result of a rule for a version of a file on disk, evaluating it if it hasn't been yet.<br>
+     * Each rule has to always give the same type of result. Files changed since they were last evaluated are
+     * evaluated again.
+     *
+     * @param rule      The rule being evaluated
+     * @param file      The file of the version
+     * @param evaluator Evaluates the rule for the file, never returning null
+     * @return The result of the rule for the version
+     * @throws IOException If the evaluator fails to read the version
+     */
+    public <R> R evaluate(Rule rule, Path file, Evaluator<Path, R> evaluator) throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return evaluator.evaluate(file);
+        }
+        FileVersion version = new FileVersion(file.toAbsolutePath(), attributes.size(), attributes.lastModifiedTime());
+        return evaluate(new Key(rule, version), file, evaluator);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T, R> R evaluate(Key key, T version, Evaluator<T, R> evaluator) throws IOException {
+        // Not computeIfAbsent, as rules may evaluate other rules while they're being evaluated
+        Object result = results.get(key);
+        if (result != null) {
+            hits.incrementAndGet();
+            return (R) result;
+        }
+        misses.incrementAndGet();
+        // Only reached if the evaluation succeeded, a failure to read the version is thrown before it's kept
+        R evaluated = evaluator.evaluate(version);
+        results.putIfAbsent(key, evaluated);
+        return evaluated;
+    }
+
+    /**
+     * Gets the number of rule evaluations which were reused.
+     *
+     * @return The number of hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of rule evaluations which had to be done.
+     *
+     * @return The number of misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Evaluates a rule for a version of a file.
+     *
+     * @param <T> The type of the version
+     * @param <R> The type of the result
+     */
+    @FunctionalInterface
+    public interface Evaluator<T, R> {
+
+        /**
+         * Evaluates the rule for a version.
+         *
+         * @param version The version of the file
+         * @return The result of the rule, never null
+         * @throws IOException If the version can't be read
+         */
+        R evaluate(T version) throws IOException;
+    }
+
+    // Rules without equality are compared by identity, so every rule instance has its own results
+    private record Key(Rule rule, Object version) {}
+
+    private record FileVersion(Path path, long size, FileTime modified) {}
+}
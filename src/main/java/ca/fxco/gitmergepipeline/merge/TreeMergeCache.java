@@ -0,0 +1,71 @@
+package ca.fxco.gitmergepipeline.merge;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.merge.MergeStrategy;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache of tree merges for a single batched merge run.<br>
+ * Every file merged within the same branch step shares the same trees, so the trees only need to be merged once.
+ * Once a step is done its merged trees are evicted, so only the trees of the steps still running are kept.
+ *
+ * @author FX
+ */
+public class TreeMergeCache {
+
+    private final Repository repository;
+    private final Map<Key, MergedTree> mergedTrees = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new tree merge cache.
+     *
+     * @param repository The repository the trees are part of
+     */
+    public TreeMergeCache(Repository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Gets the merged tree for the given trees, merging them if they haven't been merged yet.
+     *
+     * @param strategy The merge strategy to use
+     * @param base     The tree of the base version
+     * @param current  The tree of the current version
+     * @param other    The tree of the other version
+     * @return The merged tree
+     * @throws IOException If an I/O error occurs while merging the trees
+     */
+    public MergedTree getMergedTree(MergeStrategy strategy, AnyObjectId base, AnyObjectId current,
+                                    AnyObjectId other) throws IOException {
+        Key key = new Key(strategy.getName(), base.copy(), current.copy(), other.copy());
+        try {
+            return mergedTrees.computeIfAbsent(key, k -> {
+                try {
+                    return MergedTree.merge(repository, strategy, base, current, other);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Evicts the merged trees of a step, once none of its files need them anymore.
+     *
+     * @param current The tree of the current version of the step
+     * @param other   The tree of the other version of the step
+     */
+    public void evict(AnyObjectId current, AnyObjectId other) {
+        mergedTrees.keySet().removeIf(key -> key.current().equals(current) && key.other().equals(other));
+    }
+
+    private record Key(String strategy, ObjectId base, ObjectId current, ObjectId other) {}
+}
@@ -0,0 +1,182 @@
+package ca.fxco.gitmergepipeline.merge;
+
+import ca.fxco.gitmergepipeline.utils.BlobContent;
+import org.eclipse.jgit.annotations.Nullable;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * A merge whose result is certain from the blob ids and file modes of the versions alone.<br>
+ * Trivial merges are resolved before a pipeline is looked up, so the contents are never read and no pipeline runs,
+ * the same way git only runs merge drivers when both sides changed the content.
+ *
+ * @param kind     The kind of trivial merge
+ * @param blobId   The blob containing the merged content, or null if the current version is kept
+ * @param fileMode The file mode of the merged file, if it changes
+ * @param deleted  Whether the file is deleted by the merge
+ * @author FX
+ */
+public record TrivialMerge(Kind kind, @Nullable ObjectId blobId, @Nullable FileMode fileMode, boolean deleted) {
+
+    /**
+     * Classifies the merge of a file.
+     *
+     * @param context The merge context, whose versions must have blob contents
+     * @return The trivial merge, or null if the file needs to be merged by a pipeline
+     * @throws IOException If an I/O error occurs while looking up the blobs
+     */
+    public static @Nullable TrivialMerge classify(GitMergeContext context) throws IOException {
+        BlobContent base = context.getBaseContent();
+        BlobContent current = context.getCurrentContent();
+        BlobContent other = context.getOtherContent();
+        if (base == null || current == null || other == null) {
+            return null;
+        }
+        return classify(Version.of(base), Version.of(current), Version.of(other));
+    }
+
+    /**
+     * Classifies the merge of a file.
+     *
+     * @param base    The base version
+     * @param current The current version
+     * @param other   The other version
+     * @return The trivial merge, or null if the file needs to be merged by a pipeline
+     */
+    public static @Nullable TrivialMerge classify(Version base, Version current, Version other) {
+        if (current.equals(other)) {
+            return new TrivialMerge(Kind.SAME_CHANGE, null, null, false);
+        }
+        if (other.equals(base)) {
+            return new TrivialMerge(Kind.ONLY_CURRENT_CHANGED, null, null, false);
+        }
+        if (current.equals(base)) {
+            if (other.isMissing()) {
+                return new TrivialMerge(Kind.DELETED_BY_OTHER, null, null, true);
+            }
+            return new TrivialMerge(
+                    base.isMissing() ? Kind.ADDED_BY_OTHER : Kind.ONLY_OTHER_CHANGED,
+                    other.blobId(), other.fileMode(), false
+            );
+        }
+
+        // One side may have only changed the mode, while the other side changed the content
+        if (base.isMissing() || current.isMissing() || other.isMissing()) {
+            return null;
+        }
+        ObjectId blobId = resolve(base.blobId(), current.blobId(), other.blobId());
+        Integer fileMode = resolve(
+                Version.bitsOf(base.fileMode()), Version.bitsOf(current.fileMode()), Version.bitsOf(other.fileMode())
+        );
+        if (blobId == null || fileMode == null) {
+            return null;
+        }
+        return new TrivialMerge(Kind.MODE_CHANGE, blobId, FileMode.fromBits(fileMode), false);
+    }
+
+    private static <T> @Nullable T resolve(T base, T current, T other) {
+        if (current.equals(other) || other.equals(base)) {
+            return current;
+        }
+        if (current.equals(base)) {
+            return other;
+        }
+        return null;
+    }
+
+    /**
+     * Creates the result of this trivial merge.
+     *
+     * @return The merge result
+     */
+    public MergeResult toResult() {
+        return MergeResult.success("Trivial merge: " + kind.getDescription(), null);
+    }
+
+    /**
+     * A version of a file, as far as a trivial merge is concerned.
+     *
+     * @param blobId   The blob of the version, or null if the file doesn't exist in it
+     * @param fileMode The file mode of the version, or null if the file doesn't exist in it
+     */
+    public record Version(@Nullable ObjectId blobId, @Nullable FileMode fileMode) {
+
+        /**
+         * The version of a file that doesn't exist.
+         */
+        public static final Version MISSING = new Version(null, null);
+
+        /**
+         * Gets the version of a blob content, without reading the content.
+         *
+         * @param content The blob content
+         * @return The version
+         * @throws IOException If an I/O error occurs while looking up the blob
+         */
+        public static Version of(BlobContent content) throws IOException {
+            ObjectId blobId = content.getBlobId();
+            return blobId != null ? new Version(blobId, content.getFileMode()) : MISSING;
+        }
+
+        /**
+         * Checks whether the file doesn't exist in this version.
+         *
+         * @return {@code true} if the file is missing, otherwise {@code false}
+         */
+        public boolean isMissing() {
+            return blobId == null;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            // File modes are compared by their bits, as they aren't always the same instance
+            return o instanceof Version version && Objects.equals(blobId, version.blobId) &&
+                    bitsOf(fileMode) == bitsOf(version.fileMode);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(blobId, bitsOf(fileMode));
+        }
+
+        private static int bitsOf(@Nullable FileMode fileMode) {
+            return fileMode != null ? fileMode.getBits() : 0;
+        }
+    }
+
+    /**
+     * The kinds of trivial merges.
+     */
+    public enum Kind {
+        /** Both sides made the same change, so the current version is kept */
+        SAME_CHANGE("both sides made the same change"),
+        /** Only the current side changed the file, so the current version is kept */
+        ONLY_CURRENT_CHANGED("only the current side changed"),
+        /** Only the other side changed the file, so the other version is taken */
+        ONLY_OTHER_CHANGED("only the other side changed"),
+        /** Only the other side added the file, so the other version is taken */
+        ADDED_BY_OTHER("only the other side added"),
+        /** Only the other side deleted the file, so the file is deleted */
+        DELETED_BY_OTHER("only the other side deleted"),
+        /** One side only changed the file mode, so the content and mode are taken from different sides */
+        MODE_CHANGE("only the file mode changed on one side");
+
+        private final String description;
+
+        Kind(String description) {
+            this.description = description;
+        }
+
+        /**
+         * Gets a description of this kind of trivial merge.
+         *
+         * @return A human-readable description
+         */
+        public String getDescription() {
+            return description;
+        }
+    }
+}
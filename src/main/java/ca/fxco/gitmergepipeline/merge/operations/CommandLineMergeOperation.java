@@ -4,6 +4,7 @@ import ca.fxco.gitmergepipeline.merge.GitMergeContext;
 import ca.fxco.gitmergepipeline.merge.MergeContext;
 import ca.fxco.gitmergepipeline.merge.MergeOperation;
 import ca.fxco.gitmergepipeline.merge.MergeResult;
+import ca.fxco.gitmergepipeline.utils.BlobContent;
 import ca.fxco.gitmergepipeline.utils.GitUtils;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.lib.Repository;
@@ -13,6 +14,7 @@ import org.slf4j.LoggerFactory;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
@@ -156,21 +158,28 @@ public class CommandLineMergeOperation implements MergeOperation {
 
     @Override
     public MergeResult executeBatched(Git git, GitMergeContext context, List<String> parameters) throws IOException {
-        MergeContext mergeContext = new MergeContext(
-                context.getBasePath().getPath(),
-                context.getCurrentPath().getPath(),
-                context.getOtherPath().getPath(),
-                context.getFilePath()
-        );
-        mergeContext.getAttributes().putAll(context.getAttributes());
-
+        // The command needs real files, so the base and other versions are written to temporary files,
+        // and the current version is written to the file being merged, which is where the output goes
         Repository repo = git.getRepository();
-        GitUtils.checkoutFile(repo, context.getBasePath());
-        GitUtils.checkoutFile(repo, context.getCurrentPath()); // TODO: This file should exist, reuse it
-        GitUtils.checkoutFile(repo, context.getOtherPath());
+        Path currentPath = context.getCurrentPath().getPath();
+        Path basePath = GitUtils.checkoutFile(repo, context.getBasePath(), context.getBlobCache());
+        Path otherPath = GitUtils.checkoutFile(repo, context.getOtherPath(), context.getBlobCache());
+        try {
+            BlobContent currentContent = context.getCurrentPath().getContent();
+            if (currentContent != null) {
+                if (currentPath.getParent() != null) {
+                    Files.createDirectories(currentPath.getParent());
+                }
+                currentContent.copyTo(currentPath);
+            }
 
-        // Can't run command-line merge in batched mode yet!
-        return execute(mergeContext, parameters);
+            MergeContext mergeContext = new MergeContext(basePath, currentPath, otherPath, context.getFilePath());
+            mergeContext.getAttributes().putAll(context.getAttributes());
+            return execute(mergeContext, parameters);
+        } finally {
+            Files.deleteIfExists(basePath);
+            Files.deleteIfExists(otherPath);
+        }
     }
 
     /**
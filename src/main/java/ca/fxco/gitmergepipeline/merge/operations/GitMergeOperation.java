@@ -1,28 +1,33 @@
 package ca.fxco.gitmergepipeline.merge.operations;
 
 import ca.fxco.gitmergepipeline.merge.*;
+import ca.fxco.gitmergepipeline.utils.BlobCache;
+import ca.fxco.gitmergepipeline.utils.BlobContent;
 import ca.fxco.gitmergepipeline.utils.GitPath;
+import ca.fxco.gitmergepipeline.utils.GitUtils;
+import org.eclipse.jgit.annotations.Nullable;
 import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.api.MergeCommand;
-import org.eclipse.jgit.api.errors.GitAPIException;
-import org.eclipse.jgit.lib.ObjectId;
-import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.merge.MergeAlgorithm;
+import org.eclipse.jgit.merge.MergeFormatter;
 import org.eclipse.jgit.merge.MergeStrategy;
-import org.eclipse.jgit.merge.Merger;
-import org.eclipse.jgit.merge.ThreeWayMerger;
-import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.treewalk.TreeWalk;
-import org.eclipse.jgit.treewalk.filter.PathFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 /**
  * A merge operation that uses JGit to perform a merge.
@@ -34,6 +39,7 @@ public class GitMergeOperation implements MergeOperation {
     private static final Logger logger = LoggerFactory.getLogger(GitMergeOperation.class);
 
     private static final String DEFAULT_MERGE_STRATEGY = "recursive";
+    private static final List<String> CONFLICT_NAMES = List.of("base", "current", "other");
 
     @Override
     public String getName() {
@@ -55,81 +61,118 @@ public class GitMergeOperation implements MergeOperation {
             mergeStrategy = parameters.getFirst();
         }
 
+        MergeStrategy strategy = MergeStrategy.get(mergeStrategy);
+        if (strategy == null) {
+            logger.error("Unknown merge strategy: {}", mergeStrategy);
+            return MergeResult.error("Unknown merge strategy: " + mergeStrategy, null);
+        }
+
+        // Read all versions into memory, the merge happens without a temporary repository
         Path basePath = context.getBasePath();
-        Path currentPath = context.getCurrentPath();
-        Path otherPath = context.getOtherPath();
+        byte[] base = basePath != null ? Files.readAllBytes(basePath) : new byte[0];
+        byte[] current = Files.readAllBytes(context.getCurrentPath());
+        byte[] other = Files.readAllBytes(context.getOtherPath());
 
-        // Create a temporary directory for the Git repository
-        Path tempDir = Files.createTempDirectory("git-merge-");
-        tempDir.toFile().deleteOnExit();
-        try {
-            // Initialize a Git repository
-            org.eclipse.jgit.api.MergeResult mergeResult;
-            try (Git git = Git.init().setDirectory(tempDir.toFile()).call()) {
-
-                // Create the initial commit with the base content
-                Path baseFile = tempDir.resolve("base");
-                if (basePath != null) {
-                    Files.copy(basePath, baseFile, StandardCopyOption.REPLACE_EXISTING);
-                } else {
-                    Files.createFile(baseFile);
-                }
+        Path outputPath = context.getCurrentPath();
 
-                git.add().addFilepattern("base").call();
-                RevCommit baseCommit = git.commit().setMessage("Base").call();
+        // If this is a merge tool operation, use the merged path
+        Object mergedPathObj = context.getAttribute("mergedPath");
+        if (mergedPathObj instanceof Path path) {
+            outputPath = path;
+        }
 
-                // Create a branch for the current content
-                git.checkout().setCreateBranch(true).setName("current").call();
-                Files.copy(currentPath, baseFile, StandardCopyOption.REPLACE_EXISTING);
-                git.add().addFilepattern("base").call();
-                git.commit().setMessage("Current").call();
+        return mergeContents(strategy, base, current, other, outputPath);
+    }
 
-                // Create a branch for the other content
-                git.checkout().setStartPoint(baseCommit).setCreateBranch(true).setName("other").call();
-                Files.copy(otherPath, baseFile, StandardCopyOption.REPLACE_EXISTING);
-                git.add().addFilepattern("base").call();
-                RevCommit otherCommit = git.commit().setMessage("Other").call();
+    /**
+     * Merges the contents of the versions in memory, writing the result to the output path.
+     */
+    private static MergeResult mergeContents(MergeStrategy strategy, byte[] base, byte[] current, byte[] other,
+                                             Path outputPath) throws IOException {
+        // One-sided strategies take a single version as a whole
+        if (strategy == MergeStrategy.OURS || strategy == MergeStrategy.THEIRS) {
+            writeOutput(outputPath, strategy == MergeStrategy.OURS ? current : other);
+            logger.debug("Git merge successful");
+            return MergeResult.success("Git merge successful", outputPath);
+        }
 
-                // Merge the current and other branches
-                git.checkout().setName("current").call();
+        if (RawText.isBinary(base) || RawText.isBinary(current) || RawText.isBinary(other)) {
+            return mergeBinary(base, current, other, outputPath);
+        }
 
-                MergeStrategy strategy = MergeStrategy.get(mergeStrategy);
-                if (strategy == null) {
-                    logger.error("Unknown merge strategy: {}", mergeStrategy);
-                    return MergeResult.error("Unknown merge strategy: " + mergeStrategy, null);
-                }
+        org.eclipse.jgit.merge.MergeResult<RawText> mergeResult = new MergeAlgorithm().merge(
+                RawTextComparator.DEFAULT, new RawText(base), new RawText(current), new RawText(other)
+        );
 
-                mergeResult = git.merge()
-                        .include(otherCommit)
-                        .setStrategy(strategy)
-                        .setCommit(false)
-                        .setFastForward(MergeCommand.FastForwardMode.NO_FF)
-                        .call();
-            }
-
-            // Get the merged content
-            Path mergedFile = tempDir.resolve("base");
-            Path outputPath = context.getCurrentPath();
+        // Write the result regardless of whether the merge was successful or resulted in conflicts
+        if (outputPath.getParent() != null) {
+            Files.createDirectories(outputPath.getParent());
+        }
+        try (OutputStream out = Files.newOutputStream(outputPath)) {
+            new MergeFormatter().formatMerge(out, mergeResult, CONFLICT_NAMES, StandardCharsets.UTF_8);
+        }
 
-            // If this is a merge tool operation, use the merged path
-            Object mergedPathObj = context.getAttribute("mergedPath");
-            if (mergedPathObj instanceof Path path) {
-                outputPath = path;
-            }
+        if (!mergeResult.containsConflicts()) {
+            logger.debug("Git merge successful");
+            return MergeResult.success("Git merge successful", outputPath);
+        } else {
+            logger.debug("Git merge resulted in conflicts: {}", outputPath);
+            return MergeResult.conflict("Git merge resulted in conflicts: " + outputPath);
+        }
+    }
 
-            // Copy the file regardless of whether the merge was successful or resulted in conflicts
-            Files.copy(mergedFile, outputPath, StandardCopyOption.REPLACE_EXISTING);
+    /**
+     * Binary files can't be merged line by line, so only one-sided changes can be merged.
+     */
+    private static MergeResult mergeBinary(byte[] base, byte[] current, byte[] other, Path outputPath)
+            throws IOException {
+        if (Arrays.equals(base, current)) {
+            writeOutput(outputPath, other);
+        } else if (Arrays.equals(base, other) || Arrays.equals(current, other)) {
+            writeOutput(outputPath, current);
+        } else {
+            // Keep the current version, like git does for binary conflicts
+            writeOutput(outputPath, current);
+            logger.debug("Git merge resulted in binary conflicts: {}", outputPath);
+            return MergeResult.conflict("Git merge resulted in binary conflicts: " + outputPath);
+        }
+        logger.debug("Git merge successful");
+        return MergeResult.success("Git merge successful", outputPath);
+    }
 
-            if (mergeResult.getMergeStatus().isSuccessful()) {
-                logger.debug("Git merge successful");
-                return MergeResult.success("Git merge successful", outputPath);
-            } else {
-                logger.debug("Git merge resulted in conflicts: {}", mergeResult.getMergeStatus());
-                return MergeResult.conflict("Git merge resulted in conflicts: " + mergeResult.getMergeStatus());
+    /**
+     * Merges the contents of blobs, writing the result to the output path.<br>
+     * If only one side changed the file, that version is copied as it is, so large blobs don't get loaded onto the
+     * heap.
+     */
+    private static MergeResult mergeBlobs(MergeStrategy strategy, BlobContent base, BlobContent current,
+                                          BlobContent other, Path outputPath) throws IOException {
+        BlobContent resolved = null;
+        if (strategy == MergeStrategy.OURS) {
+            resolved = current;
+        } else if (strategy == MergeStrategy.THEIRS) {
+            resolved = other;
+        } else if (Objects.equals(base.getBlobId(), current.getBlobId())) {
+            resolved = other;
+        } else if (Objects.equals(base.getBlobId(), other.getBlobId()) ||
+                Objects.equals(current.getBlobId(), other.getBlobId())) {
+            resolved = current;
+        }
+        if (resolved != null) {
+            if (outputPath.getParent() != null) {
+                Files.createDirectories(outputPath.getParent());
             }
-        } catch (GitAPIException e) {
-            logger.error("Error during Git merge", e);
-            return MergeResult.error("Error during Git merge: " + e.getMessage(), e);
+            resolved.copyTo(outputPath);
+            logger.debug("Git merge successful");
+            return MergeResult.success("Git merge successful", outputPath);
+        }
+        // Both sides changed the file, so the versions have to be compared line by line
+        return mergeContents(strategy, readAll(base), readAll(current), readAll(other), outputPath);
+    }
+
+    private static byte[] readAll(BlobContent content) throws IOException {
+        try (InputStream in = content.openStream()) {
+            return in.readAllBytes();
         }
     }
 
@@ -145,7 +188,6 @@ public class GitMergeOperation implements MergeOperation {
         GitPath base = context.getBasePath();
         GitPath current = context.getCurrentPath();
         GitPath other = context.getOtherPath();
-        String filePath = context.getFilePath();
 
         MergeStrategy strategy = MergeStrategy.get(mergeStrategy);
         if (strategy == null) {
@@ -153,50 +195,23 @@ public class GitMergeOperation implements MergeOperation {
             return MergeResult.error("Unknown merge strategy: " + mergeStrategy, null);
         }
 
-        try (ObjectReader reader = git.getRepository().newObjectReader()) {
-            Merger rawMerger = strategy.newMerger(git.getRepository(), true);
-
-            ObjectId mergedTree;
-
-            if (rawMerger instanceof ThreeWayMerger merger) {
-                merger.setBase(base.getCommit());
-                boolean success = merger.merge(current.getCommit(), other.getCommit());
-                mergedTree = merger.getResultTreeId();
-
-                if (mergedTree == null) {
-                    return MergeResult.error("Three-way merge failed with null result tree", null);
-                }
-
-                return extractMergedFileFromTree(
-                        git, reader, mergedTree, filePath, current, context.getAttributes(), success
-                );
-            } else {
-                logger.warn("Strategy did not return a ThreeWayMerger, falling back to two sequential TwoWayMergers");
-
-                // First merge base + current
-                Merger firstMerger = strategy.newMerger(git.getRepository(), true);
-                if (!firstMerger.merge(base.getCommit(), current.getCommit())) {
-                    return MergeResult.error("Two-way merge (base -> current) failed", null);
-                }
-                ObjectId intermediateTree = firstMerger.getResultTreeId();
-                if (intermediateTree == null) {
-                    return MergeResult.error("Intermediate merge produced null tree", null);
-                }
-
-                // Second merge intermediate + other
-                Merger secondMerger = strategy.newMerger(git.getRepository(), true);
-                boolean success = secondMerger.merge(intermediateTree, other.getCommit());
-                mergedTree = secondMerger.getResultTreeId();
-
-                if (mergedTree == null) {
-                    return MergeResult.error("Final merge (intermediate -> other) produced null tree", null);
-                }
+        // Renamed files aren't at the same path in every tree, so their contents are merged instead of the trees
+        if (context.getAttribute("renamedFrom") != null && base.getContent() != null &&
+                current.getContent() != null && other.getContent() != null) {
+            return mergeBlobs(strategy, base.getContent(), current.getContent(), other.getContent(), current.getPath());
+        }
 
-                return extractMergedFileFromTree(
-                        git, reader, mergedTree, filePath, current, context.getAttributes(), success
-                );
-            }
+        // Files in the same merge share their tree merges, so the trees only get merged once
+        TreeMergeCache treeMerges = context.getTreeMerges();
+        if (treeMerges == null) {
+            treeMerges = new TreeMergeCache(git.getRepository());
+        }
 
+        try {
+            MergedTree mergedTree = treeMerges.getMergedTree(strategy, base.getTree(), current.getTree(), other.getTree());
+            return extractMergedFileFromTree(
+                    git, mergedTree, context.getFilePath(), current, context.getAttributes(), context.getBlobCache()
+            );
         } catch (Exception e) {
             logger.error("Error during Git merge", e);
             return MergeResult.error("Error during Git merge: " + e.getMessage(), e);
@@ -205,48 +220,64 @@ public class GitMergeOperation implements MergeOperation {
 
     private MergeResult extractMergedFileFromTree(
             Git git,
-            ObjectReader reader,
-            ObjectId treeId,
+            MergedTree mergedTree,
             String filePath,
             GitPath defaultOutputPath,
             Map<String, Object> attributes,
-            boolean success
+            @Nullable BlobCache blobCache
     ) throws IOException {
-        try (TreeWalk treeWalk = new TreeWalk(git.getRepository())) {
-            treeWalk.addTree(treeId);
-            treeWalk.setRecursive(true);
-            treeWalk.setFilter(PathFilter.create(filePath));
-
-            GitPath outputPath = defaultOutputPath;
-            Object mergedPathObj = attributes.get("mergedPath");
-            if (mergedPathObj instanceof Path path) {
-                outputPath = new GitPath(outputPath.getCommit(), path);
+        GitPath outputPath = defaultOutputPath;
+        Object mergedPathObj = attributes.get("mergedPath");
+        if (mergedPathObj instanceof Path path) {
+            outputPath = new GitPath(outputPath.getCommit(), outputPath.getTree(), path);
+        }
+
+        if (mergedTree.isConflicting(filePath)) {
+            byte[] conflictContent = mergedTree.getConflictContent(filePath);
+            if (conflictContent != null) {
+                writeOutput(outputPath.getPath(), conflictContent);
+            }
+            logger.debug("Git merge resulted in conflicts");
+            return MergeResult.conflict("Git merge resulted in conflicts - " + outputPath.getPath());
+        }
+
+        // When the versions are read from the object database, the merged blob is all that's needed,
+        // the caller writes the final version to the working directory once the whole merge is done
+        boolean writeToPath = outputPath.getContent() == null;
+
+        DirCacheEntry entry = mergedTree.getEntry(filePath);
+        if (entry == null) {
+            // The file was deleted by the merge
+            if (writeToPath) {
+                Files.deleteIfExists(outputPath.getPath());
             }
+            logger.debug("Git merge successful");
+            return GitMergeResult.success("Git merge successful", outputPath, null, FileMode.MISSING);
+        }
 
-            if (!treeWalk.next()) {
-                Files.deleteIfExists(outputPath.getPath()); // TODO: I don't believe this is correct
-                if (success) {
-                    logger.debug("Git merge successful");
-                    return GitMergeResult.success("Git merge successful", outputPath);
+        if (writeToPath) {
+            // Written with a stream, so large files never have to fit on the heap
+            Path target = outputPath.getPath();
+            if (target.getParent() != null) {
+                Files.createDirectories(target.getParent());
+            }
+            try (ObjectReader reader = git.getRepository().newObjectReader()) {
+                if (blobCache != null) {
+                    blobCache.copyTo(reader, entry.getObjectId(), target);
                 } else {
-                    logger.debug("Git merge resulted in conflicts");
-                    return MergeResult.conflict("Git merge resulted in conflicts - " + outputPath);
+                    GitUtils.writeBlob(reader, entry.getObjectId(), target);
                 }
             }
+        }
 
-            ObjectId blobId = treeWalk.getObjectId(0);
-            ObjectLoader loader = reader.open(blobId);
-            byte[] mergedBytes = loader.getBytes();
-
-            Files.write(outputPath.getPath(), mergedBytes);
+        logger.debug("Git merge successful");
+        return GitMergeResult.success("Git merge successful", outputPath, entry.getObjectId(), entry.getFileMode());
+    }
 
-            if (success) {
-                logger.debug("Git merge successful");
-                return GitMergeResult.success("Git merge successful", outputPath);
-            } else {
-                logger.debug("Git merge resulted in conflicts");
-                return MergeResult.conflict("Git merge resulted in conflicts - " + outputPath);
-            }
+    private static void writeOutput(Path outputPath, byte[] content) throws IOException {
+        if (outputPath.getParent() != null) {
+            Files.createDirectories(outputPath.getParent());
         }
+        Files.write(outputPath, content);
     }
 }
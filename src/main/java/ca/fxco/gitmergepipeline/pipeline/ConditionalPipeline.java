@@ -3,7 +3,9 @@ package ca.fxco.gitmergepipeline.pipeline;
 import ca.fxco.gitmergepipeline.merge.GitMergeContext;
 import ca.fxco.gitmergepipeline.merge.MergeContext;
 import ca.fxco.gitmergepipeline.merge.MergeResult;
+import ca.fxco.gitmergepipeline.rule.FilePatternRule;
 import ca.fxco.gitmergepipeline.rule.Rule;
+import ca.fxco.gitmergepipeline.utils.Tracer;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import org.eclipse.jgit.api.Git;
@@ -11,6 +13,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -20,7 +23,7 @@ import java.util.List;
  *
  * @author FX
  */
-public class ConditionalPipeline implements Pipeline {
+public class ConditionalPipeline implements Pipeline, Serializable {
     private static final Logger logger = LoggerFactory.getLogger(ConditionalPipeline.class);
     
     private final String name;
@@ -71,13 +74,19 @@ public class ConditionalPipeline implements Pipeline {
     public Pipeline getDefaultPipeline() {
         return defaultPipeline;
     }
+
+    @Override
+    public List<FilePatternRule> getFilePatternRules() {
+        // Never matched by file name
+        return List.of();
+    }
     
     @Override
     public MergeResult execute(MergeContext context) throws IOException {
         logger.debug("Executing conditional pipeline: {}", name);
 
         for (Branch branch : branches) {
-            if (branch.getRule().applies(context)) {
+            if (branch.applies(context)) {
                 logger.debug("Branch rule applies, executing pipeline: {}", branch.getPipeline().getDescription());
                 return branch.getPipeline().execute(context);
             }
@@ -97,7 +106,7 @@ public class ConditionalPipeline implements Pipeline {
         logger.debug("Executing conditional pipeline: {}", name);
 
         for (Branch branch : branches) {
-            if (branch.getRule().applies(context)) {
+            if (branch.applies(context)) {
                 logger.debug("Branch rule applies, executing pipeline: {}", branch.getPipeline().getDescription());
                 return branch.getPipeline().executeBatched(git, context);
             }
@@ -116,11 +125,24 @@ public class ConditionalPipeline implements Pipeline {
     public String getDescription() {
         return "Conditional pipeline: " + name;
     }
+
+    @Override
+    public String getFingerprint() {
+        StringBuilder fingerprint = new StringBuilder(getDescription());
+        for (Branch branch : branches) {
+            fingerprint.append("\nif ").append(branch.getRule() != null ? branch.getRule().getDescription() : "always")
+                    .append(" {\n").append(branch.getPipeline().getFingerprint()).append("\n}");
+        }
+        if (defaultPipeline != null) {
+            fingerprint.append("\nelse {\n").append(defaultPipeline.getFingerprint()).append("\n}");
+        }
+        return fingerprint.toString();
+    }
     
     /**
      * A branch in a conditional pipeline, consisting of a rule and a pipeline.
      */
-    public static class Branch {
+    public static class Branch implements Serializable {
         private final Rule rule;
         private final Pipeline pipeline;
         
@@ -156,5 +178,31 @@ public class ConditionalPipeline implements Pipeline {
         public Pipeline getPipeline() {
             return pipeline;
         }
+
+        /**
+         * Checks whether this branch applies to the given merge context.
+         *
+         * @param context The merge context to check
+         * @return {@code true} if the branch applies, otherwise {@code false}
+         */
+        public boolean applies(MergeContext context) {
+            Tracer.Span span = Tracer.span("rule", rule.getClass().getSimpleName());
+            try (span) {
+                return rule.applies(context);
+            }
+        }
+
+        /**
+         * Checks whether this branch applies to the given git merge context.
+         *
+         * @param context The git merge context to check
+         * @return {@code true} if the branch applies, otherwise {@code false}
+         */
+        public boolean applies(GitMergeContext context) {
+            Tracer.Span span = Tracer.span("rule", rule.getClass().getSimpleName());
+            try (span) {
+                return rule.applies(context);
+            }
+        }
     }
 }
\ No newline at end of file
@@ -1,6 +1,8 @@
 package ca.fxco.gitmergepipeline.pipeline;
 
 import ca.fxco.gitmergepipeline.merge.*;
+import ca.fxco.gitmergepipeline.rule.FilePatternRule;
+import ca.fxco.gitmergepipeline.utils.Tracer;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import org.eclipse.jgit.api.Git;
@@ -8,6 +10,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.Serial;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -18,12 +22,12 @@ import java.util.List;
  *
  * @author FX
  */
-public class FallbackPipeline implements Pipeline {
+public class FallbackPipeline implements Pipeline, Serializable {
     private static final Logger logger = LoggerFactory.getLogger(FallbackPipeline.class);
 
     private final String name;
     private final List<Step> steps;
-    private final MergeOperationRegistry operationRegistry;
+    private final transient MergeOperationRegistry operationRegistry;
 
     /**
      * Creates a new fallback pipeline.
@@ -43,6 +47,14 @@ public class FallbackPipeline implements Pipeline {
         this.operationRegistry = operationRegistry != null ? operationRegistry : MergeOperationRegistry.getDefault();
     }
 
+    /**
+     * The registry isn't serialized, so a deserialized pipeline uses the default registry.
+     */
+    @Serial
+    private Object readResolve() {
+        return new FallbackPipeline(name, steps, null);
+    }
+
     /**
      * Gets the name of the pipeline.
      * 
@@ -61,40 +73,55 @@ public class FallbackPipeline implements Pipeline {
         return steps;
     }
 
+    @Override
+    public List<FilePatternRule> getFilePatternRules() {
+        // Never matched by file name
+        return List.of();
+    }
+
     @Override
     public MergeResult execute(MergeContext context) throws IOException {
         logger.debug("Executing fallback pipeline: {}", name);
 
         MergeResult lastResult = null;
 
-        for (Step step : steps) {
-            if (step.applies(context)) {
-                logger.debug("Executing step with operation: {}", step.getOperation());
-
-                MergeOperation operation = operationRegistry.getOperation(step.getOperation());
-                if (operation == null) {
-                    logger.error("Unknown operation: {}", step.getOperation());
-                    lastResult = MergeResult.error("Unknown operation: " + step.getOperation(), null);
-                    continue; // Try the next step
-                }
-
-                try {
-                    MergeResult result = operation.execute(context, step.getParameters());
-                    lastResult = result;
+        for (int i = 0; i < steps.size(); i++) {
+            Step step = steps.get(i);
+            // Covers the rule of the step as well as its operation
+            Tracer.Span stepSpan = Tracer.span("step", step.getOperation(), "index", i);
+            try (stepSpan) {
+                if (step.applies(context)) {
+                    logger.debug("Executing step with operation: {}", step.getOperation());
+
+                    MergeOperation operation = operationRegistry.getOperation(step.getOperation());
+                    if (operation == null) {
+                        logger.error("Unknown operation: {}", step.getOperation());
+                        lastResult = MergeResult.error("Unknown operation: " + step.getOperation(), null);
+                        continue; // Try the next step
+                    }
 
-                    if (result.isSuccess()) {
-                        logger.debug("Pipeline step succeeded: {}", result.getMessage());
-                        return result; // Return on first success
-                    } else {
-                        logger.debug("Pipeline step failed: {}, trying next step", result.getMessage());
+                    try {
+                        MergeResult result;
+                        Tracer.Span span = Tracer.span("operation", step.getOperation());
+                        try (span) {
+                            result = operation.execute(context, step.getParameters());
+                        }
+                        lastResult = result;
+
+                        if (result.isSuccess()) {
+                            logger.debug("Pipeline step succeeded: {}", result.getMessage());
+                            return result; // Return on first success
+                        } else {
+                            logger.debug("Pipeline step failed: {}, trying next step", result.getMessage());
+                        }
+                    } catch (Exception e) {
+                        logger.error("Error executing operation: {}", step.getOperation(), e);
+                        lastResult = MergeResult.error("Error executing operation: " + step.getOperation(), e);
+                        // Continue to the next step
                     }
-                } catch (Exception e) {
-                    logger.error("Error executing operation: {}", step.getOperation(), e);
-                    lastResult = MergeResult.error("Error executing operation: " + step.getOperation(), e);
-                    // Continue to the next step
+                } else {
+                    logger.debug("Skipping step with operation: {} (rule does not apply)", step.getOperation());
                 }
-            } else {
-                logger.debug("Skipping step with operation: {} (rule does not apply)", step.getOperation());
             }
         }
 
@@ -119,34 +146,43 @@ public class FallbackPipeline implements Pipeline {
 
         MergeResult lastResult = null;
 
-        for (Step step : steps) {
-            if (step.applies(context)) {
-                logger.debug("Executing step with operation: {}", step.getOperation());
-
-                MergeOperation operation = operationRegistry.getOperation(step.getOperation());
-                if (operation == null) {
-                    logger.error("Unknown operation: {}", step.getOperation());
-                    lastResult = MergeResult.error("Unknown operation: " + step.getOperation(), null);
-                    continue; // Try the next step
-                }
-
-                try {
-                    MergeResult result = operation.executeBatched(git, context, step.getParameters());
-                    lastResult = result;
+        for (int i = 0; i < steps.size(); i++) {
+            Step step = steps.get(i);
+            // Covers the rule of the step as well as its operation
+            Tracer.Span stepSpan = Tracer.span("step", step.getOperation(), "index", i);
+            try (stepSpan) {
+                if (step.applies(context)) {
+                    logger.debug("Executing step with operation: {}", step.getOperation());
+
+                    MergeOperation operation = operationRegistry.getOperation(step.getOperation());
+                    if (operation == null) {
+                        logger.error("Unknown operation: {}", step.getOperation());
+                        lastResult = MergeResult.error("Unknown operation: " + step.getOperation(), null);
+                        continue; // Try the next step
+                    }
 
-                    if (result.isSuccess()) {
-                        logger.debug("Pipeline step succeeded: {}", result.getMessage());
-                        return result; // Return on first success
-                    } else {
-                        logger.debug("Pipeline step failed: {}, trying next step", result.getMessage());
+                    try {
+                        MergeResult result;
+                        Tracer.Span span = Tracer.span("operation", step.getOperation());
+                        try (span) {
+                            result = operation.executeBatched(git, context, step.getParameters());
+                        }
+                        lastResult = result;
+
+                        if (result.isSuccess()) {
+                            logger.debug("Pipeline step succeeded: {}", result.getMessage());
+                            return result; // Return on first success
+                        } else {
+                            logger.debug("Pipeline step failed: {}, trying next step", result.getMessage());
+                        }
+                    } catch (Exception e) {
+                        logger.error("Error executing operation: {}", step.getOperation(), e);
+                        lastResult = MergeResult.error("Error executing operation: " + step.getOperation(), e);
+                        // Continue to the next step
                     }
-                } catch (Exception e) {
-                    logger.error("Error executing operation: {}", step.getOperation(), e);
-                    lastResult = MergeResult.error("Error executing operation: " + step.getOperation(), e);
-                    // Continue to the next step
+                } else {
+                    logger.debug("Skipping step with operation: {} (rule does not apply)", step.getOperation());
                 }
-            } else {
-                logger.debug("Skipping step with operation: {} (rule does not apply)", step.getOperation());
             }
         }
 
@@ -169,4 +205,13 @@ public class FallbackPipeline implements Pipeline {
     public String getDescription() {
         return "Fallback pipeline: " + name;
     }
+
+    @Override
+    public String getFingerprint() {
+        StringBuilder fingerprint = new StringBuilder(getDescription());
+        for (Step step : steps) {
+            fingerprint.append('\n').append(step.getFingerprint());
+        }
+        return fingerprint.toString();
+    }
 }
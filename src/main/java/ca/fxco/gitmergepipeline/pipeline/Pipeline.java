@@ -3,13 +3,17 @@ package ca.fxco.gitmergepipeline.pipeline;
 import ca.fxco.gitmergepipeline.merge.GitMergeContext;
 import ca.fxco.gitmergepipeline.merge.MergeContext;
 import ca.fxco.gitmergepipeline.merge.MergeResult;
+import ca.fxco.gitmergepipeline.rule.FilePatternRule;
 import ca.fxco.gitmergepipeline.rule.Rule;
+import ca.fxco.gitmergepipeline.utils.Tracer;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import org.eclipse.jgit.annotations.Nullable;
 import org.eclipse.jgit.api.Git;
 
 import java.io.IOException;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -48,6 +52,18 @@ public interface Pipeline {
         return false;
     }
 
+    /**
+     * Gets the file pattern rules this pipeline matches files with, which must agree with the
+     * {@code matchesFileRule} methods.<br>
+     * These let pipelines be selected for a file in a single pass over its name. Pipelines which match files in
+     * some other way return null, and are checked with {@code matchesFileRule} instead.
+     *
+     * @return The file pattern rules, or null if {@code matchesFileRule} has to be called
+     */
+    default @Nullable List<FilePatternRule> getFilePatternRules() {
+        return null;
+    }
+
     /**
      * Executes the pipeline on the given merge context.
      * 
@@ -74,10 +90,20 @@ public interface Pipeline {
      */
     String getDescription();
 
+    /**
+     * Gets a fingerprint of this pipeline, which changes whenever the way this pipeline merges files changes.<br>
+     * Merge results are only reused from the merge result cache if the fingerprint is the same.
+     *
+     * @return The fingerprint of the pipeline
+     */
+    default String getFingerprint() {
+        return getDescription();
+    }
+
     /**
      * A step in a pipeline, consisting of a rule and a merge operation.
      */
-    class Step {
+    class Step implements Serializable {
         private final Rule rule;
         private final String operation;
         private final List<String> parameters;
@@ -134,7 +160,13 @@ public interface Pipeline {
          * @return {@code true} if the step applies, otherwise {@code false}
          */
         public boolean applies(MergeContext context) {
-            return rule == null || rule.applies(context);
+            if (rule == null) {
+                return true;
+            }
+            Tracer.Span span = Tracer.span("rule", rule.getClass().getSimpleName());
+            try (span) {
+                return rule.applies(context);
+            }
         }
 
         /**
@@ -144,7 +176,22 @@ public interface Pipeline {
          * @return {@code true} if the step applies, otherwise {@code false}
          */
         public boolean applies(GitMergeContext context) {
-            return rule == null || rule.applies(context);
+            if (rule == null) {
+                return true;
+            }
+            Tracer.Span span = Tracer.span("rule", rule.getClass().getSimpleName());
+            try (span) {
+                return rule.applies(context);
+            }
+        }
+
+        /**
+         * Gets a fingerprint of this step, made of its rule, operation and parameters.
+         *
+         * @return The fingerprint of the step
+         */
+        public String getFingerprint() {
+            return (rule != null ? rule.getDescription() : "always") + " -> " + operation + " " + parameters;
         }
     }
 }
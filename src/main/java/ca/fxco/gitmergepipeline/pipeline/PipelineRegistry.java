@@ -1,11 +1,12 @@
 package ca.fxco.gitmergepipeline.pipeline;
 
+import ca.fxco.gitmergepipeline.plugin.PluginIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Registry for pipelines.
@@ -17,14 +18,24 @@ public class PipelineRegistry {
     private static final Logger logger = LoggerFactory.getLogger(PipelineRegistry.class);
 
     private final Map<String, Class<? extends Pipeline>> pipelines;
+    private final PluginIndex pluginIndex;
 
     /**
-     * Creates a new pipeline registry.
+     * Creates a new pipeline registry, which finds plugin pipelines in the default plugin index.
      */
     public PipelineRegistry() {
-        this.pipelines = new HashMap<>();
+        this(PluginIndex.getDefault());
+    }
+
+    /**
+     * Creates a new pipeline registry.
+     *
+     * @param pluginIndex The plugin index to find plugin pipelines in
+     */
+    public PipelineRegistry(PluginIndex pluginIndex) {
+        this.pipelines = new ConcurrentHashMap<>();
+        this.pluginIndex = pluginIndex;
         registerBuiltInPipelines();
-        loadPipelinesFromServiceLoader();
     }
 
     /**
@@ -39,17 +50,26 @@ public class PipelineRegistry {
     }
 
     /**
-     * Gets a pipeline class by id.
+     * Gets a pipeline class by id.<br>
+     * Plugin pipelines are loaded from the plugin index the first time they're asked for.
      *
      * @param pipelineId The id of the pipeline class to get
      * @return The pipeline class, or null if no pipeline with the given id exists
      */
     public Class<? extends Pipeline> getPipeline(String pipelineId) {
-        return pipelines.get(pipelineId);
+        Class<? extends Pipeline> pipelineClass = pipelines.get(pipelineId);
+        if (pipelineClass == null) {
+            pipelineClass = pluginIndex.loadClass(PluginIndex.Kind.PIPELINE, pipelineId, Pipeline.class);
+            if (pipelineClass != null) {
+                registerPipeline(pipelineId, pipelineClass);
+            }
+        }
+        return pipelineClass;
     }
 
     /**
-     * Gets all registered pipeline classes.
+     * Gets all registered pipeline classes.<br>
+     * Plugin pipelines are only included once they've been loaded.
      *
      * @return A map of pipeline ids to pipeline classes
      */
@@ -67,17 +87,4 @@ public class PipelineRegistry {
         registerPipeline("conditional", ConditionalPipeline.class);
         registerPipeline("fallback", FallbackPipeline.class);
     }
-
-    /**
-     * Loads pipelines from the ServiceLoader.
-     * This allows third-party pipelines to be registered.
-     */
-    private void loadPipelinesFromServiceLoader() {
-        ServiceLoader<PipelineClassSupplier> pipelineClassSuppliers = ServiceLoader.load(PipelineClassSupplier.class);
-        for (PipelineClassSupplier supplier : pipelineClassSuppliers) {
-            for (Map.Entry<String, Class<? extends Pipeline>> entry : supplier.getPipelineClasses().entrySet()) {
-                registerPipeline(entry.getKey(), entry.getValue());
-            }
-        }
-    }
 }
@@ -2,6 +2,7 @@ package ca.fxco.gitmergepipeline.pipeline;
 
 import ca.fxco.gitmergepipeline.merge.*;
 import ca.fxco.gitmergepipeline.rule.FilePatternRule;
+import ca.fxco.gitmergepipeline.utils.Tracer;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import org.eclipse.jgit.api.Git;
@@ -9,6 +10,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.Serial;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -18,12 +21,12 @@ import java.util.List;
  *
  * @author FX
  */
-public class StandardPipeline implements Pipeline {
+public class StandardPipeline implements Pipeline, Serializable {
     private static final Logger logger = LoggerFactory.getLogger(StandardPipeline.class);
     
     private final String name;
     private final List<Step> steps;
-    private final MergeOperationRegistry operationRegistry;
+    private final transient MergeOperationRegistry operationRegistry;
     
     /**
      * Creates a new standard pipeline.
@@ -42,6 +45,14 @@ public class StandardPipeline implements Pipeline {
         this.steps = steps != null ? steps : new ArrayList<>();
         this.operationRegistry = operationRegistry != null ? operationRegistry : MergeOperationRegistry.getDefault();
     }
+
+    /**
+     * The registry isn't serialized, so a deserialized pipeline uses the default registry.
+     */
+    @Serial
+    private Object readResolve() {
+        return new StandardPipeline(name, steps, null);
+    }
     
     /**
      * Gets the name of the pipeline.
@@ -61,6 +72,17 @@ public class StandardPipeline implements Pipeline {
         return steps;
     }
 
+    @Override
+    public List<FilePatternRule> getFilePatternRules() {
+        List<FilePatternRule> rules = new ArrayList<>();
+        for (Pipeline.Step step : steps) {
+            if (step.getRule() instanceof FilePatternRule filePatternRule) {
+                rules.add(filePatternRule);
+            }
+        }
+        return rules;
+    }
+
     @Override
     public boolean matchesFileRule(MergeContext fileNameContext) {
         // Check if the pipeline has a file pattern rule that matches the file path
@@ -89,29 +111,38 @@ public class StandardPipeline implements Pipeline {
     public MergeResult execute(MergeContext context) throws IOException {
         logger.debug("Executing pipeline: {}", name);
         
-        for (Step step : steps) {
-            if (step.applies(context)) {
-                logger.debug("Executing step with operation: {}", step.getOperation());
+        for (int i = 0; i < steps.size(); i++) {
+            Step step = steps.get(i);
+            // Covers the rule of the step as well as its operation
+            Tracer.Span stepSpan = Tracer.span("step", step.getOperation(), "index", i);
+            try (stepSpan) {
+                if (step.applies(context)) {
+                    logger.debug("Executing step with operation: {}", step.getOperation());
                 
-                MergeOperation operation = operationRegistry.getOperation(step.getOperation());
-                if (operation == null) {
-                    logger.error("Unknown operation: {}", step.getOperation());
-                    return MergeResult.error("Unknown operation: " + step.getOperation(), null);
-                }
+                    MergeOperation operation = operationRegistry.getOperation(step.getOperation());
+                    if (operation == null) {
+                        logger.error("Unknown operation: {}", step.getOperation());
+                        return MergeResult.error("Unknown operation: " + step.getOperation(), null);
+                    }
                 
-                try {
-                    MergeResult result = operation.execute(context, step.getParameters());
+                    try {
+                        MergeResult result;
+                        Tracer.Span span = Tracer.span("operation", step.getOperation());
+                        try (span) {
+                            result = operation.execute(context, step.getParameters());
+                        }
                     
-                    if (!result.isSuccess()) {
-                        logger.debug("Pipeline step failed: {}", result.getMessage());
-                        return result;
+                        if (!result.isSuccess()) {
+                            logger.debug("Pipeline step failed: {}", result.getMessage());
+                            return result;
+                        }
+                    } catch (Exception e) {
+                        logger.error("Error executing operation: {}", step.getOperation(), e);
+                        return MergeResult.error("Error executing operation: " + step.getOperation(), e);
                     }
-                } catch (Exception e) {
-                    logger.error("Error executing operation: {}", step.getOperation(), e);
-                    return MergeResult.error("Error executing operation: " + step.getOperation(), e);
+                } else {
+                    logger.debug("Skipping step with operation: {} (rule does not apply)", step.getOperation());
                 }
-            } else {
-                logger.debug("Skipping step with operation: {} (rule does not apply)", step.getOperation());
             }
         }
         
@@ -123,38 +154,71 @@ public class StandardPipeline implements Pipeline {
     public MergeResult executeBatched(Git git, GitMergeContext context) {
         logger.debug("Executing pipeline: {}", name);
 
-        for (Step step : steps) {
-            if (step.applies(context)) {
-                logger.debug("Executing step with operation: {}", step.getOperation());
+        MergeResult lastResult = null;
 
-                MergeOperation operation = operationRegistry.getOperation(step.getOperation());
-                if (operation == null) {
-                    logger.error("Unknown operation: {}", step.getOperation());
-                    return MergeResult.error("Unknown operation: " + step.getOperation(), null);
-                }
+        for (int i = 0; i < steps.size(); i++) {
+            Step step = steps.get(i);
+            // Covers the rule of the step as well as its operation
+            Tracer.Span stepSpan = Tracer.span("step", step.getOperation(), "index", i);
+            try (stepSpan) {
+                if (step.applies(context)) {
+                    logger.debug("Executing step with operation: {}", step.getOperation());
 
-                try {
-                    MergeResult result = operation.executeBatched(git, context, step.getParameters());
+                    MergeOperation operation = operationRegistry.getOperation(step.getOperation());
+                    if (operation == null) {
+                        logger.error("Unknown operation: {}", step.getOperation());
+                        return MergeResult.error("Unknown operation: " + step.getOperation(), null);
+                    }
+
+                    try {
+                        MergeResult result;
+                        Tracer.Span span = Tracer.span("operation", step.getOperation());
+                        try (span) {
+                            result = operation.executeBatched(git, context, step.getParameters());
+                        }
 
-                    if (!result.isSuccess()) {
-                        logger.debug("Pipeline step failed: {}", result.getMessage());
-                        return result;
+                        if (!result.isSuccess()) {
+                            logger.debug("Pipeline step failed: {}", result.getMessage());
+                            return result;
+                        }
+                        lastResult = result;
+                    } catch (Exception e) {
+                        logger.error("Error executing operation: {}", step.getOperation(), e);
+                        return MergeResult.error("Error executing operation: " + step.getOperation(), e);
                     }
-                } catch (Exception e) {
-                    logger.error("Error executing operation: {}", step.getOperation(), e);
-                    return MergeResult.error("Error executing operation: " + step.getOperation(), e);
+                } else {
+                    logger.debug("Skipping step with operation: {} (rule does not apply)", step.getOperation());
                 }
-            } else {
-                logger.debug("Skipping step with operation: {} (rule does not apply)", step.getOperation());
             }
         }
 
         logger.debug("Pipeline executed successfully");
-        return MergeResult.success("Pipeline executed successfully", null);
+        // Keep the output of the last step, so the merged content can still be found
+        if (lastResult instanceof GitMergeResult gitMergeResult) {
+            return new GitMergeResult(
+                    MergeResult.Status.SUCCESS,
+                    "Pipeline executed successfully",
+                    gitMergeResult.getOutputPath(),
+                    null,
+                    gitMergeResult.getCommit(),
+                    gitMergeResult.getBlobId(),
+                    gitMergeResult.getFileMode()
+            );
+        }
+        return MergeResult.success("Pipeline executed successfully", lastResult != null ? lastResult.getOutputPath() : null);
     }
     
     @Override
     public String getDescription() {
         return "Standard pipeline: " + name;
     }
+
+    @Override
+    public String getFingerprint() {
+        StringBuilder fingerprint = new StringBuilder(getDescription());
+        for (Step step : steps) {
+            fingerprint.append('\n').append(step.getFingerprint());
+        }
+        return fingerprint.toString();
+    }
 }
\ No newline at end of file
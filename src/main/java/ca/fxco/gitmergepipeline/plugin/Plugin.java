@@ -0,0 +1,26 @@
+package ca.fxco.gitmergepipeline.plugin;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a filter, rule, pipeline or merge operation to be added to the plugin index when it's compiled.<br>
+ * The plugin index is generated by the {@link PluginIndexProcessor}, and lets the registries find plugins without
+ * scanning the class path. A plugin class is only loaded once a configuration refers to it.
+ *
+ * @author FX
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface Plugin {
+
+    /**
+     * Gets the id the plugin is referred to by in the configuration.<br>
+     * For merge operations this is the name of the operation.
+     *
+     * @return The id of the plugin
+     */
+    String value();
+}
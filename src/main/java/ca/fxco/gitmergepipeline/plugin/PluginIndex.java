@@ -0,0 +1,207 @@
+package ca.fxco.gitmergepipeline.plugin;
+
+import ca.fxco.gitmergepipeline.filter.Filter;
+import ca.fxco.gitmergepipeline.merge.MergeOperation;
+import ca.fxco.gitmergepipeline.pipeline.Pipeline;
+import ca.fxco.gitmergepipeline.rule.Rule;
+import ca.fxco.gitmergepipeline.utils.BuildInfo;
+import org.eclipse.jgit.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Index of the plugins on the class path, read from the index files generated by the {@link PluginIndexProcessor}.<br>
+ * Only the index files are read, the plugin classes are loaded once they're first asked for.
+ *
+ * @author FX
+ */
+public final class PluginIndex {
+    private static final Logger logger = LoggerFactory.getLogger(PluginIndex.class);
+
+    public static final String INDEX_PATH = "META-INF/gitmergepipeline/plugins.idx";
+
+    private final ClassLoader classLoader;
+    private final Map<Kind, Map<String, String>> classNames;
+    private final String fingerprint;
+
+    private PluginIndex(ClassLoader classLoader, Map<Kind, Map<String, String>> classNames, String fingerprint) {
+        this.classLoader = classLoader;
+        this.classNames = classNames;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Gets the plugin index of the class path, which is read when it's first used.
+     *
+     * @return The default plugin index
+     */
+    public static PluginIndex getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Reads every plugin index file visible to a class loader.
+     *
+     * @param classLoader The class loader to read the index files from, and to load the plugin classes with
+     * @return The plugin index
+     */
+    public static PluginIndex load(ClassLoader classLoader) {
+        Map<Kind, Map<String, String>> classNames = new EnumMap<>(Kind.class);
+        for (Kind kind : Kind.values()) {
+            classNames.put(kind, new HashMap<>());
+        }
+        List<String> stamps = new ArrayList<>();
+        try {
+            Enumeration<URL> indexes = classLoader.getResources(INDEX_PATH);
+            while (indexes.hasMoreElements()) {
+                URL index = indexes.nextElement();
+                stamps.add(BuildInfo.stamp(index));
+                try (Reader reader = new InputStreamReader(index.openStream(), StandardCharsets.UTF_8)) {
+                    read(reader, classNames);
+                } catch (IOException e) {
+                    logger.warn("Failed to read plugin index: {}", index, e);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to find plugin indexes", e);
+        }
+        // Sorted, so the order of the class path doesn't matter
+        Collections.sort(stamps);
+        return new PluginIndex(classLoader, classNames, String.join("\n", stamps));
+    }
+
+    /**
+     * Gets a fingerprint of the plugins, which changes whenever a file containing plugins is added, removed or
+     * replaced.
+     *
+     * @return The fingerprint, made of the stamps of the files containing the index files
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Gets the ids of the indexed plugins of a kind, along with the names of their classes.
+     *
+     * @param kind The kind of plugin
+     * @return An unmodifiable map of plugin ids to class names
+     */
+    public Map<String, String> getClassNames(Kind kind) {
+        return Collections.unmodifiableMap(classNames.get(kind));
+    }
+
+    /**
+     * Loads the class of an indexed plugin.
+     *
+     * @param kind The kind of plugin
+     * @param id   The id of the plugin
+     * @param type The type the plugin class has to implement
+     * @return The plugin class, or null if there's no such plugin or its class can't be loaded
+     */
+    public <T> @Nullable Class<? extends T> loadClass(Kind kind, String id, Class<T> type) {
+        String className = classNames.get(kind).get(id);
+        if (className == null) {
+            return null;
+        }
+        try {
+            return Class.forName(className, false, classLoader).asSubclass(type);
+        } catch (ClassNotFoundException | LinkageError | ClassCastException e) {
+            logger.warn("Failed to load {} plugin {}: {}", kind.getName(), id, className, e);
+            return null;
+        }
+    }
+
+    /**
+     * Reads the entries of an index file.<br>
+     * Each line holds the kind, the id and the class name of a plugin, separated by spaces.
+     */
+    static void read(Reader reader, Map<Kind, Map<String, String>> classNames) throws IOException {
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        while ((line = lines.readLine()) != null) {
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.split("\\s+");
+            Kind kind = parts.length == 3 ? Kind.byName(parts[0]) : null;
+            if (kind == null) {
+                logger.warn("Ignoring invalid plugin index entry: {}", line);
+                continue;
+            }
+            classNames.computeIfAbsent(kind, k -> new HashMap<>()).putIfAbsent(parts[1], parts[2]);
+        }
+    }
+
+    /**
+     * Writes the entries of an index file, sorted so the file is the same for every build.
+     */
+    static void write(Writer writer, Map<Kind, Map<String, String>> classNames) throws IOException {
+        writer.write("# Generated by " + PluginIndexProcessor.class.getName() + "\n");
+        for (Map.Entry<Kind, Map<String, String>> entry : new EnumMap<>(classNames).entrySet()) {
+            for (Map.Entry<String, String> plugin : new TreeMap<>(entry.getValue()).entrySet()) {
+                writer.write(entry.getKey().getName() + " " + plugin.getKey() + " " + plugin.getValue() + "\n");
+            }
+        }
+    }
+
+    /**
+     * The kinds of plugins.
+     */
+    public enum Kind {
+        /** Filters, which implement {@link Filter} */
+        FILTER("filter", Filter.class),
+        /** Rules, which implement {@link Rule} */
+        RULE("rule", Rule.class),
+        /** Pipelines, which implement {@link Pipeline} */
+        PIPELINE("pipeline", Pipeline.class),
+        /** Merge operations, which implement {@link MergeOperation} */
+        OPERATION("operation", MergeOperation.class);
+
+        private final String name;
+        private final Class<?> type;
+
+        Kind(String name, Class<?> type) {
+            this.name = name;
+            this.type = type;
+        }
+
+        /**
+         * Gets the name of this kind within the index files.
+         *
+         * @return The name of the kind
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Gets the type plugins of this kind implement.
+         *
+         * @return The plugin type
+         */
+        public Class<?> getType() {
+            return type;
+        }
+
+        static @Nullable Kind byName(String name) {
+            for (Kind kind : values()) {
+                if (kind.name.equals(name)) {
+                    return kind;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class DefaultHolder {
+        private static final PluginIndex INSTANCE = load(Objects.requireNonNullElse(
+                Thread.currentThread().getContextClassLoader(), PluginIndex.class.getClassLoader()
+        ));
+    }
+}
@@ -0,0 +1,130 @@
+package ca.fxco.gitmergepipeline.plugin;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Annotation processor which writes the plugin index of the classes annotated with {@link Plugin}.<br>
+ * The kind of each plugin is taken from the plugin type it implements. Plugins must be public, concrete classes, and
+ * merge operations also need a public no-argument constructor since they're created by the registry.
+ *
+ * @author FX
+ */
+@SupportedAnnotationTypes("ca.fxco.gitmergepipeline.plugin.Plugin")
+public class PluginIndexProcessor extends AbstractProcessor {
+
+    private final Map<PluginIndex.Kind, Map<String, String>> classNames = new EnumMap<>(PluginIndex.Kind.class);
+    private final List<Element> originatingElements = new ArrayList<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            if (!originatingElements.isEmpty()) {
+                writeIndex();
+            }
+            return false;
+        }
+        for (TypeElement type : ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(Plugin.class))) {
+            addPlugin(type);
+        }
+        return true;
+    }
+
+    private void addPlugin(TypeElement type) {
+        String id = type.getAnnotation(Plugin.class).value();
+        if (id.isEmpty() || id.chars().anyMatch(Character::isWhitespace)) {
+            error(type, "Plugin id must be non-empty and can't contain whitespace: \"" + id + "\"");
+            return;
+        }
+        if (type.getKind() != ElementKind.CLASS || type.getModifiers().contains(Modifier.ABSTRACT) ||
+                !type.getModifiers().contains(Modifier.PUBLIC) || type.getNestingKind() == NestingKind.LOCAL ||
+                type.getNestingKind() == NestingKind.ANONYMOUS ||
+                (type.getNestingKind() == NestingKind.MEMBER && !type.getModifiers().contains(Modifier.STATIC))) {
+            error(type, "Plugin must be a public, concrete, top-level or static class");
+            return;
+        }
+        PluginIndex.Kind kind = getKind(type);
+        if (kind == null) {
+            error(type, "Plugin must implement one of " + Arrays.stream(PluginIndex.Kind.values())
+                    .map(k -> k.getType().getSimpleName())
+                    .toList());
+            return;
+        }
+        if (kind == PluginIndex.Kind.OPERATION && !hasPublicNoArgConstructor(type)) {
+            error(type, "Merge operation plugin must have a public no-argument constructor");
+            return;
+        }
+        String className = processingEnv.getElementUtils().getBinaryName(type).toString();
+        String previous = classNames.computeIfAbsent(kind, k -> new HashMap<>()).putIfAbsent(id, className);
+        if (previous != null && !previous.equals(className)) {
+            error(type, "Duplicate " + kind.getName() + " plugin id \"" + id + "\", already used by " + previous);
+            return;
+        }
+        originatingElements.add(type);
+    }
+
+    private PluginIndex.Kind getKind(TypeElement type) {
+        PluginIndex.Kind found = null;
+        for (PluginIndex.Kind kind : PluginIndex.Kind.values()) {
+            TypeElement kindType = processingEnv.getElementUtils().getTypeElement(kind.getType().getCanonicalName());
+            if (kindType == null) {
+                continue;
+            }
+            TypeMirror erasure = processingEnv.getTypeUtils().erasure(kindType.asType());
+            if (processingEnv.getTypeUtils().isAssignable(type.asType(), erasure)) {
+                if (found != null) {
+                    error(type, "Plugin can't implement both " + found.getType().getSimpleName() + " and " +
+                            kind.getType().getSimpleName());
+                    return null;
+                }
+                found = kind;
+            }
+        }
+        return found;
+    }
+
+    private static boolean hasPublicNoArgConstructor(TypeElement type) {
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeIndex() {
+        try {
+            FileObject index = processingEnv.getFiler().createResource(
+                    StandardLocation.CLASS_OUTPUT, "", PluginIndex.INDEX_PATH,
+                    originatingElements.toArray(new Element[0])
+            );
+            try (Writer writer = index.openWriter()) {
+                PluginIndex.write(writer, classNames);
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(
+                    Diagnostic.Kind.ERROR, "Failed to write plugin index: " + e.getMessage()
+            );
+        }
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -5,6 +5,7 @@ import ca.fxco.gitmergepipeline.merge.MergeContext;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -14,7 +15,7 @@ import java.util.List;
  *
  * @author FX
  */
-public class CompositeRule implements Rule {
+public class CompositeRule implements Rule, Serializable {
     private final Operation operation;
     private final List<Rule> rules;
     
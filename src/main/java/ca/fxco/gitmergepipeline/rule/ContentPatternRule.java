@@ -2,23 +2,35 @@ package ca.fxco.gitmergepipeline.rule;
 
 import ca.fxco.gitmergepipeline.merge.GitMergeContext;
 import ca.fxco.gitmergepipeline.merge.MergeContext;
+import ca.fxco.gitmergepipeline.merge.RuleResultCache;
+import ca.fxco.gitmergepipeline.utils.BlobContent;
+import ca.fxco.gitmergepipeline.utils.ContentWindow;
+import ca.fxco.gitmergepipeline.utils.GitPath;
+import ca.fxco.gitmergepipeline.utils.LiteralSearcher;
+import ca.fxco.gitmergepipeline.utils.RegexLiterals;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import org.eclipse.jgit.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.regex.Pattern;
 
 /**
  * A rule that checks if the content of a file matches a specific pattern.
- * The pattern is a regular expression that matched against the file content.
+ * The pattern is a regular expression that matched against the file content.<br>
+ * Content is only decoded and matched against the pattern if it contains the literal which every match of the pattern
+ * contains. The check can be limited to the first bytes or lines of each version, for header-only checks.<br>
+ * The result for each version is kept in the rule results of the merge, so each version is only read once.
  *
  * @author FX
  */
-public class ContentPatternRule implements Rule {
+public class ContentPatternRule implements Rule, Serializable {
     private static final Logger logger = LoggerFactory.getLogger(ContentPatternRule.class);
     
     private final String pattern;
@@ -27,7 +39,9 @@ public class ContentPatternRule implements Rule {
     private final boolean checkBase;
     private final boolean checkCurrent;
     private final boolean checkOther;
-    
+    private final ContentWindow window;
+    private transient volatile @Nullable Prefilter prefilter;
+
     /**
      * Creates a new content pattern rule.
      * 
@@ -36,6 +50,8 @@ public class ContentPatternRule implements Rule {
      * @param checkBase Whether to check the base version of the file
      * @param checkCurrent Whether to check the current version of the file
      * @param checkOther Whether to check the other version of the file
+     * @param maxBytes The number of bytes at the start of each version to check, or null to check all of them
+     * @param maxLines The number of lines at the start of each version to check, or null to check all of them
      */
     @JsonCreator
     public ContentPatternRule(
@@ -43,17 +59,34 @@ public class ContentPatternRule implements Rule {
             @JsonProperty("caseSensitive") boolean caseSensitive,
             @JsonProperty("checkBase") boolean checkBase,
             @JsonProperty("checkCurrent") boolean checkCurrent,
-            @JsonProperty("checkOther") boolean checkOther
+            @JsonProperty("checkOther") boolean checkOther,
+            @JsonProperty("maxBytes") @Nullable Integer maxBytes,
+            @JsonProperty("maxLines") @Nullable Integer maxLines
     ) {
         this.pattern = pattern;
         this.caseSensitive = caseSensitive;
         this.checkBase = checkBase;
         this.checkCurrent = checkCurrent;
         this.checkOther = checkOther;
+        this.window = new ContentWindow(maxBytes != null ? maxBytes : 0, maxLines != null ? maxLines : 0);
         
         int flags = caseSensitive ? 0 : Pattern.CASE_INSENSITIVE;
         this.compiledPattern = Pattern.compile(pattern, flags);
     }
+
+    /**
+     * Creates a new content pattern rule which checks the whole content.
+     *
+     * @param pattern The regular expression pattern to match against file content
+     * @param caseSensitive Whether the pattern matching should be case-sensitive
+     * @param checkBase Whether to check the base version of the file
+     * @param checkCurrent Whether to check the current version of the file
+     * @param checkOther Whether to check the other version of the file
+     */
+    public ContentPatternRule(String pattern, boolean caseSensitive, boolean checkBase, boolean checkCurrent,
+                              boolean checkOther) {
+        this(pattern, caseSensitive, checkBase, checkCurrent, checkOther, null, null);
+    }
     
     /**
      * Creates a new content pattern rule that checks all versions of the file.
@@ -118,23 +151,33 @@ public class ContentPatternRule implements Rule {
     public boolean isCheckOther() {
         return checkOther;
     }
+
+    /**
+     * Gets the part of each version of the file which is checked.
+     *
+     * @return The content window
+     */
+    public ContentWindow getWindow() {
+        return window;
+    }
     
     @Override
     public boolean applies(MergeContext context) {
+        RuleResultCache ruleResults = context.getRuleResults();
         if (checkBase && context.getBasePath() != null) {
-            if (matchesContent(context.getBasePath())) {
+            if (matchesContent(ruleResults, context.getBasePath())) {
                 return true;
             }
         }
         
         if (checkCurrent && context.getCurrentPath() != null) {
-            if (matchesContent(context.getCurrentPath())) {
+            if (matchesContent(ruleResults, context.getCurrentPath())) {
                 return true;
             }
         }
         
         if (checkOther && context.getOtherPath() != null) {
-            if (matchesContent(context.getOtherPath())) {
+            if (matchesContent(ruleResults, context.getOtherPath())) {
                 return true;
             }
         }
@@ -144,37 +187,87 @@ public class ContentPatternRule implements Rule {
 
     @Override
     public boolean applies(GitMergeContext context) {
+        RuleResultCache ruleResults = context.getRuleResults();
         if (checkBase && context.getBasePath() != null) {
-            if (matchesContent(context.getBasePath().getPath())) {
+            if (matchesContent(ruleResults, context.getBasePath())) {
                 return true;
             }
         }
 
         if (checkCurrent && context.getCurrentPath() != null) {
-            if (matchesContent(context.getCurrentPath().getPath())) {
+            if (matchesContent(ruleResults, context.getCurrentPath())) {
                 return true;
             }
         }
 
         if (checkOther && context.getOtherPath() != null) {
-            if (matchesContent(context.getOtherPath().getPath())) {
+            if (matchesContent(ruleResults, context.getOtherPath())) {
                 return true;
             }
         }
 
         return false;
     }
-    
-    private boolean matchesContent(Path path) {
+
+    private boolean matchesContent(RuleResultCache ruleResults, GitPath gitPath) {
+        BlobContent content = gitPath.getContent();
+        if (content == null) {
+            return matchesContent(ruleResults, gitPath.getPath());
+        }
+        // Read the version from the commit, the working directory may not contain it
+        try {
+            return ruleResults.matches(this, content, this::matchesContent);
+        } catch (IOException e) {
+            logger.error("Error reading blob content: {}", content.getPath(), e);
+            return false;
+        }
+    }
+
+    private boolean matchesContent(RuleResultCache ruleResults, Path path) {
         try {
-            String content = Files.readString(path);
-            return compiledPattern.matcher(content).find();
+            return ruleResults.matches(this, path, this::matchesContent);
         } catch (IOException e) {
             logger.error("Error reading file content: {}", path, e);
             return false;
         }
     }
-    
+
+    private boolean matchesContent(BlobContent content) throws IOException {
+        return matches(window.read(content));
+    }
+
+    private boolean matchesContent(Path path) throws IOException {
+        return matches(window.read(path));
+    }
+
+    /**
+     * Matches content, searching for the literal which every match contains before running the pattern.<br>
+     * Content is only decoded if the literal is found, and malformed UTF-8 is replaced rather than rejected.
+     */
+    private boolean matches(ByteBuffer content) {
+        Prefilter prefilter = getPrefilter();
+        if (prefilter.searcher() != null) {
+            if (prefilter.searcher().indexOf(content) < 0) {
+                return false;
+            }
+            if (prefilter.literal()) {
+                return true;
+            }
+        }
+        return compiledPattern.matcher(StandardCharsets.UTF_8.decode(content.duplicate())).find();
+    }
+
+    private Prefilter getPrefilter() {
+        Prefilter prefilter = this.prefilter;
+        if (prefilter == null) {
+            String literal = RegexLiterals.requiredLiteral(pattern);
+            LiteralSearcher searcher = literal != null ? LiteralSearcher.of(literal, caseSensitive) : null;
+            prefilter = new Prefilter(searcher, searcher != null && RegexLiterals.isLiteral(pattern));
+            this.prefilter = prefilter;
+        }
+        return prefilter;
+    }
+
     @Override
     public String getDescription() {
         StringBuilder description = new StringBuilder("Content matches pattern '")
@@ -208,7 +301,23 @@ public class ContentPatternRule implements Rule {
                 description.append("other version");
             }
         }
+
+        if (window.maxLines() > 0) {
+            description.append(" within the first ").append(window.maxLines()).append(" lines");
+        }
+        if (window.maxBytes() > 0) {
+            description.append(window.maxLines() > 0 ? " and " : " within the first ")
+                    .append(window.maxBytes()).append(" bytes");
+        }
         
         return description.toString();
     }
-}
\ No newline at end of file
+
+    /**
+     * The literal searched for before running the pattern.
+     *
+     * @param searcher The searcher for the literal every match contains, or null if there is none
+     * @param literal  Whether the pattern only matches the literal, so finding it is a match
+     */
+    private record Prefilter(@Nullable LiteralSearcher searcher, boolean literal) {}
+}
@@ -0,0 +1,380 @@
+package ca.fxco.gitmergepipeline.rule;
+
+import ca.fxco.gitmergepipeline.merge.GitMergeContext;
+import ca.fxco.gitmergepipeline.merge.MergeContext;
+import ca.fxco.gitmergepipeline.merge.RuleResultCache;
+import ca.fxco.gitmergepipeline.utils.BlobContent;
+import ca.fxco.gitmergepipeline.utils.ContentWindow;
+import ca.fxco.gitmergepipeline.utils.GitPath;
+import ca.fxco.gitmergepipeline.utils.MultiLiteralSearcher;
+import ca.fxco.gitmergepipeline.utils.RegexLiterals;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.eclipse.jgit.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * A rule that checks if the content of a file matches any of a set of literals and regular expressions.<br>
+ * Every literal, and the literal which every match of each regular expression contains, is searched for in a single
+ * pass over each version. Regular expressions are only run if their literal was found, on content which is decoded
+ * once for all of them. The check can be limited to the first bytes or lines of each version, like
+ * {@link ContentPatternRule}.<br>
+ * The first pattern which matches, literals before regular expressions, is set as an attribute of the context, so
+ * later steps know which pattern matched without reading the content again.
+ *
+ * @author FX
+ */
+public class ContentPatternSetRule implements Rule, Serializable {
+    private static final Logger logger = LoggerFactory.getLogger(ContentPatternSetRule.class);
+
+    /**
+     * The attribute which the matched pattern is set as, if no other attribute is given.
+     */
+    public static final String DEFAULT_ATTRIBUTE = "matchedContentPattern";
+
+    private static final int NO_MATCH = -1;
+
+    private final List<String> literals;
+    private final List<String> patterns;
+    private final boolean caseSensitive;
+    private final boolean checkBase;
+    private final boolean checkCurrent;
+    private final boolean checkOther;
+    private final ContentWindow window;
+    private final String attribute;
+    private transient volatile @Nullable Matcher matcher;
+
+    /**
+     * Creates a new content pattern set rule.
+     *
+     * @param literals      The literals to search for
+     * @param patterns      The regular expressions to search for
+     * @param caseSensitive Whether the patterns are case-sensitive
+     * @param checkBase     Whether to check the base version
+     * @param checkCurrent  Whether to check the current version
+     * @param checkOther    Whether to check the other version
+     * @param maxBytes      The number of bytes of each version to check, or null to check every byte
+     * @param maxLines      The number of lines of each version to check, or null to check every line
+     * @param attribute     The attribute to set the matched pattern as, or null for {@link #DEFAULT_ATTRIBUTE}
+     */
+    @JsonCreator
+    public ContentPatternSetRule(
+            @JsonProperty("literals") @Nullable List<String> literals,
+            @JsonProperty("patterns") @Nullable List<String> patterns,
+            @JsonProperty("caseSensitive") boolean caseSensitive,
+            @JsonProperty("checkBase") boolean checkBase,
+            @JsonProperty("checkCurrent") boolean checkCurrent,
+            @JsonProperty("checkOther") boolean checkOther,
+            @JsonProperty("maxBytes") @Nullable Integer maxBytes,
+            @JsonProperty("maxLines") @Nullable Integer maxLines,
+            @JsonProperty("attribute") @Nullable String attribute
+    ) {
+        this.literals = literals != null ? new ArrayList<>(literals) : new ArrayList<>();
+        this.patterns = patterns != null ? new ArrayList<>(patterns) : new ArrayList<>();
+        this.caseSensitive = caseSensitive;
+        this.checkBase = checkBase;
+        this.checkCurrent = checkCurrent;
+        this.checkOther = checkOther;
+        this.window = new ContentWindow(maxBytes != null ? maxBytes : 0, maxLines != null ? maxLines : 0);
+        this.attribute = attribute != null ? attribute : DEFAULT_ATTRIBUTE;
+
+        // Compiled right away, so invalid patterns are found while loading the configuration
+        this.matcher = new Matcher(this.literals, this.patterns, caseSensitive);
+    }
+
+    /**
+     * Creates a new content pattern set rule, checking every version in full.
+     *
+     * @param literals      The literals to search for
+     * @param patterns      The regular expressions to search for
+     * @param caseSensitive Whether the patterns are case-sensitive
+     */
+    public ContentPatternSetRule(List<String> literals, List<String> patterns, boolean caseSensitive) {
+        this(literals, patterns, caseSensitive, true, true, true, null, null, null);
+    }
+
+    /**
+     * Gets the literals this rule searches for.
+     *
+     * @return The literals
+     */
+    public List<String> getLiterals() {
+        return literals;
+    }
+
+    /**
+     * Gets the regular expressions this rule searches for.
+     *
+     * @return The regular expressions
+     */
+    public List<String> getPatterns() {
+        return patterns;
+    }
+
+    /**
+     * Checks if the patterns are case-sensitive.
+     *
+     * @return {@code true} if the patterns are case-sensitive, otherwise {@code false}
+     */
+    public boolean isCaseSensitive() {
+        return caseSensitive;
+    }
+
+    /**
+     * Checks if the base version should be checked.
+     *
+     * @return {@code true} if the base version should be checked, otherwise {@code false}
+     */
+    public boolean isCheckBase() {
+        return checkBase;
+    }
+
+    /**
+     * Checks if the current version should be checked.
+     *
+     * @return {@code true} if the current version should be checked, otherwise {@code false}
+     */
+    public boolean isCheckCurrent() {
+        return checkCurrent;
+    }
+
+    /**
+     * Checks if the other version should be checked.
+     *
+     * @return {@code true} if the other version should be checked, otherwise {@code false}
+     */
+    public boolean isCheckOther() {
+        return checkOther;
+    }
+
+    /**
+     * Gets the part of each version which is checked.
+     *
+     * @return The content window
+     */
+    public ContentWindow getWindow() {
+        return window;
+    }
+
+    /**
+     * Gets the attribute which the matched pattern is set as.
+     *
+     * @return The attribute key
+     */
+    public String getAttribute() {
+        return attribute;
+    }
+
+    @Override
+    public boolean applies(MergeContext context) {
+        RuleResultCache ruleResults = context.getRuleResults();
+        Path[] versions = {
+                checkBase ? context.getBasePath() : null,
+                checkCurrent ? context.getCurrentPath() : null,
+                checkOther ? context.getOtherPath() : null
+        };
+        for (Path version : versions) {
+            if (version != null) {
+                int match = findMatch(ruleResults, version);
+                if (match != NO_MATCH) {
+                    context.setAttribute(attribute, patternAt(match));
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean applies(GitMergeContext context) {
+        RuleResultCache ruleResults = context.getRuleResults();
+        GitPath[] versions = {
+                checkBase ? context.getBasePath() : null,
+                checkCurrent ? context.getCurrentPath() : null,
+                checkOther ? context.getOtherPath() : null
+        };
+        for (GitPath version : versions) {
+            if (version != null) {
+                BlobContent content = version.getContent();
+                // Read the version from the commit, the working directory may not contain it
+                int match = content != null
+                        ? findMatch(ruleResults, content)
+                        : findMatch(ruleResults, version.getPath());
+                if (match != NO_MATCH) {
+                    context.setAttribute(attribute, patternAt(match));
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private int findMatch(RuleResultCache ruleResults, BlobContent content) {
+        try {
+            return ruleResults.evaluate(this, content, this::findMatch);
+        } catch (IOException e) {
+            logger.error("Error reading blob content: {}", content.getPath(), e);
+            return NO_MATCH;
+        }
+    }
+
+    private int findMatch(RuleResultCache ruleResults, Path path) {
+        try {
+            return ruleResults.evaluate(this, path, this::findMatch);
+        } catch (IOException e) {
+            logger.error("Error reading file content: {}", path, e);
+            return NO_MATCH;
+        }
+    }
+
+    private int findMatch(BlobContent content) throws IOException {
+        return getMatcher().find(window.read(content));
+    }
+
+    private int findMatch(Path path) throws IOException {
+        return getMatcher().find(window.read(path));
+    }
+
+    /**
+     * Gets a pattern by its index, counting the literals before the regular expressions.
+     */
+    private String patternAt(int index) {
+        return index < literals.size() ? literals.get(index) : patterns.get(index - literals.size());
+    }
+
+    private Matcher getMatcher() {
+        Matcher matcher = this.matcher;
+        if (matcher == null) {
+            matcher = new Matcher(literals, patterns, caseSensitive);
+            this.matcher = matcher;
+        }
+        return matcher;
+    }
+
+    @Override
+    public String getDescription() {
+        StringBuilder description = new StringBuilder("Content matches any of [");
+        boolean first = true;
+        for (String literal : literals) {
+            if (!first) {
+                description.append(", ");
+            }
+            description.append('\'').append(literal).append('\'');
+            first = false;
+        }
+        for (String pattern : patterns) {
+            if (!first) {
+                description.append(", ");
+            }
+            description.append('/').append(pattern).append('/');
+            first = false;
+        }
+        description.append("] (")
+                .append(caseSensitive ? "case-sensitive" : "case-insensitive")
+                .append(") in ");
+
+        if (checkBase && checkCurrent && checkOther) {
+            description.append("any version");
+        } else {
+            List<String> versions = new ArrayList<>(3);
+            if (checkBase) {
+                versions.add("base version");
+            }
+            if (checkCurrent) {
+                versions.add("current version");
+            }
+            if (checkOther) {
+                versions.add("other version");
+            }
+            description.append(String.join(", ", versions));
+        }
+
+        if (window.maxLines() > 0) {
+            description.append(" within the first ").append(window.maxLines()).append(" lines");
+        }
+        if (window.maxBytes() > 0) {
+            description.append(window.maxLines() > 0 ? " and " : " within the first ")
+                    .append(window.maxBytes()).append(" bytes");
+        }
+        return description.toString();
+    }
+
+    /**
+     * The compiled patterns of a rule.<br>
+     * The searcher finds the literals first, followed by the literals required by each regular expression. Regular
+     * expressions without a required literal are always run, unless an earlier pattern already matched.
+     */
+    private static final class Matcher {
+        private final MultiLiteralSearcher searcher;
+        private final int literalCount;
+        private final Pattern[] regexes;
+        // The index of the literal each regular expression requires within the searcher, or -1 if it has none
+        private final int[] requiredLiteral;
+        // Whether each regular expression is only a literal, so finding the literal is enough
+        private final boolean[] isLiteral;
+
+        Matcher(List<String> literals, List<String> patterns, boolean caseSensitive) {
+            List<String> searched = new ArrayList<>(literals);
+            this.literalCount = literals.size();
+            this.regexes = new Pattern[patterns.size()];
+            this.requiredLiteral = new int[patterns.size()];
+            this.isLiteral = new boolean[patterns.size()];
+            int flags = caseSensitive ? 0 : Pattern.CASE_INSENSITIVE;
+            for (int i = 0; i < regexes.length; i++) {
+                String pattern = patterns.get(i);
+                regexes[i] = Pattern.compile(pattern, flags);
+                String literal = RegexLiterals.requiredLiteral(pattern);
+                if (literal == null) {
+                    requiredLiteral[i] = NO_MATCH;
+                } else {
+                    requiredLiteral[i] = searched.size();
+                    searched.add(literal);
+                    isLiteral[i] = RegexLiterals.isLiteral(pattern);
+                }
+            }
+            this.searcher = MultiLiteralSearcher.of(searched, caseSensitive);
+        }
+
+        /**
+         * Finds the first pattern which matches the content.
+         *
+         * @return The index of the pattern, counting the literals before the regular expressions, or -1 if none match
+         */
+        int find(ByteBuffer content) {
+            BitSet found = searcher.search(content);
+            int literal = found.nextSetBit(0);
+            if (literal >= 0 && literal < literalCount) {
+                return literal;
+            }
+            // Malformed UTF-8 is replaced rather than rejected, like in ContentPatternRule
+            CharBuffer decoded = null;
+            for (int i = 0; i < regexes.length; i++) {
+                if (requiredLiteral[i] != NO_MATCH && !found.get(requiredLiteral[i])) {
+                    continue;
+                }
+                if (isLiteral[i]) {
+                    return literalCount + i;
+                }
+                if (decoded == null) {
+                    decoded = StandardCharsets.UTF_8.decode(content.duplicate());
+                }
+                if (regexes[i].matcher(decoded).find()) {
+                    return literalCount + i;
+                }
+            }
+            return NO_MATCH;
+        }
+    }
+}
@@ -5,6 +5,7 @@ import ca.fxco.gitmergepipeline.merge.MergeContext;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.io.Serializable;
 import java.util.Arrays;
 import java.util.List;
 
@@ -13,7 +14,7 @@ import java.util.List;
  *
  * @author FX
  */
-public class FileExtensionRule implements Rule {
+public class FileExtensionRule implements Rule, Serializable {
     private final String[] extensions;
     private final boolean invert;
 
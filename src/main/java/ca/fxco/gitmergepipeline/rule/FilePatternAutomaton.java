@@ -0,0 +1,288 @@
+package ca.fxco.gitmergepipeline.rule;
+
+import ca.fxco.gitmergepipeline.utils.GlobParser;
+
+import java.util.*;
+
+/**
+ * Matches a path against many groups of file pattern rules at once, finding the first group with a matching rule.<br>
+ * Glob patterns are compiled into a single automaton, so a path is matched against all of them in one pass over its
+ * characters. Its deterministic states are built while matching, and only for the paths which are actually matched.
+ * Regular expressions are matched one by one after the automaton, and only if they belong to an earlier group than the
+ * automaton's match.<br>
+ * Paths with characters outside the basic multilingual plane are matched rule by rule, since the patterns match those
+ * characters as a whole while the automaton works on UTF-16 units.
+ *
+ * @author FX
+ */
+public final class FilePatternAutomaton {
+
+    /**
+     * Returned by {@link #match(String, int)} if no group matches.
+     */
+    public static final int NO_MATCH = -1;
+
+    private static final int MAX_STATES = 4096;
+    private static final int MAX_CHAR = Character.MAX_VALUE;
+
+    private final int[] boundaries;
+    private final byte[] asciiClasses;
+    private final int[][] epsilons;
+    private final Transition[][] transitions;
+    private final int[] nfaMatches;
+    private final List<FilePatternRule> fallbackRules;
+    private final int[] fallbackGroups;
+    private final List<FilePatternRule> rules;
+    private final int[] groups;
+
+    private final Map<BitSet, DfaState> dfaStates = new HashMap<>();
+    private final DfaState dead;
+    private volatile DfaState start;
+
+    private FilePatternAutomaton(Nfa nfa, List<FilePatternRule> fallbackRules, List<Integer> fallbackGroups,
+                                 List<FilePatternRule> rules, List<Integer> groups) {
+        this.boundaries = nfa.boundaries.stream().mapToInt(Integer::intValue).toArray();
+        this.asciiClasses = new byte[128];
+        for (int c = 0; c < asciiClasses.length; c++) {
+            asciiClasses[c] = (byte) classOf(c);
+        }
+        this.epsilons = nfa.epsilons.stream()
+                .map(targets -> targets.stream().mapToInt(Integer::intValue).toArray())
+                .toArray(int[][]::new);
+        // Transitions are stored with the character classes they cover, rather than the characters
+        this.transitions = nfa.transitions.stream()
+                .map(stateTransitions -> stateTransitions.stream()
+                        .map(transition -> new Transition(toClasses(transition.ranges()), transition.target()))
+                        .toArray(Transition[]::new))
+                .toArray(Transition[][]::new);
+        this.nfaMatches = nfa.matches.stream().mapToInt(Integer::intValue).toArray();
+        this.fallbackRules = fallbackRules;
+        this.fallbackGroups = fallbackGroups.stream().mapToInt(Integer::intValue).toArray();
+        this.rules = rules;
+        this.groups = groups.stream().mapToInt(Integer::intValue).toArray();
+        this.dead = new DfaState(new BitSet(), NO_MATCH, 0);
+        this.start = createState(closure(new BitSet(), 0));
+    }
+
+    /**
+     * Compiles groups of file pattern rules into an automaton.
+     *
+     * @param groups The groups of rules, in the order they're matched in
+     * @return The automaton
+     */
+    public static FilePatternAutomaton compile(List<? extends Collection<FilePatternRule>> groups) {
+        Nfa nfa = new Nfa();
+        int start = nfa.newState();
+        List<FilePatternRule> rules = new ArrayList<>();
+        List<Integer> ruleGroups = new ArrayList<>();
+        List<FilePatternRule> fallbackRules = new ArrayList<>();
+        List<Integer> fallbackGroups = new ArrayList<>();
+        for (int group = 0; group < groups.size(); group++) {
+            for (FilePatternRule rule : groups.get(group)) {
+                rules.add(rule);
+                ruleGroups.add(group);
+                if (rule.isRegex()) {
+                    fallbackRules.add(rule);
+                    fallbackGroups.add(group);
+                } else {
+                    nfa.addGlob(start, rule.getPattern(), rule.isCaseSensitive(), group);
+                }
+            }
+        }
+        return new FilePatternAutomaton(nfa, fallbackRules, fallbackGroups, rules, ruleGroups);
+    }
+
+    /**
+     * Finds the first group with a rule that matches a path.
+     *
+     * @param path The string holding the path
+     * @param from The index the path starts at within the string
+     * @return The index of the first matching group, or {@link #NO_MATCH} if no group matches
+     */
+    public int match(String path, int from) {
+        DfaState state = start;
+        for (int i = from, length = path.length(); i < length && state != dead; i++) {
+            char c = path.charAt(i);
+            if (Character.isSurrogate(c)) {
+                return matchEach(rules, groups, path, from, NO_MATCH);
+            }
+            int charClass = c < 128 ? asciiClasses[c] : classOf(c);
+            DfaState next = state.next[charClass];
+            state = next != null ? next : addTransition(state, charClass);
+        }
+        int group = state.match;
+        return fallbackRules.isEmpty() ? group : matchEach(fallbackRules, fallbackGroups, path, from, group);
+    }
+
+    /**
+     * Matches rules one by one, stopping once the rules belong to the group that's already matched.
+     */
+    private static int matchEach(List<FilePatternRule> rules, int[] groups, String path, int from, int group) {
+        String subPath = null;
+        for (int i = 0; i < groups.length; i++) {
+            if (group != NO_MATCH && groups[i] >= group) {
+                break;
+            }
+            if (subPath == null) {
+                subPath = path.substring(from);
+            }
+            if (rules.get(i).matches(subPath)) {
+                return groups[i];
+            }
+        }
+        return group;
+    }
+
+    /**
+     * Builds the transition of a deterministic state which hasn't been followed yet.<br>
+     * Once there are too many states, they're all dropped and built again as they're needed, which keeps the memory
+     * used by paths which are never seen again bounded.
+     */
+    private synchronized DfaState addTransition(DfaState from, int charClass) {
+        DfaState next = from.next[charClass];
+        if (next != null) {
+            return next;
+        }
+        BitSet target = new BitSet();
+        BitSet nfaStates = from.nfaStates;
+        for (int state = nfaStates.nextSetBit(0); state >= 0; state = nfaStates.nextSetBit(state + 1)) {
+            for (Transition transition : transitions[state]) {
+                if (transition.covers(charClass) && !target.get(transition.target())) {
+                    closure(target, transition.target());
+                }
+            }
+        }
+        if (target.isEmpty()) {
+            next = dead;
+        } else {
+            next = dfaStates.get(target);
+            if (next == null) {
+                if (dfaStates.size() >= MAX_STATES) {
+                    dfaStates.clear();
+                    start = createState(closure(new BitSet(), 0));
+                }
+                next = createState(target);
+            }
+        }
+        from.next[charClass] = next;
+        return next;
+    }
+
+    private DfaState createState(BitSet nfaStates) {
+        int match = NO_MATCH;
+        for (int state = nfaStates.nextSetBit(0); state >= 0; state = nfaStates.nextSetBit(state + 1)) {
+            int nfaMatch = nfaMatches[state];
+            if (nfaMatch != NO_MATCH && (match == NO_MATCH || nfaMatch < match)) {
+                match = nfaMatch;
+            }
+        }
+        DfaState state = new DfaState(nfaStates, match, boundaries.length);
+        dfaStates.put(nfaStates, state);
+        return state;
+    }
+
+    private BitSet closure(BitSet set, int state) {
+        Deque<Integer> pending = new ArrayDeque<>();
+        set.set(state);
+        pending.push(state);
+        while (!pending.isEmpty()) {
+            for (int next : epsilons[pending.pop()]) {
+                if (!set.get(next)) {
+                    set.set(next);
+                    pending.push(next);
+                }
+            }
+        }
+        return set;
+    }
+
+    private int classOf(int c) {
+        int index = Arrays.binarySearch(boundaries, c);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    private int[] toClasses(int[] ranges) {
+        int[] classes = new int[ranges.length];
+        for (int i = 0; i < ranges.length; i++) {
+            classes[i] = classOf(ranges[i]);
+        }
+        return classes;
+    }
+
+    /**
+     * A state of the deterministic automaton, which is a set of states of the nondeterministic automaton.<br>
+     * States are only changed by linking them to the next state, so they can be followed without locking. A link
+     * which isn't visible yet is built again while holding the lock.
+     */
+    private static final class DfaState {
+        private final BitSet nfaStates;
+        private final int match;
+        private final DfaState[] next;
+
+        private DfaState(BitSet nfaStates, int match, int classCount) {
+            this.nfaStates = nfaStates;
+            this.match = match;
+            this.next = new DfaState[classCount];
+        }
+    }
+
+    /**
+     * A transition of the nondeterministic automaton, over ranges of characters or character classes.
+     */
+    private record Transition(int[] ranges, int target) {
+
+        private boolean covers(int value) {
+            for (int i = 0; i < ranges.length; i += 2) {
+                if (value >= ranges[i] && value <= ranges[i + 1]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Nondeterministic automaton which globs are added to.<br>
+     * Ranges are cut to UTF-16 units, since paths with characters outside of them are matched rule by rule.
+     */
+    private static final class Nfa implements GlobParser.Target {
+        private final List<List<Integer>> epsilons = new ArrayList<>();
+        private final List<List<Transition>> transitions = new ArrayList<>();
+        private final List<Integer> matches = new ArrayList<>();
+        private final Set<Integer> boundaries = new TreeSet<>(List.of(0));
+
+        @Override
+        public int newState() {
+            epsilons.add(new ArrayList<>());
+            transitions.add(new ArrayList<>());
+            matches.add(NO_MATCH);
+            return matches.size() - 1;
+        }
+
+        @Override
+        public void epsilon(int from, int to) {
+            epsilons.get(from).add(to);
+        }
+
+        @Override
+        public void transition(int from, int[] ranges, int to) {
+            int count = 0;
+            int[] charRanges = new int[ranges.length];
+            for (int i = 0; i < ranges.length && ranges[i] <= MAX_CHAR; i += 2) {
+                charRanges[count++] = ranges[i];
+                charRanges[count++] = Math.min(ranges[i + 1], MAX_CHAR);
+                boundaries.add(ranges[i]);
+                if (ranges[i + 1] < MAX_CHAR) {
+                    boundaries.add(ranges[i + 1] + 1);
+                }
+            }
+            transitions.get(from).add(new Transition(Arrays.copyOf(charRanges, count), to));
+        }
+
+        private void addGlob(int start, String glob, boolean caseSensitive, int group) {
+            int entry = newState();
+            epsilon(start, entry);
+            matches.set(GlobParser.parse(glob, caseSensitive, this, entry), group);
+        }
+    }
+}
@@ -2,10 +2,11 @@ package ca.fxco.gitmergepipeline.rule;
 
 import ca.fxco.gitmergepipeline.merge.GitMergeContext;
 import ca.fxco.gitmergepipeline.merge.MergeContext;
-import ca.fxco.gitmergepipeline.utils.FileUtils;
+import ca.fxco.gitmergepipeline.utils.Glob;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.io.Serializable;
 import java.util.regex.Pattern;
 
 /**
@@ -14,11 +15,12 @@ import java.util.regex.Pattern;
  *
  * @author FX
  */
-public class FilePatternRule implements Rule {
+public class FilePatternRule implements Rule, Serializable {
     private final String pattern;
     private final boolean isRegex;
     private final boolean caseSensitive;
     private final Pattern compiledPattern;
+    private final Glob glob;
 
     /**
      * Creates a new file pattern rule.
@@ -40,11 +42,10 @@ public class FilePatternRule implements Rule {
         if (isRegex) {
             int flags = caseSensitive ? 0 : Pattern.CASE_INSENSITIVE;
             this.compiledPattern = Pattern.compile(pattern, flags);
+            this.glob = null;
         } else {
-            // Convert glob pattern to regex
-            String regex = FileUtils.convertGlobToRegex(pattern);
-            int flags = caseSensitive ? 0 : Pattern.CASE_INSENSITIVE;
-            this.compiledPattern = Pattern.compile(regex, flags);
+            this.compiledPattern = null;
+            this.glob = Glob.compile(pattern, caseSensitive);
         }
     }
 
@@ -84,16 +85,24 @@ public class FilePatternRule implements Rule {
         return caseSensitive;
     }
 
+    /**
+     * Checks whether a file path matches the pattern of this rule.
+     *
+     * @param filePath The file path to check
+     * @return {@code true} if the file path matches, otherwise {@code false}
+     */
+    public boolean matches(String filePath) {
+        return glob != null ? glob.matches(filePath) : compiledPattern.matcher(filePath).matches();
+    }
+
     @Override
     public boolean applies(MergeContext context) {
-        String filePath = context.getFilePath();
-        return compiledPattern.matcher(filePath).matches();
+        return matches(context.getFilePath());
     }
 
     @Override
     public boolean applies(GitMergeContext context) {
-        String filePath = context.getFilePath();
-        return compiledPattern.matcher(filePath).matches();
+        return matches(context.getFilePath());
     }
 
     @Override
@@ -2,19 +2,20 @@ package ca.fxco.gitmergepipeline.rule;
 
 import ca.fxco.gitmergepipeline.merge.GitMergeContext;
 import ca.fxco.gitmergepipeline.merge.MergeContext;
+import ca.fxco.gitmergepipeline.utils.MimeTypeDetector;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.io.Serializable;
 
 /**
- * A rule that checks if a files mime type matches a specific mime type.
+ * A rule that checks if a files mime type matches a specific mime type.<br>
+ * The mime type is detected from the extension of the file, or else from the content of the current version.
  *
  * @author FX
  */
-public class MimeTypeRule implements Rule {
+public class MimeTypeRule implements Rule, Serializable {
     private final String mimeType;
 
     /**
@@ -39,7 +40,8 @@ public class MimeTypeRule implements Rule {
     @Override
     public boolean applies(MergeContext context) {
         try {
-            return mimeType.equals(Files.probeContentType(Path.of(context.getFilePath())));
+            String detected = MimeTypeDetector.getDefault().detect(context.getFilePath(), context.getCurrentPath());
+            return mimeType.equals(detected);
         } catch (IOException e) {
             return false;
         }
@@ -48,7 +50,13 @@ public class MimeTypeRule implements Rule {
     @Override
     public boolean applies(GitMergeContext context) {
         try {
-            return mimeType.equals(Files.probeContentType(Path.of(context.getFilePath())));
+            MimeTypeDetector detector = MimeTypeDetector.getDefault();
+            String detected = detector.detect(context.getFilePath(), context.getCurrentPath());
+            if (detected == null) {
+                // The file was deleted on the current side
+                detected = detector.detect(context.getFilePath(), context.getOtherPath());
+            }
+            return mimeType.equals(detected);
         } catch (IOException e) {
             return false;
         }
@@ -1,11 +1,12 @@
 package ca.fxco.gitmergepipeline.rule;
 
+import ca.fxco.gitmergepipeline.plugin.PluginIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Registry for rules.
@@ -17,14 +18,24 @@ public class RuleRegistry {
     private static final Logger logger = LoggerFactory.getLogger(RuleRegistry.class);
 
     private final Map<String, Class<? extends Rule>> rules;
+    private final PluginIndex pluginIndex;
 
     /**
-     * Creates a new rule registry.
+     * Creates a new rule registry, which finds plugin rules in the default plugin index.
      */
     public RuleRegistry() {
-        this.rules = new HashMap<>();
+        this(PluginIndex.getDefault());
+    }
+
+    /**
+     * Creates a new rule registry.
+     *
+     * @param pluginIndex The plugin index to find plugin rules in
+     */
+    public RuleRegistry(PluginIndex pluginIndex) {
+        this.rules = new ConcurrentHashMap<>();
+        this.pluginIndex = pluginIndex;
         registerBuiltInRules();
-        loadRulesFromServiceLoader();
     }
 
     /**
@@ -39,17 +50,26 @@ public class RuleRegistry {
     }
 
     /**
-     * Gets a rule class by id.
+     * Gets a rule class by id.<br>
+     * Plugin rules are loaded from the plugin index the first time they're asked for.
      *
      * @param ruleId The id of the rule class to get
      * @return The rule class, or null if no rule with the given id exists
      */
     public Class<? extends Rule> getRule(String ruleId) {
-        return rules.get(ruleId);
+        Class<? extends Rule> ruleClass = rules.get(ruleId);
+        if (ruleClass == null) {
+            ruleClass = pluginIndex.loadClass(PluginIndex.Kind.RULE, ruleId, Rule.class);
+            if (ruleClass != null) {
+                registerRule(ruleId, ruleClass);
+            }
+        }
+        return ruleClass;
     }
 
     /**
-     * Gets all registered rule classes.
+     * Gets all registered rule classes.<br>
+     * Plugin rules are only included once they've been loaded.
      *
      * @return A map of rule ids to rule classes
      */
@@ -65,21 +85,9 @@ public class RuleRegistry {
         logger.info("Registering built-in rules");
         registerRule("filePattern", FilePatternRule.class);
         registerRule("contentPattern", ContentPatternRule.class);
+        registerRule("contentPatternSet", ContentPatternSetRule.class);
         registerRule("composite", CompositeRule.class);
         registerRule("mimeType", MimeTypeRule.class);
         registerRule("fileExtension", FileExtensionRule.class);
     }
-
-    /**
-     * Loads rules from the ServiceLoader.
-     * This allows third-party rules to be registered.
-     */
-    private void loadRulesFromServiceLoader() {
-        ServiceLoader<RuleClassSupplier> ruleClassSuppliers = ServiceLoader.load(RuleClassSupplier.class);
-        for (RuleClassSupplier supplier : ruleClassSuppliers) {
-            for (Map.Entry<String, Class<? extends Rule>> entry : supplier.getRuleClasses().entrySet()) {
-                registerRule(entry.getKey(), entry.getValue());
-            }
-        }
-    }
 }
\ No newline at end of file
@@ -0,0 +1,487 @@
+package ca.fxco.gitmergepipeline.utils;
+
+import org.eclipse.jgit.annotations.Nullable;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.ObjectStream;
+import org.eclipse.jgit.lib.Repository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size-bounded cache of blob contents, shared by all files within a single merge.<br>
+ * Blobs are kept in memory until the byte budget is used up, after which the least recently used blobs are evicted.
+ * If a spill budget is set, evicted blobs and blobs too large for memory are written to memory-mapped files,
+ * so they don't have to be inflated from the pack again.<br>
+ * Blobs larger than the streaming threshold never get loaded onto the heap, they are streamed into memory-mapped
+ * scratch files once, and copied from there with channel transfers. Scratch files count against the spill budget too,
+ * only the most recently staged blob is kept beyond it.
+ *
+ * @author FX
+ */
+public class BlobCache implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(BlobCache.class);
+
+    private static final int STAGING_CHUNK_SIZE = 64 * 1024;
+    private static final long STAGING_WINDOW_SIZE = 64L * 1024 * 1024;
+
+    private final Repository repository;
+    private final long maxBytes;
+    private final long maxSpillBytes;
+    private final long streamingThreshold;
+
+    private final LinkedHashMap<ObjectId, byte[]> blobs = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<ObjectId, SpilledBlob> spilledBlobs = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<ObjectId, StagedBlob> stagedBlobs = new LinkedHashMap<>(16, 0.75f, true);
+    private long usedBytes;
+    private long usedSpillBytes;
+    private @Nullable Path scratchDirectory;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong spillHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates a new blob cache which only keeps blobs in memory.
+     *
+     * @param repository The repository to read blobs from
+     * @param maxBytes   The maximum number of bytes to keep in memory
+     */
+    public BlobCache(Repository repository, long maxBytes) {
+        this(repository, maxBytes, 0);
+    }
+
+    /**
+     * Creates a new blob cache.
+     *
+     * @param repository    The repository to read blobs from
+     * @param maxBytes      The maximum number of bytes to keep in memory
+     * @param maxSpillBytes The maximum number of bytes to spill to disk, or 0 to never spill to disk
+     */
+    public BlobCache(Repository repository, long maxBytes, long maxSpillBytes) {
+        this(repository, maxBytes, maxSpillBytes, 0);
+    }
+
+    /**
+     * Creates a new blob cache which streams large blobs.
+     *
+     * @param repository         The repository to read blobs from
+     * @param maxBytes           The maximum number of bytes to keep in memory
+     * @param maxSpillBytes      The maximum number of bytes to spill to disk, or 0 to never spill to disk
+     * @param streamingThreshold The size above which blobs are streamed instead of loaded, or 0 to never stream
+     */
+    public BlobCache(Repository repository, long maxBytes, long maxSpillBytes, long streamingThreshold) {
+        this.repository = repository;
+        this.maxBytes = Math.max(0, maxBytes);
+        this.maxSpillBytes = Math.max(0, maxSpillBytes);
+        this.streamingThreshold = streamingThreshold > 0 ? streamingThreshold : Long.MAX_VALUE;
+    }
+
+    /**
+     * Gets the content of a blob, reading it from the repository if it's not cached.<br>
+     * The whole content is loaded onto the heap, even for large blobs, so large blobs should be read with
+     * {@link #openStream(AnyObjectId)} or {@link #copyTo(ObjectReader, AnyObjectId, Path)} instead.
+     *
+     * @param blobId The blob to get the content of
+     * @return The content of the blob
+     * @throws IOException If an I/O error occurs while reading the blob
+     */
+    public byte[] getBytes(AnyObjectId blobId) throws IOException {
+        byte[] cached = getCached(blobId);
+        if (cached != null) {
+            return cached;
+        }
+        try (ObjectReader reader = repository.newObjectReader()) {
+            return load(reader, blobId);
+        }
+    }
+
+    /**
+     * Gets the content of a blob, reading it with the given reader if it's not cached.
+     *
+     * @param reader The reader to read the blob with
+     * @param blobId The blob to get the content of
+     * @return The content of the blob
+     * @throws IOException If an I/O error occurs while reading the blob
+     */
+    public byte[] getBytes(ObjectReader reader, AnyObjectId blobId) throws IOException {
+        byte[] cached = getCached(blobId);
+        if (cached != null) {
+            return cached;
+        }
+        return load(reader, blobId);
+    }
+
+    /**
+     * Copies the content of a blob to a file.<br>
+     * Large blobs are copied from their scratch file with a channel transfer, so they never get loaded onto the heap.
+     *
+     * @param reader The reader to read the blob with, if it's not cached
+     * @param blobId The blob to copy
+     * @param target The file to copy to, which gets replaced if it exists
+     * @throws IOException If an I/O error occurs while reading the blob or writing the file
+     */
+    public void copyTo(ObjectReader reader, AnyObjectId blobId, Path target) throws IOException {
+        if (isLarge(reader, blobId)) {
+            try (FileChannel in = openStaged(reader, blobId)) {
+                FileUtils.copyChannel(in, target);
+            }
+        } else {
+            Files.write(target, getBytes(reader, blobId));
+        }
+    }
+
+    /**
+     * Opens a stream to the content of a blob.<br>
+     * Large blobs are streamed from their scratch file, instead of being loaded onto the heap.
+     *
+     * @param blobId The blob to open
+     * @return A stream of the content
+     * @throws IOException If an I/O error occurs while reading the blob
+     */
+    public InputStream openStream(AnyObjectId blobId) throws IOException {
+        try (ObjectReader reader = repository.newObjectReader()) {
+            if (isLarge(reader, blobId)) {
+                return Channels.newInputStream(openStaged(reader, blobId));
+            }
+            return new ByteArrayInputStream(getBytes(reader, blobId));
+        }
+    }
+
+    private boolean isLarge(ObjectReader reader, AnyObjectId blobId) throws IOException {
+        if (streamingThreshold == Long.MAX_VALUE) {
+            return false;
+        }
+        synchronized (this) {
+            if (blobs.containsKey(blobId)) {
+                return false;
+            }
+            if (stagedBlobs.containsKey(blobId)) {
+                return true;
+            }
+        }
+        return reader.getObjectSize(blobId, Constants.OBJ_BLOB) > streamingThreshold;
+    }
+
+    /**
+     * Opens the scratch file of a large blob, staging it first if it isn't there already.<br>
+     * The file is opened while holding the lock, so evicting it afterwards doesn't affect the caller.
+     */
+    private FileChannel openStaged(ObjectReader reader, AnyObjectId blobId) throws IOException {
+        while (true) {
+            stage(reader, blobId);
+            synchronized (this) {
+                StagedBlob staged = stagedBlobs.get(blobId);
+                // Evicted by another thread in the meantime, so it has to be staged again
+                if (staged != null) {
+                    return FileChannel.open(staged.file(), StandardOpenOption.READ);
+                }
+            }
+        }
+    }
+
+    /**
+     * Streams a large blob into a memory-mapped scratch file, if it isn't there already.
+     */
+    private void stage(ObjectReader reader, AnyObjectId blobId) throws IOException {
+        synchronized (this) {
+            if (stagedBlobs.containsKey(blobId)) {
+                spillHits.incrementAndGet();
+                return;
+            }
+        }
+        misses.incrementAndGet();
+
+        ObjectLoader loader = reader.open(blobId, Constants.OBJ_BLOB);
+        long size = loader.getSize();
+        Path scratchFile = Files.createTempFile(getScratchDirectory(), blobId.name() + "-", ".blob");
+        try (ObjectStream in = loader.openStream();
+             FileChannel channel = FileChannel.open(scratchFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            byte[] chunk = new byte[STAGING_CHUNK_SIZE];
+            long position = 0;
+            // Mapped in windows, as a single mapping can't be larger than 2 GiB
+            while (position < size) {
+                long windowSize = Math.min(STAGING_WINDOW_SIZE, size - position);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_WRITE, position, windowSize);
+                while (window.hasRemaining()) {
+                    int read = in.read(chunk, 0, Math.min(chunk.length, window.remaining()));
+                    if (read < 0) {
+                        throw new EOFException("Blob " + blobId.name() + " ended early");
+                    }
+                    window.put(chunk, 0, read);
+                }
+                position += windowSize;
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(scratchFile);
+            throw e;
+        }
+
+        ObjectId id = blobId.copy();
+        synchronized (this) {
+            if (stagedBlobs.putIfAbsent(id, new StagedBlob(scratchFile, size)) == null) {
+                usedSpillBytes += size;
+                trimSpilled(id);
+                return;
+            }
+        }
+        // Another thread staged the same blob at the same time
+        Files.deleteIfExists(scratchFile);
+    }
+
+    private synchronized Path getScratchDirectory() throws IOException {
+        if (scratchDirectory == null) {
+            scratchDirectory = Files.createTempDirectory("gitmergepipeline-blobs-");
+        }
+        return scratchDirectory;
+    }
+
+    private @Nullable byte[] getCached(AnyObjectId blobId) throws IOException {
+        SpilledBlob spilledBlob;
+        synchronized (this) {
+            byte[] content = blobs.get(blobId);
+            if (content != null) {
+                hits.incrementAndGet();
+                return content;
+            }
+            spilledBlob = spilledBlobs.get(blobId);
+        }
+        if (spilledBlob != null) {
+            spillHits.incrementAndGet();
+            byte[] content = spilledBlob.read();
+            if (content.length <= maxBytes) {
+                // Recently used again, so move it back into memory
+                synchronized (this) {
+                    removeSpilled(blobId);
+                }
+                put(blobId.copy(), content);
+            }
+            return content;
+        }
+        return null;
+    }
+
+    private byte[] load(ObjectReader reader, AnyObjectId blobId) throws IOException {
+        if (isLarge(reader, blobId)) {
+            // The caller asked for the whole content, but it's not kept in memory
+            try (InputStream in = Channels.newInputStream(openStaged(reader, blobId))) {
+                return in.readAllBytes();
+            }
+        }
+        misses.incrementAndGet();
+        // Blobs are immutable, so if another thread loads the same blob at the same time, either copy is fine
+        byte[] content = reader.open(blobId).getBytes(Integer.MAX_VALUE - 8);
+        put(blobId.copy(), content);
+        return content;
+    }
+
+    private void put(ObjectId blobId, byte[] content) throws IOException {
+        if (content.length > maxBytes) {
+            spill(blobId, content);
+            return;
+        }
+        Map<ObjectId, byte[]> evicted = new LinkedHashMap<>();
+        synchronized (this) {
+            if (blobs.putIfAbsent(blobId, content) != null) {
+                return;
+            }
+            usedBytes += content.length;
+            Iterator<Map.Entry<ObjectId, byte[]>> iterator = blobs.entrySet().iterator();
+            while (usedBytes > maxBytes && iterator.hasNext()) {
+                Map.Entry<ObjectId, byte[]> entry = iterator.next();
+                iterator.remove();
+                usedBytes -= entry.getValue().length;
+                evicted.put(entry.getKey(), entry.getValue());
+            }
+        }
+        for (Map.Entry<ObjectId, byte[]> entry : evicted.entrySet()) {
+            spill(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void spill(ObjectId blobId, byte[] content) throws IOException {
+        if (content.length > maxSpillBytes) {
+            return;
+        }
+        synchronized (this) {
+            if (spilledBlobs.containsKey(blobId)) {
+                return;
+            }
+        }
+        // Every spill gets its own file, so threads spilling the same blob never write to the same file
+        Path spillFile = Files.createTempFile(getScratchDirectory(), blobId.name() + "-", ".spill");
+
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(spillFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, content.length);
+            buffer.put(content);
+        } catch (IOException e) {
+            Files.deleteIfExists(spillFile);
+            throw e;
+        }
+
+        SpilledBlob spilledBlob = new SpilledBlob(spillFile, buffer);
+        synchronized (this) {
+            if (spilledBlobs.putIfAbsent(blobId, spilledBlob) == null) {
+                usedSpillBytes += content.length;
+                trimSpilled(blobId);
+                return;
+            }
+        }
+        // Another thread spilled the same blob at the same time
+        spilledBlob.delete();
+    }
+
+    /**
+     * Evicts the least recently used spilled and staged blobs until the spill budget is met again.<br>
+     * The blob which was just added is kept, even if it doesn't fit on its own.
+     */
+    private void trimSpilled(ObjectId added) {
+        Iterator<Map.Entry<ObjectId, StagedBlob>> staged = stagedBlobs.entrySet().iterator();
+        while (usedSpillBytes > maxSpillBytes && staged.hasNext()) {
+            Map.Entry<ObjectId, StagedBlob> entry = staged.next();
+            if (!entry.getKey().equals(added)) {
+                staged.remove();
+                usedSpillBytes -= entry.getValue().size();
+                entry.getValue().delete();
+            }
+        }
+        Iterator<Map.Entry<ObjectId, SpilledBlob>> spilled = spilledBlobs.entrySet().iterator();
+        while (usedSpillBytes > maxSpillBytes && spilled.hasNext()) {
+            Map.Entry<ObjectId, SpilledBlob> entry = spilled.next();
+            if (!entry.getKey().equals(added)) {
+                spilled.remove();
+                usedSpillBytes -= entry.getValue().buffer().capacity();
+                entry.getValue().delete();
+            }
+        }
+    }
+
+    private void removeSpilled(AnyObjectId blobId) {
+        SpilledBlob spilledBlob = spilledBlobs.remove(blobId);
+        if (spilledBlob != null) {
+            usedSpillBytes -= spilledBlob.buffer().capacity();
+            spilledBlob.delete();
+        }
+    }
+
+    /**
+     * Gets the number of times a blob was found in memory.
+     *
+     * @return The number of memory hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of times a blob was found in the on-disk tier.
+     *
+     * @return The number of spill hits
+     */
+    public long getSpillHits() {
+        return spillHits.get();
+    }
+
+    /**
+     * Gets the number of times a blob had to be read from the repository.
+     *
+     * @return The number of misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Gets the number of bytes currently kept in memory.
+     *
+     * @return The number of bytes in memory
+     */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * Gets the number of bytes currently spilled or staged on disk.
+     *
+     * @return The number of bytes on disk
+     */
+    public synchronized long getUsedSpillBytes() {
+        return usedSpillBytes;
+    }
+
+    /**
+     * Clears the cache and deletes all spilled and staged blobs.
+     */
+    @Override
+    public synchronized void close() {
+        blobs.clear();
+        usedBytes = 0;
+        for (SpilledBlob spilledBlob : spilledBlobs.values()) {
+            spilledBlob.delete();
+        }
+        spilledBlobs.clear();
+        for (StagedBlob stagedBlob : stagedBlobs.values()) {
+            stagedBlob.delete();
+        }
+        stagedBlobs.clear();
+        usedSpillBytes = 0;
+        if (scratchDirectory != null) {
+            try {
+                Files.deleteIfExists(scratchDirectory);
+            } catch (IOException e) {
+                logger.warn("Failed to delete blob cache directory: {}", scratchDirectory, e);
+            }
+            scratchDirectory = null;
+        }
+    }
+
+    private record SpilledBlob(Path file, MappedByteBuffer buffer) {
+
+        byte[] read() {
+            ByteBuffer view = buffer.duplicate();
+            view.rewind();
+            byte[] content = new byte[view.remaining()];
+            view.get(content);
+            return content;
+        }
+
+        void delete() {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.warn("Failed to delete spilled blob: {}", file, e);
+            }
+        }
+    }
+
+    private record StagedBlob(Path file, long size) {
+
+        void delete() {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.warn("Failed to delete staged blob: {}", file, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package ca.fxco.gitmergepipeline.utils;
+
+import org.eclipse.jgit.annotations.Nullable;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The content of a file within a git tree, loaded lazily from the object database.<br>
+ * The blob is only looked up when the content is first needed, and is read through the blob cache if there is one,
+ * so rules and operations can read the content without checking the file out first.
+ *
+ * @author FX
+ */
+public class BlobContent {
+    private static final byte[] EMPTY = new byte[0];
+
+    private final Repository repository;
+    private final @Nullable BlobCache blobCache;
+    private final AnyObjectId tree;
+    private final String path;
+
+    private boolean resolved;
+    private @Nullable ObjectId blobId;
+    private @Nullable FileMode fileMode;
+    private long size = -1;
+
+    /**
+     * Creates a new lazily loaded blob content.
+     *
+     * @param repository The repository containing the tree
+     * @param blobCache  The blob cache to read the content through, or null to read it from the repository
+     * @param tree       The tree that contains the file
+     * @param path       The path to the file, relative to the repository root
+     */
+    public BlobContent(Repository repository, @Nullable BlobCache blobCache, AnyObjectId tree, String path) {
+        this.repository = repository;
+        this.blobCache = blobCache;
+        this.tree = tree;
+        this.path = path;
+    }
+
+    /**
+     * Creates a new blob content, whose blob is already known.
+     *
+     * @param repository The repository containing the tree
+     * @param blobCache  The blob cache to read the content through, or null to read it from the repository
+     * @param tree       The tree that contains the file
+     * @param path       The path to the file, relative to the repository root
+     * @param blobId     The blob containing the content, or null if the file doesn't exist in the tree
+     * @param fileMode   The file mode of the file, or null if the file doesn't exist in the tree
+     */
+    public BlobContent(Repository repository, @Nullable BlobCache blobCache, AnyObjectId tree, String path,
+                       @Nullable ObjectId blobId, @Nullable FileMode fileMode) {
+        this(repository, blobCache, tree, path);
+        this.blobId = blobId;
+        this.fileMode = fileMode;
+        this.resolved = true;
+    }
+
+    private synchronized void resolve() throws IOException {
+        if (resolved) {
+            return;
+        }
+        Tracer.Span span = Tracer.span("blob", "resolve", "path", path);
+        try (span;
+             ObjectReader reader = repository.newObjectReader();
+             TreeWalk treeWalk = TreeWalk.forPath(reader, path, tree)) {
+            if (treeWalk != null && treeWalk.getFileMode(0).getObjectType() == Constants.OBJ_BLOB) {
+                blobId = treeWalk.getObjectId(0);
+                fileMode = treeWalk.getFileMode(0);
+            }
+        }
+        resolved = true;
+    }
+
+    /**
+     * Gets the path to the file, relative to the repository root.
+     *
+     * @return The path
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Gets the blob containing the content.
+     *
+     * @return The blob id, or null if the file doesn't exist in the tree
+     * @throws IOException If an I/O error occurs while looking up the blob
+     */
+    public @Nullable ObjectId getBlobId() throws IOException {
+        resolve();
+        return blobId;
+    }
+
+    /**
+     * Gets the file mode of the file.
+     *
+     * @return The file mode, or null if the file doesn't exist in the tree
+     * @throws IOException If an I/O error occurs while looking up the blob
+     */
+    public @Nullable FileMode getFileMode() throws IOException {
+        resolve();
+        return fileMode;
+    }
+
+    /**
+     * Checks whether the file exists in the tree.
+     *
+     * @return {@code true} if the file exists, otherwise {@code false}
+     * @throws IOException If an I/O error occurs while looking up the blob
+     */
+    public boolean exists() throws IOException {
+        return getBlobId() != null;
+    }
+
+    /**
+     * Gets the size of the content, without loading it.
+     *
+     * @return The size in bytes, or 0 if the file doesn't exist
+     * @throws IOException If an I/O error occurs while looking up the blob
+     */
+    public synchronized long getSize() throws IOException {
+        if (size < 0) {
+            ObjectId id = getBlobId();
+            if (id == null) {
+                size = 0;
+            } else {
+                try (ObjectReader reader = repository.newObjectReader()) {
+                    size = reader.getObjectSize(id, Constants.OBJ_BLOB);
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Gets the content.
+     *
+     * @return The content, or an empty array if the file doesn't exist
+     * @throws IOException If an I/O error occurs while reading the blob
+     */
+    public byte[] getBytes() throws IOException {
+        ObjectId id = getBlobId();
+        if (id == null) {
+            return EMPTY;
+        }
+        Tracer.Span span = Tracer.span("blob", "getBytes", "path", path);
+        try (span) {
+            if (blobCache != null) {
+                return blobCache.getBytes(id);
+            }
+            try (ObjectReader reader = repository.newObjectReader()) {
+                return reader.open(id, Constants.OBJ_BLOB).getBytes(Integer.MAX_VALUE - 8);
+            }
+        }
+    }
+
+    /**
+     * Opens a stream to the content.<br>
+     * Large blobs are streamed instead of being loaded at once.
+     *
+     * @return A stream of the content, which is empty if the file doesn't exist
+     * @throws IOException If an I/O error occurs while opening the blob
+     */
+    public InputStream openStream() throws IOException {
+        ObjectId id = getBlobId();
+        if (id == null) {
+            return new ByteArrayInputStream(EMPTY);
+        }
+        if (blobCache != null) {
+            return blobCache.openStream(id);
+        }
+        return repository.open(id, Constants.OBJ_BLOB).openStream();
+    }
+
+    /**
+     * Copies the content to a file, without loading large content onto the heap.
+     *
+     * @param target The file to copy to, which gets replaced if it exists, or emptied if the file doesn't exist
+     * @throws IOException If an I/O error occurs while reading the blob or writing the file
+     */
+    public void copyTo(Path target) throws IOException {
+        ObjectId id = getBlobId();
+        if (id == null) {
+            Files.write(target, EMPTY);
+            return;
+        }
+        Tracer.Span span = Tracer.span("blob", "copyTo", "path", path);
+        try (span;
+             ObjectReader reader = repository.newObjectReader()) {
+            if (blobCache != null) {
+                blobCache.copyTo(reader, id, target);
+            } else {
+                GitUtils.writeBlob(reader, id, target);
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package ca.fxco.gitmergepipeline.utils;
+
+import ca.fxco.gitmergepipeline.plugin.PluginIndex;
+import org.eclipse.jgit.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Properties;
+
+/**
+ * The version of this build, and a fingerprint of the code which runs merges.<br>
+ * State which outlives a single process, like cached merge results, configuration snapshots and the merge daemon, is
+ * tied to the fingerprint, so an upgrade of GitMergePipeline or of a plugin never reuses state from older code.
+ *
+ * @author FX
+ */
+public final class BuildInfo {
+    private static final Logger logger = LoggerFactory.getLogger(BuildInfo.class);
+
+    private static final String PROPERTIES_PATH = "gitmergepipeline.properties";
+    private static final String UNKNOWN_VERSION = "dev";
+
+    private BuildInfo() {}
+
+    /**
+     * Gets the version of this build.
+     *
+     * @return The version, or {@code dev} if it isn't known
+     */
+    public static String getVersion() {
+        return DefaultHolder.VERSION;
+    }
+
+    /**
+     * Gets a fingerprint of the code which runs merges, made of the version of this build, the file it was loaded
+     * from, and the plugins on the class path.<br>
+     * Rebuilding a snapshot version changes the file it's loaded from, so it changes the fingerprint as well.
+     *
+     * @return The fingerprint as a hex string
+     */
+    public static String getFingerprint() {
+        return DefaultHolder.FINGERPRINT;
+    }
+
+    /**
+     * Gets a stamp of the file a resource was loaded from, which changes whenever the file is replaced.<br>
+     * Resources within a jar are stamped with the jar, so replacing the jar changes the stamp.
+     *
+     * @param resource The resource
+     * @return The path, size and modification time of the file, or just the resource if it's not a file
+     */
+    public static String stamp(@Nullable URL resource) {
+        if (resource == null) {
+            return "none";
+        }
+        try {
+            URL file = resource;
+            if ("jar".equals(resource.getProtocol())) {
+                file = ((JarURLConnection) resource.openConnection()).getJarFileURL();
+            }
+            if ("file".equals(file.getProtocol())) {
+                Path path = Path.of(file.toURI());
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                return path + " " + attributes.size() + " " + attributes.lastModifiedTime().toMillis();
+            }
+        } catch (IOException | URISyntaxException | ClassCastException | IllegalArgumentException e) {
+            logger.debug("Failed to stamp resource: {}", resource, e);
+        }
+        return resource.toString();
+    }
+
+    private static String readVersion() {
+        try (InputStream in = BuildInfo.class.getClassLoader().getResourceAsStream(PROPERTIES_PATH)) {
+            if (in != null) {
+                Properties properties = new Properties();
+                properties.load(in);
+                String version = properties.getProperty("version");
+                // Unexpanded when running from the sources instead of a build
+                if (version != null && !version.isEmpty() && !version.startsWith("$")) {
+                    return version;
+                }
+            }
+        } catch (IOException e) {
+            logger.debug("Failed to read the build version", e);
+        }
+        return UNKNOWN_VERSION;
+    }
+
+    private static String computeFingerprint() {
+        CodeSource codeSource = BuildInfo.class.getProtectionDomain().getCodeSource();
+        String source = getVersion() + "\n" + stamp(codeSource != null ? codeSource.getLocation() : null) + "\n" +
+                PluginIndex.getDefault().getFingerprint();
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(source.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static final class DefaultHolder {
+        private static final String VERSION = readVersion();
+        private static final String FINGERPRINT = computeFingerprint();
+    }
+}
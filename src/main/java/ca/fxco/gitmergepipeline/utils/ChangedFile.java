@@ -0,0 +1,89 @@
+package ca.fxco.gitmergepipeline.utils;
+
+import org.eclipse.jgit.annotations.Nullable;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * A file which is different in at least one of the branches being merged.<br>
+ * Holds the blob and file mode of every side, where side 0 is the base and the branches follow in merge order.
+ *
+ * @author FX
+ */
+public class ChangedFile {
+
+    /**
+     * The side of the base version.
+     */
+    public static final int BASE = 0;
+
+    private final String path;
+    private final @Nullable ObjectId[] blobIds;
+    private final @Nullable FileMode[] fileModes;
+
+    /**
+     * Creates a new changed file.
+     *
+     * @param path      The path to the file, relative to the repository root
+     * @param blobIds   The blob of every side, or null for the sides the file doesn't exist in
+     * @param fileModes The file mode of every side, or null for the sides the file doesn't exist in
+     */
+    public ChangedFile(String path, @Nullable ObjectId[] blobIds, @Nullable FileMode[] fileModes) {
+        this.path = path;
+        this.blobIds = blobIds;
+        this.fileModes = fileModes;
+    }
+
+    /**
+     * Gets the path to the file.
+     *
+     * @return The path, relative to the repository root
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Gets the number of sides, which is the number of branches plus the base.
+     *
+     * @return The number of sides
+     */
+    public int getSideCount() {
+        return blobIds.length;
+    }
+
+    /**
+     * Gets the blob of a side.
+     *
+     * @param side The side, {@link #BASE} for the base or the index of the branch plus one
+     * @return The blob id, or null if the file doesn't exist in that side
+     */
+    public @Nullable ObjectId getBlobId(int side) {
+        return blobIds[side];
+    }
+
+    /**
+     * Gets the file mode of a side.
+     *
+     * @param side The side, {@link #BASE} for the base or the index of the branch plus one
+     * @return The file mode, or null if the file doesn't exist in that side
+     */
+    public @Nullable FileMode getFileMode(int side) {
+        return fileModes[side];
+    }
+
+    /**
+     * Checks whether the file exists in a side.
+     *
+     * @param side The side, {@link #BASE} for the base or the index of the branch plus one
+     * @return {@code true} if the file exists, otherwise {@code false}
+     */
+    public boolean exists(int side) {
+        return blobIds[side] != null;
+    }
+
+    @Override
+    public String toString() {
+        return "ChangedFile[" + path + "]";
+    }
+}
@@ -0,0 +1,124 @@
+package ca.fxco.gitmergepipeline.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * The part of the content of a file which is read, limited to its first bytes or its first lines.<br>
+ * Files and blobs are both read from a stream which stops once the window is filled, so only the bytes within the
+ * window end up on the heap, and only those are inflated for blobs.
+ *
+ * @param maxBytes The maximum number of bytes to read, or 0 for no limit
+ * @param maxLines The maximum number of lines to read, or 0 for no limit
+ * @author FX
+ */
+public record ContentWindow(int maxBytes, int maxLines) implements Serializable {
+
+    /**
+     * The window over the whole content.
+     */
+    public static final ContentWindow ALL = new ContentWindow(0, 0);
+
+    private static final int READ_CHUNK_SIZE = 8 * 1024;
+
+    /**
+     * Creates a window, treating negative limits as no limit.
+     *
+     * @param maxBytes The maximum number of bytes to read, or 0 for no limit
+     * @param maxLines The maximum number of lines to read, or 0 for no limit
+     */
+    public ContentWindow {
+        maxBytes = Math.max(maxBytes, 0);
+        maxLines = Math.max(maxLines, 0);
+    }
+
+    /**
+     * Checks whether the window covers the whole content.
+     *
+     * @return {@code true} if there is no limit, otherwise {@code false}
+     */
+    public boolean isAll() {
+        return maxBytes == 0 && maxLines == 0;
+    }
+
+    /**
+     * Reads the window of a file on disk.
+     *
+     * @param file The file to read
+     * @return The bytes within the window, between the position and limit of the buffer
+     * @throws IOException If an I/O error occurs while reading the file
+     */
+    public ByteBuffer read(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return limitLines(ByteBuffer.wrap(read(in)));
+        }
+    }
+
+    /**
+     * Reads the window of a blob.
+     *
+     * @param content The content of the blob
+     * @return The bytes within the window, between the position and limit of the buffer
+     * @throws IOException If an I/O error occurs while reading the blob
+     */
+    public ByteBuffer read(BlobContent content) throws IOException {
+        // Streamed even for the whole content, so large blobs are read from their scratch file instead of the cache
+        Tracer.Span span = Tracer.span("blob", "read", "path", content.getPath());
+        try (span;
+             InputStream in = content.openStream()) {
+            return limitLines(ByteBuffer.wrap(read(in)));
+        }
+    }
+
+    /**
+     * Reads the window from a stream, stopping once the window is filled.
+     */
+    private byte[] read(InputStream in) throws IOException {
+        if (maxLines == 0) {
+            return maxBytes > 0 ? in.readNBytes(maxBytes) : in.readAllBytes();
+        }
+        byte[] data = new byte[Math.min(maxBytes > 0 ? maxBytes : READ_CHUNK_SIZE, READ_CHUNK_SIZE)];
+        int length = 0;
+        int lines = 0;
+        while (maxBytes == 0 || length < maxBytes) {
+            if (length == data.length) {
+                int capacity = data.length * 2;
+                data = Arrays.copyOf(data, maxBytes > 0 ? Math.min(capacity, maxBytes) : capacity);
+            }
+            int read = in.read(data, length, data.length - length);
+            if (read < 0) {
+                break;
+            }
+            for (int i = length; i < length + read; i++) {
+                if (data[i] == '\n') {
+                    lines++;
+                }
+            }
+            length += read;
+            if (lines >= maxLines) {
+                break;
+            }
+        }
+        return Arrays.copyOf(data, length);
+    }
+
+    private ByteBuffer limitLines(ByteBuffer buffer) {
+        if (maxLines == 0) {
+            return buffer;
+        }
+        int lines = 0;
+        for (int i = buffer.position(); i < buffer.limit(); i++) {
+            if (buffer.get(i) == '\n' && ++lines == maxLines) {
+                // The last line includes its line terminator
+                buffer.limit(i + 1);
+                break;
+            }
+        }
+        return buffer;
+    }
+}
@@ -1,77 +1,71 @@
 package ca.fxco.gitmergepipeline.utils;
 
-import java.util.regex.Pattern;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 public class FileUtils {
 
     /**
-     * Converts a glob pattern to a regular expression pattern.
+     * Writes a stream of a known size to a file, using a channel transfer instead of loading it into memory.
      *
-     * @param glob The glob pattern to convert
-     * @return The equivalent regular expression pattern
+     * @param in     The stream to write
+     * @param size   The number of bytes in the stream
+     * @param target The file to write to, which gets replaced if it exists
+     * @throws IOException If an I/O error occurs, or the stream ends early
      */
-    public static String convertGlobToRegex(String glob) {
-        StringBuilder regex = new StringBuilder("^");
-        boolean escaping = false;
+    public static void writeStream(InputStream in, long size, Path target) throws IOException {
+        try (ReadableByteChannel source = Channels.newChannel(in);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = 0;
+            while (position < size) {
+                long transferred = out.transferFrom(source, position, size - position);
+                if (transferred <= 0) {
+                    throw new EOFException("Stream ended after " + position + " of " + size + " bytes");
+                }
+                position += transferred;
+            }
+        }
+    }
 
-        for (int i = 0; i < glob.length(); i++) {
-            char c = glob.charAt(i);
+    /**
+     * Copies a file using a channel transfer, so the content doesn't pass through the heap.
+     *
+     * @param source The file to copy
+     * @param target The file to copy to, which gets replaced if it exists
+     * @throws IOException If an I/O error occurs
+     */
+    public static void copyFile(Path source, Path target) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ)) {
+            copyChannel(in, target);
+        }
+    }
 
-            if (escaping) {
-                // If we're escaping, just add the character
-                regex.append(Pattern.quote(String.valueOf(c)));
-                escaping = false;
-            } else {
-                switch (c) {
-                    case '\\':
-                        escaping = true;
-                        break;
-                    case '*':
-                        if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
-                            // ** matches any number of directories
-                            regex.append(".*");
-                            i++; // Skip the next *
-                        } else {
-                            // * matches any number of characters except /
-                            regex.append("[^/]*");
-                        }
-                        break;
-                    case '?':
-                        // ? matches a single character except /
-                        regex.append("[^/]");
-                        break;
-                    case '.', '(', ')', '+', '|', '^', '$', '@', '%':
-                        // Escape special regex characters
-                        regex.append("\\").append(c);
-                        break;
-                    case '{':
-                        // {a,b,c} matches any of a, b, or c
-                        regex.append("(?:");
-                        break;
-                    case '}':
-                        regex.append(")");
-                        break;
-                    case ',':
-                        regex.append("|");
-                        break;
-                    case '[':
-                        // Character class
-                        regex.append("[");
-                        if (i + 1 < glob.length() && glob.charAt(i + 1) == '!') {
-                            regex.append("^");
-                            i++;
-                        } else if (i + 1 < glob.length() && glob.charAt(i + 1) == '^') {
-                            regex.append("\\^");
-                            i++;
-                        }
-                        break;
-                    default:
-                        regex.append(c);
+    /**
+     * Copies the content of an open file using a channel transfer, so the content doesn't pass through the heap.
+     *
+     * @param source The file to copy, which is left open
+     * @param target The file to copy to, which gets replaced if it exists
+     * @throws IOException If an I/O error occurs, or the file gets shorter while it's being copied
+     */
+    public static void copyChannel(FileChannel source, Path target) throws IOException {
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = source.size();
+            long position = 0;
+            while (position < size) {
+                long transferred = source.transferTo(position, size - position, out);
+                if (transferred <= 0) {
+                    throw new EOFException("File ended after " + position + " of " + size + " bytes");
                 }
+                position += transferred;
             }
         }
-
-        regex.append("$");
-        return regex.toString();
     }
 }
@@ -1,5 +1,7 @@
 package ca.fxco.gitmergepipeline.utils;
 
+import org.eclipse.jgit.annotations.Nullable;
+import org.eclipse.jgit.lib.AnyObjectId;
 import org.eclipse.jgit.revwalk.RevCommit;
 
 import java.nio.file.Path;
@@ -11,8 +13,10 @@ import java.nio.file.Path;
  */
 public class GitPath {
 
-    private final RevCommit commit;
+    private final @Nullable RevCommit commit;
+    private final AnyObjectId tree;
     private final Path path;
+    private final @Nullable BlobContent content;
 
     /**
      * Creates a new GitFile.
@@ -21,19 +25,54 @@ public class GitPath {
      * @param path The path to the file
      */
     public GitPath(RevCommit commit, Path path) {
+        this(commit, commit.getTree(), path);
+    }
+
+    /**
+     * Creates a new GitFile from a tree.<br>
+     * Used for intermediate merge results, which do not have a commit yet.
+     *
+     * @param commit The commit that contains the file, or null if the tree is not part of a commit
+     * @param tree   The tree that contains the file
+     * @param path   The path to the file
+     */
+    public GitPath(@Nullable RevCommit commit, AnyObjectId tree, Path path) {
+        this(commit, tree, path, null);
+    }
+
+    /**
+     * Creates a new GitFile from a tree, with its content loaded from the object database.
+     *
+     * @param commit  The commit that contains the file, or null if the tree is not part of a commit
+     * @param tree    The tree that contains the file
+     * @param path    The path to the file
+     * @param content The content of the file within the tree, or null if it should be read from the path
+     */
+    public GitPath(@Nullable RevCommit commit, AnyObjectId tree, Path path, @Nullable BlobContent content) {
         this.commit = commit;
+        this.tree = tree;
         this.path = path;
+        this.content = content;
     }
 
     /**
      * Gets the commit that contains the file.
      *
-     * @return The commit
+     * @return The commit, or null if the file is only part of a tree
      */
-    public RevCommit getCommit() {
+    public @Nullable RevCommit getCommit() {
         return commit;
     }
 
+    /**
+     * Gets the tree that contains the file.
+     *
+     * @return The tree
+     */
+    public AnyObjectId getTree() {
+        return tree;
+    }
+
     /**
      * Gets the path to the file.
      *
@@ -42,4 +81,13 @@ public class GitPath {
     public Path getPath() {
         return path;
     }
+
+    /**
+     * Gets the content of the file within the tree.
+     *
+     * @return The content, or null if the content should be read from the path
+     */
+    public @Nullable BlobContent getContent() {
+        return content;
+    }
 }
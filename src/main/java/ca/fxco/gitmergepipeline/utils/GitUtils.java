@@ -1,25 +1,31 @@
 package ca.fxco.gitmergepipeline.utils;
 
 import ca.fxco.gitmergepipeline.config.PipelineConfiguration;
-import org.eclipse.jgit.diff.DiffEntry;
-import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.annotations.Nullable;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
 import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.ObjectStream;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.revwalk.filter.RevFilter;
-import org.eclipse.jgit.treewalk.CanonicalTreeParser;
 import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -62,50 +68,72 @@ public class GitUtils {
     }
 
     /**
-     * Gets the list of changed files between the given commits.
+     * Gets the list of changed files between the given commits.<br>
+     * The base and every branch are walked together in a single pass. Subtrees which are the same on every side are
+     * skipped without being read, and every changed file is only found once.
      *
      * @param configuration The pipeline configuration to use for filtering files
      * @param repo          The repository to look in
      * @param base          The base commit to compare against
      * @param branches      The commits to compare against the base commit
-     * @return The list of changed files
+     * @return The list of changed files, in path order
      * @throws IOException If an I/O error occurs when traversing through the commits
      */
-    public static List<DiffEntry> getChangedFiles(PipelineConfiguration configuration, Repository repo, RevCommit base,
-                                                  List<RevCommit> branches)
-            throws IOException {
-        Set<String> seenPaths = new HashSet<>();
-        List<DiffEntry> allDiffs = new ArrayList<>();
-
-        try (ObjectReader reader = repo.newObjectReader()) {
-            CanonicalTreeParser baseTree = new CanonicalTreeParser();
-            baseTree.reset(reader, base.getTree().getId());
-
+    public static List<ChangedFile> getChangedFiles(PipelineConfiguration configuration, Repository repo,
+                                                    RevCommit base, List<RevCommit> branches) throws IOException {
+        List<ChangedFile> changedFiles = new ArrayList<>();
+        try (ObjectReader reader = repo.newObjectReader();
+             TreeWalk treeWalk = new TreeWalk(reader)) {
+            treeWalk.addTree(base.getTree());
             for (RevCommit branch : branches) {
-                CanonicalTreeParser branchTree = new CanonicalTreeParser();
-                branchTree.reset(reader, branch.getTree().getId());
-
-                try (ByteArrayOutputStream out = new ByteArrayOutputStream();
-                     DiffFormatter diffFormatter = new DiffFormatter(out)) {
-                    diffFormatter.setRepository(repo);
-                    diffFormatter.setBinaryFileThreshold(configuration.binaryFileThreshold());
-                    diffFormatter.setDetectRenames(configuration.detectRenames());
-                    diffFormatter.setPathFilter(configuration.getCombinedFilter());
-                    List<DiffEntry> diffs = diffFormatter.scan(baseTree, branchTree);
-                    for (DiffEntry diff : diffs) {
-                        String path = diff.getNewPath();
-                        if (seenPaths.add(path)) {
-                            allDiffs.add(diff);
-                        }
+                treeWalk.addTree(branch.getTree());
+            }
+            treeWalk.setRecursive(true);
+            treeWalk.setFilter(AndTreeFilter.create(configuration.getCombinedFilter(), TreeFilter.ANY_DIFF));
+
+            int sides = treeWalk.getTreeCount();
+            while (treeWalk.next()) {
+                ObjectId[] blobIds = new ObjectId[sides];
+                FileMode[] fileModes = new FileMode[sides];
+                for (int side = 0; side < sides; side++) {
+                    FileMode fileMode = treeWalk.getFileMode(side);
+                    if (fileMode != FileMode.MISSING) {
+                        blobIds[side] = treeWalk.getObjectId(side);
+                        fileModes[side] = fileMode;
                     }
-                } catch (Exception e) {
-                    logger.error(e.getMessage(), e);
                 }
+                changedFiles.add(new ChangedFile(treeWalk.getPathString(), blobIds, fileModes));
+            }
+        }
+        return changedFiles;
+    }
+
+    /**
+     * Gets the paths which are different between two trees.
+     *
+     * @param reader The reader to read the trees with
+     * @param first  The first tree
+     * @param second The second tree
+     * @param paths  The paths to compare, relative to the repository root
+     * @return The paths from the given paths, which are different between the trees
+     * @throws IOException If an I/O error occurs when reading the trees
+     */
+    public static Set<String> getDifferingPaths(ObjectReader reader, AnyObjectId first, AnyObjectId second,
+                                                Collection<String> paths) throws IOException {
+        Set<String> differingPaths = new HashSet<>();
+        if (paths.isEmpty()) {
+            return differingPaths;
+        }
+        try (TreeWalk treeWalk = new TreeWalk(reader)) {
+            treeWalk.addTree(first);
+            treeWalk.addTree(second);
+            treeWalk.setRecursive(true);
+            treeWalk.setFilter(AndTreeFilter.create(PathFilterGroup.createFromStrings(paths), TreeFilter.ANY_DIFF));
+            while (treeWalk.next()) {
+                differingPaths.add(treeWalk.getPathString());
             }
-        } catch (Exception e) {
-            logger.error(e.getMessage(), e);
         }
-        return allDiffs;
+        return differingPaths;
     }
 
     /**
@@ -123,8 +151,9 @@ public class GitUtils {
             if (treeWalk == null) {
                 return tempFile; // File doesn't exist in this commit
             }
-            ObjectId blobId = treeWalk.getObjectId(0);
-            Files.write(tempFile, repo.open(blobId).getBytes());
+            try (ObjectReader reader = repo.newObjectReader()) {
+                writeBlob(reader, treeWalk.getObjectId(0), tempFile);
+            }
         } catch (Exception e) {
             logger.error(e.getMessage(), e);
         }
@@ -140,20 +169,101 @@ public class GitUtils {
      * @throws IOException If an I/O error occurs when traversing through the repo
      */
     public static Path checkoutFile(Repository repo, GitPath gitPath) throws IOException {
+        return checkoutFile(repo, gitPath, null);
+    }
+
+    /**
+     * Checks out a file from a commit, reading its content through the given blob cache.
+     *
+     * @param repo      The repository to look in
+     * @param gitPath   The git path to the file to check out
+     * @param blobCache The blob cache to read the file content from, or null to read it from the repository
+     * @return The path to the checked-out file
+     * @throws IOException If an I/O error occurs when traversing through the repo
+     */
+    public static Path checkoutFile(Repository repo, GitPath gitPath, @Nullable BlobCache blobCache)
+            throws IOException {
         String path = gitPath.getPath().toString();
+        BlobContent content = gitPath.getContent();
+        if (content != null) {
+            path = content.getPath();
+        }
         Path tempFile = Files.createTempFile("mergefile-", "-" + path.replace('/', '_'));
-        try (TreeWalk treeWalk = TreeWalk.forPath(repo, path, gitPath.getCommit().getTree())) {
+        if (content != null) {
+            content.copyTo(tempFile);
+            return tempFile;
+        }
+        try (TreeWalk treeWalk = TreeWalk.forPath(repo, path, gitPath.getTree())) {
             if (treeWalk == null) {
                 return tempFile; // File doesn't exist in this commit
             }
-            ObjectId blobId = treeWalk.getObjectId(0);
-            Files.write(tempFile, repo.open(blobId).getBytes());
+            try (ObjectReader reader = repo.newObjectReader()) {
+                if (blobCache != null) {
+                    blobCache.copyTo(reader, treeWalk.getObjectId(0), tempFile);
+                } else {
+                    writeBlob(reader, treeWalk.getObjectId(0), tempFile);
+                }
+            }
         } catch (Exception e) {
             logger.error(e.getMessage(), e);
         }
         return tempFile;
     }
 
+    /**
+     * Writes a blob to a file within the working directory.
+     * Ensures the parent directories exist.
+     *
+     * @param reader the reader to read the blob with
+     * @param blobId the blob to write
+     * @param target the destination path in the working directory
+     * @throws IOException if an I/O error occurs
+     */
+    public static void writeBlobToWorkingDirectory(ObjectReader reader, AnyObjectId blobId, Path target)
+            throws IOException {
+        // Ensure target directory exists
+        if (target.getParent() != null) {
+            Files.createDirectories(target.getParent());
+        }
+
+        writeBlob(reader, blobId, target);
+    }
+
+    /**
+     * Writes a blob to a file within the working directory, reading it through the given blob cache.
+     * Ensures the parent directories exist.
+     *
+     * @param reader    the reader to read the blob with, if it's not cached
+     * @param blobCache the blob cache to read the blob from
+     * @param blobId    the blob to write
+     * @param target    the destination path in the working directory
+     * @throws IOException if an I/O error occurs
+     */
+    public static void writeBlobToWorkingDirectory(ObjectReader reader, BlobCache blobCache, AnyObjectId blobId,
+                                                   Path target) throws IOException {
+        // Ensure target directory exists
+        if (target.getParent() != null) {
+            Files.createDirectories(target.getParent());
+        }
+
+        blobCache.copyTo(reader, blobId, target);
+    }
+
+    /**
+     * Writes a blob to a file, streaming it from the object database so it never has to fit on the heap.
+     *
+     * @param reader the reader to read the blob with
+     * @param blobId the blob to write
+     * @param target the file to write to, which gets replaced if it exists
+     * @throws IOException if an I/O error occurs
+     */
+    public static void writeBlob(ObjectReader reader, AnyObjectId blobId, Path target) throws IOException {
+        ObjectLoader loader = reader.open(blobId, Constants.OBJ_BLOB);
+        try (ObjectStream in = loader.openStream()) {
+            FileUtils.writeStream(in, loader.getSize(), target);
+        }
+    }
+
     /**
      * Copies a file from source to target within the working directory.
      * Ensures the parent directories exist.
@@ -0,0 +1,497 @@
+package ca.fxco.gitmergepipeline.utils;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compiled glob pattern, using the syntax described in {@link GlobParser}.<br>
+ * Common shapes of globs are matched directly: literals, literal prefixes like {@code build/*}, literal suffixes like
+ * {@code *.java}, sets of extensions like {@code *.{json,yml}}, and any of those after a leading {@code **&#47;}.
+ * Other globs are matched by simulating their automaton over the characters of the path.<br>
+ * Paths can be matched as characters, or as the UTF-8 bytes git stores them as. Matching doesn't allocate, except for
+ * globs with more than 64 automaton states.
+ *
+ * @author FX
+ */
+public final class Glob implements Serializable {
+
+    private static final int LITERAL = 0;
+    private static final int PREFIX = 1;
+    private static final int SUFFIX = 2;
+    private static final int SUFFIXES = 3;
+    private static final int ANY = 4;
+    private static final int AUTOMATON = 5;
+
+    private final String glob;
+    private final boolean caseSensitive;
+
+    // Only the part after a leading `**/` is matched, against the file name
+    private final transient boolean fileNameOnly;
+    private final transient int kind;
+    private final transient String[] literals;
+    private final transient byte[][] literalBytes;
+    private final transient Automaton automaton;
+
+    private Glob(String glob, boolean caseSensitive) {
+        this.glob = glob;
+        this.caseSensitive = caseSensitive;
+
+        String pattern = glob;
+        this.fileNameOnly = pattern.startsWith("**/") && pattern.indexOf('/', 3) < 0 &&
+                !pattern.substring(3).contains("**") && !pattern.contains("\\");
+        if (fileNameOnly) {
+            pattern = pattern.substring(3);
+        }
+        List<String> literals = new ArrayList<>();
+        if (pattern.equals("**")) {
+            this.kind = ANY;
+        } else if (isLiteral(pattern)) {
+            this.kind = LITERAL;
+            literals.add(pattern);
+        } else if (pattern.endsWith("*") && isLiteral(pattern.substring(0, pattern.length() - 1))) {
+            this.kind = PREFIX;
+            literals.add(pattern.substring(0, pattern.length() - 1));
+        } else if (pattern.startsWith("*") && isLiteral(pattern.substring(1))) {
+            this.kind = SUFFIX;
+            literals.add(pattern.substring(1));
+        } else if (isSuffixes(pattern, literals)) {
+            this.kind = SUFFIXES;
+        } else {
+            this.kind = AUTOMATON;
+        }
+        if (kind == AUTOMATON) {
+            this.automaton = new Automaton(pattern, caseSensitive);
+            this.literals = null;
+            this.literalBytes = null;
+        } else {
+            this.automaton = null;
+            this.literals = literals.toArray(new String[0]);
+            this.literalBytes = new byte[this.literals.length][];
+            for (int i = 0; i < this.literals.length; i++) {
+                this.literalBytes[i] = this.literals[i].getBytes(StandardCharsets.UTF_8);
+            }
+        }
+    }
+
+    /**
+     * Compiles a glob pattern.
+     *
+     * @param glob          The glob pattern
+     * @param caseSensitive Whether ASCII letters have to match in case
+     * @return The compiled glob
+     */
+    public static Glob compile(String glob, boolean caseSensitive) {
+        return new Glob(glob, caseSensitive);
+    }
+
+    /**
+     * The matching structures aren't serialized, so the glob is compiled again.
+     */
+    @Serial
+    private Object readResolve() {
+        return new Glob(glob, caseSensitive);
+    }
+
+    /**
+     * Gets the glob pattern.
+     *
+     * @return The glob pattern
+     */
+    public String getGlob() {
+        return glob;
+    }
+
+    /**
+     * Checks whether letters have to match in case.
+     *
+     * @return {@code true} if ASCII letters have to match in case, otherwise {@code false}
+     */
+    public boolean isCaseSensitive() {
+        return caseSensitive;
+    }
+
+    /**
+     * Checks whether a path matches the glob.
+     *
+     * @param path The path
+     * @return {@code true} if the whole path matches, otherwise {@code false}
+     */
+    public boolean matches(CharSequence path) {
+        return matches(path, 0, path.length());
+    }
+
+    /**
+     * Checks whether a part of a character sequence matches the glob.
+     *
+     * @param path  The characters holding the path
+     * @param start The index the path starts at
+     * @param end   The index the path ends at, exclusive
+     * @return {@code true} if the whole path matches, otherwise {@code false}
+     */
+    public boolean matches(CharSequence path, int start, int end) {
+        if (fileNameOnly) {
+            for (int i = end - 1; i >= start; i--) {
+                if (path.charAt(i) == '/') {
+                    start = i + 1;
+                    break;
+                }
+            }
+        }
+        return switch (kind) {
+            case LITERAL -> end - start == literals[0].length() && regionMatches(path, start, literals[0]);
+            case PREFIX -> end - start >= literals[0].length() && regionMatches(path, start, literals[0]) &&
+                    !containsSlash(path, start + literals[0].length(), end);
+            case SUFFIX -> end - start >= literals[0].length() &&
+                    regionMatches(path, end - literals[0].length(), literals[0]) &&
+                    !containsSlash(path, start, end - literals[0].length());
+            case SUFFIXES -> {
+                for (String literal : literals) {
+                    if (end - start >= literal.length() && regionMatches(path, end - literal.length(), literal)) {
+                        yield !containsSlash(path, start, end - literal.length());
+                    }
+                }
+                yield false;
+            }
+            case ANY -> true;
+            default -> automaton.matches(path, start, end);
+        };
+    }
+
+    /**
+     * Checks whether a path, encoded in UTF-8, matches the glob.
+     *
+     * @param path  The bytes holding the path
+     * @param start The index the path starts at
+     * @param end   The index the path ends at, exclusive
+     * @return {@code true} if the whole path matches, otherwise {@code false}
+     */
+    public boolean matches(byte[] path, int start, int end) {
+        if (fileNameOnly) {
+            for (int i = end - 1; i >= start; i--) {
+                if (path[i] == '/') {
+                    start = i + 1;
+                    break;
+                }
+            }
+        }
+        return switch (kind) {
+            case LITERAL -> end - start == literalBytes[0].length && regionMatches(path, start, literalBytes[0]);
+            case PREFIX -> end - start >= literalBytes[0].length && regionMatches(path, start, literalBytes[0]) &&
+                    !containsSlash(path, start + literalBytes[0].length, end);
+            case SUFFIX -> end - start >= literalBytes[0].length &&
+                    regionMatches(path, end - literalBytes[0].length, literalBytes[0]) &&
+                    !containsSlash(path, start, end - literalBytes[0].length);
+            case SUFFIXES -> {
+                for (byte[] literal : literalBytes) {
+                    if (end - start >= literal.length && regionMatches(path, end - literal.length, literal)) {
+                        yield !containsSlash(path, start, end - literal.length);
+                    }
+                }
+                yield false;
+            }
+            case ANY -> true;
+            default -> automaton.matches(path, start, end, false);
+        };
+    }
+
+    /**
+     * Checks whether any path within a directory, encoded in UTF-8, can match the glob.<br>
+     * This is used to skip directories while walking a tree. It can return {@code true} for a directory without any
+     * matching paths, but never returns {@code false} for a directory with one.
+     *
+     * @param directory The bytes holding the directory path, without a trailing {@code /}
+     * @param start     The index the directory path starts at
+     * @param end       The index the directory path ends at, exclusive
+     * @return {@code false} if no path within the directory matches, otherwise {@code true}
+     */
+    public boolean mayMatchWithin(byte[] directory, int start, int end) {
+        if (fileNameOnly) {
+            return true;
+        }
+        return switch (kind) {
+            // The literal has to continue with the directory, followed by a slash
+            case LITERAL, PREFIX -> literalBytes[0].length > end - start && literalBytes[0][end - start] == '/' &&
+                    regionMatches(directory, start, literalBytes[0], end - start);
+            // A star can't match a slash, so the slash after the directory has to be part of a suffix
+            case SUFFIX, SUFFIXES -> {
+                for (String literal : literals) {
+                    if (literal.indexOf('/') >= 0) {
+                        yield true;
+                    }
+                }
+                yield false;
+            }
+            case ANY -> true;
+            default -> automaton.matches(directory, start, end, true);
+        };
+    }
+
+    @Override
+    public String toString() {
+        return glob;
+    }
+
+    private boolean regionMatches(CharSequence path, int offset, String literal) {
+        for (int i = 0; i < literal.length(); i++) {
+            char c = path.charAt(offset + i);
+            char expected = literal.charAt(i);
+            if (c != expected && (caseSensitive || c >= 128 || foldCase(c) != foldCase(expected))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean regionMatches(byte[] path, int offset, byte[] literal) {
+        return regionMatches(path, offset, literal, literal.length);
+    }
+
+    private boolean regionMatches(byte[] path, int offset, byte[] literal, int length) {
+        for (int i = 0; i < length; i++) {
+            byte b = path[offset + i];
+            byte expected = literal[i];
+            if (b != expected && (caseSensitive || b < 0 || foldCase(b) != foldCase(expected))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int foldCase(int c) {
+        return c >= 'A' && c <= 'Z' ? c | 0x20 : c;
+    }
+
+    private static boolean containsSlash(CharSequence path, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (path.charAt(i) == '/') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean containsSlash(byte[] path, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (path[i] == '/') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isLiteral(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            if ("\\*?[{".indexOf(pattern.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks for a glob like {@code *.{json,yml}}, collecting the suffixes it matches.
+     */
+    private static boolean isSuffixes(String pattern, List<String> suffixes) {
+        int open = pattern.indexOf('{');
+        if (!pattern.startsWith("*") || open < 0 || !pattern.endsWith("}") ||
+                !isLiteral(pattern.substring(1, open))) {
+            return false;
+        }
+        String alternatives = pattern.substring(open + 1, pattern.length() - 1);
+        if (!isLiteral(alternatives) || alternatives.indexOf('}') >= 0) {
+            return false;
+        }
+        for (String alternative : alternatives.split(",", -1)) {
+            suffixes.add(pattern.substring(1, open) + alternative);
+        }
+        // Longer suffixes first, since a shorter one can match the end of a longer one
+        suffixes.sort((a, b) -> Integer.compare(b.length(), a.length()));
+        return true;
+    }
+
+    /**
+     * The nondeterministic automaton of a glob, simulated with a bit per state.<br>
+     * The states reachable without consuming a character are computed ahead of time, so each character is a single
+     * step over the current states.
+     */
+    private static final class Automaton implements GlobParser.Target {
+        private final List<List<Integer>> epsilons = new ArrayList<>();
+        private final List<int[]> transitionRanges = new ArrayList<>();
+        private final List<Integer> transitionSources = new ArrayList<>();
+        private final List<Integer> transitionTargets = new ArrayList<>();
+
+        private final int words;
+        private final int end;
+        // Per transition: the ranges it accepts, its source state, and the closure of its target
+        private final int[][] ranges;
+        private final int[] sources;
+        private final long[][] targets;
+        private final long[] start;
+
+        private Automaton(String glob, boolean caseSensitive) {
+            int initial = newState();
+            this.end = GlobParser.parse(glob, caseSensitive, this, initial);
+            int stateCount = epsilons.size();
+            this.words = (stateCount + 63) >>> 6;
+            this.start = closure(initial);
+            int transitionCount = transitionRanges.size();
+            this.ranges = transitionRanges.toArray(new int[0][]);
+            this.sources = new int[transitionCount];
+            this.targets = new long[transitionCount][];
+            for (int i = 0; i < transitionCount; i++) {
+                sources[i] = transitionSources.get(i);
+                targets[i] = closure(transitionTargets.get(i));
+            }
+        }
+
+        @Override
+        public int newState() {
+            epsilons.add(new ArrayList<>());
+            return epsilons.size() - 1;
+        }
+
+        @Override
+        public void epsilon(int from, int to) {
+            epsilons.get(from).add(to);
+        }
+
+        @Override
+        public void transition(int from, int[] ranges, int to) {
+            transitionRanges.add(ranges);
+            transitionSources.add(from);
+            transitionTargets.add(to);
+        }
+
+        private long[] closure(int state) {
+            long[] set = new long[words];
+            int[] pending = new int[epsilons.size()];
+            int count = 0;
+            set[state >>> 6] |= 1L << state;
+            pending[count++] = state;
+            while (count > 0) {
+                for (int next : epsilons.get(pending[--count])) {
+                    if ((set[next >>> 6] & 1L << next) == 0) {
+                        set[next >>> 6] |= 1L << next;
+                        pending[count++] = next;
+                    }
+                }
+            }
+            return set;
+        }
+
+        private boolean matches(CharSequence path, int from, int to) {
+            if (words == 1) {
+                long states = start[0];
+                for (int i = from; i < to && states != 0; ) {
+                    int c = Character.codePointAt(path, i);
+                    i += Character.charCount(c);
+                    states = step(states, c);
+                }
+                return (states & 1L << end) != 0;
+            }
+            long[] states = start.clone();
+            long[] next = new long[words];
+            for (int i = from; i < to; ) {
+                int c = Character.codePointAt(path, i);
+                i += Character.charCount(c);
+                if (!step(states, next, c)) {
+                    return false;
+                }
+                long[] swap = states;
+                states = next;
+                next = swap;
+            }
+            return (states[end >>> 6] & 1L << end) != 0;
+        }
+
+        /**
+         * Runs the automaton over a path encoded in UTF-8.
+         *
+         * @param directory Whether to check if anything below the path as a directory can match, instead of the path
+         */
+        private boolean matches(byte[] path, int from, int to, boolean directory) {
+            long[] wideStates = words == 1 ? null : start.clone();
+            long[] next = words == 1 ? null : new long[words];
+            long states = start[0];
+            int limit = directory ? to + 1 : to;
+            for (int i = from; i < limit; ) {
+                int c;
+                if (i == to) {
+                    c = '/';
+                    i++;
+                } else {
+                    // Decode UTF-8 inline, with invalid sequences becoming a replacement character
+                    c = path[i++] & 0xFF;
+                    if (c >= 0x80) {
+                        int length = c >= 0xF0 ? 3 : c >= 0xE0 ? 2 : c >= 0xC0 ? 1 : -1;
+                        if (length < 0 || i + length > to) {
+                            c = 0xFFFD;
+                        } else {
+                            c &= 0x3F >> length;
+                            for (int j = 0; j < length; j++) {
+                                c = c << 6 | path[i++] & 0x3F;
+                            }
+                        }
+                    }
+                }
+                if (wideStates == null) {
+                    states = step(states, c);
+                    if (states == 0) {
+                        return false;
+                    }
+                } else {
+                    if (!step(wideStates, next, c)) {
+                        return false;
+                    }
+                    long[] swap = wideStates;
+                    wideStates = next;
+                    next = swap;
+                }
+            }
+            if (directory) {
+                // Some path within the directory may still reach the end of the glob
+                return true;
+            }
+            return wideStates == null ? (states & 1L << end) != 0 : (wideStates[end >>> 6] & 1L << end) != 0;
+        }
+
+        private long step(long states, int c) {
+            long next = 0;
+            for (int i = 0; i < sources.length; i++) {
+                if ((states & 1L << sources[i]) != 0 && covers(ranges[i], c)) {
+                    next |= targets[i][0];
+                }
+            }
+            return next;
+        }
+
+        private boolean step(long[] states, long[] next, int c) {
+            boolean any = false;
+            Arrays.fill(next, 0);
+            for (int i = 0; i < sources.length; i++) {
+                int source = sources[i];
+                if ((states[source >>> 6] & 1L << source) != 0 && covers(ranges[i], c)) {
+                    long[] target = targets[i];
+                    for (int w = 0; w < words; w++) {
+                        next[w] |= target[w];
+                    }
+                    any = true;
+                }
+            }
+            return any;
+        }
+
+        private static boolean covers(int[] ranges, int c) {
+            for (int i = 0; i < ranges.length; i += 2) {
+                if (c >= ranges[i] && c <= ranges[i + 1]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
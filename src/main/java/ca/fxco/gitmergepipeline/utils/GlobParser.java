@@ -0,0 +1,282 @@
+package ca.fxco.gitmergepipeline.utils;
+
+import java.util.BitSet;
+
+/**
+ * Parses glob patterns into a nondeterministic automaton, over the code points of a path.<br>
+ * The syntax is:
+ * <ul>
+ *     <li>{@code ?} matches a single character except {@code /}</li>
+ *     <li>{@code *} matches any number of characters except {@code /}</li>
+ *     <li>{@code **&#47;} at the start of a segment matches any number of directories, including none</li>
+ *     <li>{@code **} anywhere else matches any number of characters, including {@code /}</li>
+ *     <li>{@code [abc]}, {@code [a-z]} match a character in the set, {@code [!abc]} a character not in the set.
+ *     Sets never match {@code /}</li>
+ *     <li>{@code {a,b,c}} matches any of the alternatives, which can be globs themselves</li>
+ *     <li>{@code \} matches the next character literally</li>
+ * </ul>
+ * Syntax which isn't closed, like a {@code [} without a {@code ]}, is matched literally.
+ * Case-insensitive globs ignore the case of ASCII letters only.
+ *
+ * @author FX
+ */
+public final class GlobParser {
+
+    private static final int MAX_CODE_POINT = Character.MAX_CODE_POINT;
+    private static final int[] ANY = {0, MAX_CODE_POINT};
+    private static final int[] ANY_BUT_SLASH = {0, '/' - 1, '/' + 1, MAX_CODE_POINT};
+    private static final int[] SLASH = {'/', '/'};
+
+    private final String glob;
+    private final boolean caseSensitive;
+    private final Target target;
+    private int pos;
+
+    private GlobParser(String glob, boolean caseSensitive, Target target) {
+        this.glob = glob;
+        this.caseSensitive = caseSensitive;
+        this.target = target;
+    }
+
+    /**
+     * Adds a glob to an automaton.
+     *
+     * @param glob          The glob to add
+     * @param caseSensitive Whether ASCII letters have to match in case
+     * @param target        The automaton to add the glob to
+     * @param start         The state the glob starts from
+     * @return The state reached once the whole glob is matched
+     */
+    public static int parse(String glob, boolean caseSensitive, Target target, int start) {
+        return new GlobParser(glob, caseSensitive, target).sequence(start, false, true);
+    }
+
+    /**
+     * Parses a sequence up to the end of the glob, or up to the end of the alternative when within braces.
+     *
+     * @param segmentStart Whether the sequence starts at the start of a path segment
+     */
+    private int sequence(int state, boolean inBraces, boolean segmentStart) {
+        while (pos < glob.length()) {
+            char c = glob.charAt(pos);
+            boolean wasSegmentStart = segmentStart;
+            segmentStart = c == '/';
+            switch (c) {
+                case '\\' -> {
+                    pos++;
+                    if (pos >= glob.length()) {
+                        state = step(state, characterRanges('\\'));
+                    } else {
+                        state = literal(state);
+                    }
+                }
+                case '*' -> {
+                    if (pos + 1 < glob.length() && glob.charAt(pos + 1) == '*') {
+                        if (wasSegmentStart && pos + 2 < glob.length() && glob.charAt(pos + 2) == '/') {
+                            state = directories(state);
+                            pos += 3;
+                        } else {
+                            state = loop(state, ANY);
+                            pos += 2;
+                        }
+                    } else {
+                        state = loop(state, ANY_BUT_SLASH);
+                        pos++;
+                    }
+                }
+                case '?' -> {
+                    state = step(state, ANY_BUT_SLASH);
+                    pos++;
+                }
+                case '[' -> {
+                    int[] ranges = characterSet();
+                    state = ranges != null ? step(state, ranges) : literal(state);
+                }
+                case '{' -> {
+                    int close = findClosingBrace(pos);
+                    if (close < 0) {
+                        state = literal(state);
+                        break;
+                    }
+                    pos++;
+                    int end = target.newState();
+                    while (true) {
+                        int alternative = target.newState();
+                        target.epsilon(state, alternative);
+                        target.epsilon(sequence(alternative, true, wasSegmentStart), end);
+                        if (pos >= glob.length() || glob.charAt(pos++) == '}') {
+                            break;
+                        }
+                    }
+                    state = end;
+                }
+                case '}', ',' -> {
+                    if (inBraces) {
+                        return state;
+                    }
+                    state = literal(state);
+                }
+                default -> state = literal(state);
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Matches any number of directories, which is either nothing or anything ending with a {@code /}.
+     */
+    private int directories(int state) {
+        int directories = target.newState();
+        int names = target.newState();
+        target.epsilon(state, directories);
+        target.epsilon(state, names);
+        target.transition(names, ANY, names);
+        target.transition(names, SLASH, directories);
+        return directories;
+    }
+
+    private int findClosingBrace(int open) {
+        int depth = 0;
+        for (int i = open; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '[') {
+                // Braces within a set are part of the set
+                int end = findSetEnd(i);
+                if (end > 0) {
+                    i = end;
+                }
+            } else if (c == '{') {
+                depth++;
+            } else if (c == '}' && --depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int findSetEnd(int open) {
+        int i = open + 1;
+        if (i < glob.length() && glob.charAt(i) == '!') {
+            i++;
+        }
+        // A ] right after the opening bracket is part of the set
+        if (i < glob.length() && glob.charAt(i) == ']') {
+            i++;
+        }
+        return glob.indexOf(']', i);
+    }
+
+    private int[] characterSet() {
+        int end = findSetEnd(pos);
+        if (end < 0) {
+            return null;
+        }
+        int i = pos + 1;
+        boolean negated = i < end && glob.charAt(i) == '!';
+        if (negated) {
+            i++;
+        }
+        BitSet chars = new BitSet();
+        while (i < end) {
+            int c = glob.codePointAt(i);
+            i += Character.charCount(c);
+            if (i + 1 < end && glob.charAt(i) == '-') {
+                int last = glob.codePointAt(i + 1);
+                i += 1 + Character.charCount(last);
+                if (last >= c) {
+                    chars.set(c, last + 1);
+                }
+            } else {
+                chars.set(c);
+            }
+        }
+        pos = end + 1;
+        if (!caseSensitive) {
+            for (char c = 'a'; c <= 'z'; c++) {
+                char upper = (char) (c - 'a' + 'A');
+                if (chars.get(c) || chars.get(upper)) {
+                    chars.set(c);
+                    chars.set(upper);
+                }
+            }
+        }
+        if (negated) {
+            chars.flip(0, MAX_CODE_POINT + 1);
+        }
+        chars.clear('/');
+        return toRanges(chars);
+    }
+
+    private int literal(int state) {
+        int c = glob.codePointAt(pos);
+        pos += Character.charCount(c);
+        return step(state, characterRanges(c));
+    }
+
+    private int[] characterRanges(int c) {
+        if (!caseSensitive && (c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z')) {
+            int upper = c & ~0x20;
+            return new int[]{upper, upper, upper | 0x20, upper | 0x20};
+        }
+        return new int[]{c, c};
+    }
+
+    private int step(int from, int[] ranges) {
+        int to = target.newState();
+        target.transition(from, ranges, to);
+        return to;
+    }
+
+    private int loop(int from, int[] ranges) {
+        int state = target.newState();
+        target.epsilon(from, state);
+        target.transition(state, ranges, state);
+        return state;
+    }
+
+    private static int[] toRanges(BitSet chars) {
+        int count = 0;
+        for (int start = chars.nextSetBit(0); start >= 0; start = chars.nextSetBit(chars.nextClearBit(start))) {
+            count += 2;
+        }
+        int[] ranges = new int[count];
+        int i = 0;
+        for (int start = chars.nextSetBit(0); start >= 0; start = chars.nextSetBit(chars.nextClearBit(start))) {
+            ranges[i++] = start;
+            ranges[i++] = chars.nextClearBit(start) - 1;
+        }
+        return ranges;
+    }
+
+    /**
+     * An automaton which globs are added to.
+     */
+    public interface Target {
+
+        /**
+         * Creates a new state.
+         *
+         * @return The new state
+         */
+        int newState();
+
+        /**
+         * Adds a transition which doesn't consume a character.
+         *
+         * @param from The state the transition starts from
+         * @param to   The state the transition leads to
+         */
+        void epsilon(int from, int to);
+
+        /**
+         * Adds a transition which consumes a single character.
+         *
+         * @param from   The state the transition starts from
+         * @param ranges The ranges of code points the transition accepts, as pairs of inclusive bounds
+         * @param to     The state the transition leads to
+         */
+        void transition(int from, int[] ranges, int to);
+    }
+}
@@ -0,0 +1,108 @@
+package ca.fxco.gitmergepipeline.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Searches bytes for a literal, encoded in UTF-8, using the Boyer-Moore-Horspool algorithm.<br>
+ * Case-insensitive searches ignore the case of ASCII letters only, like regular expressions without unicode case.
+ *
+ * @author FX
+ */
+public final class LiteralSearcher {
+
+    private final byte[] literal;
+    private final boolean caseSensitive;
+    private final int[] shifts = new int[256];
+
+    private LiteralSearcher(byte[] literal, boolean caseSensitive) {
+        this.literal = caseSensitive ? literal : foldCase(literal);
+        this.caseSensitive = caseSensitive;
+        int last = literal.length - 1;
+        Arrays.fill(shifts, Math.max(literal.length, 1));
+        for (int i = 0; i < last; i++) {
+            shifts[this.literal[i] & 0xFF] = last - i;
+            if (!caseSensitive) {
+                shifts[upperCase(this.literal[i]) & 0xFF] = last - i;
+            }
+        }
+    }
+
+    /**
+     * Creates a searcher for a literal.
+     *
+     * @param literal       The literal to search for
+     * @param caseSensitive Whether ASCII letters have to match in case
+     * @return The searcher
+     */
+    public static LiteralSearcher of(String literal, boolean caseSensitive) {
+        return new LiteralSearcher(literal.getBytes(StandardCharsets.UTF_8), caseSensitive);
+    }
+
+    /**
+     * Gets the length of the literal in bytes.
+     *
+     * @return The length of the literal
+     */
+    public int length() {
+        return literal.length;
+    }
+
+    /**
+     * Finds the first occurrence of the literal within a range of bytes.
+     *
+     * @param data The bytes to search, between their position and limit
+     * @return The absolute index of the first occurrence, or -1 if the literal doesn't occur
+     */
+    public int indexOf(ByteBuffer data) {
+        int last = literal.length - 1;
+        if (last < 0) {
+            return data.position();
+        }
+        for (int i = data.position(), end = data.limit() - last; i < end; ) {
+            byte tail = data.get(i + last);
+            if (equal(tail, literal[last])) {
+                int j = last - 1;
+                while (j >= 0 && equal(data.get(i + j), literal[j])) {
+                    j--;
+                }
+                if (j < 0) {
+                    return i;
+                }
+            }
+            i += shifts[tail & 0xFF];
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the first occurrence of the literal within a range of bytes.
+     *
+     * @param data  The bytes to search
+     * @param start The index to start searching at
+     * @param end   The index to stop searching at, exclusive
+     * @return The index of the first occurrence, or -1 if the literal doesn't occur
+     */
+    public int indexOf(byte[] data, int start, int end) {
+        return indexOf(ByteBuffer.wrap(data, start, end - start));
+    }
+
+    private boolean equal(byte b, byte expected) {
+        return b == expected || !caseSensitive && b >= 'A' && b <= 'Z' && (b | 0x20) == expected;
+    }
+
+    private static byte[] foldCase(byte[] literal) {
+        byte[] folded = literal.clone();
+        for (int i = 0; i < folded.length; i++) {
+            if (folded[i] >= 'A' && folded[i] <= 'Z') {
+                folded[i] |= 0x20;
+            }
+        }
+        return folded;
+    }
+
+    private static byte upperCase(byte b) {
+        return b >= 'a' && b <= 'z' ? (byte) (b & ~0x20) : b;
+    }
+}
@@ -0,0 +1,346 @@
+package ca.fxco.gitmergepipeline.utils;
+
+import org.eclipse.jgit.annotations.Nullable;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Detects the mime type of files, the same way on every platform.<br>
+ * The extension of the file is looked up first. Files with an unknown extension are detected from the first bytes of
+ * their content, using the magic numbers of common binary formats, and telling text from binary data by looking for
+ * zero bytes. Blobs are immutable, so mime types detected from a blob are cached by its id.
+ *
+ * @author FX
+ */
+public final class MimeTypeDetector {
+
+    /**
+     * The number of bytes read from the start of the content to detect its mime type.
+     */
+    public static final int HEADER_SIZE = 1024;
+    public static final String TEXT = "text/plain";
+    public static final String BINARY = "application/octet-stream";
+
+    private static final int DEFAULT_MAX_ENTRIES = 64 * 1024;
+    private static final int MAX_EXTENSION_LENGTH = 16;
+    private static final Map<String, String> EXTENSIONS = Map.ofEntries(
+            Map.entry("txt", TEXT),
+            Map.entry("md", "text/markdown"),
+            Map.entry("csv", "text/csv"),
+            Map.entry("html", "text/html"),
+            Map.entry("htm", "text/html"),
+            Map.entry("css", "text/css"),
+            Map.entry("js", "text/javascript"),
+            Map.entry("mjs", "text/javascript"),
+            Map.entry("java", "text/x-java"),
+            Map.entry("kt", "text/x-kotlin"),
+            Map.entry("py", "text/x-python"),
+            Map.entry("c", "text/x-c"),
+            Map.entry("h", "text/x-c"),
+            Map.entry("sh", "application/x-sh"),
+            Map.entry("json", "application/json"),
+            Map.entry("xml", "application/xml"),
+            Map.entry("yml", "application/yaml"),
+            Map.entry("yaml", "application/yaml"),
+            Map.entry("toml", "application/toml"),
+            Map.entry("png", "image/png"),
+            Map.entry("jpg", "image/jpeg"),
+            Map.entry("jpeg", "image/jpeg"),
+            Map.entry("gif", "image/gif"),
+            Map.entry("webp", "image/webp"),
+            Map.entry("bmp", "image/bmp"),
+            Map.entry("ico", "image/vnd.microsoft.icon"),
+            Map.entry("svg", "image/svg+xml"),
+            Map.entry("pdf", "application/pdf"),
+            Map.entry("zip", "application/zip"),
+            Map.entry("jar", "application/java-archive"),
+            Map.entry("class", "application/java-vm"),
+            Map.entry("gz", "application/gzip"),
+            Map.entry("tar", "application/x-tar"),
+            Map.entry("wasm", "application/wasm"),
+            Map.entry("ttf", "font/ttf"),
+            Map.entry("otf", "font/otf"),
+            Map.entry("woff", "font/woff"),
+            Map.entry("woff2", "font/woff2")
+    );
+
+    private final int maxEntries;
+    private final LinkedHashMap<ObjectId, String> blobTypes = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates a new mime type detector.
+     */
+    public MimeTypeDetector() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * Creates a new mime type detector.
+     *
+     * @param maxEntries The maximum number of blobs to remember the mime type of
+     */
+    public MimeTypeDetector(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Gets the detector shared by all rules and filters.
+     *
+     * @return The default detector
+     */
+    public static MimeTypeDetector getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    /**
+     * Gets the mime type of a file from its extension.
+     *
+     * @param filePath The path to the file
+     * @return The mime type, or null if the extension is unknown
+     */
+    public static @Nullable String fromExtension(String filePath) {
+        int dot = filePath.lastIndexOf('.');
+        if (dot < 0 || dot < filePath.lastIndexOf('/') || filePath.length() - dot - 1 > MAX_EXTENSION_LENGTH) {
+            return null;
+        }
+        return EXTENSIONS.get(toLowerAscii(filePath.substring(dot + 1)));
+    }
+
+    /**
+     * Gets the mime type of a file from its extension.
+     *
+     * @param filePath The bytes holding the path to the file, encoded in UTF-8
+     * @param start    The index the path starts at
+     * @param end      The index the path ends at, exclusive
+     * @return The mime type, or null if the extension is unknown
+     */
+    public static @Nullable String fromExtension(byte[] filePath, int start, int end) {
+        for (int i = end - 1; i >= start && end - i - 1 <= MAX_EXTENSION_LENGTH; i--) {
+            byte b = filePath[i];
+            if (b == '/') {
+                return null;
+            }
+            if (b == '.') {
+                // Only the extension is decoded, not the whole path
+                String extension = new String(filePath, i + 1, end - i - 1, StandardCharsets.UTF_8);
+                return EXTENSIONS.get(toLowerAscii(extension));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the mime type of content from its first bytes.
+     *
+     * @param header The first bytes of the content
+     * @param length The number of bytes in the header
+     * @return The mime type, which is {@link #TEXT} or {@link #BINARY} if the format isn't recognized
+     */
+    public static String fromContent(byte[] header, int length) {
+        if (startsWith(header, length, 0, 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n')) {
+            return "image/png";
+        } else if (startsWith(header, length, 0, 0xFF, 0xD8, 0xFF)) {
+            return "image/jpeg";
+        } else if (startsWith(header, length, 0, 'G', 'I', 'F', '8')) {
+            return "image/gif";
+        } else if (startsWith(header, length, 0, 'R', 'I', 'F', 'F') &&
+                startsWith(header, length, 8, 'W', 'E', 'B', 'P')) {
+            return "image/webp";
+        } else if (startsWith(header, length, 0, 0, 0, 1, 0)) {
+            return "image/vnd.microsoft.icon";
+        } else if (startsWith(header, length, 0, '%', 'P', 'D', 'F', '-')) {
+            return "application/pdf";
+        } else if (startsWith(header, length, 0, 'P', 'K', 3, 4) || startsWith(header, length, 0, 'P', 'K', 5, 6)) {
+            return "application/zip";
+        } else if (startsWith(header, length, 0, 0x1F, 0x8B)) {
+            return "application/gzip";
+        } else if (startsWith(header, length, 0, 0xCA, 0xFE, 0xBA, 0xBE)) {
+            return "application/java-vm";
+        } else if (startsWith(header, length, 0, 0, 'a', 's', 'm')) {
+            return "application/wasm";
+        } else if (startsWith(header, length, 257, 'u', 's', 't', 'a', 'r')) {
+            return "application/x-tar";
+        } else if (startsWith(header, length, 0, 0xFE, 0xFF) || startsWith(header, length, 0, 0xFF, 0xFE)) {
+            // UTF-16 text contains zero bytes, so it's recognized from its byte order mark
+            return TEXT;
+        }
+        int start = startsWith(header, length, 0, 0xEF, 0xBB, 0xBF) ? 3 : 0;
+        for (int i = start; i < length; i++) {
+            if (header[i] == 0) {
+                return BINARY;
+            }
+        }
+        while (start < length && Character.isWhitespace(header[start])) {
+            start++;
+        }
+        if (startsWithIgnoreCase(header, length, start, "<?xml")) {
+            return "application/xml";
+        } else if (startsWithIgnoreCase(header, length, start, "<svg")) {
+            return "image/svg+xml";
+        } else if (startsWithIgnoreCase(header, length, start, "<!doctype html") ||
+                startsWithIgnoreCase(header, length, start, "<html")) {
+            return "text/html";
+        }
+        return TEXT;
+    }
+
+    /**
+     * Gets the mime type of a file on disk, from its extension or else from its content.
+     *
+     * @param filePath The path to the file, used for its extension
+     * @param file     The file to read the content from
+     * @return The mime type
+     * @throws IOException If an I/O error occurs while reading the file
+     */
+    public String detect(String filePath, Path file) throws IOException {
+        String mimeType = fromExtension(filePath);
+        if (mimeType != null) {
+            return mimeType;
+        }
+        byte[] header = new byte[HEADER_SIZE];
+        try (InputStream in = Files.newInputStream(file)) {
+            return fromContent(header, in.readNBytes(header, 0, header.length));
+        }
+    }
+
+    /**
+     * Gets the mime type of a version of a file, from its extension or else from its content.
+     *
+     * @param filePath The path to the file, used for its extension
+     * @param gitPath  The version of the file to read the content from
+     * @return The mime type, or null if the version of the file doesn't exist
+     * @throws IOException If an I/O error occurs while reading the content
+     */
+    public @Nullable String detect(String filePath, GitPath gitPath) throws IOException {
+        String mimeType = fromExtension(filePath);
+        if (mimeType != null) {
+            return mimeType;
+        }
+        BlobContent content = gitPath.getContent();
+        if (content == null) {
+            return Files.exists(gitPath.getPath()) ? detect(filePath, gitPath.getPath()) : null;
+        }
+        ObjectId blobId = content.getBlobId();
+        if (blobId == null) {
+            return null;
+        }
+        String cached = getCached(blobId);
+        if (cached != null) {
+            return cached;
+        }
+        byte[] header = new byte[HEADER_SIZE];
+        try (InputStream in = content.openStream()) {
+            return put(blobId, fromContent(header, in.readNBytes(header, 0, header.length)));
+        }
+    }
+
+    /**
+     * Gets the mime type of a blob from its content.
+     *
+     * @param reader The reader to read the blob with
+     * @param blobId The blob
+     * @return The mime type
+     * @throws IOException If an I/O error occurs while reading the blob
+     */
+    public String detect(ObjectReader reader, AnyObjectId blobId) throws IOException {
+        String cached = getCached(blobId);
+        if (cached != null) {
+            return cached;
+        }
+        byte[] header = new byte[HEADER_SIZE];
+        // Large blobs are streamed, so only their header is inflated
+        try (InputStream in = reader.open(blobId, Constants.OBJ_BLOB).openStream()) {
+            return put(blobId.copy(), fromContent(header, in.readNBytes(header, 0, header.length)));
+        }
+    }
+
+    private synchronized @Nullable String getCached(AnyObjectId blobId) {
+        String mimeType = blobTypes.get(blobId);
+        (mimeType != null ? hits : misses).incrementAndGet();
+        return mimeType;
+    }
+
+    private synchronized String put(ObjectId blobId, String mimeType) {
+        blobTypes.put(blobId, mimeType);
+        if (blobTypes.size() > maxEntries) {
+            blobTypes.pollFirstEntry();
+        }
+        return mimeType;
+    }
+
+    /**
+     * Gets the number of blobs whose mime type was found in the cache.
+     *
+     * @return The number of cache hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of blobs whose mime type had to be detected from their content.
+     *
+     * @return The number of cache misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private static boolean startsWith(byte[] header, int length, int offset, int... magic) {
+        if (offset + magic.length > length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if ((header[offset + i] & 0xFF) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean startsWithIgnoreCase(byte[] header, int length, int offset, String prefix) {
+        if (offset + prefix.length() > length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            int b = header[offset + i];
+            if ((b >= 'A' && b <= 'Z' ? b | 0x20 : b) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String toLowerAscii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                char[] chars = value.toCharArray();
+                for (int j = i; j < chars.length; j++) {
+                    if (chars[j] >= 'A' && chars[j] <= 'Z') {
+                        chars[j] |= 0x20;
+                    }
+                }
+                return new String(chars);
+            }
+        }
+        return value;
+    }
+
+    private static final class DefaultHolder {
+        private static final MimeTypeDetector INSTANCE = new MimeTypeDetector();
+    }
+}
@@ -0,0 +1,193 @@
+package ca.fxco.gitmergepipeline.utils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Searches bytes for many literals at once, encoded in UTF-8, using the Aho-Corasick algorithm.<br>
+ * The literals are compiled into a single automaton, which finds all of them in one pass over the bytes. Bytes which
+ * aren't part of any literal share a single column of the transition table, so the table stays small.<br>
+ * Case-insensitive searches ignore the case of ASCII letters only, like {@link LiteralSearcher}.
+ *
+ * @author FX
+ */
+public final class MultiLiteralSearcher {
+
+    private final int literalCount;
+    private final int[] byteClasses = new int[256];
+    private final int classCount;
+    private final int[] transitions;
+    private final int[][] outputs;
+
+    private MultiLiteralSearcher(List<byte[]> literals, boolean caseSensitive) {
+        this.literalCount = literals.size();
+        List<byte[]> folded = new ArrayList<>(literals.size());
+        for (byte[] literal : literals) {
+            folded.add(caseSensitive ? literal : foldCase(literal));
+        }
+
+        // Every byte which is part of a literal gets its own class, the other bytes share class 0
+        int classes = 1;
+        for (byte[] literal : folded) {
+            for (byte b : literal) {
+                if (byteClasses[b & 0xFF] == 0) {
+                    byteClasses[b & 0xFF] = classes++;
+                }
+            }
+        }
+        if (!caseSensitive) {
+            for (int b = 'A'; b <= 'Z'; b++) {
+                byteClasses[b] = byteClasses[b | 0x20];
+            }
+        }
+        this.classCount = classes;
+
+        // Build the trie of the literals
+        int maxStates = 1;
+        for (byte[] literal : folded) {
+            maxStates += literal.length;
+        }
+        int[] table = new int[maxStates * classes];
+        Arrays.fill(table, -1);
+        List<List<Integer>> stateOutputs = new ArrayList<>();
+        stateOutputs.add(new ArrayList<>());
+        int states = 1;
+        for (int i = 0; i < folded.size(); i++) {
+            int state = 0;
+            for (byte b : folded.get(i)) {
+                int index = state * classes + byteClasses[b & 0xFF];
+                if (table[index] < 0) {
+                    table[index] = states++;
+                    stateOutputs.add(new ArrayList<>());
+                }
+                state = table[index];
+            }
+            stateOutputs.get(state).add(i);
+        }
+
+        // Turn the trie into a complete automaton, following the failure links breadth first
+        int[] failures = new int[states];
+        int[] queue = new int[states];
+        int head = 0;
+        int tail = 0;
+        for (int c = 0; c < classes; c++) {
+            int next = table[c];
+            if (next < 0) {
+                table[c] = 0;
+            } else {
+                failures[next] = 0;
+                queue[tail++] = next;
+            }
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            stateOutputs.get(state).addAll(stateOutputs.get(failures[state]));
+            for (int c = 0; c < classes; c++) {
+                int index = state * classes + c;
+                int next = table[index];
+                int fallback = table[failures[state] * classes + c];
+                if (next < 0) {
+                    table[index] = fallback;
+                } else {
+                    failures[next] = fallback;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        this.transitions = Arrays.copyOf(table, states * classes);
+        this.outputs = new int[states][];
+        for (int state = 0; state < states; state++) {
+            List<Integer> output = stateOutputs.get(state);
+            if (!output.isEmpty()) {
+                outputs[state] = output.stream().mapToInt(Integer::intValue).toArray();
+            }
+        }
+    }
+
+    /**
+     * Creates a searcher for a set of literals.
+     *
+     * @param literals      The literals to search for
+     * @param caseSensitive Whether ASCII letters have to match in case
+     * @return The searcher
+     */
+    public static MultiLiteralSearcher of(List<String> literals, boolean caseSensitive) {
+        List<byte[]> bytes = new ArrayList<>(literals.size());
+        for (String literal : literals) {
+            bytes.add(literal.getBytes(StandardCharsets.UTF_8));
+        }
+        return new MultiLiteralSearcher(bytes, caseSensitive);
+    }
+
+    /**
+     * Gets the number of literals searched for.
+     *
+     * @return The number of literals
+     */
+    public int size() {
+        return literalCount;
+    }
+
+    /**
+     * Finds which of the literals occur within a range of bytes.<br>
+     * The search stops early once every literal has been found.
+     *
+     * @param data The bytes to search, between their position and limit
+     * @return The indexes of the literals which occur
+     */
+    public BitSet search(ByteBuffer data) {
+        BitSet found = new BitSet(literalCount);
+        int remaining = literalCount;
+        // Empty literals occur everywhere
+        remaining -= mark(found, outputs[0]);
+        int state = 0;
+        for (int i = data.position(), end = data.limit(); i < end && remaining > 0; i++) {
+            state = transitions[state * classCount + byteClasses[data.get(i) & 0xFF]];
+            int[] output = outputs[state];
+            if (output != null) {
+                remaining -= mark(found, output);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Finds which of the literals occur within a range of bytes.
+     *
+     * @param data  The bytes to search
+     * @param start The index to start searching at
+     * @param end   The index to stop searching at, exclusive
+     * @return The indexes of the literals which occur
+     */
+    public BitSet search(byte[] data, int start, int end) {
+        return search(ByteBuffer.wrap(data, start, end - start));
+    }
+
+    private static int mark(BitSet found, int[] output) {
+        if (output == null) {
+            return 0;
+        }
+        int marked = 0;
+        for (int index : output) {
+            if (!found.get(index)) {
+                found.set(index);
+                marked++;
+            }
+        }
+        return marked;
+    }
+
+    private static byte[] foldCase(byte[] literal) {
+        byte[] folded = literal.clone();
+        for (int i = 0; i < folded.length; i++) {
+            if (folded[i] >= 'A' && folded[i] <= 'Z') {
+                folded[i] |= 0x20;
+            }
+        }
+        return folded;
+    }
+}
@@ -0,0 +1,200 @@
+package ca.fxco.gitmergepipeline.utils;
+
+import org.eclipse.jgit.annotations.Nullable;
+
+/**
+ * Finds literals within regular expressions, which let content be searched for before running the expression.<br>
+ * The analysis is conservative: a literal is only returned if every match of the expression contains it. Expressions
+ * with syntax that isn't understood return no literal, rather than a wrong one.
+ *
+ * @author FX
+ */
+public final class RegexLiterals {
+
+    private static final String METACHARACTERS = "\\[](){}.*+?^$|";
+    // Escapes without arguments, which match a class of characters or a position
+    private static final String SIMPLE_ESCAPES = "dDsSwWbBAzZGntrfeRhHvVX";
+
+    private RegexLiterals() {}
+
+    /**
+     * Checks whether a regular expression only matches itself.
+     *
+     * @param regex The regular expression
+     * @return {@code true} if the expression doesn't contain any metacharacters, otherwise {@code false}
+     */
+    public static boolean isLiteral(String regex) {
+        for (int i = 0; i < regex.length(); i++) {
+            if (METACHARACTERS.indexOf(regex.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the longest literal which every match of a regular expression contains.
+     *
+     * @param regex The regular expression
+     * @return The literal, or null if no literal is required
+     */
+    public static @Nullable String requiredLiteral(String regex) {
+        String longest = null;
+        StringBuilder run = new StringBuilder();
+        int i = 0;
+        while (i < regex.length()) {
+            int c = regex.codePointAt(i);
+            int next = i + Character.charCount(c);
+            int literal = -1;
+            switch (c) {
+                case '\\' -> {
+                    if (next >= regex.length()) {
+                        return null;
+                    }
+                    int escaped = regex.codePointAt(next);
+                    next += Character.charCount(escaped);
+                    if (Character.isLetterOrDigit(escaped)) {
+                        if (SIMPLE_ESCAPES.indexOf(escaped) < 0) {
+                            // Escapes with arguments, like \p{L} or \Q...\E, aren't understood
+                            return null;
+                        }
+                    } else {
+                        literal = escaped;
+                    }
+                }
+                case '[' -> {
+                    next = skipClass(regex, i);
+                    if (next < 0) {
+                        return null;
+                    }
+                }
+                case '(' -> {
+                    if (regex.startsWith("(?", i) && i + 2 < regex.length() &&
+                            ":<=!>".indexOf(regex.charAt(i + 2)) < 0) {
+                        // Inline flags can change how the rest of the expression matches
+                        return null;
+                    }
+                    next = skipGroup(regex, i);
+                    if (next < 0) {
+                        return null;
+                    }
+                }
+                case '|', ')' -> {
+                    // Alternatives don't share a required literal
+                    return null;
+                }
+                case '.', '^', '$', '*', '+', '?', '{', '}', ']' -> {}
+                default -> literal = c;
+            }
+            // Skip the quantifier, if the element has one
+            int quantifierEnd = skipQuantifier(regex, next);
+            boolean optional = quantifierEnd > next && regex.charAt(next) != '+' && !isAtLeastOnce(regex, next);
+            if (literal >= 0 && !optional) {
+                run.appendCodePoint(literal);
+            }
+            if (literal < 0 || quantifierEnd > next) {
+                // Only a single repetition of the element is known to be next to what came before
+                longest = longer(longest, run);
+                run.setLength(0);
+            }
+            i = quantifierEnd;
+        }
+        return longer(longest, run);
+    }
+
+    private static @Nullable String longer(@Nullable String longest, StringBuilder run) {
+        if (run.isEmpty() || longest != null && longest.length() >= run.length()) {
+            return longest;
+        }
+        return run.toString();
+    }
+
+    private static int skipQuantifier(String regex, int i) {
+        if (i >= regex.length()) {
+            return i;
+        }
+        char c = regex.charAt(i);
+        if (c == '*' || c == '+' || c == '?') {
+            i++;
+        } else if (c == '{') {
+            int close = regex.indexOf('}', i);
+            if (close < 0) {
+                return i;
+            }
+            i = close + 1;
+        } else {
+            return i;
+        }
+        // Lazy and possessive quantifiers
+        if (i < regex.length() && (regex.charAt(i) == '?' || regex.charAt(i) == '+')) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Checks whether a {@code {n}}, {@code {n,}} or {@code {n,m}} quantifier requires at least one repetition.
+     */
+    private static boolean isAtLeastOnce(String regex, int i) {
+        if (regex.charAt(i) != '{') {
+            return false;
+        }
+        int end = i + 1;
+        while (end < regex.length() && Character.isDigit(regex.charAt(end))) {
+            end++;
+        }
+        return end > i + 1 && Integer.parseInt(regex.substring(i + 1, Math.min(end, i + 10))) > 0;
+    }
+
+    private static int skipClass(String regex, int open) {
+        int depth = 0;
+        int i = open;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == '[') {
+                depth++;
+                // A ] right after the opening bracket is part of the class
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == '^') {
+                    i++;
+                }
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == ']') {
+                    i++;
+                }
+            } else if (c == ']' && --depth == 0) {
+                return i + 1;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    private static int skipGroup(String regex, int open) {
+        int depth = 0;
+        int i = open;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == '[') {
+                i = skipClass(regex, i);
+                if (i < 0) {
+                    return -1;
+                }
+                continue;
+            }
+            if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i + 1;
+            }
+            i++;
+        }
+        return -1;
+    }
+}
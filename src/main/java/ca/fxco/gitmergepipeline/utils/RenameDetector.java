@@ -0,0 +1,285 @@
+package ca.fxco.gitmergepipeline.utils;
+
+import org.eclipse.jgit.annotations.Nullable;
+import org.eclipse.jgit.diff.SimilarityIndex;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Detects the files which were renamed on a side of a merge.<br>
+ * Renames which kept the content are paired by their blob id first, which is cheap no matter how many files were
+ * moved. Only the remaining added and deleted files are compared by similarity, which is done in parallel and is
+ * skipped once there are too many files to compare or the time budget runs out.
+ *
+ * @author FX
+ */
+public class RenameDetector {
+    private static final Logger logger = LoggerFactory.getLogger(RenameDetector.class);
+
+    private final Repository repository;
+    private final int renameLimit;
+    private final int renameScore;
+    private final Duration timeBudget;
+    private final int parallelism;
+
+    /**
+     * Creates a new rename detector.
+     *
+     * @param repository  The repository containing the files
+     * @param renameLimit The maximum number of added or deleted files to compare by similarity
+     * @param renameScore The minimum similarity, as a percentage, for a file to count as renamed
+     * @param timeBudget  How long comparing files by similarity may take
+     * @param parallelism The number of files to compare at the same time
+     */
+    public RenameDetector(Repository repository, int renameLimit, int renameScore, Duration timeBudget,
+                          int parallelism) {
+        this.repository = repository;
+        this.renameLimit = renameLimit;
+        this.renameScore = renameScore;
+        this.timeBudget = timeBudget;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Detects the files which were renamed on a side, compared to the base.
+     *
+     * @param changedFiles The changed files of the merge
+     * @param side         The side to detect renames on
+     * @return The detected renames
+     * @throws IOException If an I/O error occurs while reading the files
+     */
+    public Result detect(List<ChangedFile> changedFiles, int side) throws IOException {
+        long deadline = System.nanoTime() + timeBudget.toNanos();
+
+        Map<ObjectId, List<ChangedFile>> deletedById = new LinkedHashMap<>();
+        List<ChangedFile> added = new ArrayList<>();
+        for (ChangedFile changedFile : changedFiles) {
+            boolean inBase = isFile(changedFile.getFileMode(ChangedFile.BASE));
+            boolean inSide = isFile(changedFile.getFileMode(side));
+            if (inBase && !changedFile.exists(side)) {
+                deletedById.computeIfAbsent(changedFile.getBlobId(ChangedFile.BASE), k -> new ArrayList<>())
+                        .add(changedFile);
+            } else if (inSide && !changedFile.exists(ChangedFile.BASE)) {
+                added.add(changedFile);
+            }
+        }
+
+        // Exact renames first, these don't need the contents at all
+        List<Rename> renames = new ArrayList<>();
+        List<ChangedFile> remainingAdded = new ArrayList<>();
+        for (ChangedFile add : added) {
+            List<ChangedFile> candidates = deletedById.get(add.getBlobId(side));
+            if (candidates == null || candidates.isEmpty()) {
+                remainingAdded.add(add);
+                continue;
+            }
+            ChangedFile delete = candidates.getFirst();
+            for (ChangedFile candidate : candidates) {
+                if (fileName(candidate.getPath()).equals(fileName(add.getPath()))) {
+                    delete = candidate;
+                    break;
+                }
+            }
+            candidates.remove(delete);
+            renames.add(new Rename(delete.getPath(), add.getPath(), 100));
+        }
+        int exact = renames.size();
+
+        List<ChangedFile> remainingDeleted = new ArrayList<>();
+        for (List<ChangedFile> candidates : deletedById.values()) {
+            remainingDeleted.addAll(candidates);
+        }
+        if (remainingAdded.isEmpty() || remainingDeleted.isEmpty()) {
+            return new Result(renames, exact, 0);
+        }
+        if (Math.max(remainingAdded.size(), remainingDeleted.size()) > renameLimit) {
+            logger.info("Skipping rename detection for {} added and {} deleted files, the rename limit is {}",
+                    remainingAdded.size(), remainingDeleted.size(), renameLimit);
+            return new Result(renames, exact, remainingAdded.size());
+        }
+
+        // Similar renames, which have to be compared by content
+        List<ObjectId> deletedIds = new ArrayList<>(remainingDeleted.size());
+        for (ChangedFile delete : remainingDeleted) {
+            deletedIds.add(delete.getBlobId(ChangedFile.BASE));
+        }
+        Index[] deletedIndexes = index(deletedIds, deadline);
+
+        List<Candidate> candidates = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger skipped = new AtomicInteger();
+        runInParallel(remainingAdded.size(), (reader, i) -> {
+            ChangedFile add = remainingAdded.get(i);
+            Index addIndex = System.nanoTime() < deadline ? Index.create(reader, add.getBlobId(side)) : null;
+            if (addIndex == null) {
+                skipped.incrementAndGet();
+                return;
+            }
+            for (int j = 0; j < deletedIndexes.length; j++) {
+                Index deleteIndex = deletedIndexes[j];
+                if (deleteIndex == null || !addIndex.canReach(deleteIndex, renameScore)) {
+                    continue;
+                }
+                int score = addIndex.similarity().score(deleteIndex.similarity(), 100);
+                if (score >= renameScore) {
+                    candidates.add(new Candidate(i, j, score));
+                }
+            }
+        });
+
+        // Best matches first, a file can only be renamed once
+        candidates.sort(Comparator.comparingInt(Candidate::score).reversed()
+                .thenComparingInt(Candidate::added)
+                .thenComparingInt(Candidate::deleted));
+        boolean[] usedAdded = new boolean[remainingAdded.size()];
+        boolean[] usedDeleted = new boolean[remainingDeleted.size()];
+        for (Candidate candidate : candidates) {
+            if (usedAdded[candidate.added()] || usedDeleted[candidate.deleted()]) {
+                continue;
+            }
+            usedAdded[candidate.added()] = true;
+            usedDeleted[candidate.deleted()] = true;
+            renames.add(new Rename(
+                    remainingDeleted.get(candidate.deleted()).getPath(),
+                    remainingAdded.get(candidate.added()).getPath(),
+                    candidate.score()
+            ));
+        }
+        if (skipped.get() > 0) {
+            logger.info("Skipped {} added files in rename detection, out of time or too large to compare", skipped.get());
+        }
+        return new Result(renames, exact, skipped.get());
+    }
+
+    private Index[] index(List<ObjectId> blobIds, long deadline) throws IOException {
+        Index[] indexes = new Index[blobIds.size()];
+        runInParallel(blobIds.size(), (reader, i) -> {
+            if (System.nanoTime() < deadline) {
+                indexes[i] = Index.create(reader, blobIds.get(i));
+            }
+        });
+        return indexes;
+    }
+
+    /**
+     * Runs a task for every index, on multiple threads if there's more than one task.<br>
+     * Each thread gets its own reader, as readers are not thread-safe.
+     */
+    private void runInParallel(int count, Task task) throws IOException {
+        AtomicInteger nextIndex = new AtomicInteger();
+        Callable<Void> worker = () -> {
+            try (ObjectReader reader = repository.newObjectReader()) {
+                int index;
+                while ((index = nextIndex.getAndIncrement()) < count) {
+                    task.run(reader, index);
+                }
+            }
+            return null;
+        };
+
+        int threads = Math.min(parallelism, count);
+        if (threads < 2) {
+            try {
+                worker.call();
+            } catch (IOException | RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> futures = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(worker));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while detecting renames", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static boolean isFile(@Nullable FileMode fileMode) {
+        return fileMode != null && (fileMode.getBits() & FileMode.TYPE_MASK) == FileMode.TYPE_FILE;
+    }
+
+    private static String fileName(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    @FunctionalInterface
+    private interface Task {
+        void run(ObjectReader reader, int index) throws IOException;
+    }
+
+    /**
+     * The similarity index of a file, along with its size.
+     */
+    private record Index(SimilarityIndex similarity, long size) {
+
+        static @Nullable Index create(ObjectReader reader, ObjectId blobId) throws IOException {
+            try {
+                return new Index(
+                        SimilarityIndex.create(reader.open(blobId, Constants.OBJ_BLOB)),
+                        reader.getObjectSize(blobId, Constants.OBJ_BLOB)
+                );
+            } catch (SimilarityIndex.TableFullException e) {
+                return null; // Too many unique lines to compare
+            }
+        }
+
+        /**
+         * Checks whether the files are close enough in size to reach the score, without comparing them.
+         */
+        boolean canReach(Index other, int score) {
+            long max = Math.max(size, other.size);
+            return max == 0 || Math.min(size, other.size) * 100 / max >= score;
+        }
+    }
+
+    private record Candidate(int added, int deleted, int score) {}
+
+    /**
+     * A renamed file.
+     *
+     * @param oldPath The path in the base
+     * @param newPath The path on the side that renamed it
+     * @param score   The similarity of the contents, as a percentage
+     */
+    public record Rename(String oldPath, String newPath, int score) {}
+
+    /**
+     * The renames detected on a side.
+     *
+     * @param renames The detected renames
+     * @param exact   The number of renames which kept the content
+     * @param skipped The number of added files which weren't compared, because of the rename limit or time budget
+     */
+    public record Result(List<Rename> renames, int exact, int skipped) {}
+}
@@ -0,0 +1,197 @@
+package ca.fxco.gitmergepipeline.utils;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.eclipse.jgit.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+/**
+ * Records a timeline of spans while merging, which can be written in the Chrome trace event format.<br>
+ * Tracing is off unless a tracer is started, in which case spans cost a single volatile read. Names and arguments which
+ * take work to build are only built while a tracer is recording. Each thread gets its own lane, so merges running in
+ * parallel can be told apart. The trace can be opened in Perfetto or
+ * {@code chrome://tracing}.
+ *
+ * @author FX
+ */
+public final class Tracer {
+
+    private static final Span NO_SPAN = new Span(null, null, null, null, null, 0);
+
+    private static volatile @Nullable Tracer active;
+
+    private final long startNanos = System.nanoTime();
+    private final Queue<Event> events = new ConcurrentLinkedQueue<>();
+    private final Map<Long, String> threadNames = new ConcurrentHashMap<>();
+
+    private Tracer() {}
+
+    /**
+     * Starts recording spans, replacing any tracer which was already recording.
+     *
+     * @return The tracer which records the spans
+     */
+    public static Tracer start() {
+        Tracer tracer = new Tracer();
+        active = tracer;
+        return tracer;
+    }
+
+    /**
+     * Checks whether spans are being recorded.
+     *
+     * @return {@code true} if a tracer is recording, otherwise {@code false}
+     */
+    public static boolean isEnabled() {
+        return active != null;
+    }
+
+    /**
+     * Starts a span on the current thread, which ends when it's closed.
+     *
+     * @param category The category of the span
+     * @param name     The name of the span
+     * @return The span, which does nothing if no tracer is recording
+     */
+    public static Span span(String category, String name) {
+        return span(category, name, null, null);
+    }
+
+    /**
+     * Starts a span on the current thread, whose name is only built if a tracer is recording.
+     *
+     * @param category The category of the span
+     * @param name     Builds the name of the span
+     * @return The span, which does nothing if no tracer is recording
+     */
+    public static Span span(String category, Supplier<String> name) {
+        return active != null ? span(category, name.get(), null, null) : NO_SPAN;
+    }
+
+    /**
+     * Starts a span on the current thread with an argument, which ends when it's closed.
+     *
+     * @param category The category of the span
+     * @param name     The name of the span
+     * @param argName  The name of the argument
+     * @param argValue The value of the argument, which is only converted to a string if a tracer is recording
+     * @return The span, which does nothing if no tracer is recording
+     */
+    public static Span span(String category, String name, @Nullable String argName, @Nullable Object argValue) {
+        Tracer tracer = active;
+        if (tracer == null) {
+            return NO_SPAN;
+        }
+        Thread thread = Thread.currentThread();
+        tracer.threadNames.putIfAbsent(thread.threadId(), thread.getName());
+        return new Span(tracer, category, name, argName, argValue != null ? argValue.toString() : null,
+                System.nanoTime());
+    }
+
+    /**
+     * Stops recording spans, if this tracer is the one recording.<br>
+     * Spans which are still open when they're closed are still recorded.
+     */
+    public void stop() {
+        if (active == this) {
+            active = null;
+        }
+    }
+
+    /**
+     * Writes the recorded spans to a file, in the Chrome trace event format.
+     *
+     * @param file The file to write to
+     * @throws IOException If an I/O error occurs while writing the file
+     */
+    public void write(Path file) throws IOException {
+        long pid = ProcessHandle.current().pid();
+        try (JsonGenerator json = new JsonFactory().createGenerator(file.toFile(), JsonEncoding.UTF8)) {
+            json.writeStartObject();
+            json.writeArrayFieldStart("traceEvents");
+            // Metadata events name the lanes of each thread
+            for (Map.Entry<Long, String> thread : threadNames.entrySet()) {
+                json.writeStartObject();
+                json.writeStringField("name", "thread_name");
+                json.writeStringField("ph", "M");
+                json.writeNumberField("pid", pid);
+                json.writeNumberField("tid", thread.getKey());
+                json.writeObjectFieldStart("args");
+                json.writeStringField("name", thread.getValue());
+                json.writeEndObject();
+                json.writeEndObject();
+            }
+            for (Event event : events) {
+                json.writeStartObject();
+                json.writeStringField("name", event.name());
+                json.writeStringField("cat", event.category());
+                json.writeStringField("ph", "X");
+                json.writeNumberField("ts", (event.startNanos() - startNanos) / 1000.0);
+                json.writeNumberField("dur", event.durationNanos() / 1000.0);
+                json.writeNumberField("pid", pid);
+                json.writeNumberField("tid", event.threadId());
+                if (event.argName() != null) {
+                    json.writeObjectFieldStart("args");
+                    json.writeStringField(event.argName(), event.argValue());
+                    json.writeEndObject();
+                }
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+            json.writeStringField("displayTimeUnit", "ms");
+            json.writeEndObject();
+        }
+    }
+
+    /**
+     * Gets the number of spans which were recorded.
+     *
+     * @return The number of spans
+     */
+    public int getSpanCount() {
+        return events.size();
+    }
+
+    /**
+     * A span of time on a thread, which is recorded when it's closed.
+     */
+    public static final class Span implements AutoCloseable {
+        private final @Nullable Tracer tracer;
+        private final String category;
+        private final String name;
+        private final @Nullable String argName;
+        private final @Nullable String argValue;
+        private final long startNanos;
+
+        private Span(@Nullable Tracer tracer, String category, String name, @Nullable String argName,
+                     @Nullable String argValue, long startNanos) {
+            this.tracer = tracer;
+            this.category = category;
+            this.name = name;
+            this.argName = argName;
+            this.argValue = argValue;
+            this.startNanos = startNanos;
+        }
+
+        @Override
+        public void close() {
+            if (tracer != null) {
+                tracer.events.add(new Event(
+                        category, name, Thread.currentThread().threadId(), startNanos, System.nanoTime() - startNanos,
+                        argName, argValue
+                ));
+            }
+        }
+    }
+
+    private record Event(String category, String name, long threadId, long startNanos, long durationNanos,
+                         @Nullable String argName, @Nullable String argValue) {}
+}
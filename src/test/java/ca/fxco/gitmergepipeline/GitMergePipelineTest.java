@@ -1,6 +1,7 @@
 package ca.fxco.gitmergepipeline;
 
 import ca.fxco.gitmergepipeline.config.ConfigurationLoader;
+import ca.fxco.gitmergepipeline.config.ConfigurationSnapshot;
 import ca.fxco.gitmergepipeline.merge.MergeDriver;
 import ca.fxco.gitmergepipeline.merge.MergeTool;
 import ca.fxco.gitmergepipeline.merge.ReMergeTool;
@@ -39,7 +40,7 @@ class GitMergePipelineTest {
         Files.writeString(otherFile, "Other content");
 
         // Create configuration and merge driver
-        ConfigurationLoader configLoader = new ConfigurationLoader();
+        ConfigurationLoader configLoader = newConfigLoader();
         MergeDriver mergeDriver = new MergeDriver(configLoader.loadConfiguration());
 
         // Run the merge driver
@@ -66,7 +67,7 @@ class GitMergePipelineTest {
         Files.writeString(otherFile, "Other content with different changes");
 
         // Create configuration and re-merge tool
-        ConfigurationLoader configLoader = new ConfigurationLoader();
+        ConfigurationLoader configLoader = newConfigLoader();
         ReMergeTool reMergeTool = new ReMergeTool(configLoader.loadConfiguration());
 
         // Run the re-merge tool
@@ -92,7 +93,7 @@ class GitMergePipelineTest {
         Files.writeString(remoteFile, "Remote content");
 
         // Create configuration and merge tool
-        ConfigurationLoader configLoader = new ConfigurationLoader();
+        ConfigurationLoader configLoader = newConfigLoader();
         MergeTool mergeTool = new MergeTool(configLoader.loadConfiguration());
 
         // Run the merge tool
@@ -103,4 +104,9 @@ class GitMergePipelineTest {
         // but the test should still pass as long as the merge tool runs without exceptions
         System.out.println("Merge tool result: " + result);
     }
+
+    private ConfigurationLoader newConfigLoader() {
+        // Snapshots are kept out of the user's cache directory
+        return new ConfigurationLoader(new ConfigurationSnapshot(tempDir.resolve("snapshots")));
+    }
 }
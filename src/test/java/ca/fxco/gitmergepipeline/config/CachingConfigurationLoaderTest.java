@@ -0,0 +1,65 @@
+package ca.fxco.gitmergepipeline.config;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the CachingConfigurationLoader class which keeps loaded configurations in memory.
+ * Tests include reusing configurations until their file changes, and loading again files which were modified
+ * right before they were loaded.
+ *
+ * @author FX
+ */
+class CachingConfigurationLoaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void reusesConfigurationUntilFileChanges() throws IOException {
+        Path configFile = writeConfig("{}", 60);
+        CachingConfigurationLoader loader = new CachingConfigurationLoader(null);
+
+        PipelineConfiguration first = loader.loadFromFile(configFile.toFile());
+        assertSame(first, loader.loadFromFile(configFile.toFile()));
+
+        writeConfig("{ }", 30);
+        PipelineConfiguration changed = loader.loadFromFile(configFile.toFile());
+
+        assertNotSame(first, changed);
+        assertNotEquals(first.getFingerprint(), changed.getFingerprint());
+    }
+
+    @Test
+    void loadsAgainFilesModifiedWhileLoading() throws IOException {
+        // Same size and modification time, but written right before the configuration was loaded
+        Path configFile = writeConfig("{\"a\": 1}", 0);
+        FileTime lastModified = Files.getLastModifiedTime(configFile);
+        CachingConfigurationLoader loader = new CachingConfigurationLoader(null);
+
+        PipelineConfiguration first = loader.loadFromFile(configFile.toFile());
+        Files.writeString(configFile, "{\"b\": 2}");
+        Files.setLastModifiedTime(configFile, lastModified);
+        PipelineConfiguration second = loader.loadFromFile(configFile.toFile());
+
+        assertNotEquals(first.getFingerprint(), second.getFingerprint());
+    }
+
+    private Path writeConfig(String content, int ageSeconds) throws IOException {
+        Path configFile = tempDir.resolve(".gitmergepipeline.json");
+        Files.writeString(configFile, content);
+        if (ageSeconds > 0) {
+            Files.setLastModifiedTime(configFile, FileTime.from(Instant.now().minus(ageSeconds, ChronoUnit.SECONDS)));
+        }
+        return configFile;
+    }
+}
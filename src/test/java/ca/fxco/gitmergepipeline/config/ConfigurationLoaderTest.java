@@ -1,6 +1,10 @@
 package ca.fxco.gitmergepipeline.config;
 
+import ca.fxco.gitmergepipeline.merge.GitMergeContext;
+import ca.fxco.gitmergepipeline.merge.MergeContext;
 import ca.fxco.gitmergepipeline.pipeline.Pipeline;
+import ca.fxco.gitmergepipeline.pipeline.StandardPipeline;
+import ca.fxco.gitmergepipeline.plugin.PluginIndex;
 import ca.fxco.gitmergepipeline.rule.FilePatternRule;
 import ca.fxco.gitmergepipeline.rule.Rule;
 import org.junit.jupiter.api.BeforeEach;
@@ -8,6 +12,8 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
@@ -24,11 +30,15 @@ import static org.junit.jupiter.api.Assertions.*;
  */
 class ConfigurationLoaderTest {
 
+    @TempDir
+    Path snapshotDir;
+
     private ConfigurationLoader configurationLoader;
 
     @BeforeEach
     void setUp() {
-        configurationLoader = new ConfigurationLoader();
+        // Snapshots are kept out of the user's cache directory
+        configurationLoader = new ConfigurationLoader(new ConfigurationSnapshot(snapshotDir));
     }
 
     @Test
@@ -267,7 +277,7 @@ class ConfigurationLoaderTest {
         } catch (Exception e) {
             // If reflection fails, we'll use a different approach
             // Create a new configuration loader that directly loads from the file
-            configurationLoader = new ConfigurationLoader() {
+            configurationLoader = new ConfigurationLoader(new ConfigurationSnapshot(tempDir.resolve("snapshots"))) {
                 @Override
                 public PipelineConfiguration loadConfiguration() throws IOException {
                     return loadFromFile(configFile.toFile());
@@ -295,4 +305,77 @@ class ConfigurationLoaderTest {
         assertEquals(5, pipelines.size());
         assertEquals("Java Files Pipeline", pipelines.getFirst().getDescription().replace("Standard pipeline: ", ""));
     }
+
+    @Test
+    void fingerprintFollowsFileContent(@TempDir Path tempDir) throws IOException {
+        Path configFile = tempDir.resolve(".gitmergepipeline.json");
+        Files.writeString(configFile, "{\"parallelism\": 2}");
+        String fingerprint = configurationLoader.loadFromFile(configFile.toFile()).getFingerprint();
+
+        assertEquals(fingerprint, configurationLoader.loadFromFile(configFile.toFile()).getFingerprint());
+
+        Files.writeString(configFile, "{\"parallelism\": 4}");
+        assertNotEquals(fingerprint, configurationLoader.loadFromFile(configFile.toFile()).getFingerprint());
+    }
+
+    @Test
+    void fingerprintIncludesMergeSettings() {
+        Pipeline recursive = new StandardPipeline("Merge", List.of(
+                new Pipeline.Step(null, "git-merge", List.of("recursive"))
+        ), null);
+        Pipeline ours = new StandardPipeline("Merge", List.of(
+                new Pipeline.Step(null, "git-merge", List.of("ours"))
+        ), null);
+        String fingerprint = PipelineConfiguration.builder()
+                .renameTimeBudget(5000).parallelism(2).pipelines(List.of(recursive))
+                .build().getFingerprint();
+
+        // Settings which don't affect the merged result don't change the fingerprint
+        assertEquals(fingerprint, PipelineConfiguration.builder()
+                .renameTimeBudget(5000).parallelism(8).pipelines(List.of(recursive))
+                .build().getFingerprint());
+        assertNotEquals(fingerprint, PipelineConfiguration.builder()
+                .renameTimeBudget(20000).parallelism(2).pipelines(List.of(recursive))
+                .build().getFingerprint());
+        assertNotEquals(fingerprint, PipelineConfiguration.builder()
+                .renameTimeBudget(5000).parallelism(2).pipelines(List.of(ours))
+                .build().getFingerprint());
+    }
+
+    @Test
+    void loadPluginTypeFromIndex(@TempDir Path tempDir) throws IOException {
+        Path index = tempDir.resolve(PluginIndex.INDEX_PATH);
+        Files.createDirectories(index.getParent());
+        Files.writeString(index, "rule always " + AlwaysRule.class.getName() + "\n");
+        Path configFile = tempDir.resolve(".gitmergepipeline.json");
+        Files.writeString(configFile, "{\"rules\": {\"all\": {\"type\": \"always\"}}}");
+
+        try (URLClassLoader classLoader = new URLClassLoader(
+                new URL[]{tempDir.toUri().toURL()}, getClass().getClassLoader()
+        )) {
+            ConfigurationLoader loader = new ConfigurationLoader(null, PluginIndex.load(classLoader));
+            assertInstanceOf(AlwaysRule.class, loader.loadFromFile(configFile.toFile()).getRules().get("all"));
+        }
+
+        // Without the index the type is unknown
+        assertThrows(IOException.class, () -> configurationLoader.loadFromFile(configFile.toFile()));
+    }
+
+    public static class AlwaysRule implements Rule {
+
+        @Override
+        public boolean applies(MergeContext context) {
+            return true;
+        }
+
+        @Override
+        public boolean applies(GitMergeContext context) {
+            return true;
+        }
+
+        @Override
+        public String getDescription() {
+            return "Always";
+        }
+    }
 }
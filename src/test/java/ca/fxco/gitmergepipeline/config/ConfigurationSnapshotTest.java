@@ -0,0 +1,276 @@
+package ca.fxco.gitmergepipeline.config;
+
+import ca.fxco.gitmergepipeline.filter.Filter;
+import ca.fxco.gitmergepipeline.filter.filters.FileModeFilter;
+import ca.fxco.gitmergepipeline.filter.filters.NotFilter;
+import ca.fxco.gitmergepipeline.filter.filters.OrFilter;
+import ca.fxco.gitmergepipeline.filter.filters.PathFilter;
+import ca.fxco.gitmergepipeline.merge.GitMergeContext;
+import ca.fxco.gitmergepipeline.merge.MergeContext;
+import ca.fxco.gitmergepipeline.pipeline.FallbackPipeline;
+import ca.fxco.gitmergepipeline.pipeline.Pipeline;
+import ca.fxco.gitmergepipeline.pipeline.StandardPipeline;
+import ca.fxco.gitmergepipeline.rule.FilePatternRule;
+import ca.fxco.gitmergepipeline.rule.Rule;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the ConfigurationSnapshot class which keeps binary snapshots of parsed configurations.
+ * Tests include reusing and rebuilding snapshots, only reading back snapshots of the same build and of allowed types,
+ * and removing snapshots of configuration files which no longer exist.
+ *
+ * @author FX
+ */
+class ConfigurationSnapshotTest {
+
+    @Test
+    void reusesSnapshotUntilContentsChange(@TempDir Path tempDir) throws IOException {
+        Path configFile = writeConfig(tempDir, "{}", 60);
+        ConfigurationSnapshot snapshot = new ConfigurationSnapshot(tempDir.resolve("cache"));
+        AtomicInteger parses = new AtomicInteger();
+
+        PipelineConfiguration first = snapshot.load(configFile, source -> parse(source, parses));
+        PipelineConfiguration second = snapshot.load(configFile, source -> parse(source, parses));
+
+        assertEquals(1, parses.get());
+        assertNotSame(first, second);
+        assertEquals(first.getFingerprint(), second.getFingerprint());
+        assertTrue(Files.exists(snapshot.snapshotPath(configFile)));
+
+        writeConfig(tempDir, "{ }", 30);
+        PipelineConfiguration changed = snapshot.load(configFile, source -> parse(source, parses));
+
+        assertEquals(2, parses.get());
+        assertNotEquals(first.getFingerprint(), changed.getFingerprint());
+    }
+
+    @Test
+    void keepsSnapshotWhenOnlyTimesChange(@TempDir Path tempDir) throws IOException {
+        Path configFile = writeConfig(tempDir, "{}", 60);
+        ConfigurationSnapshot snapshot = new ConfigurationSnapshot(tempDir.resolve("cache"));
+        AtomicInteger parses = new AtomicInteger();
+
+        snapshot.load(configFile, source -> parse(source, parses));
+        writeConfig(tempDir, "{}", 30);
+        snapshot.load(configFile, source -> parse(source, parses));
+        snapshot.load(configFile, source -> parse(source, parses));
+
+        assertEquals(1, parses.get());
+    }
+
+    @Test
+    void hashesFilesModifiedWhileTakingSnapshot(@TempDir Path tempDir) throws IOException {
+        // Same size and modification time, but written right before the snapshot was taken
+        Path configFile = writeConfig(tempDir, "{\"a\": 1}", 0);
+        FileTime lastModified = Files.getLastModifiedTime(configFile);
+        ConfigurationSnapshot snapshot = new ConfigurationSnapshot(tempDir.resolve("cache"));
+        AtomicInteger parses = new AtomicInteger();
+
+        PipelineConfiguration first = snapshot.load(configFile, source -> parse(source, parses));
+        Files.writeString(configFile, "{\"b\": 2}");
+        Files.setLastModifiedTime(configFile, lastModified);
+        PipelineConfiguration second = snapshot.load(configFile, source -> parse(source, parses));
+
+        assertEquals(2, parses.get());
+        assertNotEquals(first.getFingerprint(), second.getFingerprint());
+    }
+
+    @Test
+    void rebuildsUnreadableSnapshot(@TempDir Path tempDir) throws IOException {
+        Path configFile = writeConfig(tempDir, "{}", 60);
+        ConfigurationSnapshot snapshot = new ConfigurationSnapshot(tempDir.resolve("cache"));
+        AtomicInteger parses = new AtomicInteger();
+
+        snapshot.load(configFile, source -> parse(source, parses));
+        Files.write(snapshot.snapshotPath(configFile), new byte[]{1, 2, 3});
+        snapshot.load(configFile, source -> parse(source, parses));
+        snapshot.load(configFile, source -> parse(source, parses));
+
+        assertEquals(2, parses.get());
+    }
+
+    @Test
+    void rebuildsSnapshotOfAnotherBuild(@TempDir Path tempDir) throws IOException {
+        Path configFile = writeConfig(tempDir, "{}", 60);
+        AtomicInteger parses = new AtomicInteger();
+
+        new ConfigurationSnapshot(tempDir.resolve("cache"), "old").load(configFile, source -> parse(source, parses));
+        ConfigurationSnapshot snapshot = new ConfigurationSnapshot(tempDir.resolve("cache"), "new");
+        snapshot.load(configFile, source -> parse(source, parses));
+        snapshot.load(configFile, source -> parse(source, parses));
+
+        assertEquals(2, parses.get());
+    }
+
+    @Test
+    void rejectsTypesOutsideOfConfigurations(@TempDir Path tempDir) throws IOException {
+        Path configFile = writeConfig(tempDir, "{}", 60);
+        ConfigurationSnapshot snapshot = new ConfigurationSnapshot(tempDir.resolve("cache"));
+        AtomicInteger parses = new AtomicInteger();
+        ConfigurationSnapshot.Parser parser = source -> {
+            parses.incrementAndGet();
+            PipelineConfiguration configuration = new PipelineConfiguration(
+                    List.of(), Map.of("sorted", new SortedRule(new TreeMap<>(Map.of("a", "b")))), List.of()
+            );
+            configuration.setFingerprintSource(source);
+            return configuration;
+        };
+
+        snapshot.load(configFile, parser);
+        PipelineConfiguration loaded = snapshot.load(configFile, parser);
+
+        assertEquals(2, parses.get());
+        assertEquals("sorted {a=b}", loaded.getRule("sorted").getDescription());
+    }
+
+    @Test
+    void prunesSnapshotsOfRemovedFiles(@TempDir Path tempDir) throws IOException {
+        Path removedFile = writeConfig(tempDir.resolve("removed"), "{}", 60);
+        Path configFile = writeConfig(tempDir, "{}", 60);
+        ConfigurationSnapshot snapshot = new ConfigurationSnapshot(tempDir.resolve("cache"));
+        AtomicInteger parses = new AtomicInteger();
+
+        snapshot.load(removedFile, source -> parse(source, parses));
+        assertTrue(Files.exists(snapshot.snapshotPath(removedFile)));
+        Files.delete(removedFile);
+        snapshot.load(configFile, source -> parse(source, parses));
+
+        assertFalse(Files.exists(snapshot.snapshotPath(removedFile)));
+        assertTrue(Files.exists(snapshot.snapshotPath(configFile)));
+    }
+
+    @Test
+    void snapshotKeepsFiltersRulesAndPipelines(@TempDir Path tempDir) throws IOException {
+        Path configFile = writeConfig(tempDir, "{}", 60);
+        ConfigurationSnapshot snapshot = new ConfigurationSnapshot(tempDir.resolve("cache"));
+        AtomicInteger parses = new AtomicInteger();
+
+        PipelineConfiguration first = snapshot.load(configFile, source -> parse(source, parses));
+        PipelineConfiguration second = snapshot.load(configFile, source -> parse(source, parses));
+
+        assertEquals(1, parses.get());
+        assertEquals(
+                first.getFilters().stream().map(Filter::getDescription).toList(),
+                second.getFilters().stream().map(Filter::getDescription).toList()
+        );
+        assertNotNull(second.getCombinedFilter());
+        assertEquals(first.getRule("java").getDescription(), second.getRule("java").getDescription());
+        assertEquals(
+                first.getPipelines().stream().map(Pipeline::getFingerprint).toList(),
+                second.getPipelines().stream().map(Pipeline::getFingerprint).toList()
+        );
+
+        Path path = tempDir.resolve("file");
+        Pipeline java = second.findPipeline(new MergeContext(path, path, path, "src/Main.java"));
+        Pipeline xml = second.findPipeline(new MergeContext(path, path, path, "pom.xml"));
+        assertInstanceOf(StandardPipeline.class, java);
+        assertEquals("Java", ((StandardPipeline) java).getName());
+        assertInstanceOf(StandardPipeline.class, xml);
+        assertEquals("Xml", ((StandardPipeline) xml).getName());
+        assertInstanceOf(FallbackPipeline.class, second.getPipelines().get(2));
+    }
+
+    @Test
+    void loaderUsesSnapshot(@TempDir Path tempDir) throws IOException {
+        Path configFile = writeConfig(tempDir, """
+                {
+                  "filters": [{ "type": "fileMode", "mode": "regular" }],
+                  "rules": { "java": { "type": "filePattern", "pattern": "*.java" } },
+                  "pipelines": [{
+                    "type": "standard",
+                    "name": "Java",
+                    "steps": [{
+                      "rule": { "type": "filePattern", "pattern": "*.java" },
+                      "operation": "git-merge",
+                      "parameters": ["recursive"]
+                    }]
+                  }]
+                }
+                """, 60);
+        ConfigurationSnapshot snapshot = new ConfigurationSnapshot(tempDir.resolve("cache"));
+        ConfigurationLoader loader = new ConfigurationLoader(snapshot);
+        ConfigurationLoader plainLoader = new ConfigurationLoader(null);
+
+        PipelineConfiguration parsed = plainLoader.loadFromFile(configFile.toFile());
+        loader.loadFromFile(configFile.toFile());
+        assertTrue(Files.exists(snapshot.snapshotPath(configFile)));
+        PipelineConfiguration loaded = loader.loadFromFile(configFile.toFile());
+
+        assertEquals(parsed.getFingerprint(), loaded.getFingerprint());
+        assertEquals(parsed.getRule("java").getDescription(), loaded.getRule("java").getDescription());
+        assertEquals(1, loaded.getPipelines().size());
+    }
+
+    private static Path writeConfig(Path tempDir, String content, int ageSeconds) throws IOException {
+        Files.createDirectories(tempDir);
+        Path configFile = tempDir.resolve(".gitmergepipeline.json");
+        Files.writeString(configFile, content);
+        if (ageSeconds > 0) {
+            Files.setLastModifiedTime(configFile, FileTime.from(Instant.now().minus(ageSeconds, ChronoUnit.SECONDS)));
+        }
+        return configFile;
+    }
+
+    private static PipelineConfiguration parse(byte[] source, AtomicInteger parses) {
+        parses.incrementAndGet();
+        Rule java = new FilePatternRule("*.java");
+        Rule xml = new FilePatternRule(".*\\.xml", true, false);
+        PipelineConfiguration configuration = new PipelineConfiguration(
+                List.of(
+                        new FileModeFilter(FileModeFilter.FileModeEnum.REGULAR),
+                        new NotFilter(new OrFilter(List.of(
+                                new PathFilter("*.bin", false, false),
+                                new PathFilter("build/.*", true, true)
+                        )))
+                ),
+                Map.of("java", java, "xml", xml),
+                List.of(
+                        new StandardPipeline("Java", List.of(
+                                new Pipeline.Step(java, "git-merge", List.of("recursive"))
+                        ), null),
+                        new StandardPipeline("Xml", List.of(
+                                new Pipeline.Step(xml, "git-merge", List.of("recursive"))
+                        ), null),
+                        new FallbackPipeline("Other", List.of(
+                                new Pipeline.Step(null, "git-merge", List.of("recursive")),
+                                new Pipeline.Step(null, "git-merge", List.of("ours"))
+                        ), null)
+                )
+        );
+        configuration.setFingerprintSource(source);
+        return configuration;
+    }
+
+    private record SortedRule(TreeMap<String, String> values) implements Rule, Serializable {
+
+        @Override
+        public boolean applies(MergeContext context) {
+            return false;
+        }
+
+        @Override
+        public boolean applies(GitMergeContext context) {
+            return false;
+        }
+
+        @Override
+        public String getDescription() {
+            return "sorted " + values;
+        }
+    }
+}
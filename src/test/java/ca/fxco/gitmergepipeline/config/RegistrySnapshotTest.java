@@ -0,0 +1,52 @@
+package ca.fxco.gitmergepipeline.config;
+
+import ca.fxco.gitmergepipeline.filter.filters.PathFilter;
+import ca.fxco.gitmergepipeline.pipeline.StandardPipeline;
+import ca.fxco.gitmergepipeline.rule.FilePatternRule;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the RegistrySnapshot class which holds the registries for the native image.
+ * Tests include the built-in types and the reflection metadata of the native image.
+ *
+ * @author FX
+ */
+class RegistrySnapshotTest {
+
+    private static final String REFLECT_CONFIG = "META-INF/native-image/ca.fxco/gitmergepipeline/reflect-config.json";
+
+    @Test
+    void snapshotContainsBuiltInTypes() {
+        assertEquals(PathFilter.class, RegistrySnapshot.filters().get("filePattern"));
+        assertEquals(FilePatternRule.class, RegistrySnapshot.rules().get("filePattern"));
+        assertEquals(StandardPipeline.class, RegistrySnapshot.pipelines().get("standard"));
+        assertThrows(UnsupportedOperationException.class, () -> RegistrySnapshot.rules().remove("filePattern"));
+    }
+
+    @Test
+    void reflectionMetadataCoversSnapshot() throws IOException {
+        Set<String> reflected = new HashSet<>();
+        try (InputStream in = RegistrySnapshot.class.getClassLoader().getResourceAsStream(REFLECT_CONFIG)) {
+            assertNotNull(in, "Missing native image reflection metadata");
+            for (JsonNode entry : JsonMapper.builder().build().readTree(in)) {
+                reflected.add(entry.get("name").asText());
+            }
+        }
+
+        // Every registered type is created by Jackson, which needs reflection in the native image
+        Stream.of(RegistrySnapshot.filters(), RegistrySnapshot.rules(), RegistrySnapshot.pipelines())
+                .flatMap(types -> types.values().stream())
+                .forEach(type -> assertTrue(reflected.contains(type.getName()), type.getName()));
+        assertTrue(reflected.contains(PipelineConfiguration.class.getName()));
+    }
+}
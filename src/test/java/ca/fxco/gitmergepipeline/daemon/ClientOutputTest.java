@@ -0,0 +1,51 @@
+package ca.fxco.gitmergepipeline.daemon;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the ClientOutput class which forwards the output of daemon commands to their clients.
+ * Tests include forwarding the standard output and error of a command along with its exit code, and rejecting
+ * malformed responses.
+ *
+ * @author FX
+ */
+class ClientOutputTest {
+
+    @Test
+    void forwardOutputOfCommand() throws IOException {
+        ClientOutput.install();
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(response);
+        int status = ClientOutput.forward(out, () -> {
+            System.out.print("merged a.txt");
+            System.err.print("conflict in b.txt");
+            return 3;
+        });
+        ClientOutput.exit(out, status);
+
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(response.toByteArray()));
+        assertEquals(3, ClientOutput.receive(in, new PrintStream(stdout), new PrintStream(stderr)));
+        assertEquals("merged a.txt", stdout.toString(StandardCharsets.UTF_8));
+        assertEquals("conflict in b.txt", stderr.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void rejectUnknownFrames() {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(new byte[]{42, 0, 0, 0, 0}));
+        PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+        assertThrows(IOException.class, () -> ClientOutput.receive(in, discard, discard));
+    }
+}
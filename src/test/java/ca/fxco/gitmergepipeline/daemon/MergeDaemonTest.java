@@ -0,0 +1,98 @@
+package ca.fxco.gitmergepipeline.daemon;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the MergeDaemon class which runs merge commands for thin clients.
+ * Tests include sending commands, only running a single daemon, stopping the daemon, falling back when no
+ * daemon is running, and stopping a daemon of another build.
+ *
+ * @author FX
+ */
+class MergeDaemonTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void runCommandsForClients() throws IOException, InterruptedException {
+        File gitDir = tempDir.resolve(".git").toFile();
+        List<String> received = new CopyOnWriteArrayList<>();
+        try (MergeDaemon daemon = new MergeDaemon(gitDir, (mode, args) -> {
+            received.add(mode + " " + String.join(" ", args));
+            return 7;
+        }, Duration.ofMinutes(1))) {
+            assertTrue(daemon.start());
+            Thread serveThread = new Thread(daemon::serve);
+            serveThread.start();
+
+            // Only a single daemon can run for a git directory
+            try (MergeDaemon second = new MergeDaemon(gitDir, (mode, args) -> 0, Duration.ofMinutes(1))) {
+                assertFalse(second.start());
+            }
+
+            DaemonClient client = new DaemonClient(gitDir, List.of());
+            assertEquals(OptionalInt.of(7), client.send("driver", new String[]{"base", "current", "other", "a.txt"}));
+            assertEquals(OptionalInt.of(7), client.send("tool", new String[]{"local", "remote", "merged"}));
+            assertEquals(List.of("driver base current other a.txt", "tool local remote merged"), received);
+
+            assertTrue(client.stop());
+            serveThread.join(5000);
+            assertFalse(serveThread.isAlive());
+            assertFalse(Files.exists(MergeDaemon.socketPath(gitDir)));
+        }
+    }
+
+    @Test
+    void fallBackWithoutDaemon() throws IOException {
+        DaemonClient client = new DaemonClient(tempDir.resolve(".git").toFile(), List.of());
+        assertEquals(OptionalInt.empty(), client.send("driver", new String[]{"base", "current", "other", "a.txt"}));
+        assertFalse(client.stop());
+    }
+
+    @Test
+    void stopForClientOfAnotherBuild() throws IOException, InterruptedException {
+        File gitDir = tempDir.resolve(".git").toFile();
+        List<String> received = new CopyOnWriteArrayList<>();
+        try (MergeDaemon daemon = new MergeDaemon(gitDir, (mode, args) -> {
+            received.add(mode);
+            return 0;
+        }, Duration.ofMinutes(1), "old")) {
+            assertTrue(daemon.start());
+            Thread serveThread = new Thread(daemon::serve);
+            serveThread.start();
+
+            // The client can't start a daemon of its own build, so it runs the command itself
+            DaemonClient client = new DaemonClient(gitDir, List.of(), "new");
+            assertEquals(OptionalInt.empty(), client.send("driver", new String[]{"base", "current", "other", "a.txt"}));
+            serveThread.join(5000);
+            assertFalse(serveThread.isAlive());
+            assertFalse(Files.exists(MergeDaemon.socketPath(gitDir)));
+            assertEquals(List.of(), received);
+        }
+    }
+
+    @Test
+    void stopWhenIdle() throws IOException, InterruptedException {
+        File gitDir = tempDir.resolve(".git").toFile();
+        try (MergeDaemon daemon = new MergeDaemon(gitDir, (mode, args) -> 0, Duration.ofMillis(100))) {
+            assertTrue(daemon.start());
+            Thread serveThread = new Thread(daemon::serve);
+            serveThread.start();
+            serveThread.join(5000);
+            assertFalse(serveThread.isAlive());
+        }
+    }
+}
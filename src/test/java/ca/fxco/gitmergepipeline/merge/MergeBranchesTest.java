@@ -6,23 +6,29 @@ import ca.fxco.gitmergepipeline.pipeline.StandardPipeline;
 import ca.fxco.gitmergepipeline.rule.FilePatternRule;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.*;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
-import static org.junit.jupiter.api.Assertions.assertFalse;
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * Tests for the MergeBranches class which handles merging branches using pipelines.
  * Tests include successful merges, failing merges, merges with no pipelines,
- * and merges with file pattern rules.
+ * merges with file pattern rules, and tournament merges whose pairs merge the same file at the same time.
  *
  * @author FX
  */
@@ -209,4 +215,359 @@ class MergeBranchesTest {
 
         assertTrue(result);
     }
+
+    @Test
+    void mergeWithGitMergeOperation() throws IOException, GitAPIException {
+        createLeftAndRightBranches();
+
+        Pipeline.Step gitMergeStep = new Pipeline.Step(null, "git-merge", List.of("recursive"));
+        StandardPipeline gitPipeline = new StandardPipeline("Git Pipeline", List.of(gitMergeStep), null);
+        MergeBranches gitBranches = new MergeBranches(PipelineConfiguration.onlyPipelines(gitPipeline));
+
+        boolean result = gitBranches.merge(BASE_BRANCH, tempDir.toFile(), List.of("left", "right"));
+
+        assertTrue(result);
+        assertEquals("Line 1 left\nLine 2\nLine 3 right\n", Files.readString(tempDir.resolve("other.txt")));
+        assertEquals("left\n", Files.readString(tempDir.resolve("left.txt")));
+        assertFalse(Files.exists(tempDir.resolve("file.txt")));
+
+        // Only other.txt was changed by both branches, everything else is resolved without a pipeline
+        MergeReport report = gitBranches.getLastReport();
+        assertNotNull(report);
+        assertEquals(1, (int) report.getCounts().get(MergeReport.Resolution.PIPELINE));
+        assertEquals(1, (int) report.getTrivialCounts().get(TrivialMerge.Kind.DELETED_BY_OTHER));
+        assertEquals(1, (int) report.getTrivialCounts().get(TrivialMerge.Kind.ONLY_CURRENT_CHANGED));
+    }
+
+    @Test
+    void mergeFollowsRenames() throws IOException, GitAPIException {
+        StringBuilder lines = new StringBuilder();
+        for (int i = 1; i <= 10; i++) {
+            lines.append("Line ").append(i).append('\n');
+        }
+        String base = lines.toString();
+        try (Git git = Git.open(tempDir.toFile())) {
+            Files.writeString(tempDir.resolve("doc.txt"), base);
+            git.add().addFilepattern("doc.txt").call();
+            git.commit().setMessage("add doc").call();
+
+            git.branchCreate().setName("renamed").call();
+            git.branchCreate().setName("changed").call();
+
+            // One branch moves the file and changes the first line, the other changes the last line in place
+            git.checkout().setName("renamed").call();
+            Files.createDirectories(tempDir.resolve("docs"));
+            Files.writeString(tempDir.resolve("docs/doc.txt"), base.replace("Line 1\n", "Line 1 renamed\n"));
+            git.rm().addFilepattern("doc.txt").call();
+            git.add().addFilepattern("docs/doc.txt").call();
+            git.commit().setMessage("rename doc").call();
+
+            git.checkout().setName("changed").call();
+            Files.writeString(tempDir.resolve("doc.txt"), base.replace("Line 10\n", "Line 10 changed\n"));
+            git.add().addFilepattern("doc.txt").call();
+            git.commit().setMessage("change doc").call();
+        }
+
+        Pipeline.Step gitMergeStep = new Pipeline.Step(null, "git-merge", List.of("recursive"));
+        StandardPipeline gitPipeline = new StandardPipeline("Git Pipeline", List.of(gitMergeStep), null);
+        String expected = base.replace("Line 1\n", "Line 1 renamed\n").replace("Line 10\n", "Line 10 changed\n");
+
+        // Both orders, so the rename is once on the other branch and once on an earlier branch
+        for (List<String> order : List.of(List.of("renamed", "changed"), List.of("changed", "renamed"))) {
+            MergeBranches gitBranches = new MergeBranches(PipelineConfiguration.onlyPipelines(gitPipeline));
+            assertTrue(gitBranches.merge("main", tempDir.toFile(), order));
+            assertEquals(expected, Files.readString(tempDir.resolve("docs/doc.txt")));
+            assertFalse(Files.exists(tempDir.resolve("doc.txt")));
+
+            MergeReport report = gitBranches.getLastReport();
+            assertNotNull(report);
+            assertEquals(1, report.getRenames());
+            assertEquals(0, report.getExactRenames());
+        }
+    }
+
+    @Test
+    void mergeAsTournament() throws IOException, GitAPIException {
+        int branchCount = 5;
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < branchCount * 2; i++) {
+            lines.append("Line ").append(i).append('\n');
+        }
+        String base = lines.toString();
+        List<String> branchNames = new ArrayList<>();
+        try (Git git = Git.open(tempDir.toFile())) {
+            Files.writeString(tempDir.resolve("shared.txt"), base);
+            git.add().addFilepattern("shared.txt").call();
+            git.commit().setMessage("add shared").call();
+
+            // Every branch changes its own line of the shared file, and adds a file of its own
+            for (int i = 0; i < branchCount; i++) {
+                String name = "topic" + i;
+                branchNames.add(name);
+                git.checkout().setName("main").call();
+                git.branchCreate().setName(name).call();
+                git.checkout().setName(name).call();
+                Files.writeString(
+                        tempDir.resolve("shared.txt"),
+                        base.replace("Line " + (i * 2) + "\n", "Line " + (i * 2) + " " + name + "\n")
+                );
+                Files.writeString(tempDir.resolve(name + ".txt"), name + "\n");
+                git.add().addFilepattern(".").call();
+                git.commit().setMessage(name).call();
+            }
+        }
+
+        Pipeline.Step gitMergeStep = new Pipeline.Step(null, "git-merge", List.of("recursive"));
+        StandardPipeline gitPipeline = new StandardPipeline("Git Pipeline", List.of(gitMergeStep), null);
+        MergeBranches tournament = new MergeBranches(
+                PipelineConfiguration.onlyPipelines(gitPipeline), 4, false, MergeBranches.Reduction.TOURNAMENT
+        );
+
+        assertTrue(tournament.mergeBare("main", tempDir.toFile(), branchNames, "refs/heads/tournament"));
+
+        String expected = base;
+        for (int i = 0; i < branchCount; i++) {
+            expected = expected.replace("Line " + (i * 2) + "\n", "Line " + (i * 2) + " topic" + i + "\n");
+        }
+        try (Git git = Git.open(tempDir.toFile())) {
+            Repository repo = git.getRepository();
+            RevCommit merged = repo.parseCommit(repo.resolve("refs/heads/tournament"));
+            assertEquals(branchCount, merged.getParentCount());
+            assertEquals(expected, readFile(repo, merged, "shared.txt"));
+            for (String name : branchNames) {
+                assertEquals(name + "\n", readFile(repo, merged, name + ".txt"));
+            }
+        }
+
+        // Five branches take four pair merges, shared.txt is merged by a pipeline in each of them
+        MergeReport report = tournament.getLastReport();
+        assertNotNull(report);
+        assertEquals(4, (int) report.getCounts().get(MergeReport.Resolution.PIPELINE));
+    }
+
+    @Test
+    void mergeAsTournamentWithCommand() throws IOException, GitAPIException {
+        Assumptions.assumeTrue(
+                !System.getProperty("os.name").toLowerCase().contains("windows"),
+                "The merge command needs a POSIX shell"
+        );
+        List<String> branchNames = new ArrayList<>();
+        try (Git git = Git.open(tempDir.toFile())) {
+            Files.writeString(tempDir.resolve("shared.txt"), "base\n");
+            git.add().addFilepattern("shared.txt").call();
+            git.commit().setMessage("add shared").call();
+
+            // Every branch replaces the shared file, so every pair has to merge it with the command
+            for (int i = 0; i < 4; i++) {
+                String name = "topic" + i;
+                branchNames.add(name);
+                git.checkout().setName("main").call();
+                git.branchCreate().setName(name).call();
+                git.checkout().setName(name).call();
+                Files.writeString(tempDir.resolve("shared.txt"), name + "\n");
+                git.add().addFilepattern("shared.txt").call();
+                git.commit().setMessage(name).call();
+            }
+        }
+
+        // Both pairs of the first level run the command at the same time, each appending to its own current version
+        Pipeline.Step commandStep = new Pipeline.Step(
+                null, "command-line-merge", List.of("sleep 0.5; cat %OTHER% >> %CURRENT%")
+        );
+        StandardPipeline commandPipeline = new StandardPipeline("Command Pipeline", List.of(commandStep), null);
+        MergeBranches tournament = new MergeBranches(
+                PipelineConfiguration.onlyPipelines(commandPipeline), 4, false, MergeBranches.Reduction.TOURNAMENT
+        );
+
+        assertTrue(tournament.mergeBare("main", tempDir.toFile(), branchNames, "refs/heads/tournament"));
+
+        try (Git git = Git.open(tempDir.toFile())) {
+            Repository repo = git.getRepository();
+            RevCommit merged = repo.parseCommit(repo.resolve("refs/heads/tournament"));
+            assertEquals("topic0\ntopic1\ntopic2\ntopic3\n", readFile(repo, merged, "shared.txt"));
+        }
+    }
+
+    @Test
+    void mergeInParallel() throws IOException, GitAPIException {
+        int fileCount = 16;
+        try (Git git = Git.open(tempDir.toFile())) {
+            for (int i = 0; i < fileCount; i++) {
+                Files.writeString(tempDir.resolve("file" + i + ".txt"), "Line 1\nLine 2\nLine 3\n");
+            }
+            git.add().addFilepattern(".").call();
+            git.commit().setMessage("add files").call();
+
+            git.branchCreate().setName("left").call();
+            git.branchCreate().setName("right").call();
+
+            git.checkout().setName("left").call();
+            for (int i = 0; i < fileCount; i++) {
+                Files.writeString(tempDir.resolve("file" + i + ".txt"), "Line 1 left " + i + "\nLine 2\nLine 3\n");
+            }
+            git.add().addFilepattern(".").call();
+            git.commit().setMessage("left commit").call();
+
+            git.checkout().setName("right").call();
+            for (int i = 0; i < fileCount; i++) {
+                Files.writeString(tempDir.resolve("file" + i + ".txt"), "Line 1\nLine 2\nLine 3 right " + i + "\n");
+            }
+            git.add().addFilepattern(".").call();
+            git.commit().setMessage("right commit").call();
+
+            git.checkout().setName(BASE_BRANCH).call();
+        }
+
+        Pipeline.Step gitMergeStep = new Pipeline.Step(null, "git-merge", List.of("recursive"));
+        StandardPipeline gitPipeline = new StandardPipeline("Git Pipeline", List.of(gitMergeStep), null);
+        MergeBranches parallelBranches = new MergeBranches(PipelineConfiguration.onlyPipelines(gitPipeline), 4);
+
+        boolean result = parallelBranches.merge(BASE_BRANCH, tempDir.toFile(), List.of("left", "right"));
+
+        assertTrue(result);
+        for (int i = 0; i < fileCount; i++) {
+            assertEquals(
+                    "Line 1 left " + i + "\nLine 2\nLine 3 right " + i + "\n",
+                    Files.readString(tempDir.resolve("file" + i + ".txt"))
+            );
+        }
+    }
+
+    @Test
+    void mergeBareWritesMergeCommit(@TempDir Path bareDir) throws IOException, GitAPIException {
+        createLeftAndRightBranches();
+        Git.cloneRepository()
+                .setURI(tempDir.toUri().toString())
+                .setDirectory(bareDir.toFile())
+                .setBare(true)
+                .setCloneAllBranches(true)
+                .call()
+                .close();
+
+        Pipeline.Step gitMergeStep = new Pipeline.Step(null, "git-merge", List.of("recursive"));
+        StandardPipeline gitPipeline = new StandardPipeline("Git Pipeline", List.of(gitMergeStep), null);
+        MergeBranches gitBranches = new MergeBranches(PipelineConfiguration.onlyPipelines(gitPipeline));
+
+        boolean result = gitBranches.mergeBare(
+                BASE_BRANCH, bareDir.toFile(), List.of("left", "right"), "refs/heads/merged"
+        );
+
+        assertTrue(result);
+        try (Git git = Git.open(bareDir.toFile());
+             RevWalk revWalk = new RevWalk(git.getRepository())) {
+            Repository repo = git.getRepository();
+            RevCommit merge = revWalk.parseCommit(repo.resolve("refs/heads/merged"));
+
+            assertEquals(2, merge.getParentCount());
+            assertEquals(repo.resolve("left"), merge.getParent(0).getId());
+            assertEquals(repo.resolve("right"), merge.getParent(1).getId());
+            assertEquals("Line 1 left\nLine 2\nLine 3 right\n", readFile(repo, merge, "other.txt"));
+            assertEquals("left\n", readFile(repo, merge, "left.txt"));
+            assertNull(TreeWalk.forPath(repo, "file.txt", merge.getTree()));
+        }
+    }
+
+    @Test
+    void mergeResumesFromJournal() throws IOException, GitAPIException {
+        createLeftAndRightBranches();
+
+        Pipeline.Step gitMergeStep = new Pipeline.Step(null, "git-merge", List.of("recursive"));
+        StandardPipeline gitPipeline = new StandardPipeline("Git Pipeline", List.of(gitMergeStep), null);
+        PipelineConfiguration gitConfiguration = PipelineConfiguration.onlyPipelines(gitPipeline);
+
+        // Pretend a previous run was interrupted after merging other.txt in the second branch step
+        Path journalDir;
+        try (Git git = Git.open(tempDir.toFile());
+             RevWalk revWalk = new RevWalk(git.getRepository());
+             ObjectInserter inserter = git.getRepository().newObjectInserter()) {
+            Repository repo = git.getRepository();
+            ObjectId resumedBlob = inserter.insert(Constants.OBJ_BLOB, "resumed\n".getBytes(StandardCharsets.UTF_8));
+            inserter.flush();
+            List<RevCommit> branchCommits = List.of(
+                    revWalk.parseCommit(repo.resolve("left")), revWalk.parseCommit(repo.resolve("right"))
+            );
+            try (MergeJournal journal = MergeJournal.open(
+                    repo, repo.resolve(BASE_BRANCH), branchCommits, gitConfiguration.getFingerprint(), false
+            )) {
+                journal.recordFile(1, "other.txt", resumedBlob, FileMode.REGULAR_FILE, false);
+            }
+            journalDir = repo.getDirectory().toPath().resolve("gitmergepipeline").resolve("journal");
+        }
+
+        MergeBranches resumingBranches = new MergeBranches(gitConfiguration, 1, true);
+        boolean result = resumingBranches.merge(BASE_BRANCH, tempDir.toFile(), List.of("left", "right"));
+
+        assertTrue(result);
+        assertEquals("resumed\n", Files.readString(tempDir.resolve("other.txt")));
+        assertEquals("left\n", Files.readString(tempDir.resolve("left.txt")));
+        try (Stream<Path> journals = Files.list(journalDir)) {
+            assertEquals(0, journals.count());
+        }
+    }
+
+    @Test
+    void mergeReusesCachedResults() throws IOException, GitAPIException {
+        createLeftAndRightBranches();
+
+        AtomicInteger executions = new AtomicInteger();
+        Pipeline.Step gitMergeStep = new Pipeline.Step(null, "git-merge", List.of("recursive"));
+        StandardPipeline gitPipeline = new StandardPipeline("Git Pipeline", List.of(gitMergeStep), null) {
+            @Override
+            public MergeResult executeBatched(Git git, GitMergeContext context) {
+                executions.incrementAndGet();
+                return super.executeBatched(git, context);
+            }
+        };
+        PipelineConfiguration cachingConfiguration = PipelineConfiguration.builder()
+                .parallelism(1)
+                .resultCacheSize(1024 * 1024)
+                .pipelines(List.of(gitPipeline))
+                .build();
+
+        MergeBranches cachingBranches = new MergeBranches(cachingConfiguration);
+        assertTrue(cachingBranches.merge(BASE_BRANCH, tempDir.toFile(), List.of("left", "right")));
+        int firstRunExecutions = executions.get();
+        assertTrue(firstRunExecutions > 0);
+
+        try (Git git = Git.open(tempDir.toFile())) {
+            git.checkout().setAllPaths(true).call();
+        }
+        cachingBranches = new MergeBranches(cachingConfiguration);
+        assertTrue(cachingBranches.merge(BASE_BRANCH, tempDir.toFile(), List.of("left", "right")));
+
+        assertEquals(firstRunExecutions, executions.get());
+        assertEquals("Line 1 left\nLine 2\nLine 3 right\n", Files.readString(tempDir.resolve("other.txt")));
+    }
+
+    private static String readFile(Repository repo, RevCommit commit, String path) throws IOException {
+        try (TreeWalk treeWalk = TreeWalk.forPath(repo, path, commit.getTree())) {
+            assertNotNull(treeWalk);
+            return new String(repo.open(treeWalk.getObjectId(0)).getBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private void createLeftAndRightBranches() throws IOException, GitAPIException {
+        try (Git git = Git.open(tempDir.toFile())) {
+            Files.writeString(tempDir.resolve("other.txt"), "Line 1\nLine 2\nLine 3\n");
+            git.add().addFilepattern("other.txt").call();
+            git.commit().setMessage("add other").call();
+
+            git.branchCreate().setName("left").call();
+            git.branchCreate().setName("right").call();
+
+            git.checkout().setName("left").call();
+            Files.writeString(tempDir.resolve("other.txt"), "Line 1 left\nLine 2\nLine 3\n");
+            Files.writeString(tempDir.resolve("left.txt"), "left\n");
+            git.add().addFilepattern(".").call();
+            git.commit().setMessage("left commit").call();
+
+            git.checkout().setName("right").call();
+            Files.writeString(tempDir.resolve("other.txt"), "Line 1\nLine 2\nLine 3 right\n");
+            git.add().addFilepattern("other.txt").call();
+            git.rm().addFilepattern("file.txt").call();
+            git.commit().setMessage("right commit").call();
+
+            git.checkout().setName(BASE_BRANCH).call();
+        }
+    }
 }
@@ -0,0 +1,122 @@
+package ca.fxco.gitmergepipeline.merge;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the MergeJournal class which records the progress of a batched merge.
+ * Tests include resuming recorded files and steps, starting over without resuming,
+ * separating journals of different merges and builds, and removing the journal once complete.
+ *
+ * @author FX
+ */
+class MergeJournalTest {
+
+    private static final ObjectId BASE = ObjectId.fromString("1111111111111111111111111111111111111111");
+    private static final ObjectId BRANCH = ObjectId.fromString("2222222222222222222222222222222222222222");
+    private static final ObjectId BLOB = ObjectId.fromString("3333333333333333333333333333333333333333");
+    private static final ObjectId TREE = ObjectId.fromString("4444444444444444444444444444444444444444");
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() throws GitAPIException {
+        Git.init().setDirectory(tempDir.toFile()).call().close();
+    }
+
+    @Test
+    void resumeReadsRecordedProgress() throws IOException {
+        try (Git git = Git.open(tempDir.toFile())) {
+            Repository repo = git.getRepository();
+            try (MergeJournal journal = MergeJournal.open(repo, BASE, List.of(BRANCH), "config", false)) {
+                journal.recordFile(0, "dir/file name.txt", BLOB, FileMode.EXECUTABLE_FILE, false);
+                journal.recordFile(0, "deleted.txt", null, null, true);
+                journal.recordFile(1, "kept.txt", null, null, false);
+                journal.recordStep(0, TREE);
+            }
+
+            try (MergeJournal journal = MergeJournal.open(repo, BASE, List.of(BRANCH), "config", true)) {
+                assertEquals(TREE, journal.getStepTree(0));
+                assertNull(journal.getStepTree(1));
+                assertEquals(
+                        new MergeJournal.Entry(BLOB, FileMode.EXECUTABLE_FILE, false),
+                        journal.getEntry(0, "dir/file name.txt")
+                );
+                assertEquals(new MergeJournal.Entry(null, null, true), journal.getEntry(0, "deleted.txt"));
+                assertEquals(new MergeJournal.Entry(null, null, false), journal.getEntry(1, "kept.txt"));
+                assertNull(journal.getEntry(1, "deleted.txt"));
+            }
+        }
+    }
+
+    @Test
+    void openWithoutResumeStartsOver() throws IOException {
+        try (Git git = Git.open(tempDir.toFile())) {
+            Repository repo = git.getRepository();
+            try (MergeJournal journal = MergeJournal.open(repo, BASE, List.of(BRANCH), "config", false)) {
+                journal.recordStep(0, TREE);
+            }
+            try (MergeJournal journal = MergeJournal.open(repo, BASE, List.of(BRANCH), "config", false)) {
+                assertNull(journal.getStepTree(0));
+            }
+        }
+    }
+
+    @Test
+    void differentConfigurationUsesDifferentJournal() throws IOException {
+        try (Git git = Git.open(tempDir.toFile())) {
+            Repository repo = git.getRepository();
+            try (MergeJournal journal = MergeJournal.open(repo, BASE, List.of(BRANCH), "config", false)) {
+                journal.recordStep(0, TREE);
+            }
+            try (MergeJournal journal = MergeJournal.open(repo, BASE, List.of(BRANCH), "changed", true)) {
+                assertNull(journal.getStepTree(0));
+            }
+        }
+    }
+
+    @Test
+    void differentBuildUsesDifferentJournal() throws IOException {
+        try (Git git = Git.open(tempDir.toFile())) {
+            Repository repo = git.getRepository();
+            try (MergeJournal journal = MergeJournal.open(repo, BASE, List.of(BRANCH), "config", "1.0", false)) {
+                journal.recordStep(0, TREE);
+            }
+            try (MergeJournal journal = MergeJournal.open(repo, BASE, List.of(BRANCH), "config", "1.1", true)) {
+                assertNull(journal.getStepTree(0));
+            }
+            try (MergeJournal journal = MergeJournal.open(repo, BASE, List.of(BRANCH), "config", "1.0", true)) {
+                assertEquals(TREE, journal.getStepTree(0));
+            }
+        }
+    }
+
+    @Test
+    void completeRemovesJournal() throws IOException {
+        try (Git git = Git.open(tempDir.toFile())) {
+            Repository repo = git.getRepository();
+            Path journalDir = repo.getDirectory().toPath().resolve("gitmergepipeline").resolve("journal");
+            MergeJournal journal = MergeJournal.open(repo, BASE, List.of(BRANCH), "config", false);
+            journal.recordStep(0, TREE);
+            journal.complete();
+
+            try (var journals = Files.list(journalDir)) {
+                assertEquals(0, journals.count());
+            }
+        }
+    }
+}
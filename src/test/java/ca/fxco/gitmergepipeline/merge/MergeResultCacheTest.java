@@ -0,0 +1,138 @@
+package ca.fxco.gitmergepipeline.merge;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the MergeResultCache class which caches merge results between runs.
+ * Tests include reusing results from disk and within a run, separating results by pipeline fingerprint,
+ * retrying errors, and evicting results once the cache is full.
+ *
+ * @author FX
+ */
+class MergeResultCacheTest {
+
+    private static final MergeResultCache.Version BASE = new MergeResultCache.Version(
+            ObjectId.fromString("1111111111111111111111111111111111111111"), FileMode.REGULAR_FILE
+    );
+    private static final MergeResultCache.Version CURRENT = new MergeResultCache.Version(
+            ObjectId.fromString("2222222222222222222222222222222222222222"), FileMode.REGULAR_FILE
+    );
+    private static final MergeResultCache.Version OTHER = new MergeResultCache.Version(
+            ObjectId.fromString("3333333333333333333333333333333333333333"), FileMode.REGULAR_FILE
+    );
+
+    @TempDir
+    Path tempDir;
+
+    private ObjectId mergedBlob;
+
+    @BeforeEach
+    void setUp() throws IOException, GitAPIException {
+        try (Git git = Git.init().setDirectory(tempDir.toFile()).call();
+             ObjectInserter inserter = git.getRepository().newObjectInserter()) {
+            mergedBlob = inserter.insert(Constants.OBJ_BLOB, "merged\n".getBytes(StandardCharsets.UTF_8));
+            inserter.flush();
+        }
+    }
+
+    @Test
+    void getReusesResultsFromEarlierRuns() throws IOException {
+        ObjectId key = MergeResultCache.key("pipeline", "file.txt", BASE, CURRENT, OTHER);
+        AtomicInteger merges = new AtomicInteger();
+        MergeResultCache.Merge merge = () -> {
+            merges.incrementAndGet();
+            return new MergeResultCache.Entry(
+                    MergeResult.success("merged", null), mergedBlob, FileMode.REGULAR_FILE, false
+            );
+        };
+
+        try (Git git = Git.open(tempDir.toFile())) {
+            MergeResultCache firstRun = new MergeResultCache(git.getRepository(), 1024, Duration.ofDays(1));
+            firstRun.get(key, merge);
+            MergeResultCache secondRun = new MergeResultCache(git.getRepository(), 1024, Duration.ofDays(1));
+            MergeResultCache.Entry entry = secondRun.get(key, merge);
+
+            assertEquals(1, merges.get());
+            assertEquals(1, secondRun.getHits());
+            assertTrue(entry.result().isSuccess());
+            assertEquals("merged", entry.result().getMessage());
+            assertEquals(mergedBlob, entry.blobId());
+            assertEquals(FileMode.REGULAR_FILE, entry.fileMode());
+        }
+    }
+
+    @Test
+    void getDeduplicatesWithinRun() throws IOException {
+        ObjectId key = MergeResultCache.key("pipeline", "file.txt", BASE, CURRENT, OTHER);
+        AtomicInteger merges = new AtomicInteger();
+        MergeResultCache.Merge merge = () -> {
+            merges.incrementAndGet();
+            return new MergeResultCache.Entry(MergeResult.error("failed", null), null, null, false);
+        };
+
+        try (Git git = Git.open(tempDir.toFile())) {
+            MergeResultCache cache = new MergeResultCache(git.getRepository(), 1024, Duration.ofDays(1));
+            cache.get(key, merge);
+            cache.get(key, merge);
+            assertEquals(1, merges.get());
+
+            // Errors are only shared within the run, the next run tries again
+            MergeResultCache nextRun = new MergeResultCache(git.getRepository(), 1024, Duration.ofDays(1));
+            assertTrue(nextRun.get(key, merge).result().isError());
+            assertEquals(2, merges.get());
+        }
+    }
+
+    @Test
+    void keyDependsOnFingerprintVersionsAndModes() {
+        ObjectId key = MergeResultCache.key("pipeline", "file.txt", BASE, CURRENT, OTHER);
+
+        assertEquals(key, MergeResultCache.key("pipeline", "file.txt", BASE, CURRENT, OTHER));
+        assertNotEquals(key, MergeResultCache.key("changed", "file.txt", BASE, CURRENT, OTHER));
+        assertNotEquals(key, MergeResultCache.key("pipeline", "file.txt", BASE, OTHER, CURRENT));
+        assertNotEquals(key, MergeResultCache.key(
+                "pipeline", "file.txt", new MergeResultCache.Version(null, null), CURRENT, OTHER
+        ));
+        // Only the mode changed, so the merged file mode would be different
+        assertNotEquals(key, MergeResultCache.key(
+                "pipeline", "file.txt", BASE, CURRENT,
+                new MergeResultCache.Version(OTHER.blobId(), FileMode.EXECUTABLE_FILE)
+        ));
+    }
+
+    @Test
+    void evictRemovesResultsOverSize() throws IOException {
+        ObjectId key = MergeResultCache.key("pipeline", "file.txt", BASE, CURRENT, OTHER);
+        AtomicInteger merges = new AtomicInteger();
+        MergeResultCache.Merge merge = () -> {
+            merges.incrementAndGet();
+            return new MergeResultCache.Entry(MergeResult.success("merged", null), null, null, true);
+        };
+
+        try (Git git = Git.open(tempDir.toFile())) {
+            MergeResultCache cache = new MergeResultCache(git.getRepository(), 0, Duration.ofDays(1));
+            cache.get(key, merge);
+            cache.evict();
+
+            MergeResultCache nextRun = new MergeResultCache(git.getRepository(), 0, Duration.ofDays(1));
+            assertTrue(nextRun.get(key, merge).deleted());
+            assertEquals(2, merges.get());
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package ca.fxco.gitmergepipeline.merge;
+
+import ca.fxco.gitmergepipeline.rule.FilePatternRule;
+import ca.fxco.gitmergepipeline.rule.Rule;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the RuleResultCache class which keeps rule results for the versions of files during a merge.
+ * Tests include reusing results for the same version, and evaluating again after a version failed to be read.
+ *
+ * @author FX
+ */
+class RuleResultCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void reuseResultsForTheSameVersion() throws IOException {
+        Path file = tempDir.resolve("test.txt");
+        Files.writeString(file, "content");
+        Rule rule = new FilePatternRule("*.txt");
+        RuleResultCache ruleResults = new RuleResultCache();
+        AtomicInteger evaluations = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(ruleResults.matches(rule, file, path -> evaluations.incrementAndGet() > 0));
+        }
+        assertEquals(1, evaluations.get());
+        assertEquals(1, ruleResults.getMisses());
+        assertEquals(2, ruleResults.getHits());
+    }
+
+    @Test
+    void evaluateAgainAfterFailure() throws IOException {
+        Path file = tempDir.resolve("test.txt");
+        Files.writeString(file, "content");
+        Rule rule = new FilePatternRule("*.txt");
+        RuleResultCache ruleResults = new RuleResultCache();
+        AtomicInteger evaluations = new AtomicInteger();
+
+        assertThrows(IOException.class, () -> ruleResults.matches(rule, file, path -> {
+            evaluations.incrementAndGet();
+            throw new IOException("Failed to read");
+        }));
+        assertTrue(ruleResults.matches(rule, file, path -> evaluations.incrementAndGet() > 0));
+        assertTrue(ruleResults.matches(rule, file, path -> evaluations.incrementAndGet() > 0));
+
+        assertEquals(2, evaluations.get());
+        assertEquals(2, ruleResults.getMisses());
+        assertEquals(1, ruleResults.getHits());
+    }
+}
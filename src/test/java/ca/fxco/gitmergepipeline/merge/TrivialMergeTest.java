@@ -0,0 +1,86 @@
+package ca.fxco.gitmergepipeline.merge;
+
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the TrivialMerge class which resolves merges from blob ids alone.
+ * Tests include identical changes, one-sided changes, adds and deletes,
+ * mode-only changes, and merges which need a pipeline.
+ *
+ * @author FX
+ */
+class TrivialMergeTest {
+
+    private static final TrivialMerge.Version BASE = version("1111111111111111111111111111111111111111");
+    private static final TrivialMerge.Version CURRENT = version("2222222222222222222222222222222222222222");
+    private static final TrivialMerge.Version OTHER = version("3333333333333333333333333333333333333333");
+    private static final TrivialMerge.Version MISSING = TrivialMerge.Version.MISSING;
+
+    @Test
+    void classifySameChange() {
+        TrivialMerge merge = TrivialMerge.classify(BASE, CURRENT, version(CURRENT.blobId().name()));
+
+        assertNotNull(merge);
+        assertEquals(TrivialMerge.Kind.SAME_CHANGE, merge.kind());
+        assertNull(merge.blobId());
+        assertFalse(merge.deleted());
+    }
+
+    @Test
+    void classifyOnlyCurrentChanged() {
+        TrivialMerge merge = TrivialMerge.classify(BASE, MISSING, BASE);
+
+        assertNotNull(merge);
+        assertEquals(TrivialMerge.Kind.ONLY_CURRENT_CHANGED, merge.kind());
+        assertNull(merge.blobId());
+        assertFalse(merge.deleted());
+    }
+
+    @Test
+    void classifyOnlyOtherChanged() {
+        TrivialMerge merge = TrivialMerge.classify(BASE, BASE, OTHER);
+
+        assertNotNull(merge);
+        assertEquals(TrivialMerge.Kind.ONLY_OTHER_CHANGED, merge.kind());
+        assertEquals(OTHER.blobId(), merge.blobId());
+    }
+
+    @Test
+    void classifyAddedAndDeletedByOther() {
+        TrivialMerge added = TrivialMerge.classify(MISSING, MISSING, OTHER);
+        TrivialMerge deleted = TrivialMerge.classify(BASE, BASE, MISSING);
+
+        assertNotNull(added);
+        assertEquals(TrivialMerge.Kind.ADDED_BY_OTHER, added.kind());
+        assertEquals(OTHER.blobId(), added.blobId());
+        assertNotNull(deleted);
+        assertEquals(TrivialMerge.Kind.DELETED_BY_OTHER, deleted.kind());
+        assertTrue(deleted.deleted());
+    }
+
+    @Test
+    void classifyModeChange() {
+        TrivialMerge.Version executable = new TrivialMerge.Version(BASE.blobId(), FileMode.EXECUTABLE_FILE);
+        TrivialMerge merge = TrivialMerge.classify(BASE, executable, OTHER);
+
+        assertNotNull(merge);
+        assertEquals(TrivialMerge.Kind.MODE_CHANGE, merge.kind());
+        assertEquals(OTHER.blobId(), merge.blobId());
+        assertEquals(FileMode.EXECUTABLE_FILE.getBits(), merge.fileMode().getBits());
+    }
+
+    @Test
+    void classifyReturnsNullWhenBothSidesChanged() {
+        assertNull(TrivialMerge.classify(BASE, CURRENT, OTHER));
+        assertNull(TrivialMerge.classify(BASE, MISSING, OTHER));
+        assertNull(TrivialMerge.classify(MISSING, CURRENT, OTHER));
+    }
+
+    private static TrivialMerge.Version version(String blobId) {
+        return new TrivialMerge.Version(ObjectId.fromString(blobId), FileMode.REGULAR_FILE);
+    }
+}
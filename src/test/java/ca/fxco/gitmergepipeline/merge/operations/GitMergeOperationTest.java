@@ -93,6 +93,24 @@ class GitMergeOperationTest {
         assertTrue(result.isConflict());
     }
 
+    @Test
+    void executeWithConflictingChangesWritesConflictMarkers() throws IOException {
+        // Create files with conflicting changes
+        Files.writeString(baseFile, "Line 1\nLine 2\nLine 3\n");
+        Files.writeString(currentFile, "Line 1\nLine 2 modified by current\nLine 3\n");
+        Files.writeString(otherFile, "Line 1\nLine 2 modified by other\nLine 3\n");
+
+        MergeContext context = new MergeContext(baseFile, currentFile, otherFile, "test.txt");
+
+        MergeResult result = operation.execute(context, Collections.singletonList("recursive"));
+
+        assertTrue(result.isConflict());
+        assertEquals(
+                "Line 1\n<<<<<<< current\nLine 2 modified by current\n=======\nLine 2 modified by other\n>>>>>>> other\nLine 3\n",
+                Files.readString(currentFile)
+        );
+    }
+
     @Test
     void executeWithOursStrategy() throws IOException {
         // Create files with conflicting changes
@@ -0,0 +1,155 @@
+package ca.fxco.gitmergepipeline.plugin;
+
+import ca.fxco.gitmergepipeline.merge.MergeOperation;
+import ca.fxco.gitmergepipeline.merge.MergeOperationRegistry;
+import ca.fxco.gitmergepipeline.rule.Rule;
+import ca.fxco.gitmergepipeline.rule.RuleRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the PluginIndex class and the PluginIndexProcessor which generates it.
+ * Tests include compiling annotated plugins, and finding them through the registries.
+ *
+ * @author FX
+ */
+class PluginIndexTest {
+
+    private static final String RULE_SOURCE = """
+            package test;
+
+            import ca.fxco.gitmergepipeline.merge.GitMergeContext;
+            import ca.fxco.gitmergepipeline.merge.MergeContext;
+            import ca.fxco.gitmergepipeline.plugin.Plugin;
+            import ca.fxco.gitmergepipeline.rule.Rule;
+
+            @Plugin("never")
+            public class NeverRule implements Rule {
+                public boolean applies(MergeContext context) { return false; }
+                public boolean applies(GitMergeContext context) { return false; }
+                public String getDescription() { return "Never"; }
+            }
+            """;
+
+    private static final String OPERATION_SOURCE = """
+            package test;
+
+            import ca.fxco.gitmergepipeline.merge.*;
+            import ca.fxco.gitmergepipeline.plugin.Plugin;
+            import org.eclipse.jgit.api.Git;
+            import java.util.List;
+
+            @Plugin("noop")
+            public class NoopOperation implements MergeOperation {
+                public String getName() { return "noop"; }
+                public String getDescription() { return "Noop"; }
+                public MergeResult execute(MergeContext context, List<String> parameters) { return null; }
+                public MergeResult executeBatched(Git git, GitMergeContext context, List<String> parameters) {
+                    return null;
+                }
+            }
+            """;
+
+    @Test
+    void processorIndexesPlugins(@TempDir Path tempDir) throws IOException {
+        Path output = compile(tempDir, Map.of("NeverRule", RULE_SOURCE, "NoopOperation", OPERATION_SOURCE), 0);
+
+        String index = Files.readString(output.resolve(PluginIndex.INDEX_PATH));
+        assertTrue(index.contains("rule never test.NeverRule\n"), index);
+        assertTrue(index.contains("operation noop test.NoopOperation\n"), index);
+
+        try (URLClassLoader classLoader = new URLClassLoader(
+                new URL[]{output.toUri().toURL()}, getClass().getClassLoader()
+        )) {
+            PluginIndex pluginIndex = PluginIndex.load(classLoader);
+            assertEquals(Map.of("never", "test.NeverRule"), pluginIndex.getClassNames(PluginIndex.Kind.RULE));
+
+            RuleRegistry ruleRegistry = new RuleRegistry(pluginIndex);
+            assertFalse(ruleRegistry.getRules().containsKey("never"));
+            Class<? extends Rule> ruleClass = ruleRegistry.getRule("never");
+            assertNotNull(ruleClass);
+            assertEquals("test.NeverRule", ruleClass.getName());
+            assertTrue(ruleRegistry.getRules().containsKey("never"));
+            assertNull(ruleRegistry.getRule("missing"));
+
+            MergeOperationRegistry operationRegistry = new MergeOperationRegistry(pluginIndex);
+            MergeOperation operation = operationRegistry.getOperation("noop");
+            assertNotNull(operation);
+            assertSame(operation, operationRegistry.getOperation("noop"));
+            assertNull(new MergeOperationRegistry().getOperation("noop"));
+        }
+    }
+
+    @Test
+    void processorRejectsInvalidPlugins(@TempDir Path tempDir) throws IOException {
+        String notAPlugin = """
+                package test;
+
+                @ca.fxco.gitmergepipeline.plugin.Plugin("nothing")
+                public class Nothing {}
+                """;
+        String duplicate = RULE_SOURCE.replace("NeverRule", "OtherRule");
+        compile(tempDir.resolve("type"), Map.of("Nothing", notAPlugin), 1);
+        compile(tempDir.resolve("duplicate"), Map.of("NeverRule", RULE_SOURCE, "OtherRule", duplicate), 1);
+    }
+
+    @Test
+    void indexRoundTrips() throws IOException {
+        Map<PluginIndex.Kind, Map<String, String>> classNames = new EnumMap<>(PluginIndex.Kind.class);
+        classNames.put(PluginIndex.Kind.FILTER, Map.of("b", "test.B", "a", "test.A"));
+        classNames.put(PluginIndex.Kind.PIPELINE, Map.of("c", "test.C"));
+
+        StringWriter written = new StringWriter();
+        PluginIndex.write(written, classNames);
+        assertTrue(written.toString().indexOf("filter a test.A\nfilter b test.B\npipeline c test.C\n") > 0, written.toString());
+
+        Map<PluginIndex.Kind, Map<String, String>> read = new EnumMap<>(PluginIndex.Kind.class);
+        PluginIndex.read(new StringReader(written + "invalid line\nunknown x test.X\n"), read);
+        assertEquals(classNames, read);
+    }
+
+    private static Path compile(Path dir, Map<String, String> sources, int expectedResult) throws IOException {
+        Path sourceDir = dir.resolve("src/test");
+        Path output = dir.resolve("classes");
+        Files.createDirectories(sourceDir);
+        Files.createDirectories(output);
+        Map<String, Path> files = new HashMap<>();
+        for (Map.Entry<String, String> source : sources.entrySet()) {
+            Path file = sourceDir.resolve(source.getKey() + ".java");
+            files.put(source.getKey(), Files.writeString(file, source.getValue()));
+        }
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertNotNull(compiler, "Tests must run on a JDK");
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        String[] args = new String[4 + files.size()];
+        args[0] = "-classpath";
+        args[1] = System.getProperty("java.class.path");
+        args[2] = "-d";
+        args[3] = output.toString();
+        int i = 4;
+        for (Path file : files.values()) {
+            args[i++] = file.toString();
+        }
+        int result = compiler.run(null, null, errors, args);
+        assertEquals(expectedResult, result, errors.toString(StandardCharsets.UTF_8));
+        return output;
+    }
+}
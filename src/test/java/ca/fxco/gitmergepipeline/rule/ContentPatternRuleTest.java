@@ -1,6 +1,13 @@
 package ca.fxco.gitmergepipeline.rule;
 
+import ca.fxco.gitmergepipeline.merge.GitMergeContext;
 import ca.fxco.gitmergepipeline.merge.MergeContext;
+import ca.fxco.gitmergepipeline.merge.RuleResultCache;
+import ca.fxco.gitmergepipeline.utils.BlobContent;
+import ca.fxco.gitmergepipeline.utils.GitPath;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.revwalk.RevCommit;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -14,7 +21,7 @@ import static org.junit.jupiter.api.Assertions.*;
 /**
  * Tests for the ContentPatternRule class which matches files based on their content.
  * Tests include pattern matching with different configurations including case sensitivity
- * and checking different versions of files (base, current, other).
+ * and checking different versions of files (base, current, other), and reusing results for the same versions.
  *
  * @author FX
  */
@@ -123,6 +130,104 @@ class ContentPatternRuleTest {
         assertFalse(baseAndCurrentRule.applies(nonMatchingContext));
     }
 
+    @Test
+    void appliesWithCommitContent() throws IOException, GitAPIException {
+        Path repoDir = tempDir.resolve("repo");
+        try (Git git = Git.init().setDirectory(repoDir.toFile()).call()) {
+            Files.writeString(repoDir.resolve("test.txt"), "This is the committed version.");
+            git.add().addFilepattern("test.txt").call();
+            RevCommit commit = git.commit().setMessage("add test").call();
+
+            // The working directory no longer matches, but the commit still does
+            Files.writeString(repoDir.resolve("test.txt"), "This is the working directory version.");
+
+            Path target = repoDir.resolve("test.txt");
+            GitPath gitPath = new GitPath(commit, commit.getTree(), target,
+                    new BlobContent(git.getRepository(), null, commit.getTree(), "test.txt"));
+            GitMergeContext context = new GitMergeContext(gitPath, gitPath, gitPath, "test.txt");
+
+            assertTrue(new ContentPatternRule("committed").applies(context));
+            assertFalse(new ContentPatternRule("working directory").applies(context));
+        }
+    }
+
+    @Test
+    void appliesWithinWindow() throws IOException, GitAPIException {
+        Path header = tempDir.resolve("header.txt");
+        Files.writeString(header, "// @generated\nclass Generated {}\n// trailing marker\n");
+        MergeContext context = new MergeContext(header, header, header, "header.txt");
+
+        assertTrue(new ContentPatternRule("@generated", true, true, true, true, null, 1).applies(context));
+        assertFalse(new ContentPatternRule("trailing", true, true, true, true, null, 2).applies(context));
+        assertTrue(new ContentPatternRule("trailing", true, true, true, true, null, 3).applies(context));
+        assertFalse(new ContentPatternRule("Generated", true, true, true, true, 10, null).applies(context));
+
+        Path repoDir = tempDir.resolve("repo");
+        try (Git git = Git.init().setDirectory(repoDir.toFile()).call()) {
+            Files.copy(header, repoDir.resolve("header.txt"));
+            git.add().addFilepattern("header.txt").call();
+            RevCommit commit = git.commit().setMessage("add header").call();
+
+            GitPath gitPath = new GitPath(commit, commit.getTree(), repoDir.resolve("header.txt"),
+                    new BlobContent(git.getRepository(), null, commit.getTree(), "header.txt"));
+            GitMergeContext gitContext = new GitMergeContext(gitPath, gitPath, gitPath, "header.txt");
+            assertTrue(new ContentPatternRule("@gen\\w+", true, true, true, true, null, 1).applies(gitContext));
+            assertFalse(new ContentPatternRule("class \\w+", true, true, true, true, null, 1).applies(gitContext));
+        }
+    }
+
+    @Test
+    void appliesToMalformedContent() throws IOException {
+        Path malformed = tempDir.resolve("malformed.txt");
+        Files.write(malformed, new byte[]{'b', 'a', 'd', (byte) 0xC3, '(', ' ', 'm', 'a', 'r', 'k', 'e', 'r'});
+        MergeContext context = new MergeContext(malformed, malformed, malformed, "malformed.txt");
+
+        assertTrue(new ContentPatternRule("marker").applies(context));
+        assertTrue(new ContentPatternRule("m.rker$").applies(context));
+        assertFalse(new ContentPatternRule("missing").applies(context));
+    }
+
+    @Test
+    void reusesResultsForTheSameVersions() throws IOException, GitAPIException {
+        ContentPatternRule rule = new ContentPatternRule("committed");
+        RuleResultCache ruleResults = new RuleResultCache();
+
+        Path repoDir = tempDir.resolve("repo");
+        try (Git git = Git.init().setDirectory(repoDir.toFile()).call()) {
+            Files.writeString(repoDir.resolve("test.txt"), "This is the committed version.");
+            git.add().addFilepattern("test.txt").call();
+            RevCommit commit = git.commit().setMessage("add test").call();
+
+            GitPath gitPath = new GitPath(commit, commit.getTree(), repoDir.resolve("test.txt"),
+                    new BlobContent(git.getRepository(), null, commit.getTree(), "test.txt"));
+            // Every branch of an octopus merge gets its own context, with the same versions
+            for (int i = 0; i < 3; i++) {
+                GitMergeContext context = GitMergeContext.builder(gitPath, gitPath, gitPath, "test.txt")
+                        .ruleResults(ruleResults)
+                        .build();
+                assertTrue(rule.applies(context));
+            }
+            assertEquals(1, ruleResults.getMisses());
+            assertEquals(2, ruleResults.getHits());
+            assertTrue(new ContentPatternRule("committed").applies(
+                    GitMergeContext.builder(gitPath, gitPath, gitPath, "test.txt")
+                            .ruleResults(ruleResults)
+                            .build()
+            ));
+            assertEquals(2, ruleResults.getMisses(), "Other rules have their own results");
+        }
+
+        MergeContext context = new MergeContext(baseFile, baseFile, baseFile, "test.txt", ruleResults);
+        assertFalse(rule.applies(context));
+        assertFalse(rule.applies(context));
+        assertEquals(3, ruleResults.getMisses());
+
+        // Files changed on disk are read again
+        Files.writeString(baseFile, "This is the committed base version, which changed size.");
+        assertTrue(rule.applies(context));
+        assertEquals(4, ruleResults.getMisses());
+    }
+
     @Test
     void getDescription() {
         ContentPatternRule allVersionsRule = new ContentPatternRule("pattern", true);
@@ -137,6 +242,8 @@ class ContentPatternRuleTest {
                 baseOnlyRule.getDescription());
         assertEquals("Content matches pattern 'pattern' (case-insensitive) in current version, other version", 
                 currentAndOtherRule.getDescription());
+        assertEquals("Content matches pattern 'pattern' (case-sensitive) in any version within the first 5 lines",
+                new ContentPatternRule("pattern", true, true, true, true, null, 5).getDescription());
     }
 
     @Test
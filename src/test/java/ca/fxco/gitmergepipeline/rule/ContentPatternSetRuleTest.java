@@ -0,0 +1,142 @@
+package ca.fxco.gitmergepipeline.rule;
+
+import ca.fxco.gitmergepipeline.merge.GitMergeContext;
+import ca.fxco.gitmergepipeline.merge.MergeContext;
+import ca.fxco.gitmergepipeline.merge.RuleResultCache;
+import ca.fxco.gitmergepipeline.utils.BlobContent;
+import ca.fxco.gitmergepipeline.utils.GitPath;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.regex.PatternSyntaxException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the ContentPatternSetRule class which matches files against a set of literals and regular expressions.
+ * Tests include which pattern is reported as matched, case sensitivity, content windows, reusing results for the same
+ * versions, and serialization.
+ *
+ * @author FX
+ */
+class ContentPatternSetRuleTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void reportsFirstMatchingPattern() throws IOException {
+        Path file = Files.writeString(tempDir.resolve("Generated.java"), """
+                // Code generated by protoc. DO NOT EDIT.
+                package example;
+                """);
+        MergeContext context = new MergeContext(file, file, file, "Generated.java");
+
+        ContentPatternSetRule rule = new ContentPatternSetRule(
+                List.of("@generated", "DO NOT EDIT"), List.of("Code generated by \\w+"), true
+        );
+        assertTrue(rule.applies(context));
+        assertEquals("DO NOT EDIT", context.getAttribute(ContentPatternSetRule.DEFAULT_ATTRIBUTE));
+
+        ContentPatternSetRule regexRule = new ContentPatternSetRule(
+                List.of("@generated"), List.of("^package \\w+;$", "generated by \\d+"), true
+        );
+        MergeContext regexContext = new MergeContext(file, file, file, "Generated.java");
+        assertFalse(regexRule.applies(regexContext), "Patterns aren't multiline");
+        assertNull(regexContext.getAttribute(ContentPatternSetRule.DEFAULT_ATTRIBUTE));
+
+        ContentPatternSetRule literalRegexRule = new ContentPatternSetRule(
+                List.of(), List.of("(?m)^package \\w+;$", "protoc"), true
+        );
+        assertTrue(literalRegexRule.applies(regexContext));
+        assertEquals("(?m)^package \\w+;$", regexContext.getAttribute(ContentPatternSetRule.DEFAULT_ATTRIBUTE));
+    }
+
+    @Test
+    void appliesWithOptions() throws IOException {
+        Path base = Files.writeString(tempDir.resolve("base.txt"), "first line\nAUTO-GENERATED below\n");
+        Path current = Files.writeString(tempDir.resolve("current.txt"), "nothing to see here\n");
+        MergeContext context = new MergeContext(base, current, current, "file.txt");
+
+        assertTrue(new ContentPatternSetRule(List.of("auto-generated"), List.of(), false).applies(context));
+        assertFalse(new ContentPatternSetRule(List.of("auto-generated"), List.of(), true).applies(context));
+        assertFalse(new ContentPatternSetRule(
+                List.of("AUTO-GENERATED"), null, true, false, true, true, null, null, null
+        ).applies(context));
+        assertFalse(new ContentPatternSetRule(
+                List.of("AUTO-GENERATED"), null, true, true, true, true, null, 1, null
+        ).applies(context));
+
+        ContentPatternSetRule attributeRule = new ContentPatternSetRule(
+                null, List.of("AUTO-\\w+"), true, true, true, true, 64, 2, "generator"
+        );
+        assertTrue(attributeRule.applies(context));
+        assertEquals("AUTO-\\w+", context.getAttribute("generator"));
+
+        assertThrows(PatternSyntaxException.class, () -> new ContentPatternSetRule(List.of(), List.of("("), true));
+    }
+
+    @Test
+    void reusesResultsForTheSameVersions() throws IOException, GitAPIException {
+        ContentPatternSetRule rule = new ContentPatternSetRule(List.of("absent"), List.of("commit\\w+"), true);
+        RuleResultCache ruleResults = new RuleResultCache();
+
+        Path repoDir = tempDir.resolve("repo");
+        try (Git git = Git.init().setDirectory(repoDir.toFile()).call()) {
+            Files.writeString(repoDir.resolve("test.txt"), "This is the committed version.");
+            git.add().addFilepattern("test.txt").call();
+            RevCommit commit = git.commit().setMessage("add test").call();
+
+            GitPath gitPath = new GitPath(commit, commit.getTree(), repoDir.resolve("test.txt"),
+                    new BlobContent(git.getRepository(), null, commit.getTree(), "test.txt"));
+            for (int i = 0; i < 2; i++) {
+                GitMergeContext context = GitMergeContext.builder(gitPath, gitPath, gitPath, "test.txt")
+                        .ruleResults(ruleResults)
+                        .build();
+                assertTrue(rule.applies(context));
+                // The matched pattern is reported even when the result was reused
+                assertEquals("commit\\w+", context.getAttribute(ContentPatternSetRule.DEFAULT_ATTRIBUTE));
+            }
+            assertEquals(1, ruleResults.getMisses());
+            assertEquals(1, ruleResults.getHits());
+        }
+    }
+
+    @Test
+    void getDescription() {
+        assertEquals("Content matches any of ['a', /b+/] (case-sensitive) in any version",
+                new ContentPatternSetRule(List.of("a"), List.of("b+"), true).getDescription());
+        assertEquals("Content matches any of ['a'] (case-insensitive) in base version, other version within the "
+                        + "first 3 lines and 100 bytes",
+                new ContentPatternSetRule(List.of("a"), null, false, true, false, true, 100, 3, null)
+                        .getDescription());
+    }
+
+    @Test
+    void serializes() throws IOException, ClassNotFoundException {
+        ContentPatternSetRule rule = new ContentPatternSetRule(List.of("literal"), List.of("re\\d+gex"), true);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(rule);
+        }
+        ContentPatternSetRule copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = (ContentPatternSetRule) in.readObject();
+        }
+
+        Path file = Files.writeString(tempDir.resolve("file.txt"), "re42gex");
+        assertTrue(copy.applies(new MergeContext(file, file, file, "file.txt")));
+        assertEquals(rule.getDescription(), copy.getDescription());
+    }
+}
@@ -0,0 +1,75 @@
+package ca.fxco.gitmergepipeline.rule;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the FilePatternAutomaton class which matches many file pattern rules at once.
+ * Tests include the order of the groups, and comparing its matches with the rules matching one by one.
+ *
+ * @author FX
+ */
+class FilePatternAutomatonTest {
+
+    private static final List<String> GLOBS = List.of(
+            "*.java", "*.JAVA", "Test?.txt", "*Test*", "[abc]*.md", "[!abc]*.md", "[a-c-]x", "[^x]y", "{foo,bar}.*",
+            "{a,{b,c}d}e", "**", "src/**/*.java", "*.{json,yml}", "\\*star", "file.(1)+", "[A-Z]*.kt", "", "]",
+            "a,b", "{a,b", "[]]", "[a*]", "*\\", "**/*.java", "src/**/Test.java", "a/**", "[!a]/*", "{*/,}*.md"
+    );
+    private static final List<String> PATHS = List.of(
+            "Test.java", "test.JAVA", "Test1.txt", "Test12.txt", "MyTests.xml", "a.md", "B.md", "d.md", "bx", "-x",
+            "dx", "^y", "xy", "Ay", "foo.txt", "bar.", "ae", "bde", "cde", "be", "src/main/Test.java",
+            "src/Test.java", "config.yml", "config.JSON", "*star", "xstar", "file.(1)+", "Main.kt", "main.kt", "",
+            "]", "a", "b", "a,b", "{a,b", "a*", "line\nbreak", "café.java", "😀.md", "😀?.txt",
+            "a/b", "a/", "src/main/java/Test.java", "x/src/Test.java", "docs/a.md", "a/b/c.md"
+    );
+
+    @Test
+    void matchesLikeEachRule() {
+        for (boolean caseSensitive : new boolean[]{false, true}) {
+            for (String glob : GLOBS) {
+                FilePatternRule rule = new FilePatternRule(glob, false, caseSensitive);
+                FilePatternAutomaton automaton = FilePatternAutomaton.compile(List.of(List.of(rule)));
+                for (String path : PATHS) {
+                    int expected = rule.matches(path) ? 0 : FilePatternAutomaton.NO_MATCH;
+                    assertEquals(expected, automaton.match(path, 0), glob + " on " + path + " " + caseSensitive);
+                }
+            }
+        }
+    }
+
+    @Test
+    void returnsFirstMatchingGroup() {
+        FilePatternAutomaton automaton = FilePatternAutomaton.compile(List.of(
+                List.of(new FilePatternRule("*.xml")),
+                List.of(),
+                List.of(new FilePatternRule(".*\\.java", true, false)),
+                List.of(new FilePatternRule("Test*"), new FilePatternRule("*.java")),
+                List.of(new FilePatternRule("*"))
+        ));
+
+        assertEquals(0, automaton.match("pom.xml", 0));
+        assertEquals(2, automaton.match("Test.java", 0));
+        assertEquals(3, automaton.match("Test.txt", 0));
+        assertEquals(4, automaton.match("README.md", 0));
+        assertEquals(0, automaton.match("src/main/pom.xml", 9));
+        assertEquals(FilePatternAutomaton.NO_MATCH, FilePatternAutomaton.compile(List.of()).match("a", 0));
+    }
+
+    @Test
+    void matchesManyGroups() {
+        List<List<FilePatternRule>> groups = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            groups.add(List.of(new FilePatternRule("*." + i + "[ab]"), new FilePatternRule("file" + i + "_*")));
+        }
+        FilePatternAutomaton automaton = FilePatternAutomaton.compile(groups);
+
+        assertEquals(42, automaton.match("data.42a", 0));
+        assertEquals(7, automaton.match("file7_data.42a", 0));
+        assertEquals(FilePatternAutomaton.NO_MATCH, automaton.match("data.42c", 0));
+    }
+}
@@ -0,0 +1,128 @@
+package ca.fxco.gitmergepipeline.utils;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the BlobCache class which caches blob contents during a merge.
+ * Tests include hit and miss counting, eviction once the byte budget is used up,
+ * spilling evicted blobs to disk, and keeping staged blobs within the spill budget.
+ *
+ * @author FX
+ */
+class BlobCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ObjectId firstBlob;
+    private ObjectId secondBlob;
+
+    @BeforeEach
+    void setUp() throws IOException, GitAPIException {
+        try (Git git = Git.init().setDirectory(tempDir.toFile()).call();
+             ObjectInserter inserter = git.getRepository().newObjectInserter()) {
+            firstBlob = inserter.insert(Constants.OBJ_BLOB, "first blob".getBytes(StandardCharsets.UTF_8));
+            secondBlob = inserter.insert(Constants.OBJ_BLOB, "second blob".getBytes(StandardCharsets.UTF_8));
+            inserter.flush();
+        }
+    }
+
+    @Test
+    void getBytesCountsHitsAndMisses() throws IOException {
+        try (Git git = Git.open(tempDir.toFile());
+             BlobCache blobCache = new BlobCache(git.getRepository(), 1024)) {
+            assertEquals("first blob", new String(blobCache.getBytes(firstBlob), StandardCharsets.UTF_8));
+            assertEquals("first blob", new String(blobCache.getBytes(firstBlob), StandardCharsets.UTF_8));
+
+            assertEquals(1, blobCache.getHits());
+            assertEquals(1, blobCache.getMisses());
+            assertEquals("first blob".length(), blobCache.getUsedBytes());
+        }
+    }
+
+    @Test
+    void getBytesEvictsLeastRecentlyUsed() throws IOException {
+        try (Git git = Git.open(tempDir.toFile());
+             BlobCache blobCache = new BlobCache(git.getRepository(), 12)) {
+            blobCache.getBytes(firstBlob);
+            blobCache.getBytes(secondBlob);
+
+            // Only one blob fits, so the first one had to be evicted
+            assertEquals("second blob".length(), blobCache.getUsedBytes());
+            blobCache.getBytes(firstBlob);
+
+            assertEquals(0, blobCache.getHits());
+            assertEquals(3, blobCache.getMisses());
+        }
+    }
+
+    @Test
+    void getBytesReadsSpilledBlobs() throws IOException {
+        try (Git git = Git.open(tempDir.toFile());
+             BlobCache blobCache = new BlobCache(git.getRepository(), 12, 1024)) {
+            blobCache.getBytes(firstBlob);
+            blobCache.getBytes(secondBlob);
+
+            assertEquals("first blob".length(), blobCache.getUsedSpillBytes());
+            assertEquals("first blob", new String(blobCache.getBytes(firstBlob), StandardCharsets.UTF_8));
+
+            assertEquals(1, blobCache.getSpillHits());
+            assertEquals(2, blobCache.getMisses());
+        }
+    }
+
+    @Test
+    void copyToStreamsLargeBlobs() throws IOException {
+        Path target = tempDir.resolve("copy.txt");
+        try (Git git = Git.open(tempDir.toFile());
+             ObjectReader reader = git.getRepository().newObjectReader();
+             BlobCache blobCache = new BlobCache(git.getRepository(), 1024, 0, 4)) {
+            blobCache.copyTo(reader, firstBlob, target);
+            blobCache.copyTo(reader, firstBlob, target);
+
+            // Large blobs are staged on disk, never in memory
+            assertEquals("first blob", Files.readString(target));
+            assertEquals(0, blobCache.getUsedBytes());
+            assertEquals(1, blobCache.getSpillHits());
+            assertEquals(1, blobCache.getMisses());
+        }
+    }
+
+    @Test
+    void stagedBlobsCountAgainstSpillBudget() throws IOException {
+        try (Git git = Git.open(tempDir.toFile());
+             BlobCache blobCache = new BlobCache(git.getRepository(), 1024, 12, 4)) {
+            try (InputStream in = blobCache.openStream(firstBlob)) {
+                assertEquals("first blob", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+            assertEquals("first blob".length(), blobCache.getUsedSpillBytes());
+
+            // Only one staged blob fits, so the first one is evicted
+            try (InputStream in = blobCache.openStream(secondBlob)) {
+                assertEquals("second blob", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+            assertEquals("second blob".length(), blobCache.getUsedSpillBytes());
+            assertEquals("first blob", new String(blobCache.getBytes(firstBlob), StandardCharsets.UTF_8));
+
+            assertEquals(0, blobCache.getSpillHits());
+            assertEquals(3, blobCache.getMisses());
+            assertEquals(0, blobCache.getUsedBytes());
+        }
+    }
+}
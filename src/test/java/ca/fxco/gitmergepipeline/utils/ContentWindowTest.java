@@ -0,0 +1,65 @@
+package ca.fxco.gitmergepipeline.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the ContentWindow class which reads the first bytes or lines of a file.
+ * Tests include reading whole files, and limiting large files to their first bytes and lines.
+ *
+ * @author FX
+ */
+class ContentWindowTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void readWholeFile() throws IOException {
+        Path file = tempDir.resolve("small.txt");
+        Files.writeString(file, "first\nsecond\n");
+
+        assertEquals("first\nsecond\n", toString(ContentWindow.ALL.read(file)));
+    }
+
+    @Test
+    void limitLargeFileToBytes() throws IOException {
+        Path file = writeLines(tempDir.resolve("large.txt"), 20_000);
+
+        ByteBuffer buffer = new ContentWindow(100, 0).read(file);
+        assertEquals(100, buffer.remaining());
+        assertFalse(buffer.isDirect());
+        assertEquals(100, buffer.capacity());
+    }
+
+    @Test
+    void limitLargeFileToLines() throws IOException {
+        Path file = writeLines(tempDir.resolve("large.txt"), 20_000);
+
+        assertEquals("line 0\nline 1\n", toString(new ContentWindow(0, 2).read(file)));
+        assertEquals("line 0\nli", toString(new ContentWindow(9, 2).read(file)));
+    }
+
+    private static Path writeLines(Path file, int lines) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            content.append("line ").append(i).append('\n');
+        }
+        Files.writeString(file, content);
+        return file;
+    }
+
+    private static String toString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,135 @@
+package ca.fxco.gitmergepipeline.utils;
+
+import ca.fxco.gitmergepipeline.config.PipelineConfiguration;
+import ca.fxco.gitmergepipeline.filter.filters.NotFilter;
+import ca.fxco.gitmergepipeline.filter.filters.PathFilter;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the GitUtils class which simplifies common git operations.
+ * Tests include finding the changed files across multiple branches in a single walk, and skipping filtered directories.
+ *
+ * @author FX
+ */
+class GitUtilsTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void getChangedFilesWalksAllBranchesTogether() throws IOException, GitAPIException {
+        try (Git git = Git.init().setDirectory(tempDir.toFile()).setInitialBranch("main").call()) {
+            Files.createDirectories(tempDir.resolve("unchanged"));
+            Files.writeString(tempDir.resolve("unchanged/file.txt"), "unchanged\n");
+            Files.writeString(tempDir.resolve("shared.txt"), "base\n");
+            Files.writeString(tempDir.resolve("first.txt"), "first\n");
+            Files.writeString(tempDir.resolve("second.txt"), "second\n");
+            git.add().addFilepattern(".").call();
+            RevCommit base = git.commit().setMessage("base").call();
+
+            git.branchCreate().setName("left").call();
+            git.branchCreate().setName("right").call();
+
+            git.checkout().setName("left").call();
+            Files.writeString(tempDir.resolve("shared.txt"), "left\n");
+            git.rm().addFilepattern("first.txt").call();
+            git.add().addFilepattern(".").call();
+            RevCommit left = git.commit().setMessage("left").call();
+
+            git.checkout().setName("right").call();
+            Files.writeString(tempDir.resolve("shared.txt"), "right\n");
+            Files.writeString(tempDir.resolve("added.txt"), "added\n");
+            git.rm().addFilepattern("second.txt").call();
+            git.add().addFilepattern(".").call();
+            RevCommit right = git.commit().setMessage("right").call();
+
+            Repository repo = git.getRepository();
+            List<ChangedFile> changedFiles = GitUtils.getChangedFiles(
+                    new PipelineConfiguration(), repo, base, List.of(left, right)
+            );
+
+            // Every changed file is found once, and the unchanged directory is skipped
+            assertEquals(
+                    List.of("added.txt", "first.txt", "second.txt", "shared.txt"),
+                    changedFiles.stream().map(ChangedFile::getPath).toList()
+            );
+
+            ChangedFile added = changedFiles.get(0);
+            assertEquals(3, added.getSideCount());
+            assertFalse(added.exists(ChangedFile.BASE));
+            assertFalse(added.exists(1));
+            assertTrue(added.exists(2));
+            assertEquals(FileMode.REGULAR_FILE, added.getFileMode(2));
+
+            ChangedFile deleted = changedFiles.get(1);
+            assertTrue(deleted.exists(ChangedFile.BASE));
+            assertFalse(deleted.exists(1));
+            assertEquals(deleted.getBlobId(ChangedFile.BASE), deleted.getBlobId(2));
+
+            ChangedFile shared = changedFiles.get(3);
+            assertEquals(blobOf(repo, left, "shared.txt"), shared.getBlobId(1));
+            assertEquals(blobOf(repo, right, "shared.txt"), shared.getBlobId(2));
+        }
+    }
+
+    @Test
+    void getChangedFilesSkipsDirectoriesWhichCantMatch() throws IOException, GitAPIException {
+        try (Git git = Git.init().setDirectory(tempDir.toFile()).setInitialBranch("main").call()) {
+            List<String> paths = List.of(
+                    "src/main/resources/a.json", "src/main/resources/x/y/b.json", "src/main/resources/c.txt",
+                    "src/main/java/d.json", "docs/e.json", "f.json"
+            );
+            for (String path : paths) {
+                Files.createDirectories(tempDir.resolve(path).getParent());
+                Files.writeString(tempDir.resolve(path), "base\n");
+            }
+            git.add().addFilepattern(".").call();
+            RevCommit base = git.commit().setMessage("base").call();
+
+            for (String path : paths) {
+                Files.writeString(tempDir.resolve(path), "changed\n");
+            }
+            git.add().addFilepattern(".").call();
+            RevCommit changed = git.commit().setMessage("changed").call();
+
+            PipelineConfiguration configuration = new PipelineConfiguration();
+            configuration.addFilter(new PathFilter("src/main/resources/**/*.json", false, true));
+            assertEquals(
+                    List.of("src/main/resources/a.json", "src/main/resources/x/y/b.json"),
+                    GitUtils.getChangedFiles(configuration, git.getRepository(), base, List.of(changed))
+                            .stream().map(ChangedFile::getPath).toList()
+            );
+
+            // Inverting the filter still finds the files in directories where the glob could match
+            PipelineConfiguration inverted = new PipelineConfiguration();
+            inverted.addFilter(new NotFilter(new PathFilter("src/main/resources/**/*.json", false, true)));
+            assertEquals(
+                    List.of("docs/e.json", "f.json", "src/main/java/d.json", "src/main/resources/c.txt"),
+                    GitUtils.getChangedFiles(inverted, git.getRepository(), base, List.of(changed))
+                            .stream().map(ChangedFile::getPath).toList()
+            );
+        }
+    }
+
+    private static ObjectId blobOf(Repository repo, RevCommit commit, String path) throws IOException {
+        try (TreeWalk treeWalk = TreeWalk.forPath(repo, path, commit.getTree())) {
+            assertNotNull(treeWalk);
+            return treeWalk.getObjectId(0);
+        }
+    }
+}
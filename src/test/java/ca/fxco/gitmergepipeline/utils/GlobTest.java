@@ -0,0 +1,167 @@
+package ca.fxco.gitmergepipeline.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the Glob class which matches paths against glob patterns.
+ * Tests include the glob syntax, the fast paths agreeing with the automaton, matching raw path bytes, and skipping
+ * directories which can't match.
+ *
+ * @author FX
+ */
+class GlobTest {
+
+    private static final List<String> GLOBS = List.of(
+            "*.java", "Main.java", "build/*", "*.{json,yml}", "*.{a,ab}", "**", "**/*.java", "**/Test*",
+            "**/README.md", "src/**/*.java", "src/main/resources/**/*.json", "Test?.txt", "[a-c]*.md",
+            "[!a]*", "*/x", "a/**", "**/", "*", ""
+    );
+    private static final List<String> PATHS = List.of(
+            "Main.java", "main.JAVA", "src/Main.java", "src/main/java/Main.java", "build/out", "build/a/b",
+            "config.json", "config.yml", "config.YML", "x.ab", "x.b", "a/config.json", "README.md",
+            "docs/README.md", "src/main/resources/a.json", "src/main/resources/x/y/a.json", "Test1.txt",
+            "b.md", "d.md", "a/x", "a/b/x", "a/", "a", "", "Test.java", "café/Test.java", "😀.java"
+    );
+
+    @Test
+    void matchesGlobSyntax() {
+        assertTrue(matches("*.java", "Main.java"));
+        assertFalse(matches("*.java", "src/Main.java"));
+        assertTrue(matches("**/*.java", "Main.java"));
+        assertTrue(matches("**/*.java", "src/main/Main.java"));
+        assertTrue(matches("src/**/*.java", "src/Main.java"));
+        assertTrue(matches("src/**/*.java", "src/a/b/Main.java"));
+        assertFalse(matches("src/**/*.java", "srcMain.java"));
+        assertFalse(matches("src/**/*.java", "test/src/Main.java"));
+        assertTrue(matches("a**", "a/b/c"));
+        assertTrue(matches("{foo,bar}.txt", "bar.txt"));
+        assertTrue(matches("{a,{b,c}d}e", "cde"));
+        assertTrue(matches("a,b", "a,b"));
+        assertTrue(matches("{a,b", "{a,b"));
+        assertTrue(matches("[a", "[a"));
+        assertTrue(matches("[]]", "]"));
+        assertTrue(matches("[^x]", "^"));
+        assertFalse(matches("[!a]", "/"));
+        assertTrue(matches("\\*", "*"));
+        assertFalse(matches("\\*", "a"));
+        assertTrue(matches("*\\", "a\\"));
+        assertTrue(matches("?.md", "😀.md"));
+        assertTrue(matches("file.(1)+", "file.(1)+"));
+        assertTrue(Glob.compile("*.JAVA", false).matches("Main.java"));
+        assertFalse(Glob.compile("*.JAVA", true).matches("Main.java"));
+        assertTrue(Glob.compile("[A-Z]*", false).matches("main"));
+    }
+
+    @Test
+    void fastPathsMatchLikeAutomaton() {
+        for (boolean caseSensitive : new boolean[]{false, true}) {
+            for (String glob : GLOBS) {
+                // Braces around the whole glob keep its meaning, but it's always matched by the automaton
+                Glob fast = Glob.compile(glob, caseSensitive);
+                Glob automaton = Glob.compile("{" + glob + "}", caseSensitive);
+                for (String path : PATHS) {
+                    assertEquals(automaton.matches(path), fast.matches(path), glob + " on " + path);
+                }
+            }
+        }
+    }
+
+    @Test
+    void matchesBytesLikeCharacters() {
+        for (String glob : GLOBS) {
+            for (Glob compiled : List.of(Glob.compile(glob, false), Glob.compile("{" + glob + "}", false))) {
+                for (String path : PATHS) {
+                    byte[] bytes = ("prefix/" + path).getBytes(StandardCharsets.UTF_8);
+                    int start = "prefix/".length();
+                    assertEquals(compiled.matches(path), compiled.matches(bytes, start, bytes.length),
+                            glob + " on " + path);
+                }
+            }
+        }
+    }
+
+    @Test
+    void skipsDirectoriesWhichCantMatch() {
+        assertTrue(mayMatchWithin("src/main/resources/**/*.json", "src"));
+        assertTrue(mayMatchWithin("src/main/resources/**/*.json", "src/main/resources"));
+        assertTrue(mayMatchWithin("src/main/resources/**/*.json", "src/main/resources/a/b"));
+        assertFalse(mayMatchWithin("src/main/resources/**/*.json", "src/test"));
+        assertFalse(mayMatchWithin("src/main/resources/**/*.json", "docs"));
+        assertTrue(mayMatchWithin("build/*", "build"));
+        assertFalse(mayMatchWithin("build/*", "build/out"));
+        assertFalse(mayMatchWithin("*.java", "src"));
+        assertTrue(mayMatchWithin("*/x", "a"));
+        assertTrue(mayMatchWithin("**/*.java", "src/main"));
+        assertTrue(mayMatchWithin("**", "src"));
+
+        // Every directory holding a matching path has to be entered
+        for (boolean caseSensitive : new boolean[]{false, true}) {
+            for (String glob : GLOBS) {
+                List<Glob> compiledGlobs = List.of(
+                        Glob.compile(glob, caseSensitive), Glob.compile("{" + glob + "}", caseSensitive)
+                );
+                for (Glob compiled : compiledGlobs) {
+                    for (String path : PATHS) {
+                        if (!compiled.matches(path)) {
+                            continue;
+                        }
+                        byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+                        for (int i = 0; i < bytes.length; i++) {
+                            if (bytes[i] == '/') {
+                                assertTrue(compiled.mayMatchWithin(bytes, 0, i), glob + " within " + path);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void matchesManyStates() {
+        StringBuilder glob = new StringBuilder();
+        StringBuilder path = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            glob.append("?[a-z]");
+            path.append("xy");
+        }
+        Glob compiled = Glob.compile(glob + "*", true);
+        assertTrue(compiled.matches(path + "tail"));
+        assertFalse(compiled.matches(path.substring(1)));
+        byte[] bytes = path.toString().getBytes(StandardCharsets.UTF_8);
+        assertTrue(compiled.matches(bytes, 0, bytes.length));
+    }
+
+    @Test
+    void serializationCompilesAgain() throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ObjectOutputStream objectOut = new ObjectOutputStream(out)) {
+            objectOut.writeObject(Glob.compile("src/**/*.java", true));
+        }
+        try (ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            Glob glob = (Glob) objectIn.readObject();
+            assertEquals("src/**/*.java", glob.getGlob());
+            assertTrue(glob.isCaseSensitive());
+            assertTrue(glob.matches("src/a/Main.java"));
+        }
+    }
+
+    private static boolean mayMatchWithin(String glob, String directory) {
+        byte[] bytes = directory.getBytes(StandardCharsets.UTF_8);
+        return Glob.compile(glob, true).mayMatchWithin(bytes, 0, bytes.length);
+    }
+
+    private static boolean matches(String glob, String path) {
+        return Glob.compile(glob, true).matches(path);
+    }
+}
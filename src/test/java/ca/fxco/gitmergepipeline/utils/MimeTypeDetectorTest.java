@@ -0,0 +1,83 @@
+package ca.fxco.gitmergepipeline.utils;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the MimeTypeDetector class which detects mime types from extensions and content.
+ * Tests include the extension table, magic numbers, and caching mime types by blob id.
+ *
+ * @author FX
+ */
+class MimeTypeDetectorTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void detectsFromExtension() {
+        assertEquals("application/json", MimeTypeDetector.fromExtension("config/settings.JSON"));
+        assertEquals("image/png", MimeTypeDetector.fromExtension("logo.png"));
+        assertNull(MimeTypeDetector.fromExtension("Makefile"));
+        assertNull(MimeTypeDetector.fromExtension("dir.json/file"));
+
+        byte[] path = "src/main/resources/data.yml".getBytes(StandardCharsets.UTF_8);
+        assertEquals("application/yaml", MimeTypeDetector.fromExtension(path, 0, path.length));
+        assertNull(MimeTypeDetector.fromExtension(path, 0, 3));
+    }
+
+    @Test
+    void detectsFromContent() {
+        assertEquals("image/png", fromContent(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 0}));
+        assertEquals("application/pdf", fromContent("%PDF-1.7\n".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals("application/zip", fromContent(new byte[]{'P', 'K', 3, 4, 0, 0}));
+        assertEquals("application/java-vm", fromContent(new byte[]{(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE}));
+        assertEquals("application/xml", fromContent("\n  <?xml version=\"1.0\"?>".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals("text/html", fromContent("<!DOCTYPE HTML><html>".getBytes(StandardCharsets.US_ASCII)));
+        assertEquals(MimeTypeDetector.TEXT, fromContent("plain text, café".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(MimeTypeDetector.TEXT, fromContent(new byte[0]));
+        assertEquals(MimeTypeDetector.BINARY, fromContent(new byte[]{1, 2, 0, 3}));
+    }
+
+    @Test
+    void cachesByBlobId() throws IOException, GitAPIException {
+        try (Git git = Git.init().setDirectory(tempDir.toFile()).setInitialBranch("main").call();
+             ObjectInserter inserter = git.getRepository().newObjectInserter();
+             ObjectReader reader = git.getRepository().newObjectReader()) {
+            ObjectId blobId = inserter.insert(Constants.OBJ_BLOB, "%PDF-1.4\n".getBytes(StandardCharsets.US_ASCII));
+            inserter.flush();
+
+            MimeTypeDetector detector = new MimeTypeDetector();
+            assertEquals("application/pdf", detector.detect(reader, blobId));
+            assertEquals("application/pdf", detector.detect(reader, blobId));
+            assertEquals(1, detector.getMisses());
+            assertEquals(1, detector.getHits());
+        }
+    }
+
+    @Test
+    void detectsFilesOnDisk() throws IOException {
+        Path file = Files.write(tempDir.resolve("image"), new byte[]{'G', 'I', 'F', '8', '9', 'a'});
+        MimeTypeDetector detector = new MimeTypeDetector();
+        assertEquals("image/gif", detector.detect("image", file));
+        // The extension is trusted without reading the file
+        assertEquals("text/markdown", detector.detect("image.md", file));
+    }
+
+    private static String fromContent(byte[] content) {
+        return MimeTypeDetector.fromContent(content, content.length);
+    }
+}
@@ -0,0 +1,66 @@
+package ca.fxco.gitmergepipeline.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the MultiLiteralSearcher class which searches bytes for many literals in a single pass.
+ * Tests include overlapping literals, literals within other literals, case-insensitive searches and ranges.
+ *
+ * @author FX
+ */
+class MultiLiteralSearcherTest {
+
+    @Test
+    void findsOverlappingLiterals() {
+        MultiLiteralSearcher searcher = MultiLiteralSearcher.of(List.of("he", "she", "his", "hers", "xyz"), true);
+        assertEquals(5, searcher.size());
+        assertEquals(bits(0, 1, 3), search(searcher, "ushers"));
+        assertEquals(bits(0, 2), search(searcher, "this he"));
+        assertEquals(bits(), search(searcher, "xy zy"));
+        assertEquals(bits(4), search(searcher, "xxyz"));
+    }
+
+    @Test
+    void findsLiteralsWithinOtherLiterals() {
+        MultiLiteralSearcher searcher = MultiLiteralSearcher.of(List.of("abcd", "bc", "c", "", "abcd"), true);
+        assertEquals(bits(1, 2, 3), search(searcher, "abce"));
+        assertEquals(bits(0, 1, 2, 3, 4), search(searcher, "aabcd"));
+    }
+
+    @Test
+    void searchesCaseInsensitively() {
+        MultiLiteralSearcher searcher = MultiLiteralSearcher.of(List.of("DO NOT EDIT", "café"), false);
+        assertEquals(bits(0), search(searcher, "// Do Not Edit"));
+        assertEquals(bits(1), search(searcher, "CAFé"));
+        assertEquals(bits(), search(searcher, "CAFÉ"));
+        assertEquals(bits(), search(MultiLiteralSearcher.of(List.of("DO NOT EDIT"), true), "do not edit"));
+    }
+
+    @Test
+    void searchesRanges() {
+        MultiLiteralSearcher searcher = MultiLiteralSearcher.of(List.of("one", "two"), true);
+        byte[] data = "one two".getBytes(StandardCharsets.UTF_8);
+        assertEquals(bits(0), searcher.search(data, 0, 3));
+        assertEquals(bits(1), searcher.search(data, 1, data.length));
+        assertEquals(bits(), MultiLiteralSearcher.of(List.of(), true).search(data, 0, data.length));
+    }
+
+    private static BitSet search(MultiLiteralSearcher searcher, String text) {
+        byte[] data = text.getBytes(StandardCharsets.UTF_8);
+        return searcher.search(data, 0, data.length);
+    }
+
+    private static BitSet bits(int... indexes) {
+        BitSet bits = new BitSet();
+        for (int index : indexes) {
+            bits.set(index);
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,46 @@
+package ca.fxco.gitmergepipeline.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the RegexLiterals class which finds the literals regular expressions require, and the LiteralSearcher
+ * class which searches bytes for them.
+ * Tests include quantifiers, groups, alternatives, and case-insensitive searches.
+ *
+ * @author FX
+ */
+class RegexLiteralsTest {
+
+    @Test
+    void findsRequiredLiteral() {
+        assertEquals("@generated", RegexLiterals.requiredLiteral("@generated"));
+        assertEquals("Copyright ", RegexLiterals.requiredLiteral("Copyright \\d{4}"));
+        assertEquals("DO NOT EDIT", RegexLiterals.requiredLiteral("^DO NOT EDIT\\.?$"));
+        assertEquals("version", RegexLiterals.requiredLiteral("ab?c*version(\\d+)?"));
+        assertEquals("aaa", RegexLiterals.requiredLiteral("x{0,2}aaa{2}"));
+        assertEquals("a.b", RegexLiterals.requiredLiteral("a\\.b"));
+        assertEquals("end", RegexLiterals.requiredLiteral("[a-z]+(?:foo|bar)end"));
+        assertNull(RegexLiterals.requiredLiteral("foo|bar"));
+        assertNull(RegexLiterals.requiredLiteral("(?i)foo"));
+        assertNull(RegexLiterals.requiredLiteral("\\Qfoo\\E"));
+        assertNull(RegexLiterals.requiredLiteral(".*"));
+        assertTrue(RegexLiterals.isLiteral("plain text"));
+        assertFalse(RegexLiterals.isLiteral("a.b"));
+    }
+
+    @Test
+    void searchesBytes() {
+        byte[] data = "The quick brown fox, café".getBytes(StandardCharsets.UTF_8);
+        assertEquals(4, LiteralSearcher.of("quick", true).indexOf(data, 0, data.length));
+        assertEquals(-1, LiteralSearcher.of("QUICK", true).indexOf(data, 0, data.length));
+        assertEquals(4, LiteralSearcher.of("QUICK", false).indexOf(data, 0, data.length));
+        assertEquals(21, LiteralSearcher.of("café", true).indexOf(data, 0, data.length));
+        assertEquals(-1, LiteralSearcher.of("fox", true).indexOf(data, 0, 18));
+        assertEquals(16, LiteralSearcher.of("fox", true).indexOf(data, 5, data.length));
+        assertEquals(2, LiteralSearcher.of("", true).indexOf(data, 2, data.length));
+    }
+}
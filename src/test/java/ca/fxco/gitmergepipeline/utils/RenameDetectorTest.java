@@ -0,0 +1,99 @@
+package ca.fxco.gitmergepipeline.utils;
+
+import ca.fxco.gitmergepipeline.config.PipelineConfiguration;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the RenameDetector class which detects renamed files on a side of a merge.
+ * Tests include exact renames, similar renames, and the rename limit.
+ *
+ * @author FX
+ */
+class RenameDetectorTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void detectExactAndSimilarRenames() throws IOException, GitAPIException {
+        try (Git git = Git.init().setDirectory(tempDir.toFile()).setInitialBranch("main").call()) {
+            Files.writeString(tempDir.resolve("exact.txt"), "exact\n");
+            Files.writeString(tempDir.resolve("similar.txt"), lines("Line", 20));
+            Files.writeString(tempDir.resolve("deleted.txt"), "deleted\n");
+            git.add().addFilepattern(".").call();
+            RevCommit base = git.commit().setMessage("base").call();
+
+            Files.createDirectories(tempDir.resolve("moved"));
+            Files.writeString(tempDir.resolve("moved/exact.txt"), "exact\n");
+            Files.writeString(tempDir.resolve("moved/similar.txt"), lines("Line", 20).replace("Line 1\n", "Changed\n"));
+            Files.writeString(tempDir.resolve("added.txt"), "something else entirely\n");
+            git.rm().addFilepattern("exact.txt").addFilepattern("similar.txt").addFilepattern("deleted.txt").call();
+            git.add().addFilepattern(".").call();
+            RevCommit branch = git.commit().setMessage("rename").call();
+
+            List<ChangedFile> changedFiles = GitUtils.getChangedFiles(
+                    new PipelineConfiguration(), git.getRepository(), base, List.of(branch)
+            );
+            RenameDetector detector = new RenameDetector(git.getRepository(), 100, 60, Duration.ofMinutes(1), 2);
+            RenameDetector.Result result = detector.detect(changedFiles, 1);
+
+            assertEquals(1, result.exact());
+            assertEquals(0, result.skipped());
+            assertEquals(2, result.renames().size());
+            assertEquals(new RenameDetector.Rename("exact.txt", "moved/exact.txt", 100), result.renames().get(0));
+            RenameDetector.Rename similar = result.renames().get(1);
+            assertEquals("similar.txt", similar.oldPath());
+            assertEquals("moved/similar.txt", similar.newPath());
+            assertTrue(similar.score() >= 60 && similar.score() < 100);
+        }
+    }
+
+    @Test
+    void skipSimilarRenamesOverLimit() throws IOException, GitAPIException {
+        try (Git git = Git.init().setDirectory(tempDir.toFile()).setInitialBranch("main").call()) {
+            Files.writeString(tempDir.resolve("exact.txt"), "exact\n");
+            Files.writeString(tempDir.resolve("first.txt"), lines("First", 20));
+            Files.writeString(tempDir.resolve("second.txt"), lines("Second", 20));
+            git.add().addFilepattern(".").call();
+            RevCommit base = git.commit().setMessage("base").call();
+
+            Files.writeString(tempDir.resolve("exact2.txt"), "exact\n");
+            Files.writeString(tempDir.resolve("first2.txt"), lines("First", 20) + "More\n");
+            Files.writeString(tempDir.resolve("second2.txt"), lines("Second", 20) + "More\n");
+            git.rm().addFilepattern("exact.txt").addFilepattern("first.txt").addFilepattern("second.txt").call();
+            git.add().addFilepattern(".").call();
+            RevCommit branch = git.commit().setMessage("rename").call();
+
+            List<ChangedFile> changedFiles = GitUtils.getChangedFiles(
+                    new PipelineConfiguration(), git.getRepository(), base, List.of(branch)
+            );
+            RenameDetector detector = new RenameDetector(git.getRepository(), 1, 60, Duration.ofMinutes(1), 1);
+            RenameDetector.Result result = detector.detect(changedFiles, 1);
+
+            // Exact renames don't count towards the limit, everything else is skipped
+            assertEquals(List.of(new RenameDetector.Rename("exact.txt", "exact2.txt", 100)), result.renames());
+            assertEquals(1, result.exact());
+            assertEquals(2, result.skipped());
+        }
+    }
+
+    private static String lines(String prefix, int count) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 1; i <= count; i++) {
+            builder.append(prefix).append(' ').append(i).append('\n');
+        }
+        return builder.toString();
+    }
+}
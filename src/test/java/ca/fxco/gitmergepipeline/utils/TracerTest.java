@@ -0,0 +1,128 @@
+package ca.fxco.gitmergepipeline.utils;
+
+import ca.fxco.gitmergepipeline.config.PipelineConfiguration;
+import ca.fxco.gitmergepipeline.merge.MergeDriver;
+import ca.fxco.gitmergepipeline.pipeline.Pipeline;
+import ca.fxco.gitmergepipeline.pipeline.StandardPipeline;
+import ca.fxco.gitmergepipeline.rule.ContentPatternRule;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the Tracer class which records a timeline of spans in the Chrome trace event format.
+ * Tests include spans on several threads, stopped tracers, and the spans recorded by a merge driver run
+ * including one per pipeline step.
+ *
+ * @author FX
+ */
+class TracerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Tracer tracer;
+
+    @AfterEach
+    void tearDown() {
+        if (tracer != null) {
+            tracer.stop();
+        }
+    }
+
+    @Test
+    void recordsSpansPerThread() throws IOException, InterruptedException {
+        tracer = Tracer.start();
+        assertTrue(Tracer.isEnabled());
+        try (Tracer.Span outer = Tracer.span("test", "outer", "file", "a.txt")) {
+            try (Tracer.Span inner = Tracer.span("test", "inner")) {
+                Thread.onSpinWait();
+            }
+        }
+        Thread worker = new Thread(() -> {
+            try (Tracer.Span span = Tracer.span("test", "worker")) {
+                Thread.onSpinWait();
+            }
+        }, "trace-worker");
+        worker.start();
+        worker.join();
+        tracer.stop();
+        assertFalse(Tracer.isEnabled());
+
+        JsonNode events = write(tracer);
+        List<String> names = new ArrayList<>();
+        Set<Long> threads = new HashSet<>();
+        Set<String> threadNames = new HashSet<>();
+        for (JsonNode event : events) {
+            if ("M".equals(event.get("ph").asText())) {
+                threadNames.add(event.get("args").get("name").asText());
+                continue;
+            }
+            assertEquals("X", event.get("ph").asText());
+            assertTrue(event.get("dur").asDouble() >= 0);
+            names.add(event.get("name").asText());
+            threads.add(event.get("tid").asLong());
+            if ("outer".equals(event.get("name").asText())) {
+                assertEquals("a.txt", event.get("args").get("file").asText());
+            }
+        }
+        // Spans are recorded when they end, so inner spans come first
+        assertEquals(List.of("inner", "outer", "worker"), names);
+        assertEquals(2, threads.size());
+        assertTrue(threadNames.contains("trace-worker"));
+    }
+
+    @Test
+    void recordsNothingOnceStopped() {
+        tracer = Tracer.start();
+        tracer.stop();
+        try (Tracer.Span span = Tracer.span("test", "ignored")) {
+            assertNotNull(span);
+        }
+        assertEquals(0, tracer.getSpanCount());
+    }
+
+    @Test
+    void tracesMergeDriver() throws IOException {
+        Path base = Files.writeString(tempDir.resolve("base.txt"), "base\n");
+        Path current = Files.writeString(tempDir.resolve("current.txt"), "current\n");
+        Path other = Files.writeString(tempDir.resolve("other.txt"), "other\n");
+        StandardPipeline pipeline = new StandardPipeline("Traced", List.of(
+                new Pipeline.Step(new ContentPatternRule("current"), "git-merge", List.of("ours"))
+        ), null);
+        MergeDriver driver = new MergeDriver(PipelineConfiguration.onlyPipelines(pipeline));
+
+        tracer = Tracer.start();
+        assertTrue(driver.merge(base, current, other, "file.txt"));
+        tracer.stop();
+
+        Set<String> names = new HashSet<>();
+        for (JsonNode event : write(tracer)) {
+            names.add(event.get("cat") != null ? event.get("cat").asText() + ":" + event.get("name").asText() : "");
+        }
+        assertTrue(names.containsAll(Set.of(
+                "pipeline:findPipeline", "pipeline:Standard pipeline: Traced", "rule:ContentPatternRule",
+                "step:git-merge", "operation:git-merge"
+        )), names.toString());
+    }
+
+    private JsonNode write(Tracer tracer) throws IOException {
+        Path file = tempDir.resolve("trace.json");
+        tracer.write(file);
+        JsonNode trace = new ObjectMapper().readTree(file.toFile());
+        assertEquals("ms", trace.get("displayTimeUnit").asText());
+        return trace.get("traceEvents");
+    }
+}